@@ -0,0 +1,108 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.spi.LoggingEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link SecureJsonLayout} compared with {@link SecurePatternLayout}, using
+ * a pattern with the same fields, for the event shapes of
+ * {@link SecurePatternLayoutBenchmark} with an MDC entry and an NDC.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SecureJsonLayoutBenchmark {
+  static final String PATTERN = "%d{ISO8601} %-5p [%t] %c %X{user} %x - %m%n";
+
+  @Param({ "short", "stackTrace", "separators" })
+  public String shape;
+
+  private final Logger logger = Logger.getLogger("org.example.service.RequestHandler");
+  private SecurePatternLayout textLayout;
+  private SecureJsonLayout jsonLayout;
+  private String message;
+  private Throwable throwable;
+
+  @Setup
+  public void setup() {
+    textLayout = new SecurePatternLayout(PATTERN);
+    jsonLayout = new SecureJsonLayout();
+    if (shape.equals("short")) {
+      message = "Request completed in 12ms";
+    } else if (shape.equals("stackTrace")) {
+      message = "Request failed";
+      throwable = SecurePatternLayoutBenchmark.stackTrace(200);
+    } else {
+      StringBuilder buf = new StringBuilder();
+      for (int i = 0; i < 100; i++) {
+        buf.append("payload®ª\"\n");
+      }
+      message = buf.toString();
+    }
+    MDC.put("user", "jdoe");
+    NDC.push("req-17");
+  }
+
+  @TearDown
+  public void tearDown() {
+    MDC.remove("user");
+    NDC.remove();
+  }
+
+  private LoggingEvent event() {
+    return new LoggingEvent(Logger.class.getName(), logger, Level.INFO, message, throwable);
+  }
+
+  @Benchmark
+  public String formatText() {
+    return textLayout.format(event());
+  }
+
+  @Benchmark
+  public String formatJson() {
+    return jsonLayout.format(event());
+  }
+
+  @Benchmark
+  public ByteBuffer encodeText(SecurePatternLayoutBenchmark.EncodeState state) {
+    textLayout.encode(event(), state.encoder, state);
+    return state.buffer;
+  }
+
+  @Benchmark
+  public ByteBuffer encodeJson(SecurePatternLayoutBenchmark.EncodeState state) {
+    jsonLayout.encode(event(), state.encoder, state);
+    return state.buffer;
+  }
+}
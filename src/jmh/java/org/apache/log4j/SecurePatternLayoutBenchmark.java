@@ -0,0 +1,201 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.helpers.PatternParser;
+import org.apache.log4j.spi.LoggingEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of {@link SecurePatternLayout} for a few representative event
+ * shapes. A new event is created for every invocation, as it would be in a
+ * real application, so throwable rendering is included in the cost.
+ *
+ * <p>Run with <code>mvn -Pbenchmark test-compile exec:exec</code>, and pass
+ * other JMH options with <code>-Djmh.args="..."</code> (the default is
+ * <code>-prof gc</code>, which reports the allocation rate).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SecurePatternLayoutBenchmark {
+  static final String PATTERN = "%d{ISO8601} %-5p [%t] %c{2} - %m%n";
+  static final String LOCATION_PATTERN = "%d{ISO8601} %-5p [%t] %l - %m%n";
+
+  @Param({ "short", "stackTrace", "separators" })
+  public String shape;
+
+  private final Logger logger = Logger.getLogger("org.example.service.RequestHandler");
+  private SecurePatternLayout layout;
+  private SecurePatternLayout stockParserLayout;
+  private SecurePatternLayout locationLayout;
+  private SecurePatternLayout stockLocationLayout;
+  private SecurePatternLayout sharedLayout;
+  private SecurePatternLayout threadConfinedLayout;
+  private SecurePatternLayout trimLayout;
+  private SecurePatternLayout cacheLayout;
+  private String message;
+  private Throwable throwable;
+
+  @Setup
+  public void setup() {
+    layout = new SecurePatternLayout(PATTERN);
+    stockParserLayout = new SecurePatternLayout(PATTERN) {
+      protected PatternParser createPatternParser(String pattern) {
+        return new PatternParser(pattern);
+      }
+    };
+    locationLayout = new SecurePatternLayout(LOCATION_PATTERN);
+    stockLocationLayout = new SecurePatternLayout(LOCATION_PATTERN) {
+      protected PatternParser createPatternParser(String pattern) {
+        return new PatternParser(pattern);
+      }
+    };
+    sharedLayout = new SecurePatternLayout(PATTERN);
+    threadConfinedLayout = new SecurePatternLayout(PATTERN);
+    threadConfinedLayout.setThreadConfined(true);
+    trimLayout = new SecurePatternLayout(PATTERN);
+    trimLayout.setTrimCommonFrames(true);
+    cacheLayout = new SecurePatternLayout(PATTERN);
+    cacheLayout.setTrimCommonFrames(true);
+    cacheLayout.setThrowableCacheSize(128);
+
+    if (shape.equals("short")) {
+      message = "Request completed in 12ms";
+    } else if (shape.equals("stackTrace")) {
+      message = "Request failed";
+      throwable = stackTrace(200);
+    } else {
+      StringBuilder buf = new StringBuilder();
+      for (int i = 0; i < 100; i++) {
+        buf.append("payload®ª");
+      }
+      message = buf.toString();
+    }
+  }
+
+  static Throwable stackTrace(int depth) {
+    Throwable t = new IllegalStateException("Downstream service unavailable");
+    StackTraceElement[] frames = new StackTraceElement[depth];
+    for (int i = 0; i < depth; i++) {
+      frames[i] = new StackTraceElement("org.example.layer" + (i % 10) + ".Component" + i, "invoke", "Component" + i + ".java", 100 + i);
+    }
+    t.setStackTrace(frames);
+    return t;
+  }
+
+  private LoggingEvent event() {
+    return new LoggingEvent(Logger.class.getName(), logger, Level.INFO, message, throwable);
+  }
+
+  @Benchmark
+  public String format() {
+    return layout.format(event());
+  }
+
+  @Benchmark
+  public String formatStockParser() {
+    // Baseline: the converters of the standard PatternParser
+    return stockParserLayout.format(event());
+  }
+
+  @Benchmark
+  public String formatTrimCommonFrames() {
+    return trimLayout.format(event());
+  }
+
+  @Benchmark
+  public String formatThrowableCache() {
+    // Every event after the first carries a stack trace already printed
+    return cacheLayout.format(event());
+  }
+
+  private LoggingEvent locationEvent() {
+    // This class stands in for the logger, so the caller is the JMH stub
+    return new LoggingEvent(SecurePatternLayoutBenchmark.class.getName(), logger, Level.INFO,
+                            message, throwable);
+  }
+
+  @Benchmark
+  public String formatLocation() {
+    return locationLayout.format(locationEvent());
+  }
+
+  @Benchmark
+  public String formatLocationStockParser() {
+    return stockLocationLayout.format(locationEvent());
+  }
+
+  @Benchmark
+  public ByteBuffer encode(EncodeState state) {
+    layout.encode(event(), state.encoder, state);
+    return state.buffer;
+  }
+
+  @Benchmark
+  @Threads(4)
+  public String formatContendedSynchronized() {
+    // What an appender does today: every thread serialized on one layout
+    synchronized (sharedLayout) {
+      return sharedLayout.format(event());
+    }
+  }
+
+  @Benchmark
+  @Threads(4)
+  public String formatContendedThreadConfined() {
+    return threadConfinedLayout.format(event());
+  }
+
+  /**
+   * Destination that discards everything, so only formatting and encoding
+   * are measured.
+   */
+  @State(Scope.Thread)
+  public static class EncodeState implements ByteBufferDestination {
+    final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    final ByteBuffer buffer = ByteBuffer.allocate(8192);
+
+    public ByteBuffer getByteBuffer() {
+      ((Buffer) buffer).clear();
+      return buffer;
+    }
+
+    public ByteBuffer drain(ByteBuffer buf) {
+      ((Buffer) buf).clear();
+      return buf;
+    }
+  }
+}
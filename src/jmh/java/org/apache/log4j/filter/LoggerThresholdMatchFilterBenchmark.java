@@ -0,0 +1,94 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j.filter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of {@link LoggerThresholdMatchFilter#decide(LoggingEvent)} with
+ * routing tables of different sizes, for events from a few hundred loggers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoggerThresholdMatchFilterBenchmark {
+  static final int LOGGERS = 256;
+
+  @Param({ "10", "500" })
+  public int rules;
+
+  private LoggerThresholdMatchFilter filter;
+  private LoggingEvent[] events;
+  private int next;
+
+  @Setup
+  public void setup() {
+    StringBuilder buf = new StringBuilder();
+    for (int i = 0; i < rules; i++) {
+      buf.append("org.example.module").append(i).append(i % 3 == 0 ? ".db" : "")
+         .append(i % 2 == 0 ? "=INFO," : "=WARN,");
+    }
+    filter = new LoggerThresholdMatchFilter();
+    filter.setRules(buf.toString());
+    filter.setDefaultThreshold("ERROR");
+    filter.activateOptions();
+
+    events = new LoggingEvent[LOGGERS];
+    for (int i = 0; i < LOGGERS; i++) {
+      Logger logger = Logger.getLogger("org.example.module" + (i % rules) + ".db.Repository" + i);
+      events[i] = new LoggingEvent(Logger.class.getName(), logger, Level.INFO, "message", null);
+    }
+  }
+
+  @Benchmark
+  public int decide() {
+    LoggingEvent event = events[next++ & (LOGGERS - 1)];
+    return filter.decide(event);
+  }
+
+  /**
+   * Each benchmark thread walks the loggers from its own position.
+   */
+  @State(Scope.Thread)
+  public static class Cursor {
+    int next = (int) Thread.currentThread().getId() * 37;
+  }
+
+  @Benchmark
+  @Threads(4)
+  public int decideContended(Cursor cursor) {
+    LoggingEvent event = events[cursor.next++ & (LOGGERS - 1)];
+    return filter.decide(event);
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j.filter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.MDC;
+import org.apache.log4j.spi.Filter;
+import org.apache.log4j.spi.LoggingEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of {@link MDCMatchFilter#match(LoggingEvent)} and of walking a chain
+ * of {@link MatchFilterBase} filters the way an appender does.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MDCMatchFilterBenchmark {
+  static final int CHAIN_LENGTH = 20;
+
+  /** Number of entries in the MDC of each event. */
+  @Param({ "1", "32" })
+  public int mdcWidth;
+
+  @Param({ "true", "false" })
+  public boolean exactMatch;
+
+  private final Logger logger = Logger.getLogger("org.example.service.RequestHandler");
+  private MDCMatchFilter filter;
+  private Filter chain;
+  private CompiledFilterChain compiledChain;
+
+  @Setup
+  public void setup() {
+    filter = filter("tenant-7");
+
+    // Only the last filter in the chain matches, so every filter is consulted
+    Filter last = null;
+    compiledChain = new CompiledFilterChain();
+    for (int i = CHAIN_LENGTH - 1; i >= 0; i--) {
+      MDCMatchFilter f = filter(i == CHAIN_LENGTH - 1 ? "tenant-7" : "tenant-x" + i);
+      f.setChainPolicy(MatchFilterBase.ACCEPT_ON_MATCH);
+      f.setNext(last);
+      last = f;
+    }
+    chain = last;
+    for (Filter f = chain; f != null; f = f.getNext()) {
+      compiledChain.addFilter(f);
+    }
+    compiledChain.activateOptions();
+  }
+
+  private MDCMatchFilter filter(String value) {
+    MDCMatchFilter f = new MDCMatchFilter();
+    f.setKeyToMatch("tenant");
+    f.setValueToMatch(value);
+    f.setExactMatch(exactMatch);
+    f.activateOptions();
+    return f;
+  }
+
+  /**
+   * Each benchmark thread has its own MDC, populated once.
+   */
+  @State(Scope.Thread)
+  public static class Context {
+    LoggingEvent event;
+
+    @Setup
+    public void setup(MDCMatchFilterBenchmark benchmark) {
+      MDC.clear();
+      for (int i = 1; i < benchmark.mdcWidth; i++) {
+        MDC.put("key" + i, "value-" + i);
+      }
+      MDC.put("tenant", "tenant-7");
+      event = new LoggingEvent(Logger.class.getName(), benchmark.logger, Level.INFO, "message", null);
+    }
+  }
+
+  @Benchmark
+  public boolean match(Context context) {
+    return filter.match(context.event);
+  }
+
+  @Benchmark
+  public int decide(Context context) {
+    return filter.decide(context.event);
+  }
+
+  @Benchmark
+  public int decideChain(Context context) {
+    return decideChain(chain, context.event);
+  }
+
+  @Benchmark
+  public int decideCompiledChain(Context context) {
+    return compiledChain.decide(context.event);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public int decideChainContended(Context context) {
+    return decideChain(chain, context.event);
+  }
+
+  /**
+   * Same loop as AppenderSkeleton.doAppend().
+   */
+  static int decideChain(Filter head, LoggingEvent event) {
+    Filter f = head;
+    while (f != null) {
+      int decision = f.decide(event);
+      if (decision != Filter.NEUTRAL) {
+        return decision;
+      }
+      f = f.getNext();
+    }
+    return Filter.NEUTRAL;
+  }
+}
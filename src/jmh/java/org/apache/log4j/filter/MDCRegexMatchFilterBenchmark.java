@@ -0,0 +1,102 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j.filter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.MDC;
+import org.apache.log4j.spi.LoggingEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of {@link MDCRegexMatchFilter#match(LoggingEvent)} with and without
+ * its cache of results, for values that pass the prefix check (and repeat,
+ * as request paths do) and for values that fail it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MDCRegexMatchFilterBenchmark {
+  static final String REGEX = "/api/v[0-9]+/(users|orders|accounts)/[0-9a-f]{8}(/[a-z]+)*";
+
+  @Param({ "/api/v2/orders/5f3a9c21/items/history", "/static/img/logo.png" })
+  public String path;
+
+  private final Logger logger = Logger.getLogger("org.example.service.RequestHandler");
+  private MDCRegexMatchFilter cached;
+  private MDCRegexMatchFilter uncached;
+
+  @Setup
+  public void setup() {
+    cached = filter(1024);
+    uncached = filter(0);
+  }
+
+  private MDCRegexMatchFilter filter(int cacheSize) {
+    MDCRegexMatchFilter f = new MDCRegexMatchFilter();
+    f.setKeyToMatch("path");
+    f.setRegexToMatch(REGEX);
+    f.setCacheSize(cacheSize);
+    f.activateOptions();
+    return f;
+  }
+
+  /**
+   * Each benchmark thread has its own MDC, populated once.
+   */
+  @State(Scope.Thread)
+  public static class Context {
+    LoggingEvent event;
+
+    @Setup
+    public void setup(MDCRegexMatchFilterBenchmark benchmark) {
+      MDC.clear();
+      MDC.put("path", benchmark.path);
+      event = new LoggingEvent(Logger.class.getName(), benchmark.logger, Level.INFO, "message", null);
+    }
+  }
+
+  @Benchmark
+  public boolean match(Context context) {
+    return cached.match(context.event);
+  }
+
+  @Benchmark
+  public boolean matchUncached(Context context) {
+    return uncached.match(context.event);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public boolean matchContended(Context context) {
+    return cached.match(context.event);
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j.filter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of {@link RateLimitFilter#decide(LoggingEvent)} for each kind of key,
+ * during a burst: nearly every event is over the limit, as when a failing
+ * dependency makes one code path log as fast as it can.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RateLimitFilterBenchmark {
+  @Param({ "Logger", "Message" })
+  public String key;
+
+  private final Logger logger = Logger.getLogger("org.example.service.RequestHandler");
+  private RateLimitFilter filter;
+  private LoggingEvent event;
+
+  @Setup
+  public void setup() {
+    filter = new RateLimitFilter();
+    filter.setKey(key);
+    filter.activateOptions();
+    event = new LoggingEvent(Logger.class.getName(), logger, Level.ERROR,
+                             "Request 81231 failed after 3000 ms", null);
+  }
+
+  @Benchmark
+  public int decide() {
+    return filter.decide(event);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public int decideContended() {
+    return filter.decide(event);
+  }
+}
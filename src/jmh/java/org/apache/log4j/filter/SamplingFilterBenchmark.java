@@ -0,0 +1,94 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j.filter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.MDC;
+import org.apache.log4j.spi.LoggingEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of {@link SamplingFilter#decide(LoggingEvent)} for DEBUG events of a
+ * request that is not sampled, with a new event each time as an appender
+ * would see them. Run with <code>-prof gc</code> to see that deciding
+ * allocates nothing beyond the event and its copy of the MDC.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SamplingFilterBenchmark {
+  private final Logger logger = Logger.getLogger("org.example.service.RequestHandler");
+  private SamplingFilter filter;
+
+  @Setup
+  public void setup() {
+    filter = new SamplingFilter();
+    filter.setKeyToMatch("requestId");
+    filter.setLevelRates("DEBUG=0.01,INFO=0.1");
+    filter.activateOptions();
+  }
+
+  /**
+   * Each benchmark thread handles its own request.
+   */
+  @State(Scope.Thread)
+  public static class Context {
+    @Setup
+    public void setup() {
+      MDC.clear();
+      for (int i = 0; i < 8; i++) {
+        MDC.put("key" + i, "value-" + i);
+      }
+      MDC.put("requestId", "4bf92f3577b34da6a3ce929d0e0e4736-" + Thread.currentThread().getId());
+    }
+  }
+
+  private LoggingEvent event() {
+    return new LoggingEvent(Logger.class.getName(), logger, Level.DEBUG, "message", null);
+  }
+
+  @Benchmark
+  public LoggingEvent eventOnly(Context context) {
+    // Baseline: creating the event
+    return event();
+  }
+
+  @Benchmark
+  public int decide(Context context) {
+    return filter.decide(event());
+  }
+
+  @Benchmark
+  @Threads(4)
+  public int decideContended(Context context) {
+    return filter.decide(event());
+  }
+}
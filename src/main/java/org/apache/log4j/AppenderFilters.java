@@ -0,0 +1,84 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.io.Closeable;
+
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.spi.Filter;
+
+/**
+ * Replaces the filter chain of an appender that is in use. The chain is
+ * changed while holding the lock of the appender, which
+ * {@link AppenderSkeleton#doAppend} holds while it filters an event, so
+ * appending threads see either the old chain or the new one (with its
+ * filters fully configured), never a partial or empty chain. Appenders
+ * that override doAppend without that lock must publish the chain to
+ * appending threads themselves, as {@link AsyncSecureFileAppender} does
+ * through a volatile field; for other such appenders the swap is not safe.
+ *
+ * <p>Also closes the filters of a chain that is no longer used, releasing
+ * what filters such as {@link org.apache.log4j.filter.MatchFilterBase} set
+ * up when they were activated.
+ */
+public final class AppenderFilters {
+  private AppenderFilters() {
+  }
+
+  /**
+   * Make the chain beginning with <code>head</code> (linked with
+   * {@link Filter#setNext(Filter)}) the filters of the appender. The
+   * previous chain is returned for the caller to close with
+   * {@link #close(Filter)} once it is no longer wanted.
+   *
+   * @param head the first filter of the new chain, or null for none
+   * @return the first filter of the previous chain, or null
+   */
+  public static Filter replace(AppenderSkeleton appender, Filter head) {
+    Filter tail = head;
+    while (tail != null && tail.getNext() != null) {
+      tail = tail.getNext();
+    }
+    Filter previous;
+    synchronized (appender) {
+      previous = appender.headFilter;
+      // a single write switches appending threads to the new chain
+      appender.tailFilter = tail;
+      appender.headFilter = head;
+      if (appender instanceof AsyncSecureFileAppender) {
+        ((AsyncSecureFileAppender) appender).filtersReplaced();
+      }
+    }
+    return previous;
+  }
+
+  /**
+   * Close the filters of the chain beginning with <code>head</code> that
+   * are {@link Closeable}. Errors are reported through {@link LogLog}.
+   *
+   * @param head the first filter of the chain, or null for none
+   */
+  public static void close(Filter head) {
+    for (Filter f = head; f != null; f = f.getNext()) {
+      if (f instanceof Closeable) {
+        try {
+          ((Closeable) f).close();
+        } catch (Exception e) {
+          LogLog.warn("Unable to close filter " + f, e);
+        }
+      }
+    }
+  }
+}
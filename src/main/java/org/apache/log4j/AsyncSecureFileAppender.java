@@ -0,0 +1,610 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.spi.ErrorCode;
+import org.apache.log4j.spi.Filter;
+import org.apache.log4j.spi.LocationInfo;
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+ * File appender that never makes the logging thread wait for disk I/O.
+ * Events are placed on a lock-free ring buffer after the thread dependent
+ * parts (NDC, MDC, thread name, rendered message and throwable) have been
+ * captured. A background thread formats them, normally with a
+ * {@link ByteBufferLayout} (such as {@link SecurePatternLayout}) encoding
+ * straight into a byte buffer, and
+ * writes them to the file in large batches: the batch is written whenever it
+ * fills up, and whenever the ring buffer runs empty.
+ *
+ * <p>Options:
+ * <ul>
+ * <li><b>File</b>, <b>Append</b> and <b>Encoding</b> work as they do for
+ * {@link FileAppender}.</li>
+ * <li><b>BufferSize</b> is the number of events the ring buffer can hold,
+ * rounded up to a power of two. Default 8192.</li>
+ * <li><b>BatchSize</b> is the size in bytes of the write buffer. Default
+ * 256KB.</li>
+ * <li><b>WaitStrategy</b> controls how the background thread waits for
+ * events: <code>Block</code> (park until signalled by a producer, the
+ * default), <code>Sleep</code> (poll with short sleeps), <code>Yield</code>
+ * or <code>BusySpin</code> (lowest latency, but uses a whole core).</li>
+ * <li><b>FullBufferPolicy</b> controls what happens when the ring buffer is
+ * full: <code>Block</code> (wait for room, the default),
+ * <code>DiscardBelowWarn</code> (discard DEBUG and INFO events, wait for
+ * room for anything more severe) or <code>Discard</code> (discard any
+ * event). Discarded events are counted, and a summary is logged once room is
+ * available again. Should the background thread die, events are discarded
+ * (and counted) under any policy.</li>
+ * <li><b>LocationInfo</b> captures location information on the calling
+ * thread, which is required for %C, %F, %L, %l and %M. It is found with a
+ * short walk of the stack, as {@link SecurePatternLayout} does. Default
+ * false.</li>
+ * <li><b>IndexInterval</b> and <b>IndexLoggers</b> write a
+ * {@link SecureLogIndex} of the file, as for
+ * {@link SecureFileAppender}.</li>
+ * </ul>
+ *
+ * <p>Unlike other appenders, {@link #doAppend(LoggingEvent)} is not
+ * synchronized, so filters attached to this appender may be called
+ * concurrently.
+ */
+public class AsyncSecureFileAppender extends AppenderSkeleton {
+  public static final String WAIT_BLOCK = "Block";
+  public static final String WAIT_SLEEP = "Sleep";
+  public static final String WAIT_YIELD = "Yield";
+  public static final String WAIT_BUSY_SPIN = "BusySpin";
+
+  public static final String FULL_BLOCK = "Block";
+  public static final String FULL_DISCARD_BELOW_WARN = "DiscardBelowWarn";
+  public static final String FULL_DISCARD = "Discard";
+
+  private static final long SLEEP_NANOS = 100000L;
+
+  private String fileName;
+  private boolean fileAppend = true;
+  private String encoding;
+  private int bufferSize = 8192;
+  private int batchSize = 256 * 1024;
+  private String waitStrategy = WAIT_BLOCK;
+  private String fullBufferPolicy = FULL_BLOCK;
+  private boolean locationInfo;
+  private long indexInterval;
+  private boolean indexLoggers;
+
+  private final AtomicLong discarded = new AtomicLong();
+
+  private volatile EventRingBuffer ring;
+  private volatile Dispatcher dispatcher;
+
+  // the filter chain read by doAppend, which takes no lock: a copy of
+  // headFilter written whenever the chain changes, so the filters are
+  // safely published to appending threads
+  private volatile Filter filters;
+
+  public void setFile(String file) {
+    fileName = file.trim();
+  }
+
+  public String getFile() {
+    return fileName;
+  }
+
+  public void setAppend(boolean append) {
+    fileAppend = append;
+  }
+
+  public boolean getAppend() {
+    return fileAppend;
+  }
+
+  public void setEncoding(String encoding) {
+    this.encoding = encoding;
+  }
+
+  public String getEncoding() {
+    return encoding;
+  }
+
+  public void setBufferSize(int bufferSize) {
+    this.bufferSize = bufferSize;
+  }
+
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  public void setBatchSize(int batchSize) {
+    this.batchSize = batchSize;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public void setWaitStrategy(String waitStrategy) {
+    if (waitStrategy.equalsIgnoreCase(WAIT_BLOCK)) {
+      this.waitStrategy = WAIT_BLOCK;
+    } else if (waitStrategy.equalsIgnoreCase(WAIT_SLEEP)) {
+      this.waitStrategy = WAIT_SLEEP;
+    } else if (waitStrategy.equalsIgnoreCase(WAIT_YIELD)) {
+      this.waitStrategy = WAIT_YIELD;
+    } else if (waitStrategy.equalsIgnoreCase(WAIT_BUSY_SPIN)) {
+      this.waitStrategy = WAIT_BUSY_SPIN;
+    } else {
+      LogLog.error("invalid waitStrategy: " + waitStrategy);
+    }
+  }
+
+  public String getWaitStrategy() {
+    return waitStrategy;
+  }
+
+  public void setFullBufferPolicy(String fullBufferPolicy) {
+    if (fullBufferPolicy.equalsIgnoreCase(FULL_BLOCK)) {
+      this.fullBufferPolicy = FULL_BLOCK;
+    } else if (fullBufferPolicy.equalsIgnoreCase(FULL_DISCARD_BELOW_WARN)) {
+      this.fullBufferPolicy = FULL_DISCARD_BELOW_WARN;
+    } else if (fullBufferPolicy.equalsIgnoreCase(FULL_DISCARD)) {
+      this.fullBufferPolicy = FULL_DISCARD;
+    } else {
+      LogLog.error("invalid fullBufferPolicy: " + fullBufferPolicy);
+    }
+  }
+
+  public String getFullBufferPolicy() {
+    return fullBufferPolicy;
+  }
+
+  public void setLocationInfo(boolean locationInfo) {
+    this.locationInfo = locationInfo;
+  }
+
+  public boolean getLocationInfo() {
+    return locationInfo;
+  }
+
+  public void setIndexInterval(long indexInterval) {
+    this.indexInterval = indexInterval;
+  }
+
+  public long getIndexInterval() {
+    return indexInterval;
+  }
+
+  public void setIndexLoggers(boolean indexLoggers) {
+    this.indexLoggers = indexLoggers;
+  }
+
+  public boolean getIndexLoggers() {
+    return indexLoggers;
+  }
+
+  /**
+   * Total number of events discarded because the ring buffer was full.
+   */
+  public long getDiscardedCount() {
+    return discarded.get();
+  }
+
+  public boolean requiresLayout() {
+    return true;
+  }
+
+  public synchronized void activateOptions() {
+    if (fileName == null) {
+      LogLog.warn("File option not set for appender [" + name + "].");
+      return;
+    }
+    if (layout == null) {
+      errorHandler.error("No layout set for the appender named [" + name + "].");
+      return;
+    }
+    stopDispatcher();
+
+    FileChannel channel;
+    long size;
+    try {
+      channel = openFile();
+      size = channel.size();
+    } catch (IOException e) {
+      errorHandler.error("setFile(" + fileName + "," + fileAppend + ") call failed.", e,
+          ErrorCode.FILE_OPEN_FAILURE);
+      return;
+    }
+
+    ring = new EventRingBuffer(bufferSize);
+    SecureLogIndexWriter index = null;
+    if (indexInterval > 0 && layout instanceof ByteBufferLayout) {
+      index = new SecureLogIndexWriter(new File(fileName), indexInterval, indexLoggers, fileAppend,
+                                       size);
+    }
+    Dispatcher d = new Dispatcher(channel, size, index, layout, ring);
+    Thread thread = new Thread(d, "AsyncSecureFileAppender-" + name);
+    thread.setDaemon(true);
+    d.thread = thread;
+    dispatcher = d;
+    thread.start();
+  }
+
+  private FileChannel openFile() throws IOException {
+    File file = new File(fileName);
+    File parent = file.getParentFile();
+    if (parent != null && !parent.exists()) {
+      parent.mkdirs();
+    }
+    if (fileAppend) {
+      return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+          StandardOpenOption.APPEND);
+    }
+    return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+  }
+
+  @Override
+  public synchronized void addFilter(Filter newFilter) {
+    super.addFilter(newFilter);
+    filters = headFilter;
+  }
+
+  @Override
+  public synchronized void clearFilters() {
+    super.clearFilters();
+    filters = null;
+  }
+
+  /**
+   * Publish the chain after {@link AppenderFilters#replace} has changed it.
+   */
+  synchronized void filtersReplaced() {
+    filters = headFilter;
+  }
+
+  /**
+   * Same as the base class, but without synchronization so that many
+   * threads can hand events to the ring buffer at once.
+   */
+  @Override
+  public void doAppend(LoggingEvent event) {
+    if (closed) {
+      LogLog.error("Attempted to append to closed appender named [" + name + "].");
+      return;
+    }
+
+    if (!isAsSevereAsThreshold(event.getLevel())) {
+      return;
+    }
+
+    Filter f = filters;
+
+    FILTER_LOOP:
+    while (f != null) {
+      switch (f.decide(event)) {
+      case Filter.DENY:
+        return;
+      case Filter.ACCEPT:
+        break FILTER_LOOP;
+      case Filter.NEUTRAL:
+        f = f.getNext();
+      }
+    }
+
+    this.append(event);
+  }
+
+  /**
+   * A copy of the event holding the location of its caller, which must be
+   * found on the calling thread. The event cannot be given a location once
+   * created, and finding it through the event takes a whole stack trace.
+   */
+  private static LoggingEvent withLocation(LoggingEvent event) {
+    String fqn = event.fqnOfCategoryClass;
+    LocationInfo info = fqn == null ? null : CallerLocator.locate(fqn);
+    if (info == null) {
+      event.getLocationInformation();
+      return event;
+    }
+    return new LoggingEvent(fqn, event.getLogger(), event.getTimeStamp(), event.getLevel(),
+        event.getRenderedMessage(), event.getThreadName(), event.getThrowableInformation(),
+        event.getNDC(), info, event.getProperties());
+  }
+
+  protected void append(LoggingEvent event) {
+    Dispatcher d = dispatcher;
+    EventRingBuffer r = ring;
+    if (d == null || r == null) {
+      errorHandler.error("No output file set for the appender named [" + name + "].");
+      return;
+    }
+
+    // Capture everything that depends on the calling thread
+    event.getNDC();
+    event.getThreadName();
+    event.getMDCCopy();
+    event.getRenderedMessage();
+    event.getThrowableStrRep();
+    if (locationInfo) {
+      event = withLocation(event);
+    }
+
+    if (d.stopped) {
+      // the dispatcher died, nothing will take the event
+      discarded.incrementAndGet();
+      return;
+    }
+    if (!r.offer(event)) {
+      String policy = fullBufferPolicy;
+      if (policy == FULL_DISCARD
+          || (policy == FULL_DISCARD_BELOW_WARN && !event.getLevel().isGreaterOrEqual(Level.WARN))) {
+        discarded.incrementAndGet();
+        return;
+      }
+      // closed is not volatile, so the dispatcher's flag is what tells
+      // waiting threads that the appender was closed or the thread died
+      int attempts = 0;
+      while (!r.offer(event)) {
+        if (d.stopped) {
+          discarded.incrementAndGet();
+          return;
+        }
+        if (++attempts < 100) {
+          Thread.yield();
+        } else {
+          LockSupport.parkNanos(SLEEP_NANOS);
+        }
+      }
+    }
+    d.signal();
+  }
+
+  /**
+   * Stop the dispatcher and close the file, then close the filters and
+   * layout of this appender (see
+   * {@link AppenderFilters#close(org.apache.log4j.spi.Filter)} and
+   * {@link SecurePatternLayout#close()}).
+   */
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    stopDispatcher();
+    AppenderFilters.close(getFilter());
+    if (layout instanceof SecurePatternLayout) {
+      ((SecurePatternLayout) layout).close();
+    }
+  }
+
+  private void stopDispatcher() {
+    Dispatcher d = dispatcher;
+    if (d != null) {
+      d.stopped = true;
+      LockSupport.unpark(d.thread);
+      try {
+        d.thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        LogLog.error("Got an InterruptedException while waiting for the dispatcher to finish.", e);
+      }
+      dispatcher = null;
+    }
+  }
+
+  /**
+   * Background thread that formats and writes events.
+   */
+  private class Dispatcher implements Runnable, ByteBufferDestination {
+    private final FileChannel channel;
+    private final Layout layout;
+    private final EventRingBuffer ring;
+    private final CharsetEncoder encoder;
+    private final ByteBuffer batch;
+    private final String wait;
+    private final SecureLogIndexWriter index;
+    private long discardedReported;
+
+    // position in the file of the start of the batch
+    private long written;
+
+    Thread thread;
+    volatile boolean stopped;
+    private volatile boolean sleeping;
+
+    Dispatcher(FileChannel channel, long position, SecureLogIndexWriter index, Layout layout,
+               EventRingBuffer ring) {
+      this.channel = channel;
+      this.index = index;
+      written = position;
+      this.layout = layout;
+      this.ring = ring;
+      Charset charset = Charset.defaultCharset();
+      if (encoding != null) {
+        try {
+          charset = Charset.forName(encoding);
+        } catch (RuntimeException e) {
+          LogLog.warn("Error initializing output writer.");
+          LogLog.warn("Unsupported encoding?");
+        }
+      }
+      encoder = charset.newEncoder()
+          .onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE);
+      batch = ByteBuffer.allocateDirect(Math.max(batchSize, 1024));
+      wait = waitStrategy;
+    }
+
+    void signal() {
+      if (sleeping) {
+        LockSupport.unpark(thread);
+      }
+    }
+
+    public void run() {
+      boolean finished = false;
+      try {
+        dispatch();
+        finished = true;
+      } finally {
+        // Also if the thread dies (of an OutOfMemoryError, say): threads
+        // waiting for room must then give up rather than wait for ever, and
+        // events left in the buffer are counted as discarded. They are not
+        // removed, so the buffer stays full for threads still offering.
+        stopped = true;
+        if (!finished) {
+          LogLog.error("The dispatcher of appender [" + name
+              + "] stopped unexpectedly, events will be discarded.");
+          try {
+            channel.close();
+          } catch (IOException e) {
+            LogLog.error("Could not close " + fileName, e);
+          }
+        }
+        discarded.addAndGet(ring.size());
+      }
+    }
+
+    private void dispatch() {
+      writeString(layout.getHeader());
+      int idle = 0;
+      while (true) {
+        LoggingEvent event = ring.poll();
+        if (event != null) {
+          idle = 0;
+          write(event);
+          continue;
+        }
+
+        if (!ring.isEmpty()) {
+          // Claimed by a producer, but not quite published yet
+          Thread.yield();
+          continue;
+        }
+
+        // Caught up, so this is the end of the batch
+        reportDiscarded();
+        drain(batch);
+        // Events may have been added while the batch was written, before
+        // the appender was closed, so look again once stopped is seen
+        if (stopped && ring.isEmpty()) {
+          break;
+        }
+        idle = waitForEvents(idle);
+      }
+      if (index != null) {
+        index.close(written + batch.position());
+      }
+      writeString(layout.getFooter());
+      drain(batch);
+      try {
+        channel.close();
+      } catch (IOException e) {
+        LogLog.error("Could not close " + fileName, e);
+      }
+    }
+
+    private int waitForEvents(int idle) {
+      if (wait == WAIT_BUSY_SPIN) {
+        return idle;
+      } else if (wait == WAIT_YIELD) {
+        Thread.yield();
+      } else if (wait == WAIT_SLEEP) {
+        LockSupport.parkNanos(SLEEP_NANOS);
+      } else if (idle < 100) {
+        Thread.yield();
+      } else {
+        sleeping = true;
+        if (ring.isEmpty() && !stopped) {
+          // Timeout is only a safety net, producers unpark us
+          LockSupport.parkNanos(100L * 1000 * 1000);
+        }
+        sleeping = false;
+      }
+      return idle + 1;
+    }
+
+    private void write(LoggingEvent event) {
+      try {
+        if (layout instanceof ByteBufferLayout) {
+          if (index != null) {
+            index.record(written + batch.position(), event);
+          }
+          ((ByteBufferLayout) layout).encode(event, encoder, this);
+        } else {
+          writeString(layout.format(event));
+          if (layout.ignoresThrowable()) {
+            String[] s = event.getThrowableStrRep();
+            if (s != null) {
+              for (int i = 0; i < s.length; i++) {
+                writeString(s[i]);
+                writeString(Layout.LINE_SEP);
+              }
+            }
+          }
+        }
+      } catch (RuntimeException e) {
+        errorHandler.error("Failed to format event for " + fileName, e, ErrorCode.GENERIC_FAILURE);
+      }
+    }
+
+    private void reportDiscarded() {
+      long count = discarded.get();
+      if (count != discardedReported) {
+        Logger logger = Logger.getLogger(AsyncSecureFileAppender.class);
+        String message = "Discarded " + (count - discardedReported)
+            + " logging events because the buffer of appender [" + name + "] was full";
+        write(new LoggingEvent(Logger.class.getName(), logger, Level.WARN, message, null));
+        discardedReported = count;
+      }
+    }
+
+    private void writeString(String s) {
+      if (s == null) {
+        return;
+      }
+      DestinationEncoder.encode(encoder, CharBuffer.wrap(s), this);
+    }
+
+    public ByteBuffer getByteBuffer() {
+      return batch;
+    }
+
+    public ByteBuffer drain(ByteBuffer buf) {
+      ((Buffer) buf).flip();
+      try {
+        while (buf.hasRemaining()) {
+          written += channel.write(buf);
+        }
+      } catch (IOException e) {
+        errorHandler.error("Failed to write to file " + fileName, e, ErrorCode.WRITE_FAILURE);
+      }
+      ((Buffer) buf).clear();
+      return buf;
+    }
+  }
+}
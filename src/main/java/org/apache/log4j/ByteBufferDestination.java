@@ -0,0 +1,38 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Target for {@link ByteBufferLayout#encode(org.apache.log4j.spi.LoggingEvent,
+ * java.nio.charset.CharsetEncoder, ByteBufferDestination)}. The layout encodes
+ * into the buffer provided by the destination, and hands it back whenever it
+ * is full.
+ */
+public interface ByteBufferDestination {
+  /**
+   * The buffer encoded records should be written to, in write mode (ready to
+   * have bytes put into it).
+   */
+  ByteBuffer getByteBuffer();
+
+  /**
+   * Write out the contents of the buffer (everything before its position)
+   * and return a buffer, in write mode, that has room for more content.
+   * Usually this is the same buffer after it has been cleared.
+   */
+  ByteBuffer drain(ByteBuffer buf);
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.nio.charset.CharsetEncoder;
+
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+ * A layout that can encode events straight into the byte buffer of a
+ * {@link ByteBufferDestination}. {@link SecureFileAppender} and
+ * {@link AsyncSecureFileAppender} use this, instead of creating a String for
+ * each event, for any layout that implements it.
+ */
+public interface ByteBufferLayout {
+  /**
+   * Encode the event into the byte buffer of the destination, handing the
+   * buffer to the destination to be drained whenever it fills up. The
+   * encoder will be reset, and must not be used concurrently by other
+   * threads.
+   */
+  void encode(LoggingEvent event, CharsetEncoder encoder, ByteBufferDestination destination);
+}
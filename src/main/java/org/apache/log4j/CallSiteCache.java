@@ -0,0 +1,75 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import org.apache.log4j.spi.LocationInfo;
+
+/**
+ * The {@link LocationInfo} of each call site found by {@link CallerLocator},
+ * so the location text is built once per call site rather than once per
+ * event. Like the name caches of {@link SecurePatternParser}, it is a direct
+ * mapped table of immutable entries: bounded, without locking, and a hit
+ * costs one hash lookup.
+ */
+final class CallSiteCache {
+  /** Number of entries; must be a power of two. */
+  static final int SIZE = 1024;
+
+  private static final Entry[] cache = new Entry[SIZE];
+
+  private CallSiteCache() {
+  }
+
+  /**
+   * The location of a frame, with the same values as a LocationInfo created
+   * from a stack trace.
+   *
+   * @param fileName the source file, or null if not known
+   * @param line the line number, or a negative number if not known
+   */
+  static LocationInfo get(String className, String methodName, String fileName, int line) {
+    int h = (className.hashCode() * 31 + methodName.hashCode()) * 31 + line;
+    int slot = (h ^ (h >>> 16)) & (SIZE - 1);
+    Entry e = cache[slot];
+    if (e != null && e.line == line && same(e.className, className)
+        && same(e.methodName, methodName) && same(e.fileName, fileName)) {
+      return e.info;
+    }
+    LocationInfo info = new LocationInfo(fileName == null ? LocationInfo.NA : fileName,
+        className, methodName, line < 0 ? LocationInfo.NA : Integer.toString(line));
+    cache[slot] = new Entry(className, methodName, fileName, line, info);
+    return info;
+  }
+
+  private static boolean same(String a, String b) {
+    return a == b || (a != null && a.equals(b));
+  }
+
+  private static final class Entry {
+    final String className;
+    final String methodName;
+    final String fileName;
+    final int line;
+    final LocationInfo info;
+
+    Entry(String className, String methodName, String fileName, int line, LocationInfo info) {
+      this.className = className;
+      this.methodName = methodName;
+      this.fileName = fileName;
+      this.line = line;
+      this.info = info;
+    }
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import org.apache.log4j.spi.LocationInfo;
+
+/**
+ * Finds the code that called the logger, for the location conversions of
+ * {@link SecurePatternParser}. The caller is the frame after the first run
+ * of frames of the logger class (the <code>fqnOfCategoryClass</code> of the
+ * event), looking no deeper than {@link #MAX_DEPTH} frames.
+ *
+ * <p>This version, for Java 8, takes a stack trace. The jar also contains a
+ * version for Java 9 and later (in src/main/java9) that uses StackWalker,
+ * which only creates the frames it looks at.
+ */
+final class CallerLocator {
+  /** Maximum number of frames examined. */
+  static final int MAX_DEPTH = 128;
+
+  private CallerLocator() {
+  }
+
+  /**
+   * The location of the caller of the logger class <code>fqn</code>, or null
+   * if it is not on the stack of this thread.
+   */
+  static LocationInfo locate(String fqn) {
+    StackTraceElement[] elements = new Throwable().getStackTrace();
+    int depth = Math.min(elements.length, MAX_DEPTH);
+    int i = 0;
+    while (i < depth && !fqn.equals(elements[i].getClassName())) {
+      i++;
+    }
+    while (i < depth && fqn.equals(elements[i].getClassName())) {
+      i++;
+    }
+    if (i >= depth) {
+      return null;
+    }
+    StackTraceElement e = elements[i];
+    return CallSiteCache.get(e.getClassName(), e.getMethodName(), e.getFileName(),
+                             e.getLineNumber());
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+
+/**
+ * Encodes characters into the byte buffer of a {@link ByteBufferDestination},
+ * handing the buffer to the destination to be drained whenever it fills up,
+ * so text of any size can be encoded with a fixed size buffer.
+ */
+final class DestinationEncoder {
+  private DestinationEncoder() {
+  }
+
+  /**
+   * Encode the remaining characters of <code>in</code>. Input the encoder is
+   * unable to handle is replaced or skipped, according to how the encoder
+   * was configured. The encoder is reset first.
+   */
+  static void encode(CharsetEncoder encoder, CharBuffer in, ByteBufferDestination destination) {
+    ByteBuffer out = destination.getByteBuffer();
+    encoder.reset();
+    CoderResult result;
+    while ((result = encoder.encode(in, out, true)) != CoderResult.UNDERFLOW) {
+      if (result.isOverflow()) {
+        out = destination.drain(out);
+      } else {
+        // Buffer casts keep the bytecode compatible with Java 8 when built
+        // on later JDKs, which added covariant overrides of these methods
+        ((Buffer) in).position(in.position() + result.length());
+      }
+    }
+    while (encoder.flush(out).isOverflow()) {
+      out = destination.drain(out);
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+ * Bounded, lock-free queue of logging events for many producers and a single
+ * consumer. Producers claim a sequence number with a CAS on the tail and then
+ * publish the event into the corresponding slot. The consumer takes events in
+ * sequence order, clearing each slot before advancing the head, so an empty
+ * slot at the head means the next event has not been published yet.
+ */
+final class EventRingBuffer {
+  private final AtomicReferenceArray<LoggingEvent> slots;
+  private final int mask;
+  private final AtomicLong tail = new AtomicLong();
+  private final AtomicLong head = new AtomicLong();
+
+  // Producers' last view of the head, to avoid reading it on every offer
+  private volatile long headCache;
+
+  EventRingBuffer(int minCapacity) {
+    int capacity = Integer.highestOneBit(Math.max(minCapacity, 2) - 1) << 1;
+    slots = new AtomicReferenceArray<LoggingEvent>(capacity);
+    mask = capacity - 1;
+  }
+
+  int capacity() {
+    return mask + 1;
+  }
+
+  /**
+   * Add an event to the buffer if there is room.
+   *
+   * @return false if the buffer is full
+   */
+  boolean offer(LoggingEvent event) {
+    long capacity = mask + 1;
+    while (true) {
+      long t = tail.get();
+      if (t - headCache >= capacity) {
+        long h = head.get();
+        if (t - h >= capacity) {
+          return false;
+        }
+        headCache = h;
+      }
+      if (tail.compareAndSet(t, t + 1)) {
+        slots.set((int) t & mask, event);
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Remove the next event, if it has been published. Must only be called
+   * from the consumer thread.
+   */
+  LoggingEvent poll() {
+    long h = head.get();
+    int slot = (int) h & mask;
+    LoggingEvent event = slots.get(slot);
+    if (event != null) {
+      slots.lazySet(slot, null);
+      head.lazySet(h + 1);
+    }
+    return event;
+  }
+
+  /**
+   * The number of events claimed but not yet consumed.
+   */
+  int size() {
+    return (int) (tail.get() - head.get());
+  }
+
+  /**
+   * True if no events have been claimed beyond those already consumed. An
+   * event that has been claimed but not yet published still counts.
+   */
+  boolean isEmpty() {
+    return tail.get() == head.get();
+  }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.Buffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+
+/**
+ * Builds JSON text into a reusable char array for {@link SecureJsonLayout}.
+ * There is no tree and no reflection: the caller writes the structure,
+ * using {@link #name(String)} to prepare field names (with their quotes,
+ * colon and leading comma) once, and {@link #string(String)} for values.
+ *
+ * <p>Strings are escaped so that the text of a record can never contain a
+ * line break, or anything else that could be taken as the end of a record
+ * or a control sequence by whatever reads the log: besides quotes,
+ * backslashes and the control characters that JSON requires to be escaped,
+ * DEL and the C1 controls, the Unicode line and paragraph separators, and
+ * unpaired surrogates (which could not be encoded) are written as
+ * <code>\</code><code>uXXXX</code> escapes.
+ */
+final class JsonWriter {
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+  private static final char[] NULL = "null".toCharArray();
+
+  private char[] buf;
+  private int len;
+
+  // view of buf for encoding, created on first use
+  private CharBuffer view;
+
+  JsonWriter(int size) {
+    buf = new char[size];
+  }
+
+  /**
+   * The text of a field name, as written before its value: a comma (unless
+   * <code>first</code>), the quoted name and a colon.
+   */
+  static char[] name(String name, boolean first) {
+    JsonWriter w = new JsonWriter(name.length() + 8);
+    if (!first) {
+      w.raw(',');
+    }
+    w.string(name);
+    w.raw(':');
+    return w.toCharArray();
+  }
+
+  /**
+   * The text of a field name, after another field.
+   */
+  static char[] name(String name) {
+    return name(name, false);
+  }
+
+  int length() {
+    return len;
+  }
+
+  char[] toCharArray() {
+    char[] chars = new char[len];
+    System.arraycopy(buf, 0, chars, 0, len);
+    return chars;
+  }
+
+  public String toString() {
+    return new String(buf, 0, len);
+  }
+
+  /**
+   * Discard the content, and a buffer that has grown larger than
+   * <code>maxRetained</code>.
+   */
+  void reset(int size, int maxRetained) {
+    len = 0;
+    if (buf.length > maxRetained) {
+      buf = new char[size];
+      view = null;
+    }
+  }
+
+  void raw(char c) {
+    if (len == buf.length) {
+      grow(1);
+    }
+    buf[len++] = c;
+  }
+
+  void raw(char[] chars) {
+    int n = chars.length;
+    if (len + n > buf.length) {
+      grow(n);
+    }
+    System.arraycopy(chars, 0, buf, len, n);
+    len += n;
+  }
+
+  /**
+   * Append <code>count</code> chars from <code>chars</code> at offset
+   * <code>from</code>, unescaped.
+   */
+  void raw(char[] chars, int from, int count) {
+    if (len + count > buf.length) {
+      grow(count);
+    }
+    System.arraycopy(chars, from, buf, len, count);
+    len += count;
+  }
+
+  /**
+   * Append a decimal number.
+   */
+  void number(long n) {
+    if (len + 20 > buf.length) {
+      grow(20);
+    }
+    if (n < 0) {
+      if (n == Long.MIN_VALUE) {
+        String s = Long.toString(n);
+        s.getChars(0, s.length(), buf, len);
+        len += s.length();
+        return;
+      }
+      buf[len++] = '-';
+      n = -n;
+    }
+    int digits = 1;
+    for (long m = n; m >= 10; m /= 10) {
+      digits++;
+    }
+    int end = len + digits;
+    for (int i = end - 1; i >= len; i--) {
+      buf[i] = (char) ('0' + n % 10);
+      n /= 10;
+    }
+    len = end;
+  }
+
+  /**
+   * Append a quoted, escaped string, or <code>null</code>.
+   */
+  void string(String s) {
+    if (s == null) {
+      raw(NULL);
+      return;
+    }
+    int n = s.length();
+    // room for the common case of nothing to escape
+    if (len + n + 2 > buf.length) {
+      grow(n + 2);
+    }
+    buf[len++] = '"';
+    int run = 0;
+    for (int i = 0; i < n; i++) {
+      char c = s.charAt(i);
+      if (c >= 0x20 && c < 0x7F) {
+        if (c != '"' && c != '\\') {
+          continue;
+        }
+      } else if (c >= 0xA0 && c < 0xD800 && c != '\u2028' && c != '\u2029' || c > 0xDFFF) {
+        continue;
+      } else if (Character.isHighSurrogate(c) && i + 1 < n
+          && Character.isLowSurrogate(s.charAt(i + 1))) {
+        i++;
+        continue;
+      }
+      // copy the run of plain chars, then the escape
+      copy(s, run, i);
+      escape(c);
+      run = i + 1;
+    }
+    copy(s, run, n);
+    raw('"');
+  }
+
+  private void copy(String s, int from, int to) {
+    int count = to - from;
+    if (count > 0) {
+      if (len + count + 1 > buf.length) {
+        grow(count + 1);
+      }
+      s.getChars(from, to, buf, len);
+      len += count;
+    }
+  }
+
+  private void escape(char c) {
+    if (len + 6 > buf.length) {
+      grow(6);
+    }
+    buf[len++] = '\\';
+    switch (c) {
+    case '"':
+    case '\\':
+      buf[len++] = c;
+      break;
+    case '\n':
+      buf[len++] = 'n';
+      break;
+    case '\r':
+      buf[len++] = 'r';
+      break;
+    case '\t':
+      buf[len++] = 't';
+      break;
+    case '\b':
+      buf[len++] = 'b';
+      break;
+    case '\f':
+      buf[len++] = 'f';
+      break;
+    default:
+      buf[len++] = 'u';
+      buf[len++] = HEX[c >>> 12];
+      buf[len++] = HEX[(c >>> 8) & 0xF];
+      buf[len++] = HEX[(c >>> 4) & 0xF];
+      buf[len++] = HEX[c & 0xF];
+    }
+  }
+
+  private void grow(int needed) {
+    char[] larger = new char[Math.max(len + needed, buf.length * 2)];
+    System.arraycopy(buf, 0, larger, 0, len);
+    buf = larger;
+    view = null;
+  }
+
+  void writeTo(Writer out) throws IOException {
+    out.write(buf, 0, len);
+  }
+
+  /**
+   * Encode the content into the byte buffer of the destination, as
+   * {@link SecurePatternLayout} does.
+   */
+  void encodeTo(CharsetEncoder encoder, ByteBufferDestination destination) {
+    if (view == null) {
+      view = CharBuffer.wrap(buf);
+    }
+    CharBuffer in = view;
+    ((Buffer) in).limit(len);
+    ((Buffer) in).position(0);
+    DestinationEncoder.encode(encoder, in, destination);
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations in nanoseconds, with one bucket per power of two.
+ * Bucket <code>i</code> counts durations <code>d</code> with
+ * <code>2^(i-1) &lt;= d &lt; 2^i</code> (bucket 0 is for zero). Updates are
+ * striped, so concurrent recording does not contend.
+ */
+final class LatencyHistogram {
+  static final int BUCKETS = 48;
+
+  private final LongAdder[] buckets = new LongAdder[BUCKETS];
+  private final LongAdder count = new LongAdder();
+  private final LongAdder total = new LongAdder();
+
+  LatencyHistogram() {
+    for (int i = 0; i < BUCKETS; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  void record(long nanos) {
+    if (nanos < 0) {
+      nanos = 0;
+    }
+    int bucket = Math.min(64 - Long.numberOfLeadingZeros(nanos), BUCKETS - 1);
+    buckets[bucket].increment();
+    count.increment();
+    total.add(nanos);
+  }
+
+  long count() {
+    return count.sum();
+  }
+
+  double mean() {
+    long n = count.sum();
+    return n == 0 ? 0 : (double) total.sum() / n;
+  }
+
+  /**
+   * Upper bound of the bucket containing the given quantile (0 to 1).
+   */
+  long quantile(double q) {
+    long[] counts = counts();
+    long n = 0;
+    for (long c : counts) {
+      n += c;
+    }
+    if (n == 0) {
+      return 0;
+    }
+    long target = (long) Math.ceil(q * n);
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= target) {
+        return i == 0 ? 0 : 1L << i;
+      }
+    }
+    return Long.MAX_VALUE;
+  }
+
+  long[] counts() {
+    long[] result = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      result[i] = buckets[i].sum();
+    }
+    return result;
+  }
+
+  void reset() {
+    for (LongAdder b : buckets) {
+      b.reset();
+    }
+    count.reset();
+    total.reset();
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * One record read back from a {@link SecurePatternLayout} log file by a
+ * {@link SecureLogReader}. As a {@link CharSequence} the record is the
+ * original formatted text of the event: escapes are removed, and the record
+ * separator and the line separator that follows it are not included.
+ *
+ * <p>A record is a view of the mapped file. Records that contain only
+ * characters that are encoded as one byte and that have nothing escaped
+ * are read straight from the file; anything else is decoded and unescaped
+ * the first time its content is needed, and only then.
+ *
+ * <p>Records are immutable and may be passed between threads.
+ */
+public final class LogRecord implements CharSequence {
+  private final SecureLogFormat format;
+  private final ByteBuffer buffer;
+  private final int start;
+  private final int end;
+  private final long offset;
+  private final long nextOffset;
+  private final long flags;
+  private final boolean terminated;
+  private final boolean direct;
+  private volatile char[] chars;
+
+  LogRecord(SecureLogFormat format, ByteBuffer buffer, int start, int end,
+            long offset, long nextOffset, long flags, boolean terminated) {
+    this.format = format;
+    this.buffer = buffer;
+    this.start = start;
+    this.end = end;
+    this.offset = offset;
+    this.nextOffset = nextOffset;
+    this.flags = flags;
+    this.terminated = terminated;
+    direct = format.isDirect(flags) && (flags & SecureLogFormat.ESCAPED) == 0;
+  }
+
+  /**
+   * The position in the file of the first byte of this record.
+   */
+  public long getOffset() {
+    return offset;
+  }
+
+  /**
+   * The position in the file of the first byte after this record, which is
+   * where the next record begins.
+   */
+  public long getNextOffset() {
+    return nextOffset;
+  }
+
+  /**
+   * False if the file ended before the record separator of this record,
+   * which normally means the record was still being written.
+   */
+  public boolean isTerminated() {
+    return terminated;
+  }
+
+  /**
+   * The bytes of the record as they are in the file, still escaped and
+   * without the terminating record separator. The buffer is a read-only
+   * view of the file.
+   */
+  public ByteBuffer getRawBytes() {
+    ByteBuffer b = buffer.duplicate();
+    ((Buffer) b).limit(end);
+    ((Buffer) b).position(start);
+    return b.slice().asReadOnlyBuffer();
+  }
+
+  public int length() {
+    return direct ? end - start : decoded().length;
+  }
+
+  public char charAt(int index) {
+    if (direct) {
+      if (index < 0 || index >= end - start) {
+        throw new IndexOutOfBoundsException("index " + index + ", length " + (end - start));
+      }
+      return format.charOf(buffer.get(start + index));
+    }
+    return decoded()[index];
+  }
+
+  public CharSequence subSequence(int from, int to) {
+    if (from < 0 || to > length() || from > to) {
+      throw new IndexOutOfBoundsException("from " + from + ", to " + to + ", length " + length());
+    }
+    if (!direct) {
+      return CharBuffer.wrap(decoded(), from, to - from);
+    }
+    // copied, as a CharBuffer wrapping this record would call back here
+    char[] c = new char[to - from];
+    for (int i = 0; i < c.length; i++) {
+      c[i] = format.charOf(buffer.get(start + from + i));
+    }
+    return CharBuffer.wrap(c);
+  }
+
+  public String toString() {
+    return new String(decoded());
+  }
+
+  private char[] decoded() {
+    char[] c = chars;
+    if (c == null) {
+      c = decode();
+      chars = c;
+    }
+    return c;
+  }
+
+  private char[] decode() {
+    int len = end - start;
+    boolean escaped = (flags & SecureLogFormat.ESCAPED) != 0;
+    char[] c;
+    int n;
+    if (format.isDirect(flags)) {
+      c = new char[len];
+      n = format.decodeDirect(buffer, start, len, escaped, c);
+    } else {
+      ByteBuffer b = buffer.duplicate();
+      ((Buffer) b).limit(end);
+      ((Buffer) b).position(start);
+      CharBuffer cb = format.charset.decode(b);
+      c = new char[cb.remaining()];
+      cb.get(c);
+      n = escaped ? format.unescape(c, c.length) : c.length;
+    }
+    if (n == c.length) {
+      return c;
+    }
+    char[] trimmed = new char[n];
+    System.arraycopy(c, 0, trimmed, 0, n);
+    return trimmed;
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.helpers.LogLog;
+
+/**
+ * Publishes the MBeans of layouts, filters and other components of this
+ * library on the platform MBean server, and keeps track of them so they can
+ * be removed when they are no longer used. Registered objects are reachable
+ * from the MBean server (and so, in a web application, is the class loader
+ * that loaded them) until they are unregistered, so components unregister
+ * their MBeans when they are closed, and {@link #unregisterAll()} removes
+ * whatever is left when logging is shut down (see
+ * {@link org.apache.log4j.varia.Log4jContextListener}).
+ */
+public final class MBeanRegistry {
+  // the objects registered by this class, by name
+  private static final Map<ObjectName, Object> registered = new HashMap<ObjectName, Object>();
+
+  private MBeanRegistry() {
+  }
+
+  /**
+   * Register an MBean named <code>domain:type=type,name="name"</code>,
+   * replacing any MBean previously registered under that name.
+   *
+   * @return the name of the MBean, or null if it could not be registered
+   *         (which is reported through {@link LogLog})
+   */
+  public static ObjectName register(String domain, String type, String name, Object mbean) {
+    try {
+      ObjectName on = new ObjectName(domain + ":type=" + type + ",name=" + ObjectName.quote(name));
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      synchronized (registered) {
+        if (server.isRegistered(on)) {
+          server.unregisterMBean(on);
+        }
+        server.registerMBean(mbean, on);
+        registered.put(on, mbean);
+      }
+      return on;
+    } catch (Exception e) {
+      LogLog.warn("Unable to register " + type + " MBean " + name, e);
+      return null;
+    }
+  }
+
+  /**
+   * Remove an MBean registered by {@link #register(String, String, String,
+   * Object)}, unless another object has been registered under its name since.
+   *
+   * @param name the name returned when it was registered, or null
+   */
+  public static void unregister(ObjectName name, Object mbean) {
+    if (name == null) {
+      return;
+    }
+    synchronized (registered) {
+      if (registered.get(name) != mbean) {
+        return;
+      }
+      registered.remove(name);
+      unregister(name);
+    }
+  }
+
+  /**
+   * Remove every MBean registered by this class that is still registered.
+   */
+  public static void unregisterAll() {
+    synchronized (registered) {
+      List<ObjectName> names = new ArrayList<ObjectName>(registered.keySet());
+      registered.clear();
+      for (ObjectName name : names) {
+        unregister(name);
+      }
+    }
+  }
+
+  private static void unregister(ObjectName name) {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+    } catch (Exception e) {
+      LogLog.warn("Unable to unregister MBean " + name, e);
+    }
+  }
+}
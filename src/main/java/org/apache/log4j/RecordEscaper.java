@@ -0,0 +1,210 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+/**
+ * Single pass implementation of the escaping scheme used by
+ * {@link SecurePatternLayout}. Content is copied into the destination and
+ * occurrences of the escape character and record separator are escaped as
+ * they are encountered, so the cost is linear in the size of the message.
+ *
+ * <p>The output is identical to the original algorithm, which first doubled
+ * every escape character and then inserted an escape character in front of
+ * every occurrence of the record separator in the result. When both values
+ * are a single character (the normal configuration) this reduces to a simple
+ * character by character copy. Otherwise the two steps are still performed,
+ * but each step is a single linear pass.
+ *
+ * <p>Instances are immutable and may be shared between threads.
+ */
+final class RecordEscaper {
+  private final String recordSeparator;
+  private final String escape;
+  private final boolean simple;
+  private final char separatorChar;
+  private final char escapeChar;
+
+  RecordEscaper(String recordSeparator, String escape) {
+    this.recordSeparator = recordSeparator == null ? "" : recordSeparator;
+    this.escape = escape == null ? "" : escape;
+    simple = this.recordSeparator.length() == 1 && this.escape.length() == 1;
+    separatorChar = simple ? this.recordSeparator.charAt(0) : 0;
+    escapeChar = simple ? this.escape.charAt(0) : 0;
+  }
+
+  String getRecordSeparator() {
+    return recordSeparator;
+  }
+
+  String getEscape() {
+    return escape;
+  }
+
+  /**
+   * Append <code>len</code> characters of <code>src</code> beginning at
+   * <code>off</code> to <code>dst</code>, escaping as we go.
+   *
+   * @return the number of record separators that were escaped (when the
+   *         separator and escape are the same, every escape is counted) and
+   *         the number of escape sequences that were escaped, packed into a
+   *         long; see {@link #separators(long)} and {@link #escapes(long)}
+   */
+  long escape(char[] src, int off, int len, StringBuilder dst) {
+    if (simple) {
+      return escapeSimple(src, off, off + len, dst);
+    }
+    return escapeGeneral(src, off, off + len, dst);
+  }
+
+  /**
+   * The number of record separators escaped, from the result of
+   * {@link #escape(char[], int, int, StringBuilder)}.
+   */
+  static int separators(long counts) {
+    return (int) (counts >>> 32);
+  }
+
+  /**
+   * The number of escape sequences escaped, from the result of
+   * {@link #escape(char[], int, int, StringBuilder)}.
+   */
+  static int escapes(long counts) {
+    return (int) counts;
+  }
+
+  private static long counts(int separators, int escapes) {
+    return ((long) separators << 32) | escapes;
+  }
+
+  /**
+   * Add the record separator to the escaped record that begins at
+   * <code>recordStart</code> in <code>dst</code>. If the record already ends
+   * with the line separator the record separator is placed in front of it,
+   * otherwise the record separator and a line separator are appended.
+   */
+  void terminate(StringBuilder dst, int recordStart) {
+    int end = dst.length();
+    if (end - recordStart >= Layout.LINE_SEP_LEN && endsWithLineSep(dst, end)) {
+      dst.insert(end - Layout.LINE_SEP_LEN, recordSeparator);
+    } else {
+      dst.append(recordSeparator);
+      dst.append(Layout.LINE_SEP);
+    }
+  }
+
+  private long escapeSimple(char[] src, int start, int end, StringBuilder dst) {
+    char sep = separatorChar;
+    char esc = escapeChar;
+    int separators = 0;
+    int escapes = 0;
+    int run = start;
+    for (int i = start; i < end; i++) {
+      char c = src[i];
+      if (c == esc || c == sep) {
+        // Copy the run of plain characters, then the escape; the special
+        // character itself begins the next run
+        dst.append(src, run, i - run);
+        dst.append(esc);
+        run = i;
+        if (c == sep) {
+          separators++;
+        } else {
+          escapes++;
+        }
+      }
+    }
+    dst.append(src, run, end - run);
+    return counts(separators, escapes);
+  }
+
+  private long escapeGeneral(char[] src, int start, int end, StringBuilder dst) {
+    if (recordSeparator.equals(escape)) {
+      return counts(doubleEscapes(src, start, end, dst), 0);
+    }
+
+    // Escape sequences are doubled first, and the separator is matched
+    // against the result, exactly as the two step algorithm did
+    StringBuilder doubled = new StringBuilder(end - start + 16);
+    int escapes = doubleEscapes(src, start, end, doubled);
+    int sepLen = recordSeparator.length();
+    int len = doubled.length();
+    int separators = 0;
+    int run = 0;
+    for (int i = 0; sepLen > 0 && i <= len - sepLen; i++) {
+      if (regionMatches(doubled, i, recordSeparator)) {
+        dst.append(doubled, run, i);
+        dst.append(escape);
+        run = i;
+        separators++;
+      }
+    }
+    dst.append(doubled, run, len);
+    return counts(separators, escapes);
+  }
+
+  private int doubleEscapes(char[] src, int start, int end, StringBuilder dst) {
+    int escLen = escape.length();
+    if (escLen == 0) {
+      dst.append(src, start, end - start);
+      return 0;
+    }
+    int count = 0;
+    char first = escape.charAt(0);
+    int run = start;
+    int i = start;
+    while (i <= end - escLen) {
+      if (src[i] == first && regionMatches(src, i, escape)) {
+        dst.append(src, run, i + escLen - run);
+        dst.append(escape);
+        i += escLen;
+        run = i;
+        count++;
+      } else {
+        i++;
+      }
+    }
+    dst.append(src, run, end - run);
+    return count;
+  }
+
+  private static boolean regionMatches(char[] src, int pos, String s) {
+    for (int j = 0; j < s.length(); j++) {
+      if (src[pos + j] != s.charAt(j)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean regionMatches(StringBuilder src, int pos, String s) {
+    for (int j = 0; j < s.length(); j++) {
+      if (src.charAt(pos + j) != s.charAt(j)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean endsWithLineSep(StringBuilder dst, int end) {
+    String lineSep = Layout.LINE_SEP;
+    int start = end - Layout.LINE_SEP_LEN;
+    for (int j = 0; j < Layout.LINE_SEP_LEN; j++) {
+      if (dst.charAt(start + j) != lineSep.charAt(j)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
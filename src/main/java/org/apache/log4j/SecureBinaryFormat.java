@@ -0,0 +1,78 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+/**
+ * Constants of the file format written by {@link SecureBinaryLayout} and
+ * read by {@link SecureBinaryReader}.
+ *
+ * <p>A file is a sequence of frames, each an unsigned varint length followed
+ * by that many bytes: a type byte and the content. Strings are written as a
+ * varint length and that many bytes of UTF-8, and string references as a
+ * varint: 0 for a string written inline after it, otherwise the number of a
+ * string defined earlier.
+ *
+ * <ul>
+ * <li><b>Header</b> (type 'H', content "SLB1"): starts the file, and is
+ * written again each time the file is reopened. It empties the string table
+ * and resets the timestamp to zero.</li>
+ * <li><b>String</b> (type 'S'): a string (logger, thread, MDC key, level or
+ * stack trace line), given the next number in the table.</li>
+ * <li><b>Event</b> (type 'E'): the timestamp as a zigzag varint of the
+ * difference from the previous event, a level code (see {@link #LEVELS};
+ * 0 is followed by the level as a varint and a reference to its name), the
+ * logger and thread references, the message string, the NDC (a varint
+ * length plus one, 0 for none, and UTF-8), the number of MDC entries with a
+ * key reference and value string for each, and the number of lines of the
+ * stack trace, with a reference to each line.</li>
+ * </ul>
+ *
+ * <p>Frames of other types are skipped, so more may be added.
+ */
+final class SecureBinaryFormat {
+  /** The header frame, as written by {@link Layout#getHeader()}. */
+  static final String HEADER = "\u0005HSLB1";
+
+  static final byte HEADER_FRAME = 'H';
+  static final byte STRING_FRAME = 'S';
+  static final byte EVENT_FRAME = 'E';
+
+  /** The content of the header frame, after the type. */
+  static final String MAGIC = "SLB1";
+
+  /** Levels written as a single code, which is their index plus one. */
+  static final Level[] LEVELS = {
+    Level.OFF, Level.FATAL, Level.ERROR, Level.WARN, Level.INFO, Level.DEBUG, Level.TRACE,
+    Level.ALL
+  };
+
+  /** Size of the string table, after which strings are written inline. */
+  static final int MAX_STRINGS = 65536;
+
+  private SecureBinaryFormat() {
+  }
+
+  /**
+   * The code of a level, or 0 if it is not one of {@link #LEVELS}.
+   */
+  static int levelCode(Level level) {
+    for (int i = 0; i < LEVELS.length; i++) {
+      if (LEVELS[i] == level) {
+        return i + 1;
+      }
+    }
+    return 0;
+  }
+}
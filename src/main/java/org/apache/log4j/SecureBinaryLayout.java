@@ -0,0 +1,361 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+ * Layout that writes events in a compact binary format, for logs that are
+ * shipped in high volume rather than read directly. It can only be used
+ * with {@link SecureFileAppender} or {@link AsyncSecureFileAppender}, which
+ * let it write bytes; {@link SecureBinaryReader} reads the files back, and
+ * {@link SecureBinaryToText} converts them to the text of a
+ * {@link SecurePatternLayout} for people to read.
+ *
+ * <p>Each record is prefixed with its length, so no escaping is needed and
+ * nothing in a message can be mistaken for the end of a record. Timestamps
+ * are written as the difference from the previous event, usually one or two
+ * bytes. Logger and thread names, MDC keys and the lines of stack traces are
+ * written once per file and then referred to by number; the message, NDC and
+ * MDC values are written as raw UTF-8. See {@link SecureBinaryFormat} for the
+ * details.
+ *
+ * <p>The string table starts afresh with the header the appender writes
+ * when it opens a file, so each file (or each part of a file appended to by
+ * a later run) can be read on its own. The encoding of the appender only
+ * applies to the header, which is ASCII, so any encoding that is a superset
+ * of ASCII may be used.
+ */
+public class SecureBinaryLayout extends Layout implements ByteBufferLayout {
+  private static final int BUF_SIZE = 1024;
+
+  /** Default upper bound on the capacity of the retained buffers. */
+  public static final int DEFAULT_MAX_RETAINED_CAPACITY = 65536;
+
+  private final Map<String, Integer> strings = new HashMap<String, Integer>();
+  private final ArrayList<String> added = new ArrayList<String>();
+  private int maxRetainedCapacity = DEFAULT_MAX_RETAINED_CAPACITY;
+  private long lastTime;
+  private boolean warned;
+
+  // string definitions and the frame of the event, and the body of the event
+  private final Bytes out = new Bytes(BUF_SIZE);
+  private final Bytes body = new Bytes(BUF_SIZE);
+
+  /**
+   * Set the <b>MaxRetainedCapacity</b> option, the largest buffer (in bytes)
+   * kept for the next event.
+   */
+  public void setMaxRetainedCapacity(int maxRetainedCapacity) {
+    this.maxRetainedCapacity = maxRetainedCapacity;
+  }
+
+  public int getMaxRetainedCapacity() {
+    return maxRetainedCapacity;
+  }
+
+  public void activateOptions() {
+  }
+
+  public boolean ignoresThrowable() {
+    return false;
+  }
+
+  public String getContentType() {
+    return "application/octet-stream";
+  }
+
+  /**
+   * The header frame. The appender writes it each time it opens a file, so
+   * the string table is started again here.
+   */
+  public synchronized String getHeader() {
+    strings.clear();
+    lastTime = 0;
+    return SecureBinaryFormat.HEADER;
+  }
+
+  /**
+   * Binary records cannot be returned as a String, so this reports an error
+   * (once) and returns an empty string. Use an appender that supports
+   * {@link ByteBufferLayout}.
+   */
+  public String format(LoggingEvent event) {
+    if (!warned) {
+      warned = true;
+      LogLog.error("SecureBinaryLayout can only be used with SecureFileAppender or"
+          + " AsyncSecureFileAppender");
+    }
+    return "";
+  }
+
+  /**
+   * Write the event, and definitions of any strings it uses for the first
+   * time, to the byte buffer of the destination. The encoder is not used.
+   */
+  public synchronized void encode(LoggingEvent event, CharsetEncoder encoder,
+                                  ByteBufferDestination destination) {
+    long previousTime = lastTime;
+    try {
+      render(event);
+      added.clear();
+      copyTo(destination);
+    } catch (RuntimeException e) {
+      // forget strings whose definitions were not written
+      for (int i = 0; i < added.size(); i++) {
+        strings.remove(added.get(i));
+      }
+      added.clear();
+      lastTime = previousTime;
+      throw e;
+    } finally {
+      out.reset(BUF_SIZE, maxRetainedCapacity);
+      body.reset(BUF_SIZE, maxRetainedCapacity);
+    }
+  }
+
+  private void render(LoggingEvent event) {
+    Bytes b = body;
+    b.put(SecureBinaryFormat.EVENT_FRAME);
+    long time = event.getTimeStamp();
+    long delta = time - lastTime;
+    b.varint((delta << 1) ^ (delta >> 63));
+    lastTime = time;
+
+    Level level = event.getLevel();
+    int code = SecureBinaryFormat.levelCode(level);
+    b.put((byte) code);
+    if (code == 0) {
+      b.varint(level.toInt() & 0xFFFFFFFFL);
+      reference(level.toString());
+    }
+    reference(event.getLoggerName());
+    reference(event.getThreadName());
+    b.string(event.getRenderedMessage());
+
+    String ndc = event.getNDC();
+    if (ndc == null) {
+      b.varint(0);
+    } else {
+      b.varint(Bytes.utf8Length(ndc) + 1L);
+      b.utf8(ndc);
+    }
+
+    Map<?, ?> properties = event.getProperties();
+    int count = 0;
+    for (Object value : properties.values()) {
+      if (value != null) {
+        count++;
+      }
+    }
+    b.varint(count);
+    if (count > 0) {
+      for (Map.Entry<?, ?> entry : properties.entrySet()) {
+        if (entry.getValue() != null) {
+          reference(String.valueOf(entry.getKey()));
+          b.string(entry.getValue().toString());
+        }
+      }
+    }
+
+    String[] lines = event.getThrowableStrRep();
+    if (lines == null) {
+      b.varint(0);
+    } else {
+      b.varint(lines.length);
+      for (int i = 0; i < lines.length; i++) {
+        String line = lines[i];
+        // frames repeat, but the first line carries the (varying) message
+        if (line != null && line.startsWith("\tat ")) {
+          reference(line);
+        } else {
+          b.varint(0);
+          b.string(line == null ? "" : line);
+        }
+      }
+    }
+
+    out.varint(b.len);
+    out.put(b.buf, 0, b.len);
+  }
+
+  /**
+   * Write a reference to a string to the body, defining it first if needed.
+   */
+  private void reference(String s) {
+    if (s == null) {
+      s = "";
+    }
+    Integer id = strings.get(s);
+    if (id == null) {
+      if (strings.size() >= SecureBinaryFormat.MAX_STRINGS) {
+        body.varint(0);
+        body.string(s);
+        return;
+      }
+      id = strings.size() + 1;
+      strings.put(s, id);
+      added.add(s);
+      int length = Bytes.utf8Length(s);
+      out.varint(1 + Bytes.varintLength(length) + length);
+      out.put(SecureBinaryFormat.STRING_FRAME);
+      out.varint(length);
+      out.utf8(s);
+    }
+    body.varint(id);
+  }
+
+  private void copyTo(ByteBufferDestination destination) {
+    ByteBuffer buf = destination.getByteBuffer();
+    int from = 0;
+    while (from < out.len) {
+      if (!buf.hasRemaining()) {
+        buf = destination.drain(buf);
+      }
+      int n = Math.min(buf.remaining(), out.len - from);
+      buf.put(out.buf, from, n);
+      from += n;
+    }
+  }
+
+  /**
+   * Growable byte array with the encodings used by the format.
+   */
+  static final class Bytes {
+    byte[] buf;
+    int len;
+
+    Bytes(int size) {
+      buf = new byte[size];
+    }
+
+    void reset(int size, int maxRetained) {
+      len = 0;
+      if (buf.length > maxRetained) {
+        buf = new byte[size];
+      }
+    }
+
+    private void ensure(int n) {
+      if (len + n > buf.length) {
+        byte[] larger = new byte[Math.max(len + n, buf.length * 2)];
+        System.arraycopy(buf, 0, larger, 0, len);
+        buf = larger;
+      }
+    }
+
+    void put(byte b) {
+      ensure(1);
+      buf[len++] = b;
+    }
+
+    void put(byte[] bytes, int from, int count) {
+      ensure(count);
+      System.arraycopy(bytes, from, buf, len, count);
+      len += count;
+    }
+
+    void varint(long v) {
+      ensure(10);
+      while ((v & ~0x7FL) != 0) {
+        buf[len++] = (byte) ((v & 0x7F) | 0x80);
+        v >>>= 7;
+      }
+      buf[len++] = (byte) v;
+    }
+
+    static int varintLength(long v) {
+      int n = 1;
+      while ((v & ~0x7FL) != 0) {
+        v >>>= 7;
+        n++;
+      }
+      return n;
+    }
+
+    /** A varint length and the UTF-8 bytes of a string. */
+    void string(String s) {
+      if (s == null) {
+        s = "";
+      }
+      varint(utf8Length(s));
+      utf8(s);
+    }
+
+    /**
+     * The length of a string in UTF-8, with unpaired surrogates written as
+     * '?' as the standard encoder does.
+     */
+    static int utf8Length(String s) {
+      int n = s.length();
+      int bytes = n;
+      for (int i = 0; i < n; i++) {
+        char c = s.charAt(i);
+        if (c >= 0x80) {
+          if (c < 0x800) {
+            bytes++;
+          } else if (Character.isHighSurrogate(c) && i + 1 < n
+              && Character.isLowSurrogate(s.charAt(i + 1))) {
+            // four bytes for the two chars
+            bytes += 2;
+            i++;
+          } else if (!Character.isSurrogate(c)) {
+            bytes += 2;
+          }
+        }
+      }
+      return bytes;
+    }
+
+    void utf8(String s) {
+      int n = s.length();
+      ensure(3 * n);
+      byte[] b = buf;
+      int p = len;
+      for (int i = 0; i < n; i++) {
+        char c = s.charAt(i);
+        if (c < 0x80) {
+          b[p++] = (byte) c;
+        } else if (c < 0x800) {
+          b[p++] = (byte) (0xC0 | (c >> 6));
+          b[p++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isSurrogate(c)) {
+          if (Character.isHighSurrogate(c) && i + 1 < n
+              && Character.isLowSurrogate(s.charAt(i + 1))) {
+            int cp = Character.toCodePoint(c, s.charAt(++i));
+            b[p++] = (byte) (0xF0 | (cp >> 18));
+            b[p++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+            b[p++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+            b[p++] = (byte) (0x80 | (cp & 0x3F));
+          } else {
+            b[p++] = '?';
+          }
+        } else {
+          b[p++] = (byte) (0xE0 | (c >> 12));
+          b[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+          b[p++] = (byte) (0x80 | (c & 0x3F));
+        }
+      }
+      len = p;
+    }
+  }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.ThrowableInformation;
+
+/**
+ * Reads back the events of a file written with {@link SecureBinaryLayout}.
+ * The events are recreated as LoggingEvents, with the timestamp, level,
+ * logger name, thread name, rendered message, NDC, MDC and the text of the
+ * stack trace that were written, so they can be formatted by any layout.
+ * Location information is not kept.
+ *
+ * <pre>
+ * SecureBinaryReader reader = new SecureBinaryReader(file);
+ * try {
+ *   for (LoggingEvent e = reader.next(); e != null; e = reader.next()) {
+ *     ...
+ *   }
+ * } finally {
+ *   reader.close();
+ * }
+ * </pre>
+ *
+ * <p>The file is read from the start, since each part of it depends on the
+ * strings defined before it. A reader is not safe for use by several threads.
+ */
+public class SecureBinaryReader implements Closeable {
+  private final InputStream in;
+  private final String source;
+  private final ArrayList<String> strings = new ArrayList<String>();
+  private final Map<String, Logger> loggers = new HashMap<String, Logger>();
+  private byte[] frame = new byte[1024];
+  private int pos;
+  private int end;
+  private long lastTime;
+  private boolean started;
+
+  public SecureBinaryReader(File file) throws IOException {
+    this(new FileInputStream(file), file.getPath());
+  }
+
+  /**
+   * Reads from a stream, which is closed by {@link #close()}.
+   *
+   * @param source name of the stream for error messages
+   */
+  public SecureBinaryReader(InputStream in, String source) {
+    this.in = new BufferedInputStream(in, 65536);
+    this.source = source;
+  }
+
+  /**
+   * Returns the next event, or null at the end of the file. A record that
+   * was only partly written when the file ended is ignored.
+   *
+   * @throws IOException if the file could not be read, or was not written
+   *         by SecureBinaryLayout
+   */
+  public LoggingEvent next() throws IOException {
+    while (readFrame()) {
+      byte type = frame[pos++];
+      if (!started && type != SecureBinaryFormat.HEADER_FRAME) {
+        throw new IOException(source + " is not a binary log file");
+      }
+      switch (type) {
+      case SecureBinaryFormat.HEADER_FRAME:
+        String magic = new String(frame, pos, end - pos, StandardCharsets.US_ASCII);
+        if (!magic.equals(SecureBinaryFormat.MAGIC)) {
+          throw new IOException(source + " has an unsupported header " + magic);
+        }
+        strings.clear();
+        lastTime = 0;
+        started = true;
+        break;
+      case SecureBinaryFormat.STRING_FRAME:
+        strings.add(string());
+        break;
+      case SecureBinaryFormat.EVENT_FRAME:
+        return event();
+      default:
+        // a frame added in a later version
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Read the next frame into the frame buffer, or return false at the end
+   * of the file (or of the complete frames in it).
+   */
+  private boolean readFrame() throws IOException {
+    long length = 0;
+    for (int shift = 0;; shift += 7) {
+      int b = in.read();
+      if (b < 0) {
+        return false;
+      }
+      if (shift > 28) {
+        throw new IOException("Bad record length in " + source);
+      }
+      length |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        break;
+      }
+    }
+    if (length == 0 || length > Integer.MAX_VALUE - 8) {
+      throw new IOException("Bad record length " + length + " in " + source);
+    }
+    int n = (int) length;
+    if (frame.length < n) {
+      frame = new byte[Math.max(n, frame.length * 2)];
+    }
+    int read = 0;
+    while (read < n) {
+      int r = in.read(frame, read, n - read);
+      if (r < 0) {
+        return false;
+      }
+      read += r;
+    }
+    pos = 0;
+    end = n;
+    return true;
+  }
+
+  private LoggingEvent event() throws IOException {
+    long zigzag = varint();
+    lastTime += (zigzag >>> 1) ^ -(zigzag & 1);
+    long time = lastTime;
+
+    Level level;
+    if (pos >= end) {
+      throw new EOFException("Truncated record in " + source);
+    }
+    int code = frame[pos++] & 0xFF;
+    if (code == 0) {
+      int value = (int) varint();
+      String name = reference();
+      level = Level.toLevel(name, null);
+      if (level == null || level.toInt() != value) {
+        level = new ReadLevel(value, name);
+      }
+    } else if (code <= SecureBinaryFormat.LEVELS.length) {
+      level = SecureBinaryFormat.LEVELS[code - 1];
+    } else {
+      throw new IOException("Bad level code " + code + " in " + source);
+    }
+
+    String loggerName = reference();
+    String threadName = reference();
+    String message = string();
+
+    long ndcLength = varint();
+    String ndc = null;
+    if (ndcLength > 0) {
+      ndc = utf8((int) ndcLength - 1);
+    }
+
+    int count = (int) varint();
+    Map<String, String> mdc = null;
+    if (count > 0) {
+      mdc = new HashMap<String, String>();
+      for (int i = 0; i < count; i++) {
+        String key = reference();
+        mdc.put(key, string());
+      }
+    }
+
+    int lineCount = (int) varint();
+    ThrowableInformation throwable = null;
+    if (lineCount > 0) {
+      String[] lines = new String[lineCount];
+      for (int i = 0; i < lineCount; i++) {
+        lines[i] = reference();
+      }
+      throwable = new ThrowableInformation(lines);
+    }
+
+    return new LoggingEvent(null, logger(loggerName), time, level, message, threadName, throwable,
+                            ndc, null, mdc);
+  }
+
+  private Logger logger(String name) {
+    Logger logger = loggers.get(name);
+    if (logger == null) {
+      // not in the hierarchy, only used to carry the name
+      logger = new Logger(name);
+      loggers.put(name, logger);
+    }
+    return logger;
+  }
+
+  private long varint() throws IOException {
+    long v = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      if (pos >= end) {
+        throw new EOFException("Truncated record in " + source);
+      }
+      byte b = frame[pos++];
+      v |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        return v;
+      }
+    }
+    throw new IOException("Bad varint in " + source);
+  }
+
+  private String string() throws IOException {
+    return utf8((int) varint());
+  }
+
+  private String utf8(int length) throws IOException {
+    if (length < 0 || length > end - pos) {
+      throw new EOFException("Truncated record in " + source);
+    }
+    String s = new String(frame, pos, length, StandardCharsets.UTF_8);
+    pos += length;
+    return s;
+  }
+
+  private String reference() throws IOException {
+    long id = varint();
+    if (id == 0) {
+      return string();
+    }
+    if (id > strings.size()) {
+      throw new IOException("Undefined string " + id + " in " + source);
+    }
+    return strings.get((int) id - 1);
+  }
+
+  public void close() throws IOException {
+    in.close();
+  }
+
+  /**
+   * A level that is not known to this JVM, with the name and value it was
+   * written with.
+   */
+  private static final class ReadLevel extends Level {
+    private static final long serialVersionUID = 1L;
+
+    ReadLevel(int level, String name) {
+      super(level, name, 7);
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+ * Converts a file written by {@link SecureBinaryLayout} to the text a
+ * {@link SecurePatternLayout} would have written, for people to read (or
+ * for tools that read the text format, such as {@link SecureLogReader}).
+ *
+ * <pre>
+ * java -cp ... org.apache.log4j.SecureBinaryToText app.bin [app.log] ["pattern"]
+ * </pre>
+ *
+ * <p>The output is written to standard output if no output file (or "-")
+ * is given, in UTF-8, with the pattern {@link #DEFAULT_PATTERN} unless
+ * another is given. Conversions that need location information have none to
+ * show.
+ */
+public class SecureBinaryToText {
+  /** Pattern used when none is given. */
+  public static final String DEFAULT_PATTERN = "%d{ISO8601} %-5p [%t] %c %X %x - %m%n";
+
+  private SecureBinaryToText() {
+  }
+
+  /**
+   * Format every remaining event of the reader with the layout.
+   *
+   * @return the number of events written
+   */
+  public static long convert(SecureBinaryReader reader, SecurePatternLayout layout, Writer out)
+      throws IOException {
+    long count = 0;
+    for (LoggingEvent event = reader.next(); event != null; event = reader.next()) {
+      layout.encode(event, out);
+      count++;
+    }
+    return count;
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1 || args.length > 3) {
+      System.err.println("Usage: SecureBinaryToText <binary log> [<output file> | -] [<pattern>]");
+      System.exit(2);
+    }
+    SecurePatternLayout layout = new SecurePatternLayout(args.length > 2 ? args[2] : DEFAULT_PATTERN);
+    boolean stdout = args.length < 2 || args[1].equals("-");
+    OutputStream os = stdout ? System.out : new FileOutputStream(new File(args[1]));
+    Writer out = new BufferedWriter(new OutputStreamWriter(os, "UTF-8"), 65536);
+    SecureBinaryReader reader = new SecureBinaryReader(new File(args[0]));
+    try {
+      convert(reader, layout, out);
+    } finally {
+      reader.close();
+      if (stdout) {
+        out.flush();
+      } else {
+        out.close();
+      }
+    }
+  }
+}
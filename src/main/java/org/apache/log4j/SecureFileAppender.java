@@ -0,0 +1,244 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.spi.ErrorCode;
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+ * A {@link FileAppender} that, when used with a {@link ByteBufferLayout} such
+ * as {@link SecurePatternLayout}, {@link SecureJsonLayout} or
+ * {@link SecureBinaryLayout}, has the layout encode each event straight into
+ * a reusable byte buffer instead of creating a String and passing it through
+ * a Writer. All options of FileAppender are supported: with
+ * <b>ImmediateFlush</b> (the default) the buffer is written to the file after
+ * every event, otherwise it is written whenever it fills up
+ * (<b>BufferSize</b> bytes) and when the file is closed.
+ *
+ * <p>With <b>IndexInterval</b> set to a number of milliseconds, a
+ * {@link SecureLogIndex} of the file is written alongside it, and
+ * <b>IndexLoggers</b> adds logger names to it. Only records encoded by a
+ * ByteBufferLayout are indexed.
+ *
+ * <p>Any other layout is handled exactly as FileAppender would.
+ */
+public class SecureFileAppender extends FileAppender implements ByteBufferDestination {
+  private OutputStream stream;
+  private CharsetEncoder encoder;
+  private ByteBuffer buffer;
+  private long indexInterval;
+  private boolean indexLoggers;
+  private SecureLogIndexWriter index;
+
+  public SecureFileAppender() {
+  }
+
+  public SecureFileAppender(Layout layout, String filename, boolean append) throws IOException {
+    super(layout, filename, append);
+  }
+
+  public SecureFileAppender(Layout layout, String filename) throws IOException {
+    super(layout, filename);
+  }
+
+  /**
+   * Set the <b>IndexInterval</b> option, the interval in milliseconds of the
+   * timestamps covered by each entry of the index. The default, 0, writes no
+   * index.
+   */
+  public void setIndexInterval(long indexInterval) {
+    this.indexInterval = indexInterval;
+  }
+
+  public long getIndexInterval() {
+    return indexInterval;
+  }
+
+  /**
+   * Set the <b>IndexLoggers</b> option, to include logger names in the index.
+   */
+  public void setIndexLoggers(boolean indexLoggers) {
+    this.indexLoggers = indexLoggers;
+  }
+
+  public boolean getIndexLoggers() {
+    return indexLoggers;
+  }
+
+  @Override
+  public synchronized void setFile(String fileName, boolean append, boolean bufferedIO,
+                                   int bufferSize) throws IOException {
+    super.setFile(fileName, append, bufferedIO, bufferSize);
+    if (indexInterval > 0 && stream != null) {
+      index = new SecureLogIndexWriter(new File(fileName), indexInterval, indexLoggers, append,
+                                       ((CountingOutputStream) stream).count);
+    }
+  }
+
+  @Override
+  protected OutputStreamWriter createWriter(OutputStream os) {
+    long start = 0;
+    if (os instanceof FileOutputStream) {
+      try {
+        start = ((FileOutputStream) os).getChannel().position();
+      } catch (IOException e) {
+        LogLog.warn("Unable to determine the position in " + fileName, e);
+      }
+    }
+    os = new CountingOutputStream(os, start);
+    OutputStreamWriter writer = super.createWriter(os);
+    Charset charset;
+    try {
+      charset = Charset.forName(writer.getEncoding());
+    } catch (RuntimeException e) {
+      LogLog.warn("Unable to determine charset " + writer.getEncoding() + ", using platform default.");
+      charset = Charset.defaultCharset();
+    }
+    // Match the behavior of OutputStreamWriter for unencodable input
+    encoder = charset.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    stream = os;
+    buffer = ByteBuffer.allocate(Math.max(bufferSize, 1024));
+    return writer;
+  }
+
+  @Override
+  protected void subAppend(LoggingEvent event) {
+    if (stream == null || !(layout instanceof ByteBufferLayout)) {
+      super.subAppend(event);
+      return;
+    }
+
+    if (index != null) {
+      index.record(((CountingOutputStream) stream).count + buffer.position(), event);
+    }
+    ((ByteBufferLayout) layout).encode(event, encoder, this);
+    if (shouldFlush(event)) {
+      drain(buffer);
+    }
+  }
+
+  public ByteBuffer getByteBuffer() {
+    return buffer;
+  }
+
+  public ByteBuffer drain(ByteBuffer buf) {
+    // Written through the stream rather than a FileChannel, which would be
+    // closed if a logging thread happened to be interrupted
+    if (buf.position() > 0) {
+      try {
+        stream.write(buf.array(), buf.arrayOffset(), buf.position());
+      } catch (IOException e) {
+        if (e instanceof InterruptedIOException) {
+          Thread.currentThread().interrupt();
+        }
+        errorHandler.error("Failed to write to file " + fileName, e, ErrorCode.WRITE_FAILURE);
+      }
+      ((Buffer) buf).clear();
+    }
+    return buf;
+  }
+
+  @Override
+  protected void writeHeader() {
+    super.writeHeader();
+    // Make sure the header reaches the file ahead of the encoded records
+    if (qw != null) {
+      qw.flush();
+    }
+  }
+
+  /**
+   * Close the file, and the filters and layout of this appender (see
+   * {@link AppenderFilters#close(org.apache.log4j.spi.Filter)} and
+   * {@link SecurePatternLayout#close()}).
+   */
+  @Override
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+    super.close();
+    AppenderFilters.close(getFilter());
+    if (layout instanceof SecurePatternLayout) {
+      ((SecurePatternLayout) layout).close();
+    }
+  }
+
+  @Override
+  protected void writeFooter() {
+    if (stream != null) {
+      drain(buffer);
+      closeIndex();
+    }
+    super.writeFooter();
+  }
+
+  @Override
+  protected void closeFile() {
+    if (stream != null) {
+      drain(buffer);
+      closeIndex();
+      stream = null;
+      encoder = null;
+      buffer = null;
+    }
+    super.closeFile();
+  }
+
+  private void closeIndex() {
+    if (index != null) {
+      index.close(((CountingOutputStream) stream).count);
+      index = null;
+    }
+  }
+
+  /**
+   * Keeps track of the position in the file.
+   */
+  private static final class CountingOutputStream extends FilterOutputStream {
+    long count;
+
+    CountingOutputStream(OutputStream out, long start) {
+      super(out);
+      count = start;
+    }
+
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+  }
+}
@@ -0,0 +1,416 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.CharsetEncoder;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.apache.log4j.spi.LocationInfo;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.ThrowableInformation;
+
+/**
+ * Layout that writes each event as one JSON object on a line of its own
+ * (newline delimited JSON), for log indexers that would otherwise have to
+ * parse the text written by {@link SecurePatternLayout}:
+ *
+ * <pre>
+ * {"timestamp":"2026-10-17T14:03:07.125Z","level":"ERROR","logger":"com.example.Api",
+ *  "thread":"http-8080-3","message":"Request failed","ndc":"req-17",
+ *  "mdc":{"user":"jdoe"},"throwable":{"class":"java.io.IOException","message":"reset",
+ *  "frames":[{"class":"com.example.Api","method":"call","file":"Api.java","line":42}],
+ *  "cause":{...}}}
+ * </pre>
+ *
+ * <p>(shown here on several lines). The timestamp is in UTC, with
+ * milliseconds. Fields with no value (the NDC, an empty MDC, a throwable)
+ * are left out. The throwable is written as its class, message, stack frames,
+ * cause and suppressed throwables. A throwable met again among the causes
+ * and suppressed throwables (which may form a cycle) is written only as
+ * <code>{"circularReference":"..."}</code>, with its
+ * {@link Throwable#toString()}, as the stack trace printed by the JDK marks
+ * it. If the event only has the text of a stack
+ * trace (for example, after being sent over a socket), the lines of the text
+ * are written as <code>"throwable":{"lines":[...]}</code> instead.
+ *
+ * <p>Like the record separator of SecurePatternLayout, this guarantees that
+ * nothing in a logged value can end a record early or forge another one:
+ * every string is escaped so that it cannot contain a line break (including
+ * the Unicode line and paragraph separators) or other control characters,
+ * and each record ends with a single <code>'\n'</code> on every platform.
+ *
+ * <p>The JSON is written with a hand written writer into a buffer that is
+ * reused from one event to the next, so apart from the text handed to the
+ * appender, formatting an event without a throwable allocates almost
+ * nothing. With {@link SecureFileAppender} or {@link AsyncSecureFileAppender}
+ * the text is encoded straight into the byte buffer of the appender.
+ *
+ * <p>Options:
+ * <ul>
+ * <li><b>LocationInfo</b> adds the class, method, file and line of the
+ * caller, found as the location conversions of SecurePatternLayout find
+ * them. Default false.</li>
+ * <li><b>MaxRetainedCapacity</b> is the largest buffer, in characters, kept
+ * between events. Default {@link #DEFAULT_MAX_RETAINED_CAPACITY}.</li>
+ * </ul>
+ */
+public class SecureJsonLayout extends Layout implements ByteBufferLayout {
+  /** Default upper bound on the capacity of the retained buffer. */
+  public static final int DEFAULT_MAX_RETAINED_CAPACITY = 65536;
+
+  // Limit on nested causes and suppressed throwables; cycles are cut short
+  // as they are found, this only bounds the recursion on very long chains
+  private static final int MAX_NESTING = 16;
+
+  private static final int BUF_SIZE = 1024;
+
+  private static final char[] TIMESTAMP = JsonWriter.name("timestamp", true);
+  private static final char[] LEVEL = JsonWriter.name("level");
+  private static final char[] LOGGER = JsonWriter.name("logger");
+  private static final char[] THREAD = JsonWriter.name("thread");
+  private static final char[] MESSAGE = JsonWriter.name("message");
+  private static final char[] NDC = JsonWriter.name("ndc");
+  private static final char[] MDC = JsonWriter.name("mdc");
+  private static final char[] LOCATION = JsonWriter.name("location");
+  private static final char[] THROWABLE = JsonWriter.name("throwable");
+  private static final char[] CLASS_FIRST = JsonWriter.name("class", true);
+  private static final char[] METHOD = JsonWriter.name("method");
+  private static final char[] FILE = JsonWriter.name("file");
+  private static final char[] LINE = JsonWriter.name("line");
+  private static final char[] FRAMES = JsonWriter.name("frames");
+  private static final char[] CAUSE = JsonWriter.name("cause");
+  private static final char[] SUPPRESSED = JsonWriter.name("suppressed");
+  private static final char[] LINES_FIRST = JsonWriter.name("lines", true);
+  private static final char[] CIRCULAR_FIRST = JsonWriter.name("circularReference", true);
+
+  private final JsonWriter writer = new JsonWriter(BUF_SIZE);
+  private boolean locationInfo;
+  private int maxRetainedCapacity = DEFAULT_MAX_RETAINED_CAPACITY;
+
+  // the text of the timestamp up to the milliseconds, for the current second
+  private long cachedSecond = Long.MIN_VALUE;
+  private final char[] secondChars = new char[21];
+  private final SecurePatternParser.LocationSource locations =
+      new SecurePatternParser.LocationSource();
+
+  /**
+   * Set the <b>LocationInfo</b> option, to include the location of the
+   * caller.
+   */
+  public void setLocationInfo(boolean locationInfo) {
+    this.locationInfo = locationInfo;
+  }
+
+  public boolean getLocationInfo() {
+    return locationInfo;
+  }
+
+  /**
+   * Set the <b>MaxRetainedCapacity</b> option, the largest buffer (in
+   * characters) kept for the next event.
+   */
+  public void setMaxRetainedCapacity(int maxRetainedCapacity) {
+    this.maxRetainedCapacity = maxRetainedCapacity;
+  }
+
+  public int getMaxRetainedCapacity() {
+    return maxRetainedCapacity;
+  }
+
+  public void activateOptions() {
+  }
+
+  /**
+   * The throwable is included in the JSON, so this returns
+   * <code>false</code>.
+   */
+  public boolean ignoresThrowable() {
+    return false;
+  }
+
+  public String getContentType() {
+    return "application/x-ndjson";
+  }
+
+  public synchronized String format(LoggingEvent event) {
+    try {
+      render(event);
+      return writer.toString();
+    } finally {
+      writer.reset(BUF_SIZE, maxRetainedCapacity);
+    }
+  }
+
+  /**
+   * Format the event exactly as {@link #format(LoggingEvent)} would, but
+   * write the result to the provided writer rather than creating a String.
+   */
+  public synchronized void encode(LoggingEvent event, Writer out) throws IOException {
+    try {
+      render(event);
+      writer.writeTo(out);
+    } finally {
+      writer.reset(BUF_SIZE, maxRetainedCapacity);
+    }
+  }
+
+  /**
+   * Format the event exactly as {@link #format(LoggingEvent)} would, and
+   * encode the result directly into the byte buffer of the destination.
+   */
+  public synchronized void encode(LoggingEvent event, CharsetEncoder encoder,
+                                  ByteBufferDestination destination) {
+    try {
+      render(event);
+      writer.encodeTo(encoder, destination);
+    } finally {
+      writer.reset(BUF_SIZE, maxRetainedCapacity);
+    }
+  }
+
+  private void render(LoggingEvent event) {
+    JsonWriter w = writer;
+    w.raw('{');
+    w.raw(TIMESTAMP);
+    timestamp(event.getTimeStamp());
+    w.raw(LEVEL);
+    w.string(event.getLevel().toString());
+    w.raw(LOGGER);
+    w.string(event.getLoggerName());
+    w.raw(THREAD);
+    w.string(event.getThreadName());
+    w.raw(MESSAGE);
+    w.string(event.getRenderedMessage());
+
+    String ndc = event.getNDC();
+    if (ndc != null) {
+      w.raw(NDC);
+      w.string(ndc);
+    }
+
+    Map<?, ?> properties = event.getProperties();
+    if (!properties.isEmpty()) {
+      w.raw(MDC);
+      w.raw('{');
+      boolean first = true;
+      for (Map.Entry<?, ?> entry : properties.entrySet()) {
+        Object value = entry.getValue();
+        if (value == null) {
+          continue;
+        }
+        if (!first) {
+          w.raw(',');
+        }
+        w.string(String.valueOf(entry.getKey()));
+        w.raw(':');
+        w.string(value.toString());
+        first = false;
+      }
+      w.raw('}');
+    }
+
+    if (locationInfo) {
+      LocationInfo info = locations.get(event);
+      w.raw(LOCATION);
+      w.raw('{');
+      w.raw(CLASS_FIRST);
+      w.string(info.getClassName());
+      w.raw(METHOD);
+      w.string(info.getMethodName());
+      file(info.getFileName());
+      line(info.getLineNumber());
+      w.raw('}');
+    }
+
+    ThrowableInformation ti = event.getThrowableInformation();
+    if (ti != null) {
+      w.raw(THROWABLE);
+      Throwable t = ti.getThrowable();
+      if (t != null) {
+        throwable(t, 0, new IdentityHashMap<Throwable, Boolean>());
+      } else {
+        lines(ti.getThrowableStrRep());
+      }
+    }
+    w.raw('}');
+    w.raw('\n');
+  }
+
+  /**
+   * The timestamp as an ISO 8601 string in UTC. The text up to the
+   * milliseconds is kept for the rest of the second.
+   */
+  private void timestamp(long time) {
+    long second = Math.floorDiv(time, 1000);
+    if (second != cachedSecond) {
+      renderSecond(second);
+      cachedSecond = second;
+    }
+    int ms = (int) (time - second * 1000);
+    JsonWriter w = writer;
+    w.raw(secondChars);
+    w.raw((char) ('0' + ms / 100));
+    w.raw((char) ('0' + ms / 10 % 10));
+    w.raw((char) ('0' + ms % 10));
+    w.raw('Z');
+    w.raw('"');
+  }
+
+  /**
+   * Write <code>"yyyy-MM-ddTHH:mm:ss.</code> for a second since the epoch
+   * into secondChars (the civil date is computed as in the algorithms of
+   * Howard Hinnant, for any year from 0 to 9999).
+   */
+  private void renderSecond(long second) {
+    long days = Math.floorDiv(second, 86400);
+    int secondOfDay = (int) (second - days * 86400);
+    long z = days + 719468;
+    long era = Math.floorDiv(z, 146097);
+    long doe = z - era * 146097;
+    long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+    long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+    long mp = (5 * doy + 2) / 153;
+    int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+    int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+    int year = (int) Math.max(0, Math.min(9999, yoe + era * 400 + (month <= 2 ? 1 : 0)));
+
+    char[] c = secondChars;
+    c[0] = '"';
+    digits(c, 1, year, 4);
+    c[5] = '-';
+    digits(c, 6, month, 2);
+    c[8] = '-';
+    digits(c, 9, day, 2);
+    c[11] = 'T';
+    digits(c, 12, secondOfDay / 3600, 2);
+    c[14] = ':';
+    digits(c, 15, secondOfDay / 60 % 60, 2);
+    c[17] = ':';
+    digits(c, 18, secondOfDay % 60, 2);
+    c[20] = '.';
+  }
+
+  private static void digits(char[] c, int at, int n, int width) {
+    for (int i = at + width - 1; i >= at; i--) {
+      c[i] = (char) ('0' + n % 10);
+      n /= 10;
+    }
+  }
+
+  private void throwable(Throwable t, int depth, Map<Throwable, Boolean> dejaVu) {
+    JsonWriter w = writer;
+    w.raw('{');
+    if (dejaVu.put(t, Boolean.TRUE) != null) {
+      w.raw(CIRCULAR_FIRST);
+      w.string(t.toString());
+      w.raw('}');
+      return;
+    }
+    w.raw(CLASS_FIRST);
+    w.string(t.getClass().getName());
+    String message = t.getMessage();
+    if (message != null) {
+      w.raw(MESSAGE);
+      w.string(message);
+    }
+    w.raw(FRAMES);
+    w.raw('[');
+    StackTraceElement[] frames = t.getStackTrace();
+    for (int i = 0; i < frames.length; i++) {
+      if (i > 0) {
+        w.raw(',');
+      }
+      StackTraceElement frame = frames[i];
+      w.raw('{');
+      w.raw(CLASS_FIRST);
+      w.string(frame.getClassName());
+      w.raw(METHOD);
+      w.string(frame.getMethodName());
+      if (frame.getFileName() != null) {
+        w.raw(FILE);
+        w.string(frame.getFileName());
+      }
+      if (frame.getLineNumber() >= 0) {
+        w.raw(LINE);
+        w.number(frame.getLineNumber());
+      }
+      w.raw('}');
+    }
+    w.raw(']');
+    if (depth < MAX_NESTING) {
+      Throwable cause = t.getCause();
+      if (cause != null) {
+        w.raw(CAUSE);
+        throwable(cause, depth + 1, dejaVu);
+      }
+      Throwable[] suppressed = t.getSuppressed();
+      if (suppressed.length > 0) {
+        w.raw(SUPPRESSED);
+        w.raw('[');
+        for (int i = 0; i < suppressed.length; i++) {
+          if (i > 0) {
+            w.raw(',');
+          }
+          throwable(suppressed[i], depth + 1, dejaVu);
+        }
+        w.raw(']');
+      }
+    }
+    w.raw('}');
+  }
+
+  private void lines(String[] lines) {
+    JsonWriter w = writer;
+    w.raw('{');
+    w.raw(LINES_FIRST);
+    w.raw('[');
+    if (lines != null) {
+      for (int i = 0; i < lines.length; i++) {
+        if (i > 0) {
+          w.raw(',');
+        }
+        w.string(lines[i]);
+      }
+    }
+    w.raw(']');
+    w.raw('}');
+  }
+
+  private void file(String file) {
+    if (file != null && !LocationInfo.NA.equals(file)) {
+      writer.raw(FILE);
+      writer.string(file);
+    }
+  }
+
+  private void line(String line) {
+    if (line == null || line.isEmpty() || line.length() > 9) {
+      return;
+    }
+    int n = 0;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (c < '0' || c > '9') {
+        return;
+      }
+      n = n * 10 + (c - '0');
+    }
+    writer.raw(LINE);
+    writer.number(n);
+  }
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The encoded form of the record separator, escape character and line
+ * separator used to write a {@link SecurePatternLayout} log file, and the
+ * logic to find record boundaries in it without decoding.
+ *
+ * <p>Records are found by scanning bytes, which is only safe when an encoded
+ * character can never appear inside the encoding of another: this holds for
+ * UTF-8 and for single byte charsets, which are the only ones supported.
+ * Likewise only single character separators and escapes (the normal
+ * configuration) can be read back unambiguously.
+ *
+ * <p>Instances are immutable and may be shared between threads.
+ */
+final class SecureLogFormat {
+  /** Set in the result of {@link #scan} if the record contains escapes. */
+  static final long ESCAPED = 1L << 32;
+
+  /** Set in the result of {@link #scan} if the record has non-ASCII bytes. */
+  static final long NON_ASCII = 1L << 33;
+
+  /** Returned by {@link #findRecordStart} if it needs earlier bytes. */
+  static final int NEED_EARLIER = -2;
+
+  private static final long END_MASK = 0xFFFFFFFFL;
+
+  final Charset charset;
+  final char separatorChar;
+  final char escapeChar;
+  private final byte[] separator;
+  private final byte[] escape;
+  private final byte[] lineSeparator;
+
+  // chars of each byte value, used when a record can be read byte by byte
+  private final char[] byteChars = new char[256];
+  private final boolean singleByte;
+
+  SecureLogFormat(Charset charset, String recordSeparator, String escape, String lineSeparator) {
+    if (recordSeparator == null || recordSeparator.length() != 1
+        || escape == null || escape.length() != 1) {
+      throw new IllegalArgumentException(
+          "Only single character record separators and escapes can be read");
+    }
+    if (lineSeparator == null || lineSeparator.length() == 0) {
+      throw new IllegalArgumentException("A line separator is required");
+    }
+    CharsetEncoder encoder = charset.newEncoder();
+    singleByte = encoder.maxBytesPerChar() == 1.0f;
+    if (!singleByte && !StandardCharsets.UTF_8.equals(charset)) {
+      throw new IllegalArgumentException("Unsupported encoding " + charset.name()
+          + ": only UTF-8 and single byte encodings can be read");
+    }
+    this.charset = charset;
+    separatorChar = recordSeparator.charAt(0);
+    escapeChar = escape.charAt(0);
+    separator = encode(encoder, recordSeparator);
+    this.escape = encode(encoder, escape);
+    this.lineSeparator = encode(encoder, lineSeparator);
+
+    CharsetDecoder decoder = charset.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    for (int b = 0; b < 256; b++) {
+      if (singleByte || b < 0x80) {
+        try {
+          CharBuffer c = decoder.reset().decode(ByteBuffer.wrap(new byte[] {(byte) b}));
+          byteChars[b] = c.length() == 1 ? c.get(0) : '\uFFFD';
+        } catch (CharacterCodingException e) {
+          byteChars[b] = '\uFFFD';
+        }
+      } else {
+        byteChars[b] = '\uFFFD';
+      }
+    }
+  }
+
+  private static byte[] encode(CharsetEncoder encoder, String s) {
+    try {
+      ByteBuffer b = encoder.reset().encode(CharBuffer.wrap(s));
+      byte[] bytes = new byte[b.remaining()];
+      b.get(bytes);
+      return bytes;
+    } catch (CharacterCodingException e) {
+      throw new IllegalArgumentException("\"" + s + "\" cannot be encoded in "
+          + encoder.charset().name());
+    }
+  }
+
+  /** Number of bytes following the content of a terminated record. */
+  int terminatorLength() {
+    return separator.length + lineSeparator.length;
+  }
+
+  /**
+   * True if the record may be read byte by byte, one char per byte.
+   */
+  boolean isDirect(long scan) {
+    return singleByte || (scan & NON_ASCII) == 0;
+  }
+
+  /** The char encoded by a byte, for records where {@link #isDirect} is true. */
+  char charOf(byte b) {
+    return byteChars[b & 0xFF];
+  }
+
+  /**
+   * Find the end of the record that begins at <code>from</code>.
+   *
+   * @return -1 if the record is not terminated before <code>limit</code>,
+   *         otherwise the index of its record separator, combined with
+   *         {@link #ESCAPED} and {@link #NON_ASCII} as appropriate
+   */
+  long scan(ByteBuffer buf, int from, int limit) {
+    byte sep0 = separator[0];
+    byte esc0 = escape[0];
+    int bits = 0;
+    long flags = 0;
+    int i = from;
+    while (i < limit) {
+      byte b = buf.get(i);
+      if (b != sep0 && b != esc0) {
+        bits |= b;
+        i++;
+        continue;
+      }
+      if (matches(buf, i, limit, escape)) {
+        int next = i + escape.length;
+        if (matches(buf, next, limit, escape)) {
+          bits |= b | buf.get(next);
+          flags |= ESCAPED;
+          i = next + escape.length;
+          continue;
+        }
+        if (matches(buf, next, limit, separator)) {
+          bits |= b | buf.get(next);
+          flags |= ESCAPED;
+          i = next + separator.length;
+          continue;
+        }
+      }
+      if (matches(buf, i, limit, separator)
+          && matches(buf, i + separator.length, limit, lineSeparator)) {
+        if (bits < 0) {
+          flags |= NON_ASCII;
+        }
+        return flags | i;
+      }
+      // a stray escape or separator is taken literally
+      bits |= b;
+      i++;
+    }
+    return -1;
+  }
+
+  /**
+   * Flags for the content of a record that has no terminator, as
+   * {@link #scan} would return them if it did.
+   */
+  long flags(ByteBuffer buf, int from, int limit) {
+    long flags = 0;
+    int bits = 0;
+    for (int i = from; i < limit; i++) {
+      byte b = buf.get(i);
+      bits |= b;
+      if (b == escape[0] && matches(buf, i, limit, escape)) {
+        flags |= ESCAPED;
+      }
+    }
+    return bits < 0 ? flags | NON_ASCII : flags;
+  }
+
+  /**
+   * Find the first record that begins at or after <code>from</code>, when
+   * <code>from</code> may be anywhere in the file. A record begins after
+   * each line separator that is preceded by an unescaped record separator,
+   * which is decided by counting the escape characters (or, when they are
+   * the same, record separators) in front of the separator: they come in
+   * pairs, so an odd one out escapes the separator.
+   *
+   * @param atFileStart true if <code>buf</code> begins at the start of the
+   *        file, so a run of escapes that reaches index 0 is complete
+   * @return the index of the start of the record, -1 if there is none
+   *         before <code>limit</code>, or {@link #NEED_EARLIER} if a run of
+   *         escapes reaches the beginning of <code>buf</code>
+   */
+  int findRecordStart(ByteBuffer buf, int from, int limit, boolean atFileStart) {
+    byte[] ls = lineSeparator;
+    byte ls0 = ls[0];
+    for (int q = Math.max(0, from - ls.length); q <= limit - ls.length; q++) {
+      if (buf.get(q) != ls0 || !matches(buf, q, limit, ls)) {
+        continue;
+      }
+      int sep = q - separator.length;
+      if (sep < 0) {
+        if (!atFileStart) {
+          return NEED_EARLIER;
+        }
+        continue;
+      }
+      if (!matches(buf, sep, limit, separator)) {
+        continue;
+      }
+      // count the escapes in front of the separator
+      int run = 0;
+      int p = sep - escape.length;
+      while (p >= 0 && matches(buf, p, limit, escape)) {
+        run++;
+        p -= escape.length;
+      }
+      if (p < 0 && !atFileStart) {
+        return NEED_EARLIER;
+      }
+      // an even number of escapes are all pairs, leaving the separator
+      // unescaped (this also holds when the separator is its own escape)
+      if (run % 2 == 0 && q + ls.length >= from) {
+        return q + ls.length;
+      }
+    }
+    return -1;
+  }
+
+  /** Index of the record separator in the result of {@link #scan}. */
+  static int end(long scan) {
+    return (int) (scan & END_MASK);
+  }
+
+  /**
+   * Copy the chars of <code>len</code> bytes of a direct record into
+   * <code>dst</code>, removing escapes. Returns the number of chars.
+   */
+  int decodeDirect(ByteBuffer buf, int start, int len, boolean escaped, char[] dst) {
+    int n = 0;
+    for (int i = start, end = start + len; i < end; i++) {
+      dst[n++] = byteChars[buf.get(i) & 0xFF];
+    }
+    return escaped ? unescape(dst, n) : n;
+  }
+
+  /**
+   * Remove escapes from the first <code>len</code> chars of <code>chars</code>
+   * in place, returning the new length.
+   */
+  int unescape(char[] chars, int len) {
+    char esc = escapeChar;
+    char sep = separatorChar;
+    int n = 0;
+    for (int i = 0; i < len; i++) {
+      char c = chars[i];
+      if (c == esc && i + 1 < len && (chars[i + 1] == esc || chars[i + 1] == sep)) {
+        c = chars[++i];
+      }
+      chars[n++] = c;
+    }
+    return n;
+  }
+
+  private static boolean matches(ByteBuffer buf, int pos, int limit, byte[] pattern) {
+    if (pos + pattern.length > limit) {
+      return false;
+    }
+    for (int j = 0; j < pattern.length; j++) {
+      if (buf.get(pos + j) != pattern[j]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,338 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+/**
+ * Sidecar index of a {@link SecurePatternLayout} log file, written by
+ * {@link SecureFileAppender} and {@link AsyncSecureFileAppender} when their
+ * <b>IndexInterval</b> option is set. The index is stored next to the log
+ * file, with {@link #SUFFIX} appended to its name.
+ *
+ * <p>The log file is divided into spans of consecutive records: a new span
+ * starts with the first record whose timestamp falls in a later interval
+ * than the first record of the current span. For each span the index holds
+ * the offsets of its first record and of the record after it, the range of
+ * timestamps, the number of records, the levels that occur and, with
+ * <b>IndexLoggers</b>, a Bloom filter of the logger names (and their
+ * ancestors). The filter of each span is sized for the number of distinct
+ * names in it, at {@link #BITS_PER_NAME} bits per name, so it gives few
+ * false positives however many loggers are used. Records are written in the
+ * order they are logged, which is not strictly the order of their
+ * timestamps; the index records the actual minimum and maximum of each
+ * span, so lookups are exact rather than approximate.
+ *
+ * <p>An entry is written when its span ends, so the records at the end of a
+ * file that is still being written (or of an application that stopped
+ * abruptly) may not be covered. They begin at the end offset of the last
+ * entry, and the lookups below allow for them.
+ *
+ * <pre>
+ * SecureLogIndex index = new SecureLogIndex(SecureLogIndex.indexFileFor(file));
+ * SecureLogReader reader = new SecureLogReader(file, "UTF-8", layout);
+ * Stream&lt;LogRecord&gt; records =
+ *     reader.records(index.findOffset(from), index.findEndOffset(to));
+ * </pre>
+ */
+public class SecureLogIndex {
+  /** Suffix added to the name of the log file to name its index. */
+  public static final String SUFFIX = ".idx";
+
+  /**
+   * Bits of the Bloom filter of a span for each distinct logger name (or
+   * ancestor) in it, which with {@link #BLOOM_PROBES} probes gives about 1%
+   * false positives.
+   */
+  public static final int BITS_PER_NAME = 10;
+
+  static final int BLOOM_PROBES = 7;
+  static final int MAX_BLOOM_WORDS = 8192;
+
+  static final int MAGIC = 0x534C4958;
+  static final int VERSION = 2;
+  static final int HEADER_SIZE = 24;
+  static final int FLAG_LOGGERS = 1;
+  static final int ENTRY_SIZE = 40;
+  // followed by the number of words of the Bloom filter, the number of
+  // probes, and the words
+  static final int LOGGER_ENTRY_SIZE = ENTRY_SIZE + 8;
+
+  private final long interval;
+  private final boolean loggers;
+  private final int size;
+  private final long[] offsets;
+  private final long[] endOffsets;
+  private final long[] minTimes;
+  private final long[] maxTimes;
+  private final int[] counts;
+  private final int[] levels;
+  private final long[][] blooms;
+  private final int[] probes;
+
+  // running maximum of maxTimes, and running minimum of minTimes from the end
+  private final long[] maxTimeBefore;
+  private final long[] minTimeAfter;
+
+  /**
+   * Load an index file.
+   */
+  public SecureLogIndex(File indexFile) throws IOException {
+    ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(indexFile.toPath()));
+    if (buf.remaining() < HEADER_SIZE || buf.getInt() != MAGIC) {
+      throw new IOException(indexFile + " is not a log index");
+    }
+    int version = buf.getInt();
+    if (version != VERSION) {
+      throw new IOException(indexFile + " has unsupported version " + version);
+    }
+    interval = buf.getLong();
+    loggers = (buf.getInt() & FLAG_LOGGERS) != 0;
+    int entrySize = buf.getInt();
+    if (entrySize != (loggers ? LOGGER_ENTRY_SIZE : ENTRY_SIZE)) {
+      throw new IOException(indexFile + " has unexpected entry size " + entrySize);
+    }
+
+    // a partly written entry at the end is ignored
+    int start = buf.position();
+    int n = 0;
+    for (int length; (length = entryLength(buf, loggers)) > 0; n++) {
+      ((Buffer) buf).position(buf.position() + length);
+    }
+    ((Buffer) buf).position(start);
+    size = n;
+    offsets = new long[size];
+    endOffsets = new long[size];
+    minTimes = new long[size];
+    maxTimes = new long[size];
+    counts = new int[size];
+    levels = new int[size];
+    blooms = new long[loggers ? size : 0][];
+    probes = new int[loggers ? size : 0];
+    for (int i = 0; i < size; i++) {
+      offsets[i] = buf.getLong();
+      endOffsets[i] = buf.getLong();
+      minTimes[i] = buf.getLong();
+      maxTimes[i] = buf.getLong();
+      counts[i] = buf.getInt();
+      levels[i] = buf.getInt();
+      if (loggers) {
+        long[] bloom = new long[buf.getInt()];
+        probes[i] = buf.getInt();
+        for (int w = 0; w < bloom.length; w++) {
+          bloom[w] = buf.getLong();
+        }
+        blooms[i] = bloom;
+      }
+    }
+
+    maxTimeBefore = new long[size];
+    minTimeAfter = new long[size];
+    long max = Long.MIN_VALUE;
+    for (int i = 0; i < size; i++) {
+      max = Math.max(max, maxTimes[i]);
+      maxTimeBefore[i] = max;
+    }
+    long min = Long.MAX_VALUE;
+    for (int i = size - 1; i >= 0; i--) {
+      min = Math.min(min, minTimes[i]);
+      minTimeAfter[i] = min;
+    }
+  }
+
+  /**
+   * The index file of a log file.
+   */
+  public static File indexFileFor(File logFile) {
+    return new File(logFile.getPath() + SUFFIX);
+  }
+
+  /** The interval, in milliseconds, the index was written with. */
+  public long getInterval() {
+    return interval;
+  }
+
+  /** True if the index includes logger names. */
+  public boolean hasLoggers() {
+    return loggers;
+  }
+
+  /** The number of spans in the index. */
+  public int size() {
+    return size;
+  }
+
+  /** The offset of the first record of span <code>i</code>. */
+  public long getOffset(int i) {
+    return offsets[i];
+  }
+
+  /** The offset of the first record after span <code>i</code>. */
+  public long getEndOffset(int i) {
+    return endOffsets[i];
+  }
+
+  /** The earliest timestamp in span <code>i</code>. */
+  public long getMinTime(int i) {
+    return minTimes[i];
+  }
+
+  /** The latest timestamp in span <code>i</code>. */
+  public long getMaxTime(int i) {
+    return maxTimes[i];
+  }
+
+  /** The number of records in span <code>i</code>. */
+  public int getRecordCount(int i) {
+    return counts[i];
+  }
+
+  /**
+   * True if span <code>i</code> contains a record at least as severe as
+   * <code>threshold</code>.
+   */
+  public boolean mayContain(int i, Level threshold) {
+    return (levels[i] >>> levelBit(threshold)) != 0;
+  }
+
+  /**
+   * True if span <code>i</code> may contain a record of the named logger or
+   * any of its descendants. Always true if the index does not include
+   * logger names.
+   */
+  public boolean mayContainLogger(int i, String loggerName) {
+    if (!loggers) {
+      return true;
+    }
+    long[] bloom = blooms[i];
+    long h = mix(loggerName.hashCode());
+    int mask = bloom.length * 64 - 1;
+    int h1 = (int) h;
+    int h2 = (int) (h >>> 32) | 1;
+    for (int p = 0; p < probes[i]; p++) {
+      int bit = (h1 + p * h2) & mask;
+      if ((bloom[bit >>> 6] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * The length of the entry at the position of <code>buf</code>, or 0 if
+   * it is not all there.
+   */
+  static int entryLength(ByteBuffer buf, boolean loggers) {
+    int fixed = loggers ? LOGGER_ENTRY_SIZE : ENTRY_SIZE;
+    if (buf.remaining() < fixed) {
+      return 0;
+    }
+    if (!loggers) {
+      return fixed;
+    }
+    int words = buf.getInt(buf.position() + ENTRY_SIZE);
+    if (words < 1 || words > MAX_BLOOM_WORDS || buf.remaining() - fixed < words * 8) {
+      return 0;
+    }
+    return fixed + words * 8;
+  }
+
+  /**
+   * The offset to start reading at to see every record with a timestamp at
+   * or after <code>time</code>. Records before this offset are all earlier.
+   */
+  public long findOffset(long time) {
+    // first span that has a record at or after time
+    int lo = 0;
+    int hi = size;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (maxTimeBefore[mid] >= time) {
+        hi = mid;
+      } else {
+        lo = mid + 1;
+      }
+    }
+    return lo < size ? offsets[lo] : (size == 0 ? 0 : endOffsets[size - 1]);
+  }
+
+  /**
+   * The offset to stop reading at when looking for records with a timestamp
+   * at or before <code>time</code>: every indexed record after it is later.
+   * Returns {@link Long#MAX_VALUE} if the end of the file may need to be
+   * read.
+   */
+  public long findEndOffset(long time) {
+    if (size == 0 || minTimeAfter[size - 1] <= time) {
+      return Long.MAX_VALUE;
+    }
+    // first span whose records (and those of the spans after it) are all later
+    int lo = 0;
+    int hi = size - 1;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (minTimeAfter[mid] > time) {
+        hi = mid;
+      } else {
+        lo = mid + 1;
+      }
+    }
+    return offsets[lo];
+  }
+
+  /**
+   * The bit used for a level in the level mask of a span.
+   */
+  static int levelBit(Level level) {
+    return Math.max(0, Math.min(31, level.toInt() / 5000));
+  }
+
+  /**
+   * The number of words of a Bloom filter for <code>names</code> distinct
+   * names: a power of two, so bits are chosen with a mask.
+   */
+  static int bloomWords(int names) {
+    int words = 1;
+    while (words < MAX_BLOOM_WORDS && words * 64L < (long) names * BITS_PER_NAME) {
+      words <<= 1;
+    }
+    return words;
+  }
+
+  /**
+   * Add a name, given by its {@link String#hashCode()}, to a Bloom filter.
+   */
+  static void addToBloom(long[] bloom, int hashCode) {
+    long h = mix(hashCode);
+    int mask = bloom.length * 64 - 1;
+    int h1 = (int) h;
+    int h2 = (int) (h >>> 32) | 1;
+    for (int p = 0; p < BLOOM_PROBES; p++) {
+      int bit = (h1 + p * h2) & mask;
+      bloom[bit >>> 6] |= 1L << bit;
+    }
+  }
+
+  private static long mix(int hashCode) {
+    long h = hashCode * 0x9E3779B97F4A7C15L;
+    h ^= h >>> 33;
+    h *= 0xC4CEB9FE1A85EC53L;
+    return h ^ (h >>> 33);
+  }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+ * Writes the {@link SecureLogIndex} of a log file as records are written to
+ * it. Calls must be serialized by the appender. Failures are reported once
+ * through {@link LogLog} and disable the index, without affecting logging.
+ */
+final class SecureLogIndexWriter {
+  private final File file;
+  private final long interval;
+  private final boolean loggers;
+  private ByteBuffer entry;
+  private FileOutputStream out;
+
+  // the current span
+  private int count;
+  private long offset;
+  private long intervalEnd;
+  private long minTime;
+  private long maxTime;
+  private int levels;
+  private String lastLogger;
+
+  // the distinct logger names of the span, and the hash codes of them and
+  // their ancestors, from which the Bloom filter is built when it ends
+  private final Set<String> spanLoggers = new HashSet<String>();
+  private int[] hashes = new int[64];
+  private int hashCount;
+
+  /**
+   * Open the index of a log file.
+   *
+   * @param logSize the size of the log file before anything is appended
+   */
+  SecureLogIndexWriter(File logFile, long interval, boolean loggers, boolean append,
+                       long logSize) {
+    file = SecureLogIndex.indexFileFor(logFile);
+    this.interval = interval;
+    this.loggers = loggers;
+    int entrySize = loggers ? SecureLogIndex.LOGGER_ENTRY_SIZE : SecureLogIndex.ENTRY_SIZE;
+    entry = ByteBuffer.allocate(Math.max(entrySize + 8, SecureLogIndex.HEADER_SIZE));
+    try {
+      boolean extend = append && logSize > 0 && canExtend(entrySize, logSize);
+      out = new FileOutputStream(file, extend);
+      if (!extend) {
+        ((Buffer) entry).clear();
+        entry.putInt(SecureLogIndex.MAGIC);
+        entry.putInt(SecureLogIndex.VERSION);
+        entry.putLong(interval);
+        entry.putInt(loggers ? SecureLogIndex.FLAG_LOGGERS : 0);
+        entry.putInt(entrySize);
+        out.write(entry.array(), 0, SecureLogIndex.HEADER_SIZE);
+      }
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  /**
+   * True if the existing index was written with the same settings and ends
+   * (with a whole entry) within the log file, so entries may be added to it.
+   */
+  private boolean canExtend(int entrySize, long logSize) throws IOException {
+    if (!file.isFile()) {
+      return false;
+    }
+    ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+    if (buf.remaining() < SecureLogIndex.HEADER_SIZE
+        || buf.getInt() != SecureLogIndex.MAGIC
+        || buf.getInt() != SecureLogIndex.VERSION
+        || buf.getLong() != interval
+        || ((buf.getInt() & SecureLogIndex.FLAG_LOGGERS) != 0) != loggers
+        || buf.getInt() != entrySize) {
+      return false;
+    }
+    // entries with a Bloom filter vary in size, so they are walked to find
+    // the last whole one
+    long lastEnd = 0;
+    for (int length; (length = SecureLogIndex.entryLength(buf, loggers)) > 0; ) {
+      lastEnd = buf.getLong(buf.position() + 8);
+      ((Buffer) buf).position(buf.position() + length);
+    }
+    if (lastEnd > logSize) {
+      return false;
+    }
+    // drop a partly written entry
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.setLength(buf.position());
+    } finally {
+      raf.close();
+    }
+    return true;
+  }
+
+  /**
+   * Record an event that is about to be written at <code>position</code>.
+   */
+  void record(long position, LoggingEvent event) {
+    if (out == null) {
+      return;
+    }
+    long time = event.getTimeStamp();
+    if (count > 0 && time >= intervalEnd) {
+      writeEntry(position);
+    }
+    if (count == 0) {
+      offset = position;
+      intervalEnd = (Math.floorDiv(time, interval) + 1) * interval;
+      minTime = time;
+      maxTime = time;
+    } else if (time < minTime) {
+      minTime = time;
+    } else if (time > maxTime) {
+      maxTime = time;
+    }
+    count++;
+    levels |= 1 << SecureLogIndex.levelBit(event.getLevel());
+    if (loggers) {
+      String logger = event.getLoggerName();
+      if (logger != lastLogger) {
+        if (spanLoggers.add(logger)) {
+          addLogger(logger);
+        }
+        lastLogger = logger;
+      }
+    }
+  }
+
+  /**
+   * Add the hash codes of a logger name and of the names of its ancestors.
+   * The hash of each ancestor is the {@link String#hashCode()} of its name,
+   * worked out as the name is scanned rather than from a substring.
+   */
+  private void addLogger(String name) {
+    int len = name.length();
+    int h = 0;
+    for (int i = 0; i < len; i++) {
+      char c = name.charAt(i);
+      if (c == '.' && i > 0) {
+        addHash(h);
+      }
+      h = 31 * h + c;
+    }
+    addHash(h);
+  }
+
+  private void addHash(int h) {
+    if (hashCount == hashes.length) {
+      hashes = Arrays.copyOf(hashes, hashCount * 2);
+    }
+    hashes[hashCount++] = h;
+  }
+
+  /**
+   * Write the entry for the current span, which ends at <code>position</code>,
+   * and close the index.
+   */
+  void close(long position) {
+    if (out == null) {
+      return;
+    }
+    if (count > 0) {
+      writeEntry(position);
+    }
+    try {
+      out.close();
+    } catch (IOException e) {
+      LogLog.warn("Could not close log index " + file, e);
+    }
+    out = null;
+  }
+
+  private void writeEntry(long end) {
+    ((Buffer) entry).clear();
+    entry.putLong(offset);
+    entry.putLong(end);
+    entry.putLong(minTime);
+    entry.putLong(maxTime);
+    entry.putInt(count);
+    entry.putInt(levels);
+    if (loggers) {
+      // ancestors are shared by many names, so count each hash once
+      Arrays.sort(hashes, 0, hashCount);
+      int distinct = 0;
+      for (int i = 0; i < hashCount; i++) {
+        if (i == 0 || hashes[i] != hashes[i - 1]) {
+          hashes[distinct++] = hashes[i];
+        }
+      }
+      long[] bloom = new long[SecureLogIndex.bloomWords(distinct)];
+      for (int i = 0; i < distinct; i++) {
+        SecureLogIndex.addToBloom(bloom, hashes[i]);
+      }
+      int size = SecureLogIndex.LOGGER_ENTRY_SIZE + bloom.length * 8;
+      if (entry.capacity() < size) {
+        ByteBuffer grown = ByteBuffer.allocate(size);
+        ((Buffer) entry).flip();
+        entry = grown.put(entry);
+      }
+      entry.putInt(bloom.length);
+      entry.putInt(SecureLogIndex.BLOOM_PROBES);
+      for (long word : bloom) {
+        entry.putLong(word);
+      }
+    }
+    try {
+      out.write(entry.array(), 0, entry.position());
+    } catch (IOException e) {
+      fail(e);
+    }
+    count = 0;
+    levels = 0;
+    spanLoggers.clear();
+    hashCount = 0;
+    lastLogger = null;
+  }
+
+  private void fail(IOException e) {
+    LogLog.warn("Unable to write log index " + file + ", the index is disabled.", e);
+    if (out != null) {
+      try {
+        out.close();
+      } catch (IOException ignored) {
+        // already failed
+      }
+    }
+    out = null;
+  }
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads back the records of a file written with {@link SecurePatternLayout}.
+ *
+ * <p>The file is memory mapped a window at a time, and records are found by
+ * scanning the bytes for an unescaped record separator followed by a line
+ * separator, so records that span many lines (such as stack traces) are
+ * returned whole. Nothing is decoded or unescaped until the content of a
+ * record is used (see {@link LogRecord}), and memory use does not depend on
+ * the size of the file.
+ *
+ * <p>The reader must be given the encoding, record separator and escape
+ * character the file was written with; the {@link #SecureLogReader(File,
+ * String, SecurePatternLayout)} constructor takes the latter two from the
+ * layout. Files written on another platform may also need
+ * {@link #setLineSeparator(String)}. UTF-8 and single byte encodings are
+ * supported, with single character separators and escapes.
+ *
+ * <pre>
+ * SecureLogReader reader = new SecureLogReader(file, "UTF-8", layout);
+ * try {
+ *   for (LogRecord r = reader.next(); r != null; r = reader.next()) {
+ *     ...
+ *   }
+ * } finally {
+ *   reader.close();
+ * }
+ * </pre>
+ *
+ * <p>{@link #records()} returns the records as a {@link Stream}, which may be
+ * made parallel to scan a large file on all cores.
+ *
+ * <p>A reader is not safe for use by several threads, but the records it
+ * returns are.
+ */
+public class SecureLogReader implements Closeable {
+  /** Default number of bytes mapped at a time. */
+  public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+  private static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE - 8;
+
+  // bytes before an offset mapped at first when looking for a record start
+  private static final int LOOKBACK = 4096;
+
+  private final File file;
+  private final Charset charset;
+  private final String recordSeparator;
+  private final String escapeCharacter;
+  private final RandomAccessFile raf;
+  private final FileChannel channel;
+  private final boolean owner;
+
+  private SecureLogFormat format;
+  private int windowSize = DEFAULT_WINDOW_SIZE;
+  private long size;
+  private long position;
+  private MappedByteBuffer window;
+  private long windowStart;
+
+  /**
+   * Reads a file written by a layout with the default record separator and
+   * escape character, in the platform default encoding.
+   */
+  public SecureLogReader(File file) throws IOException {
+    this(file, null, new SecurePatternLayout());
+  }
+
+  /**
+   * Reads a file written by the given layout.
+   *
+   * @param encoding the encoding of the file, or null for the platform default
+   */
+  public SecureLogReader(File file, String encoding, SecurePatternLayout layout) throws IOException {
+    this(file, encoding, layout.getRecordSeparator(), layout.getEscapeCharacter());
+  }
+
+  /**
+   * Reads a file written with the given record separator and escape
+   * character.
+   *
+   * @param encoding the encoding of the file, or null for the platform default
+   */
+  public SecureLogReader(File file, String encoding, String recordSeparator,
+                         String escapeCharacter) throws IOException {
+    this.file = file;
+    charset = encoding == null ? Charset.defaultCharset() : Charset.forName(encoding);
+    this.recordSeparator = recordSeparator;
+    this.escapeCharacter = escapeCharacter;
+    format = new SecureLogFormat(charset, recordSeparator, escapeCharacter, Layout.LINE_SEP);
+    raf = new RandomAccessFile(file, "r");
+    channel = raf.getChannel();
+    owner = true;
+    size = channel.size();
+  }
+
+  /**
+   * A reader of the same file, sharing the open file of <code>parent</code>.
+   */
+  SecureLogReader(SecureLogReader parent) {
+    file = parent.file;
+    charset = parent.charset;
+    recordSeparator = parent.recordSeparator;
+    escapeCharacter = parent.escapeCharacter;
+    raf = parent.raf;
+    channel = parent.channel;
+    owner = false;
+    format = parent.format;
+    windowSize = parent.windowSize;
+    size = parent.size;
+  }
+
+  /**
+   * Set the line separator that follows each record separator. The default
+   * is the line separator of this platform.
+   */
+  public void setLineSeparator(String lineSeparator) {
+    format = new SecureLogFormat(charset, recordSeparator, escapeCharacter, lineSeparator);
+  }
+
+  /**
+   * Set the number of bytes mapped at a time. Records larger than this are
+   * still read, by mapping a larger window as needed.
+   */
+  public void setWindowSize(int windowSize) {
+    this.windowSize = Math.max(windowSize, 4096);
+    window = null;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * The position in the file of the next record to be read.
+   */
+  public long getPosition() {
+    return position;
+  }
+
+  /**
+   * Continue reading at <code>offset</code>, which must be the start of a
+   * record (for example, the {@link LogRecord#getOffset() offset} of a record
+   * returned earlier).
+   */
+  public void seek(long offset) {
+    if (offset < 0) {
+      throw new IllegalArgumentException("Negative offset " + offset);
+    }
+    position = offset;
+  }
+
+  int getWindowSize() {
+    return windowSize;
+  }
+
+  /**
+   * Continue reading at the first record that begins at or after
+   * <code>offset</code>, which may be anywhere in the file. The file is
+   * read forwards from the offset until the end of a record is found.
+   *
+   * @return the position of the record, or the size of the file if no
+   *         record begins after the offset
+   */
+  public long seekRecord(long offset) throws IOException {
+    size = channel.size();
+    position = findRecordStart(offset, size);
+    return position;
+  }
+
+  /**
+   * Find the first record that begins at or after <code>offset</code> and
+   * before <code>limit</code>, returning <code>limit</code> if there is none.
+   */
+  long findRecordStart(long offset, long limit) throws IOException {
+    if (offset <= 0) {
+      return 0;
+    }
+    long from = offset;
+    long lookback = LOOKBACK;
+    while (from < limit && from < size) {
+      long mapStart = Math.max(0, from - lookback);
+      long mapSize = Math.min(size - mapStart, Math.min((long) MAX_WINDOW_SIZE,
+          (from - mapStart) + Math.min(windowSize, limit - from + LOOKBACK)));
+      MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapSize);
+      int start = format.findRecordStart(buf, (int) (from - mapStart), buf.limit(), mapStart == 0);
+      if (start >= 0) {
+        return Math.min(mapStart + start, limit);
+      }
+      if (start == SecureLogFormat.NEED_EARLIER) {
+        if (lookback >= MAX_WINDOW_SIZE / 2) {
+          throw new IOException("Unable to find a record at offset " + offset + " in " + file);
+        }
+        lookback *= 2;
+        continue;
+      }
+      from = mapStart + buf.limit();
+    }
+    return Math.min(limit, size);
+  }
+
+  /**
+   * Returns a stream of the records from the current position to the end of
+   * the file (as it is now). The stream does not change the position of
+   * this reader, and must not be used after the reader is closed.
+   *
+   * <p>When the stream is {@link Stream#parallel() parallel} the file is
+   * split into chunks that are scanned independently: each chunk skips
+   * ahead to its first record (see {@link #seekRecord(long)}) and returns
+   * the records that begin inside it. The stream is ordered; if the order of
+   * the records does not matter use {@link Stream#unordered()} so that
+   * operations such as <code>limit</code> and <code>forEach</code> need not
+   * preserve it.
+   */
+  public Stream<LogRecord> records() throws IOException {
+    size = channel.size();
+    return StreamSupport.stream(new SecureLogSpliterator(this, position, size, true), false);
+  }
+
+  /**
+   * Returns a stream of the records that begin at or after
+   * <code>fromOffset</code> and before <code>toOffset</code>, as
+   * {@link #records()} does. <code>fromOffset</code> must be the start of a
+   * record, such as an offset from a {@link SecureLogIndex}.
+   */
+  public Stream<LogRecord> records(long fromOffset, long toOffset) throws IOException {
+    size = channel.size();
+    long end = Math.min(toOffset, size);
+    return StreamSupport.stream(new SecureLogSpliterator(this, fromOffset, end, true), false);
+  }
+
+  /**
+   * The size of the file. It is read when the reader is opened, and again
+   * whenever the end of the file is reached, so records appended later are
+   * returned too.
+   */
+  public long getSize() {
+    return size;
+  }
+
+  /**
+   * Returns the next record, or null at the end of the file. If the file
+   * ends in the middle of a record, that record is returned with
+   * {@link LogRecord#isTerminated()} false, and will be returned again
+   * (complete) if the reader is positioned at it after the rest of it has
+   * been written.
+   */
+  public LogRecord next() throws IOException {
+    if (position >= size) {
+      size = channel.size();
+      if (position >= size) {
+        return null;
+      }
+    }
+    int mapSize = windowSize;
+    while (true) {
+      if (window == null || position < windowStart
+          || position >= windowStart + window.limit()
+          || (mapSize > window.limit() && windowStart + window.limit() < size)) {
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                             Math.min(mapSize, size - position));
+        windowStart = position;
+      }
+      int from = (int) (position - windowStart);
+      int limit = window.limit();
+      long scan = format.scan(window, from, limit);
+      if (scan >= 0) {
+        int end = SecureLogFormat.end(scan);
+        long next = windowStart + end + format.terminatorLength();
+        LogRecord record = new LogRecord(format, window, from, end, position, next, scan, true);
+        position = next;
+        return record;
+      }
+      if (windowStart + limit >= size) {
+        long current = channel.size();
+        if (current > size) {
+          // the rest may have been written since the window was mapped
+          size = current;
+          window = null;
+          continue;
+        }
+        // The last record in the file has not been terminated (yet)
+        long flags = format.flags(window, from, limit);
+        LogRecord record = new LogRecord(format, window, from, limit, position,
+                                         windowStart + limit, flags, false);
+        position = windowStart + limit;
+        return record;
+      }
+      // The record continues past the window: map a window starting at the
+      // record, larger if the record already filled a whole window
+      if (from == 0) {
+        if (mapSize >= MAX_WINDOW_SIZE) {
+          throw new IOException("Record at offset " + position + " in " + file
+              + " is larger than " + MAX_WINDOW_SIZE + " bytes");
+        }
+        mapSize = (int) Math.min(2L * Math.max(mapSize, limit), MAX_WINDOW_SIZE);
+      }
+      window = null;
+    }
+  }
+
+  /**
+   * Close the file. Records that have already been returned remain readable.
+   */
+  public void close() throws IOException {
+    window = null;
+    if (owner) {
+      raf.close();
+    }
+  }
+}
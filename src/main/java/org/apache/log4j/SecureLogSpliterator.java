@@ -0,0 +1,106 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over the records that begin in a range of a
+ * {@link SecurePatternLayout} log file. Splitting divides the range in two;
+ * the second half skips ahead to its first record only when it is first
+ * traversed, so the boundaries are found by the thread that scans the chunk.
+ * A record that begins in one chunk and ends in the next belongs to the
+ * first, and the second chunk starts after it.
+ */
+final class SecureLogSpliterator implements Spliterator<LogRecord> {
+  /** Chunks smaller than this are not split. */
+  static final long MIN_CHUNK = 1024 * 1024;
+
+  private final SecureLogReader parent;
+  private long begin;
+  private final long end;
+  private boolean atRecord;
+  private SecureLogReader cursor;
+
+  /**
+   * @param atRecord true if <code>begin</code> is known to be the start of a
+   *        record
+   */
+  SecureLogSpliterator(SecureLogReader parent, long begin, long end, boolean atRecord) {
+    this.parent = parent;
+    this.begin = begin;
+    this.end = end;
+    this.atRecord = atRecord;
+  }
+
+  public boolean tryAdvance(Consumer<? super LogRecord> action) {
+    LogRecord record = nextRecord();
+    if (record == null) {
+      return false;
+    }
+    action.accept(record);
+    return true;
+  }
+
+  public void forEachRemaining(Consumer<? super LogRecord> action) {
+    for (LogRecord record = nextRecord(); record != null; record = nextRecord()) {
+      action.accept(record);
+    }
+  }
+
+  private LogRecord nextRecord() {
+    try {
+      if (cursor == null) {
+        cursor = new SecureLogReader(parent);
+        // map no more than the chunk (and a little of the next)
+        long chunk = end - begin + 65536;
+        cursor.setWindowSize((int) Math.min(parent.getWindowSize(), chunk));
+        cursor.seek(atRecord ? begin : cursor.findRecordStart(begin, end));
+        atRecord = true;
+      }
+      if (cursor.getPosition() >= end) {
+        return null;
+      }
+      return cursor.next();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public Spliterator<LogRecord> trySplit() {
+    long from = cursor == null ? begin : cursor.getPosition();
+    if (end - from < 2 * MIN_CHUNK) {
+      return null;
+    }
+    long mid = from + (end - from) / 2;
+    SecureLogSpliterator prefix = new SecureLogSpliterator(parent, from, mid, atRecord);
+    begin = mid;
+    atRecord = false;
+    cursor = null;
+    return prefix;
+  }
+
+  public long estimateSize() {
+    long from = cursor == null ? begin : cursor.getPosition();
+    return Math.max(end - from, 0);
+  }
+
+  public int characteristics() {
+    return ORDERED | NONNULL;
+  }
+}
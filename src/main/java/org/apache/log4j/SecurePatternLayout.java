@@ -17,9 +17,17 @@
 
 package org.apache.log4j;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.Buffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 import org.apache.log4j.helpers.PatternConverter;
 import org.apache.log4j.helpers.PatternParser;
 import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.ThrowableInformation;
 
 
 // Contributors:   Nelson Minar <nelson@monkey.org>
@@ -126,9 +134,8 @@ number of right most components of the class name will be
      <p>For example, for the class name "org.apache.xyz.SomeClass", the
      pattern <b>%C{1}</b> will output "SomeClass".
 
-     <p><b>WARNING</b> Generating the caller class information is
-     slow. Thus, use should be avoided unless execution speed is
-     not an issue.
+     <p>Finding the caller costs a short walk of the stack for each
+     event; see <b>l</b>.
 
      </td>
      </tr>
@@ -169,9 +176,8 @@ number of right most components of the class name will be
    <td>Used to output the file name where the logging request was
    issued.
 
-   <p><b>WARNING</b> Generating caller location information is
-   extremely slow and should be avoided unless execution speed
-   is not an issue.
+   <p>Finding the caller costs a short walk of the stack for each
+   event; see <b>l</b>.
 
    </tr>
 
@@ -186,9 +192,17 @@ number of right most components of the class name will be
      method followed by the callers source the file name and line
      number between parentheses.
 
-     <p>The location information can be very useful. However, its
-     generation is <em>extremely</em> slow and should be avoided
-     unless execution speed is not an issue.
+     <p>The location information can be very useful. The standard
+     layouts generate it from a stack trace of the whole thread, which is
+     <em>extremely</em> slow. This layout walks only the top of the stack,
+     down to the caller (with StackWalker, on Java 9 and later), and reuses
+     the text for each call site, so it is cheap enough for loggers that
+     need it. It is found once per event for all the location conversions
+     in the pattern. The event must be formatted on the thread that logged
+     it for this to apply; otherwise location information is generated the
+     standard way, unless the appender captured it already (as
+     {@link AsyncSecureFileAppender} does, quickly, with its
+     <b>LocationInfo</b> option).
 
      </td>
    </tr>
@@ -199,9 +213,8 @@ number of right most components of the class name will be
    <td>Used to output the line number from where the logging request
    was issued.
 
-   <p><b>WARNING</b> Generating caller location information is
-   extremely slow and should be avoided unless execution speed
-   is not an issue.
+   <p>Finding the caller costs a short walk of the stack for each
+   event; see <b>l</b>.
 
    </tr>
 
@@ -218,9 +231,8 @@ number of right most components of the class name will be
    <td>Used to output the method name where the logging request was
    issued.
 
-   <p><b>WARNING</b> Generating caller location information is
-   extremely slow and should be avoided unless execution speed
-   is not an issue.
+   <p>Finding the caller costs a short walk of the stack for each
+   event; see <b>l</b>.
 
    </tr>
 
@@ -408,7 +420,7 @@ reached. The default is to pad on the left (right justify) but you
 
 
    @since 0.8.2 */
-public class SecurePatternLayout extends Layout {
+public class SecurePatternLayout extends Layout implements ByteBufferLayout {
   /**
    * Default character to use to mark boundaries between log messages.
    */
@@ -435,18 +447,44 @@ public class SecurePatternLayout extends Layout {
   protected final int BUF_SIZE = 256;
   protected final int MAX_CAPACITY = 1024;
 
+  /** Default upper bound on the capacity of retained buffers. */
+  public final static int DEFAULT_MAX_RETAINED_CAPACITY = 65536;
+
+
+  // buffers used by format() unless ThreadConfined is set
+  private final FormatContext context = new FormatContext();
 
-  // output buffer appended to when format() is invoked
-  private StringBuffer sbuf = new StringBuffer(BUF_SIZE);
+  // buffers used by format() when ThreadConfined is set
+  private FormatContextPool pool;
 
-  private String pattern;
+  private volatile String pattern;
 
-  private PatternConverter head;
+  private volatile PatternConverter head;
 
   private String recordSeparator = DEFAULT_RECORD_SEPARATOR;
 
   private String escapeCharacter = DEFAULT_ESCAPE_CHARACTER;
 
+  private volatile RecordEscaper escaper = new RecordEscaper(recordSeparator, escapeCharacter);
+
+  private boolean threadConfined;
+
+  private int maxRetainedCapacity = DEFAULT_MAX_RETAINED_CAPACITY;
+
+  private String name;
+
+  private boolean instrumentation;
+
+  private int instrumentationSampleRate = 64;
+
+  private volatile SecurePatternLayoutMetrics metrics;
+
+  private int throwableCacheSize;
+
+  private volatile StackTraceCache throwableCache;
+
+  private volatile boolean trimCommonFrames;
+
   /**
      Constructs a PatternLayout using the DEFAULT_LAYOUT_PATTERN.
 
@@ -492,6 +530,7 @@ String getConversionPattern() {
    */
   public void setRecordSeparator(String recordSeparator) {
     this.recordSeparator = recordSeparator;
+    escaper = new RecordEscaper(recordSeparator, escapeCharacter);
   }
 
   public String getRecordSeparator() {
@@ -509,6 +548,7 @@ public String getRecordSeparator() {
    */
   public void setEscapeCharacter(String escapeCharacter) {
     this.escapeCharacter = escapeCharacter;
+    escaper = new RecordEscaper(recordSeparator, escapeCharacter);
   }
 
   public String getEscapeCharacter() {
@@ -516,11 +556,177 @@ public String getEscapeCharacter() {
   }
 
   /**
-     Does not do anything as options become effective
+   * Set the <b>ThreadConfined</b> option. By default this layout keeps a
+   * single set of working buffers and relies on the appender lock to
+   * serialize calls to {@link #format(LoggingEvent)}. When this option is
+   * <code>true</code> each call instead borrows buffers from a small
+   * lock-free pool, so the layout may be used concurrently from many threads
+   * without any external locking. When more threads format at once than the
+   * pool holds, the extra calls use new buffers. If a subclass overrides
+   * {@link #createPatternParser(String)}, each set of buffers also needs its
+   * own copy of the converter chain, and those extra calls parse the pattern
+   * again.
+   */
+  public void setThreadConfined(boolean threadConfined) {
+    this.threadConfined = threadConfined;
+    if (threadConfined && pool == null) {
+      pool = new FormatContextPool(2 * Runtime.getRuntime().availableProcessors());
+    }
+  }
+
+  public boolean getThreadConfined() {
+    return threadConfined;
+  }
+
+  /**
+   * Set the <b>MaxRetainedCapacity</b> option. Working buffers grow to fit
+   * the largest records, but are only kept between calls while they are no
+   * larger than about twice the typical record size recently formatted
+   * (and never less than {@link #MAX_CAPACITY}). This option is an upper
+   * bound on the capacity that will be retained, in characters. The default
+   * is {@link #DEFAULT_MAX_RETAINED_CAPACITY}.
+   */
+  public void setMaxRetainedCapacity(int maxRetainedCapacity) {
+    this.maxRetainedCapacity = maxRetainedCapacity;
+  }
+
+  public int getMaxRetainedCapacity() {
+    return maxRetainedCapacity;
+  }
+
+  /**
+   * Set the <b>Name</b> option, used to publish metrics when
+   * <b>Instrumentation</b> is enabled.
+   */
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Set the <b>Instrumentation</b> option. When <code>true</code> the layout
+   * counts records, output characters, escaped separators and escape
+   * characters, and buffer reallocations, and times each stage of
+   * formatting for one in <b>InstrumentationSampleRate</b> records. The
+   * results are available from {@link #getMetrics()}, and if the layout has
+   * a <b>Name</b> they are published over JMX (see
+   * {@link SecurePatternLayoutMetrics}) when {@link #activateOptions()} is
+   * called, until {@link #close()} is called. Default <code>false</code>.
+   */
+  public void setInstrumentation(boolean instrumentation) {
+    this.instrumentation = instrumentation;
+  }
+
+  public boolean getInstrumentation() {
+    return instrumentation;
+  }
+
+  /**
+   * Set the <b>InstrumentationSampleRate</b> option: one in this many
+   * records, chosen at random, has its stages timed. Default 64.
+   */
+  public void setInstrumentationSampleRate(int rate) {
+    instrumentationSampleRate = rate;
+  }
+
+  public int getInstrumentationSampleRate() {
+    return instrumentationSampleRate;
+  }
+
+  /**
+   * Set the <b>ThrowableCacheSize</b> option. When greater than zero the
+   * layout remembers the fingerprints (a hash of the classes and stack
+   * frames, but not the messages) of this many of the stack traces it has
+   * printed most recently. A stack trace is printed in full the first time,
+   * followed by a <code>[stack trace <i>fingerprint</i>]</code> line; when
+   * it is seen again only the first line of the throwable and of each of
+   * its causes is printed, followed by
+   * <code>[stack trace <i>fingerprint</i> repeated]</code>. The fingerprints
+   * are forgotten whenever the appender asks for the {@link #getHeader()
+   * header}, which it does as it starts each file, so every file holds the
+   * stack traces it refers to. Default 0 (disabled).
+   */
+  public void setThrowableCacheSize(int throwableCacheSize) {
+    this.throwableCacheSize = throwableCacheSize;
+    throwableCache = throwableCacheSize > 0 ? new StackTraceCache(throwableCacheSize) : null;
+  }
+
+  public int getThrowableCacheSize() {
+    return throwableCacheSize;
+  }
+
+  /**
+   * Set the <b>TrimCommonFrames</b> option. When <code>true</code> the layout
+   * prints stack traces itself, as {@link Throwable#printStackTrace()} does:
+   * the frames that a cause has in common with the trace that encloses it
+   * are replaced with a <code>... <i>n</i> more</code> line, whatever
+   * {@link org.apache.log4j.spi.ThrowableRenderer} is configured. When
+   * <code>false</code> (the default) the lines of
+   * {@link LoggingEvent#getThrowableStrRep()} are printed.
+   */
+  public void setTrimCommonFrames(boolean trimCommonFrames) {
+    this.trimCommonFrames = trimCommonFrames;
+  }
+
+  public boolean getTrimCommonFrames() {
+    return trimCommonFrames;
+  }
+
+  /**
+   * Returns the metrics of this layout, or null if <b>Instrumentation</b>
+   * is not enabled.
+   */
+  public SecurePatternLayoutMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+     Options become effective as they are set, except for
+     <b>Instrumentation</b>, which is published here.
   */
   public
   void activateOptions() {
-    // nothing to do.
+    SecurePatternLayoutMetrics previous = metrics;
+    if (previous != null) {
+      previous.unregister();
+    }
+    if (instrumentation) {
+      SecurePatternLayoutMetrics m = new SecurePatternLayoutMetrics(instrumentationSampleRate);
+      if (name != null) {
+        m.register(name);
+      }
+      metrics = m;
+    } else {
+      metrics = null;
+    }
+  }
+
+  /**
+   * Stop publishing the metrics of this layout. Called by
+   * {@link SecureFileAppender} and {@link AsyncSecureFileAppender} when
+   * they are closed; other appenders leave the MBean registered until
+   * {@link MBeanRegistry#unregisterAll()} is called.
+   */
+  public void close() {
+    SecurePatternLayoutMetrics m = metrics;
+    if (m != null) {
+      m.unregister();
+    }
+  }
+
+  /**
+   * Returns null, and forgets the stack traces printed so far (see
+   * <b>ThrowableCacheSize</b>).
+   */
+  public String getHeader() {
+    StackTraceCache cache = throwableCache;
+    if (cache != null) {
+      cache.clear();
+    }
+    return super.getHeader();
   }
 
   /**
@@ -537,65 +743,327 @@ boolean ignoresThrowable() {
   /**
     Returns PatternParser used to parse the conversion string. Subclasses
     may override this to return a subclass of PatternParser which recognize
-    custom conversion characters.
+    custom conversion characters. The parser returned by default accepts the
+    same patterns as PatternParser, but with faster implementations of some
+    conversions.
 
     @since 0.9.0
   */
   protected PatternParser createPatternParser(String pattern) {
-    return new PatternParser(pattern);
+    return new SecurePatternParser(pattern);
   }
 
   /**
      Produces a formatted string as specified by the conversion pattern.
   */
   public String format(LoggingEvent event) {
-    // Reset working stringbuffer
-    if(sbuf.capacity() > MAX_CAPACITY) {
-      sbuf = new StringBuffer(BUF_SIZE);
-    } else {
-      sbuf.setLength(0);
+    FormatContext ctx = acquire();
+    try {
+      render(event, ctx);
+      String result = ctx.obuf.toString();
+      outputDone(ctx);
+      return result;
+    } finally {
+      release(ctx);
+    }
+  }
+
+  /**
+   * Format the event exactly as {@link #format(LoggingEvent)} would, but
+   * write the result to the provided writer rather than creating a String.
+   */
+  public void encode(LoggingEvent event, Writer out) throws IOException {
+    FormatContext ctx = acquire();
+    try {
+      render(event, ctx);
+      int len = ctx.obuf.length();
+      char[] chars = ctx.encodeChars(len);
+      ctx.obuf.getChars(0, len, chars, 0);
+      out.write(chars, 0, len);
+      outputDone(ctx);
+    } finally {
+      release(ctx);
+    }
+  }
+
+  /**
+   * Format the event exactly as {@link #format(LoggingEvent)} would, and
+   * encode the result directly into the byte buffer of the destination. When
+   * the buffer fills up it is handed to the destination to be drained, so
+   * records of any size can be encoded with a fixed size buffer. Input the
+   * encoder is unable to handle is replaced or skipped, according to how the
+   * encoder was configured. The encoder will be reset, and must not be used
+   * concurrently by other threads.
+   */
+  public void encode(LoggingEvent event, CharsetEncoder encoder, ByteBufferDestination destination) {
+    FormatContext ctx = acquire();
+    try {
+      render(event, ctx);
+      int len = ctx.obuf.length();
+      char[] chars = ctx.encodeChars(len);
+      ctx.obuf.getChars(0, len, chars, 0);
+      // Buffer casts keep the bytecode compatible with Java 8 when built on
+      // later JDKs, which added covariant overrides of these methods
+      CharBuffer in = ctx.encodeView;
+      ((Buffer) in).limit(len);
+      ((Buffer) in).position(0);
+      DestinationEncoder.encode(encoder, in, destination);
+      outputDone(ctx);
+    } finally {
+      release(ctx);
     }
+  }
 
-    PatternConverter c = head;
+  private FormatContext acquire() {
+    return threadConfined ? pool.acquire() : context;
+  }
+
+  private void release(FormatContext ctx) {
+    if (ctx.reset(BUF_SIZE, MAX_CAPACITY, maxRetainedCapacity)) {
+      SecurePatternLayoutMetrics m = metrics;
+      if (m != null) {
+        m.recordReallocation();
+      }
+    }
+    if (ctx != context) {
+      pool.release(ctx);
+    }
+  }
+
+  /**
+   * Run the converter chain, and leave the escaped and terminated record in
+   * the output buffer of the context.
+   */
+  private void render(LoggingEvent event, FormatContext ctx) {
+    StringBuffer sbuf = ctx.sbuf;
+    StringBuilder obuf = ctx.obuf;
+    SecurePatternLayoutMetrics m = metrics;
+    boolean timed = m != null && m.shouldSample();
+    long start = timed ? System.nanoTime() : 0;
+
+    PatternConverter c = threadConfined ? ctx.converters(this) : head;
 
     while(c != null) {
       c.format(sbuf, event);
       c = c.next;
     }
+    long convertersDone = timed ? System.nanoTime() : 0;
 
     // Include the throwable, if any, so it will be properly escaped and wrapped
-    String[] s = event.getThrowableStrRep();
-    if (s != null) {
-      int len = s.length;
-      for(int i = 0; i < len; i++) {
+    appendThrowable(event, sbuf);
+
+    long throwableDone = timed ? System.nanoTime() : 0;
+
+    // Copy the content out of sbuf, escaping any occurrences of the escape
+    // character and the record separator, then add the end mark
+    int len = sbuf.length();
+    char[] cbuf = ctx.chars(len);
+    sbuf.getChars(0, len, cbuf, 0);
+    RecordEscaper e = escaper;
+    long counts = e.escape(cbuf, 0, len, obuf);
+    e.terminate(obuf, 0);
+
+    if (m != null) {
+      m.recordRecord(obuf.length(), RecordEscaper.separators(counts), RecordEscaper.escapes(counts));
+      if (timed) {
+        long escapeDone = System.nanoTime();
+        m.recordStages(convertersDone - start, throwableDone - convertersDone, escapeDone - throwableDone);
+        ctx.outputStart = escapeDone;
+      }
+    }
+  }
+
+  private void appendThrowable(LoggingEvent event, StringBuffer sbuf) {
+    ThrowableInformation info = event.getThrowableInformation();
+    if (info == null) {
+      return;
+    }
+    StackTraceCache cache = throwableCache;
+    Throwable t = info.getThrowable();
+    if (t == null || (cache == null && !trimCommonFrames)) {
+      String[] s = event.getThrowableStrRep();
+      if (s != null) {
+        int len = s.length;
+        for(int i = 0; i < len; i++) {
+          sbuf.append(s[i]);
+          sbuf.append(Layout.LINE_SEP);
+        }
+      }
+      return;
+    }
+    if (cache == null) {
+      StackTraceRenderer.render(t, sbuf);
+      return;
+    }
+    long fingerprint = StackTraceRenderer.fingerprint(t);
+    if (!cache.add(fingerprint)) {
+      StackTraceRenderer.renderRepeated(t, fingerprint, sbuf);
+      return;
+    }
+    if (trimCommonFrames) {
+      StackTraceRenderer.render(t, sbuf);
+    } else {
+      String[] s = info.getThrowableStrRep();
+      for (int i = 0; i < s.length; i++) {
         sbuf.append(s[i]);
         sbuf.append(Layout.LINE_SEP);
       }
     }
+    StackTraceRenderer.renderFingerprint(fingerprint, sbuf);
+  }
 
-    // Escape any occurences of the escape character in the content
-    int offset = 0;
-    int nextOccurence;
-    while ((nextOccurence = sbuf.indexOf(escapeCharacter, offset)) != -1) {
-      sbuf.insert(nextOccurence, escapeCharacter);
-      offset = nextOccurence + 2;
+  /**
+   * Record the time spent producing output, if this record is being timed.
+   */
+  private void outputDone(FormatContext ctx) {
+    if (ctx.outputStart != 0) {
+      SecurePatternLayoutMetrics m = metrics;
+      if (m != null) {
+        m.recordOutput(System.nanoTime() - ctx.outputStart);
+      }
+      ctx.outputStart = 0;
     }
-    // Escape any occurences of the record separator in the content
-    if (!recordSeparator.equals(escapeCharacter)) {
-      offset = 0;
-      while ((nextOccurence = sbuf.indexOf(recordSeparator, offset)) != -1) {
-        sbuf.insert(nextOccurence, escapeCharacter);
-        offset = nextOccurence + 2;
+  }
+
+  /**
+   * Working buffers for a single call to format() at a time. Buffers grow
+   * as needed, and are trimmed back afterwards only when they are much
+   * larger than the records this context usually sees.
+   */
+  private static final class FormatContext {
+    // raw output of the converter chain (the converter API requires StringBuffer)
+    StringBuffer sbuf = new StringBuffer(256);
+
+    // unescaped content copied out of sbuf so it can be scanned without locking
+    char[] cbuf = new char[256];
+
+    // escaped record, ready to be returned
+    StringBuilder obuf = new StringBuilder(256);
+
+    // escaped record copied out of obuf for encode(), created on first use
+    char[] ebuf;
+    CharBuffer encodeView;
+
+    // moving estimate of the size of records formatted with this context
+    int typicalLength = 256;
+
+    // when the current record is being timed, the time output began
+    long outputStart;
+
+    // converter chain used by this context, and the shared chain it stands for
+    PatternConverter sharedHead;
+    PatternConverter head;
+
+    /**
+     * The converter chain to run. The converters made by SecurePatternParser
+     * may be used concurrently, so its chain is shared as is; a parser from
+     * a subclass may make converters that keep state between calls, so the
+     * context then parses its own copy of the pattern.
+     */
+    PatternConverter converters(SecurePatternLayout layout) {
+      PatternConverter current = layout.head;
+      if (current != sharedHead) {
+        String p = layout.pattern;
+        PatternParser parser = layout.createPatternParser(p == null ? DEFAULT_CONVERSION_PATTERN : p);
+        head = parser.getClass() == SecurePatternParser.class ? current : parser.parse();
+        sharedHead = current;
       }
+      return head;
     }
-    // Add the end mark, adjusting the line separator, if any
-    if (sbuf.lastIndexOf(Layout.LINE_SEP) == sbuf.length() - Layout.LINE_SEP_LEN) {
-      sbuf.insert(sbuf.length() - Layout.LINE_SEP_LEN, recordSeparator);
-    } else {
-      sbuf.append(recordSeparator);
-      sbuf.append(Layout.LINE_SEP);
+
+    char[] chars(int len) {
+      if (cbuf.length < len) {
+        cbuf = new char[Math.max(len, cbuf.length * 2)];
+      }
+      return cbuf;
+    }
+
+    char[] encodeChars(int len) {
+      if (ebuf == null || ebuf.length < len) {
+        ebuf = new char[ebuf == null ? Math.max(len, 256) : Math.max(len, ebuf.length * 2)];
+        encodeView = CharBuffer.wrap(ebuf);
+      }
+      return ebuf;
     }
 
-    return sbuf.toString();
+    /**
+     * Clear the buffers for the next record, discarding any that have grown
+     * too large. Returns true if a buffer was discarded.
+     */
+    boolean reset(int minSize, int minRetained, int maxRetained) {
+      outputStart = 0;
+      // Track larger records quickly and smaller ones slowly, so occasional
+      // stack traces keep the estimate up while it stays bounded
+      int n = obuf.length();
+      int t = typicalLength;
+      typicalLength = n > t ? t + ((n - t) >> 2) : t - ((t - n) >> 6);
+
+      int retain = Math.max(minRetained, Math.min(maxRetained, typicalLength * 2));
+      int size = Math.max(minSize, Math.min(retain, typicalLength));
+      boolean discarded = false;
+      if (sbuf.capacity() > retain) {
+        sbuf = new StringBuffer(size);
+        discarded = true;
+      } else {
+        sbuf.setLength(0);
+      }
+      if (cbuf.length > retain) {
+        cbuf = new char[size];
+        discarded = true;
+      }
+      if (ebuf != null && ebuf.length > retain) {
+        ebuf = null;
+        encodeView = null;
+        discarded = true;
+      }
+      if (obuf.capacity() > retain) {
+        obuf = new StringBuilder(size);
+        discarded = true;
+      } else {
+        obuf.setLength(0);
+      }
+      return discarded;
+    }
+  }
+
+  /**
+   * Bounded pool of format contexts. Threads start probing at a slot derived
+   * from their id, so under steady load each thread tends to reuse the same
+   * context. A new context is created if none is free, and contexts beyond
+   * the capacity of the pool are simply dropped when released. A new context
+   * costs only its buffers, unless the converter chain cannot be shared (see
+   * {@link FormatContext#converters}).
+   */
+  private static final class FormatContextPool {
+    private final AtomicReferenceArray<FormatContext> slots;
+    private final int mask;
+
+    FormatContextPool(int minSize) {
+      int size = Integer.highestOneBit(Math.max(minSize, 2) - 1) << 1;
+      slots = new AtomicReferenceArray<FormatContext>(size);
+      mask = size - 1;
+    }
+
+    FormatContext acquire() {
+      int start = (int) Thread.currentThread().getId();
+      for (int i = 0; i <= mask; i++) {
+        int slot = (start + i) & mask;
+        FormatContext ctx = slots.get(slot);
+        if (ctx != null && slots.compareAndSet(slot, ctx, null)) {
+          return ctx;
+        }
+      }
+      return new FormatContext();
+    }
+
+    void release(FormatContext ctx) {
+      int start = (int) Thread.currentThread().getId();
+      for (int i = 0; i <= mask; i++) {
+        int slot = (start + i) & mask;
+        if (slots.get(slot) == null && slots.compareAndSet(slot, null, ctx)) {
+          return;
+        }
+      }
+    }
   }
 }
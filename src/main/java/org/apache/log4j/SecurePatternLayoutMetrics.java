@@ -0,0 +1,176 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.ObjectName;
+
+/**
+ * Statistics for one {@link SecurePatternLayout}. The statistics of a layout
+ * with a name are published as an MBean named
+ * <code>org.apache.log4j:type=SecurePatternLayout,name=&lt;layout name&gt;</code>
+ * (see {@link MBeanRegistry}). A layout configured again under the same name
+ * replaces the previous MBean, and the MBean is removed when the layout is
+ * closed (see {@link SecurePatternLayout#close()}).
+ */
+public class SecurePatternLayoutMetrics implements SecurePatternLayoutMetricsMBean {
+  /** JMX domain used for layout metrics. */
+  public static final String JMX_DOMAIN = "org.apache.log4j";
+
+  private final int sampleRate;
+  private final LongAdder records = new LongAdder();
+  private final LongAdder outputChars = new LongAdder();
+  private final LongAccumulator maxRecordLength = new LongAccumulator(Math::max, 0);
+  private final LongAdder escapedSeparators = new LongAdder();
+  private final LongAdder escapedEscapes = new LongAdder();
+  private final LongAdder bufferReallocations = new LongAdder();
+  private final LatencyHistogram converters = new LatencyHistogram();
+  private final LatencyHistogram throwable = new LatencyHistogram();
+  private final LatencyHistogram escape = new LatencyHistogram();
+  private final LatencyHistogram output = new LatencyHistogram();
+  private ObjectName objectName;
+
+  SecurePatternLayoutMetrics(int sampleRate) {
+    this.sampleRate = Math.max(sampleRate, 1);
+  }
+
+  boolean shouldSample() {
+    return sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+  }
+
+  void recordRecord(int length, int separators, int escapes) {
+    records.increment();
+    outputChars.add(length);
+    maxRecordLength.accumulate(length);
+    if (separators != 0) {
+      escapedSeparators.add(separators);
+    }
+    if (escapes != 0) {
+      escapedEscapes.add(escapes);
+    }
+  }
+
+  void recordReallocation() {
+    bufferReallocations.increment();
+  }
+
+  void recordStages(long convertersNanos, long throwableNanos, long escapeNanos) {
+    converters.record(convertersNanos);
+    throwable.record(throwableNanos);
+    escape.record(escapeNanos);
+  }
+
+  void recordOutput(long nanos) {
+    output.record(nanos);
+  }
+
+  void register(String name) {
+    objectName = MBeanRegistry.register(JMX_DOMAIN, "SecurePatternLayout", name, this);
+  }
+
+  void unregister() {
+    MBeanRegistry.unregister(objectName, this);
+    objectName = null;
+  }
+
+  public long getRecords() {
+    return records.sum();
+  }
+
+  public long getOutputChars() {
+    return outputChars.sum();
+  }
+
+  public long getMaxRecordLength() {
+    return maxRecordLength.get();
+  }
+
+  public long getEscapedSeparators() {
+    return escapedSeparators.sum();
+  }
+
+  public long getEscapedEscapes() {
+    return escapedEscapes.sum();
+  }
+
+  public long getBufferReallocations() {
+    return bufferReallocations.sum();
+  }
+
+  public long getSampledRecords() {
+    return output.count();
+  }
+
+  public double getConvertersMeanNanos() {
+    return converters.mean();
+  }
+
+  public long getConvertersP99Nanos() {
+    return converters.quantile(0.99);
+  }
+
+  public double getThrowableMeanNanos() {
+    return throwable.mean();
+  }
+
+  public long getThrowableP99Nanos() {
+    return throwable.quantile(0.99);
+  }
+
+  public double getEscapeMeanNanos() {
+    return escape.mean();
+  }
+
+  public long getEscapeP99Nanos() {
+    return escape.quantile(0.99);
+  }
+
+  public double getOutputMeanNanos() {
+    return output.mean();
+  }
+
+  public long getOutputP99Nanos() {
+    return output.quantile(0.99);
+  }
+
+  public long[] getStageHistogram(String stage) {
+    if ("converters".equals(stage)) {
+      return converters.counts();
+    } else if ("throwable".equals(stage)) {
+      return throwable.counts();
+    } else if ("escape".equals(stage)) {
+      return escape.counts();
+    } else if ("output".equals(stage)) {
+      return output.counts();
+    }
+    throw new IllegalArgumentException("Unknown stage: " + stage);
+  }
+
+  public void reset() {
+    records.reset();
+    outputChars.reset();
+    maxRecordLength.reset();
+    escapedSeparators.reset();
+    escapedEscapes.reset();
+    bufferReallocations.reset();
+    converters.reset();
+    throwable.reset();
+    escape.reset();
+    output.reset();
+  }
+}
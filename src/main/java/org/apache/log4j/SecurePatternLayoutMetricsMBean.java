@@ -0,0 +1,71 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+/**
+ * JMX view of a {@link SecurePatternLayout} with the <b>Instrumentation</b>
+ * option enabled. Counts cover every record; stage timings cover a sample of
+ * them. The stages are <code>converters</code> (the pattern converter chain),
+ * <code>throwable</code> (rendering and appending the stack trace),
+ * <code>escape</code> (escaping and adding the record separator) and
+ * <code>output</code> (creating the String, or encoding/writing the record).
+ */
+public interface SecurePatternLayoutMetricsMBean {
+  long getRecords();
+
+  /** Total characters produced, including escapes and separators. */
+  long getOutputChars();
+
+  long getMaxRecordLength();
+
+  /** Number of record separators that had to be escaped. */
+  long getEscapedSeparators();
+
+  /**
+   * Number of occurrences of the escape character (or sequence) that had to
+   * be escaped. When the escape and the record separator are the same, they
+   * are counted as separators.
+   */
+  long getEscapedEscapes();
+
+  /** Number of times working buffers were discarded for being too large. */
+  long getBufferReallocations();
+
+  long getSampledRecords();
+
+  double getConvertersMeanNanos();
+
+  long getConvertersP99Nanos();
+
+  double getThrowableMeanNanos();
+
+  long getThrowableP99Nanos();
+
+  double getEscapeMeanNanos();
+
+  long getEscapeP99Nanos();
+
+  double getOutputMeanNanos();
+
+  long getOutputP99Nanos();
+
+  /**
+   * Counts for each power of two bucket of the named stage's histogram;
+   * bucket <code>i</code> holds durations below <code>2^i</code> nanoseconds.
+   */
+  long[] getStageHistogram(String stage);
+
+  void reset();
+}
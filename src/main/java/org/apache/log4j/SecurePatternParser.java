@@ -0,0 +1,536 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import org.apache.log4j.helpers.AbsoluteTimeDateFormat;
+import org.apache.log4j.helpers.DateTimeDateFormat;
+import org.apache.log4j.helpers.ISO8601DateFormat;
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.helpers.PatternConverter;
+import org.apache.log4j.helpers.PatternParser;
+import org.apache.log4j.spi.LocationInfo;
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+ * Pattern parser used by {@link SecurePatternLayout}. It accepts exactly the
+ * same patterns as {@link PatternParser}, and produces the same output, but
+ * replaces some of the converters with faster ones:
+ *
+ * <ul>
+ * <li><b>%c</b>, <b>%C</b> and <b>%t</b> keep a small cache of the
+ * rendered (abbreviated) name for each logger, class or thread name, so the
+ * precision is not reapplied, and no String is created, for every event.</li>
+ * <li><b>%d</b> formats the date once per second, and for the events in the
+ * same second only writes the milliseconds into the cached text.</li>
+ * <li><b>%C</b>, <b>%M</b>, <b>%L</b>, <b>%F</b> and <b>%l</b> find the
+ * caller with {@link CallerLocator}, which on Java 9 and later walks only
+ * the top of the stack rather than taking a whole stack trace, and reuse
+ * the location of each call site. The location is found once per event,
+ * however many of these conversions the pattern has. If the caller is not
+ * on the stack (for example, when the event is formatted on another
+ * thread), the location of the event is used as before.</li>
+ * </ul>
+ *
+ * <p>The format modifiers of the standard converters are not visible outside
+ * their package, so the replacements read them from the pattern themselves.
+ *
+ * <p>Every converter in a chain from this parser may be used by several
+ * threads at once: the caches hold immutable entries, the date format is
+ * only used while holding a lock, and the standard converters it keeps for
+ * the other conversions have no state. {@link SecurePatternLayout} relies
+ * on this to share one chain between the threads that format with it.
+ */
+class SecurePatternParser extends PatternParser {
+  /** Number of entries in each name cache; must be a power of two. */
+  static final int NAME_CACHE_SIZE = 256;
+
+  // shared by the location converters of this pattern
+  private final LocationSource locations = new LocationSource();
+
+  SecurePatternParser(String pattern) {
+    super(pattern);
+  }
+
+  protected void finalizeConverter(char c) {
+    switch (c) {
+    case 'c':
+      finish(new NameConverter(modifiers(), NameConverter.CATEGORY, extractPrecisionOption(),
+                               null));
+      break;
+    case 'C':
+      finish(new NameConverter(modifiers(), NameConverter.CLASS, extractPrecisionOption(),
+                               locations));
+      break;
+    case 'M':
+      finish(new LocationConverter(modifiers(), LocationConverter.METHOD, locations));
+      break;
+    case 'L':
+      finish(new LocationConverter(modifiers(), LocationConverter.LINE, locations));
+      break;
+    case 'F':
+      finish(new LocationConverter(modifiers(), LocationConverter.FILE, locations));
+      break;
+    case 'l':
+      finish(new LocationConverter(modifiers(), LocationConverter.FULL, locations));
+      break;
+    case 't':
+      finish(new NameConverter(modifiers(), NameConverter.THREAD, 0, null));
+      break;
+    case 'd':
+      Modifiers m = modifiers();
+      finish(new DateConverter(m, createDateFormat(extractOption())));
+      break;
+    default:
+      super.finalizeConverter(c);
+    }
+  }
+
+  private void finish(PatternConverter pc) {
+    currentLiteral.setLength(0);
+    addConverter(pc);
+  }
+
+  /**
+   * The DateFormat for a %d option, chosen exactly as PatternParser does.
+   */
+  private static DateFormat createDateFormat(String option) {
+    String dateFormatStr = option == null ? AbsoluteTimeDateFormat.ISO8601_DATE_FORMAT : option;
+    if (dateFormatStr.equalsIgnoreCase(AbsoluteTimeDateFormat.ISO8601_DATE_FORMAT)) {
+      return new ISO8601DateFormat();
+    } else if (dateFormatStr.equalsIgnoreCase(AbsoluteTimeDateFormat.ABS_TIME_DATE_FORMAT)) {
+      return new AbsoluteTimeDateFormat();
+    } else if (dateFormatStr.equalsIgnoreCase(AbsoluteTimeDateFormat.DATE_AND_TIME_DATE_FORMAT)) {
+      return new DateTimeDateFormat();
+    }
+    try {
+      return new SimpleDateFormat(dateFormatStr);
+    } catch (IllegalArgumentException e) {
+      LogLog.error("Could not instantiate SimpleDateFormat with " + dateFormatStr, e);
+      return new ISO8601DateFormat();
+    }
+  }
+
+  /**
+   * Read the format modifiers of the conversion character just parsed, which
+   * is at <code>i - 1</code>: an optional '-', minimum width and '.' followed
+   * by a maximum width, between it and the preceding '%'.
+   */
+  private Modifiers modifiers() {
+    int conversion = i - 1;
+    int start = conversion;
+    while (start > 0 && "0123456789.-".indexOf(pattern.charAt(start - 1)) >= 0) {
+      start--;
+    }
+    Modifiers m = new Modifiers();
+    int j = start;
+    if (j < conversion && pattern.charAt(j) == '-') {
+      m.leftAlign = true;
+      j++;
+    }
+    int n = 0;
+    boolean digits = false;
+    while (j < conversion && Character.isDigit(pattern.charAt(j))) {
+      n = n * 10 + (pattern.charAt(j++) - '0');
+      digits = true;
+    }
+    if (digits) {
+      m.min = n;
+    }
+    if (j < conversion && pattern.charAt(j) == '.') {
+      j++;
+      n = 0;
+      digits = false;
+      while (j < conversion && Character.isDigit(pattern.charAt(j))) {
+        n = n * 10 + (pattern.charAt(j++) - '0');
+        digits = true;
+      }
+      if (digits) {
+        m.max = n;
+      }
+    }
+    return m;
+  }
+
+  /**
+   * Minimum and maximum width and alignment, as in FormattingInfo.
+   */
+  static final class Modifiers {
+    int min = -1;
+    int max = 0x7FFFFFFF;
+    boolean leftAlign;
+  }
+
+  /**
+   * Base for converters that render into the buffer directly from a char
+   * array, applying the format modifiers the way PatternConverter does.
+   */
+  abstract static class CharsConverter extends PatternConverter {
+    final int min;
+    final int max;
+    final boolean leftAlign;
+
+    CharsConverter(Modifiers m) {
+      min = m.min;
+      max = m.max;
+      leftAlign = m.leftAlign;
+    }
+
+    final void append(StringBuffer sbuf, char[] chars, int len) {
+      if (len > max) {
+        sbuf.append(chars, len - max, max);
+      } else if (len < min) {
+        if (leftAlign) {
+          sbuf.append(chars, 0, len);
+          spacePad(sbuf, min - len);
+        } else {
+          spacePad(sbuf, min - len);
+          sbuf.append(chars, 0, len);
+        }
+      } else {
+        sbuf.append(chars, 0, len);
+      }
+    }
+
+    final void append(StringBuffer sbuf, String s) {
+      int len = s.length();
+      if (len > max) {
+        sbuf.append(s, len - max, len);
+      } else if (len < min) {
+        if (leftAlign) {
+          sbuf.append(s);
+          spacePad(sbuf, min - len);
+        } else {
+          spacePad(sbuf, min - len);
+          sbuf.append(s);
+        }
+      } else {
+        sbuf.append(s);
+      }
+    }
+
+    final void appendNull(StringBuffer sbuf) {
+      if (0 < min) {
+        spacePad(sbuf, min);
+      }
+    }
+  }
+
+  /**
+   * %c, %C and %t, with a cache of rendered names. The cache is a direct
+   * mapped table of immutable entries, so it is bounded, needs no locking,
+   * and a hit costs one hash lookup.
+   */
+  static final class NameConverter extends CharsConverter {
+    static final int CATEGORY = 0;
+    static final int CLASS = 1;
+    static final int THREAD = 2;
+
+    private final int type;
+    private final int precision;
+    private final LocationSource locations;
+    private final Entry[] cache = new Entry[NAME_CACHE_SIZE];
+
+    NameConverter(Modifiers m, int type, int precision, LocationSource locations) {
+      super(m);
+      this.type = type;
+      this.precision = precision;
+      this.locations = locations;
+    }
+
+    private String name(LoggingEvent event) {
+      switch (type) {
+      case CATEGORY:
+        return event.getLoggerName();
+      case CLASS:
+        return locations.get(event).getClassName();
+      default:
+        return event.getThreadName();
+      }
+    }
+
+    public String convert(LoggingEvent event) {
+      String name = name(event);
+      return name == null ? null : new String(rendered(name));
+    }
+
+    public void format(StringBuffer sbuf, LoggingEvent event) {
+      String name = name(event);
+      if (name == null) {
+        appendNull(sbuf);
+        return;
+      }
+      char[] chars = rendered(name);
+      append(sbuf, chars, chars.length);
+    }
+
+    private char[] rendered(String name) {
+      int h = name.hashCode();
+      int slot = (h ^ (h >>> 16)) & (NAME_CACHE_SIZE - 1);
+      Entry e = cache[slot];
+      if (e != null && (e.name == name || e.name.equals(name))) {
+        return e.chars;
+      }
+      char[] chars = abbreviate(name).toCharArray();
+      cache[slot] = new Entry(name, chars);
+      return chars;
+    }
+
+    /**
+     * The rightmost <code>precision</code> components of the name, exactly as
+     * PatternParser renders it.
+     */
+    private String abbreviate(String n) {
+      if (precision <= 0) {
+        return n;
+      }
+      int len = n.length();
+      int end = len - 1;
+      for (int i = precision; i > 0; i--) {
+        end = n.lastIndexOf('.', end - 1);
+        if (end == -1) {
+          return n;
+        }
+      }
+      return n.substring(end + 1, len);
+    }
+  }
+
+  /**
+   * Finds the location of an event for the location converters of one
+   * pattern, remembering it for the other converters that format the same
+   * event. The pair is replaced as a whole, so converters formatting
+   * different events at once never see the location of the wrong one.
+   */
+  static final class LocationSource {
+    private volatile Located last;
+
+    LocationInfo get(LoggingEvent event) {
+      Located l = last;
+      if (l != null && l.event == event) {
+        return l.info;
+      }
+      String fqn = event.fqnOfCategoryClass;
+      LocationInfo info = fqn == null ? null : CallerLocator.locate(fqn);
+      if (info == null) {
+        info = event.getLocationInformation();
+      }
+      last = new Located(event, info);
+      return info;
+    }
+  }
+
+  private static final class Located {
+    final LoggingEvent event;
+    final LocationInfo info;
+
+    Located(LoggingEvent event, LocationInfo info) {
+      this.event = event;
+      this.info = info;
+    }
+  }
+
+  /**
+   * %M, %L, %F and %l, rendering the same text as the standard converters.
+   */
+  static final class LocationConverter extends CharsConverter {
+    static final int METHOD = 0;
+    static final int LINE = 1;
+    static final int FILE = 2;
+    static final int FULL = 3;
+
+    private final int type;
+    private final LocationSource locations;
+
+    LocationConverter(Modifiers m, int type, LocationSource locations) {
+      super(m);
+      this.type = type;
+      this.locations = locations;
+    }
+
+    public String convert(LoggingEvent event) {
+      LocationInfo info = locations.get(event);
+      switch (type) {
+      case METHOD:
+        return info.getMethodName();
+      case LINE:
+        return info.getLineNumber();
+      case FILE:
+        return info.getFileName();
+      default:
+        return info.fullInfo;
+      }
+    }
+
+    public void format(StringBuffer sbuf, LoggingEvent event) {
+      String s = convert(event);
+      if (s == null) {
+        appendNull(sbuf);
+      } else {
+        append(sbuf, s);
+      }
+    }
+  }
+
+  /**
+   * %d, with the text of the current second cached. When the date format
+   * shows the milliseconds as three digits at a fixed position (which is
+   * found by formatting sample times), events in the same second only
+   * overwrite those digits; when it does not show them at all, the text is
+   * reused as is. Otherwise the text is reused only for events in the same
+   * millisecond. The date format itself is unchanged, so the output is the
+   * same as the standard converter's.
+   */
+  static final class DateConverter extends CharsConverter {
+    private final DateFormat df;
+    private final Date date = new Date();
+    private boolean exactOnly;
+    private volatile CachedTime cached;
+
+    DateConverter(Modifiers m, DateFormat df) {
+      super(m);
+      this.df = df;
+    }
+
+    public String convert(LoggingEvent event) {
+      CachedTime c = cachedTime(event.getTimeStamp());
+      if (c == null) {
+        return null;
+      }
+      char[] chars = c.chars.clone();
+      c.patch(event.getTimeStamp(), chars);
+      return new String(chars);
+    }
+
+    public void format(StringBuffer sbuf, LoggingEvent event) {
+      long time = event.getTimeStamp();
+      CachedTime c = cachedTime(time);
+      if (c == null) {
+        appendNull(sbuf);
+        return;
+      }
+      char[] chars = c.chars;
+      int len = chars.length;
+      int p = c.millisStart;
+      if (p < 0) {
+        append(sbuf, chars, len);
+      } else if (min < 0 && max >= len) {
+        int ms = (int) (time - c.from);
+        sbuf.append(chars, 0, p);
+        sbuf.append((char) ('0' + ms / 100));
+        sbuf.append((char) ('0' + ms / 10 % 10));
+        sbuf.append((char) ('0' + ms % 10));
+        sbuf.append(chars, p + 3, len - p - 3);
+      } else {
+        char[] patched = chars.clone();
+        c.patch(time, patched);
+        append(sbuf, patched, len);
+      }
+    }
+
+    private CachedTime cachedTime(long time) {
+      CachedTime c = cached;
+      if (c != null && time >= c.from && time <= c.to) {
+        return c;
+      }
+      synchronized (this) {
+        c = render(time);
+      }
+      if (c != null) {
+        cached = c;
+      }
+      return c;
+    }
+
+    private CachedTime render(long time) {
+      if (!exactOnly) {
+        long second = Math.floorDiv(time, 1000) * 1000;
+        String a = format(second + 123);
+        String b = format(second + 789);
+        String z = format(second + 5);
+        if (a == null || b == null || z == null) {
+          return null;
+        }
+        if (a.equals(b) && a.equals(z)) {
+          return new CachedTime(second, second + 999, a.toCharArray(), -1);
+        }
+        int p = 0;
+        while (p < a.length() && p < b.length() && a.charAt(p) == b.charAt(p)) {
+          p++;
+        }
+        if (a.startsWith("123", p) && a.length() == b.length() && a.length() == z.length()
+            && b.equals(a.substring(0, p) + "789" + a.substring(p + 3))
+            && z.equals(a.substring(0, p) + "005" + a.substring(p + 3))) {
+          return new CachedTime(second, second + 999, a.toCharArray(), p);
+        }
+        // Milliseconds of varying width, or not shown as plain digits
+        exactOnly = true;
+      }
+      String s = format(time);
+      return s == null ? null : new CachedTime(time, time, s.toCharArray(), -1);
+    }
+
+    private String format(long time) {
+      date.setTime(time);
+      try {
+        return df.format(date);
+      } catch (Exception ex) {
+        LogLog.error("Error occured while converting date.", ex);
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Text of a date that is valid for times from <code>from</code> to
+   * <code>to</code>, with the milliseconds at <code>millisStart</code>
+   * (or -1 if they are not shown or already correct).
+   */
+  private static final class CachedTime {
+    final long from;
+    final long to;
+    final char[] chars;
+    final int millisStart;
+
+    CachedTime(long from, long to, char[] chars, int millisStart) {
+      this.from = from;
+      this.to = to;
+      this.chars = chars;
+      this.millisStart = millisStart;
+    }
+
+    void patch(long time, char[] dst) {
+      if (millisStart >= 0) {
+        int ms = (int) (time - from);
+        dst[millisStart] = (char) ('0' + ms / 100);
+        dst[millisStart + 1] = (char) ('0' + ms / 10 % 10);
+        dst[millisStart + 2] = (char) ('0' + ms % 10);
+      }
+    }
+  }
+
+  private static final class Entry {
+    final String name;
+    final char[] chars;
+
+    Entry(String name, char[] chars) {
+      this.name = name;
+      this.chars = chars;
+    }
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The fingerprints of the stack traces a {@link SecurePatternLayout} has
+ * printed in full, least recently seen first. Traces that drop out are
+ * printed in full again the next time they are seen.
+ */
+final class StackTraceCache {
+  private final LinkedHashMap<Long, Boolean> seen;
+
+  StackTraceCache(final int size) {
+    seen = new LinkedHashMap<Long, Boolean>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+        return size() > size;
+      }
+    };
+  }
+
+  /**
+   * Record a fingerprint, returning true if it was not already known.
+   */
+  synchronized boolean add(long fingerprint) {
+    return seen.put(fingerprint, Boolean.TRUE) == null;
+  }
+
+  synchronized void clear() {
+    seen.clear();
+  }
+}
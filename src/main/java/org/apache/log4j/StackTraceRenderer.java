@@ -0,0 +1,161 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Renders throwables for {@link SecurePatternLayout} straight into its
+ * buffer, rather than through a PrintWriter and an array of lines, and
+ * computes the fingerprints used to recognize repeated stack traces.
+ */
+final class StackTraceRenderer {
+  private static final String CAUSE_CAPTION = "Caused by: ";
+  private static final String SUPPRESSED_CAPTION = "Suppressed: ";
+
+  // Limit on nested causes and suppressed throwables in a fingerprint
+  private static final int MAX_NESTING = 16;
+
+  private StackTraceRenderer() {
+  }
+
+  /**
+   * Append the stack trace exactly as {@link Throwable#printStackTrace()}
+   * prints it, each line followed by {@link Layout#LINE_SEP}: frames a cause
+   * has in common with the trace that encloses it are left out and counted
+   * in a "... N more" line.
+   */
+  static void render(Throwable t, StringBuffer sbuf) {
+    Map<Throwable, Boolean> dejaVu = new IdentityHashMap<Throwable, Boolean>();
+    dejaVu.put(t, Boolean.TRUE);
+    sbuf.append(t.toString()).append(Layout.LINE_SEP);
+    StackTraceElement[] trace = t.getStackTrace();
+    for (int i = 0; i < trace.length; i++) {
+      sbuf.append("\tat ").append(trace[i].toString()).append(Layout.LINE_SEP);
+    }
+    Throwable[] suppressed = t.getSuppressed();
+    for (int i = 0; i < suppressed.length; i++) {
+      renderEnclosed(suppressed[i], trace, SUPPRESSED_CAPTION, "\t", dejaVu, sbuf);
+    }
+    Throwable cause = t.getCause();
+    if (cause != null) {
+      renderEnclosed(cause, trace, CAUSE_CAPTION, "", dejaVu, sbuf);
+    }
+  }
+
+  private static void renderEnclosed(Throwable t, StackTraceElement[] enclosingTrace,
+                                     String caption, String prefix,
+                                     Map<Throwable, Boolean> dejaVu, StringBuffer sbuf) {
+    if (dejaVu.containsKey(t)) {
+      sbuf.append(prefix).append(caption).append("[CIRCULAR REFERENCE: ").append(t.toString())
+          .append(']').append(Layout.LINE_SEP);
+      return;
+    }
+    dejaVu.put(t, Boolean.TRUE);
+    StackTraceElement[] trace = t.getStackTrace();
+    int m = trace.length - 1;
+    int n = enclosingTrace.length - 1;
+    while (m >= 0 && n >= 0 && trace[m].equals(enclosingTrace[n])) {
+      m--;
+      n--;
+    }
+    int framesInCommon = trace.length - 1 - m;
+
+    sbuf.append(prefix).append(caption).append(t.toString()).append(Layout.LINE_SEP);
+    for (int i = 0; i <= m; i++) {
+      sbuf.append(prefix).append("\tat ").append(trace[i].toString()).append(Layout.LINE_SEP);
+    }
+    if (framesInCommon != 0) {
+      sbuf.append(prefix).append("\t... ").append(framesInCommon).append(" more")
+          .append(Layout.LINE_SEP);
+    }
+    Throwable[] suppressed = t.getSuppressed();
+    for (int i = 0; i < suppressed.length; i++) {
+      renderEnclosed(suppressed[i], trace, SUPPRESSED_CAPTION, prefix + "\t", dejaVu, sbuf);
+    }
+    Throwable cause = t.getCause();
+    if (cause != null) {
+      renderEnclosed(cause, trace, CAUSE_CAPTION, prefix, dejaVu, sbuf);
+    }
+  }
+
+  /**
+   * Append the reference printed instead of a stack trace that was printed
+   * before: the first line of the throwable and of each of its causes, and
+   * the fingerprint of the full trace.
+   */
+  static void renderRepeated(Throwable t, long fingerprint, StringBuffer sbuf) {
+    sbuf.append(t.toString()).append(Layout.LINE_SEP);
+    Throwable cause = t.getCause();
+    for (int depth = 0; cause != null && cause != t && depth < MAX_NESTING; depth++) {
+      sbuf.append(CAUSE_CAPTION).append(cause.toString()).append(Layout.LINE_SEP);
+      cause = cause.getCause();
+    }
+    sbuf.append("\t[stack trace ");
+    appendFingerprint(fingerprint, sbuf);
+    sbuf.append(" repeated]").append(Layout.LINE_SEP);
+  }
+
+  /**
+   * Append the line that follows a stack trace printed in full, so that
+   * later references to it can be found.
+   */
+  static void renderFingerprint(long fingerprint, StringBuffer sbuf) {
+    sbuf.append("\t[stack trace ");
+    appendFingerprint(fingerprint, sbuf);
+    sbuf.append(']').append(Layout.LINE_SEP);
+  }
+
+  private static void appendFingerprint(long fingerprint, StringBuffer sbuf) {
+    for (int shift = 60; shift >= 0; shift -= 4) {
+      sbuf.append(Character.forDigit((int) (fingerprint >>> shift) & 0xF, 16));
+    }
+  }
+
+  /**
+   * A hash of the classes and stack frames of a throwable, its causes and
+   * the throwables suppressed by them. Messages are not included, so
+   * failures that differ only in their messages have the same fingerprint.
+   */
+  static long fingerprint(Throwable t) {
+    return fingerprint(t, 0x9E3779B97F4A7C15L, 0);
+  }
+
+  private static long fingerprint(Throwable t, long h, int depth) {
+    h = mix(h, t.getClass().getName().hashCode());
+    StackTraceElement[] trace = t.getStackTrace();
+    h = mix(h, trace.length);
+    for (int i = 0; i < trace.length; i++) {
+      h = mix(h, trace[i].hashCode());
+    }
+    if (depth < MAX_NESTING) {
+      Throwable[] suppressed = t.getSuppressed();
+      for (int i = 0; i < suppressed.length; i++) {
+        h = fingerprint(suppressed[i], mix(h, 1), depth + 1);
+      }
+      Throwable cause = t.getCause();
+      if (cause != null && cause != t) {
+        h = fingerprint(cause, mix(h, 2), depth + 1);
+      }
+    }
+    return h;
+  }
+
+  private static long mix(long h, int v) {
+    h = (h ^ v) * 0xFF51AFD7ED558CCDL;
+    return h ^ (h >>> 32);
+  }
+}
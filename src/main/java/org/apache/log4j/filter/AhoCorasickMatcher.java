@@ -0,0 +1,173 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.log4j.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ Aho-Corasick automaton for finding whether a string contains any of a
+ list of needles. The automaton is compiled into a complete transition
+ table over the characters that occur in the needles, so scanning a
+ string is a single pass with one table lookup per character, no matter
+ how many needles there are. Characters that do not occur in any needle
+ all share one column of the table.
+
+ <p>Instances are immutable and may be shared between threads.
+ */
+final class AhoCorasickMatcher {
+  private final String[] needles;
+
+  // Characters occurring in the needles: a direct map for Latin-1, and a
+  // sorted array (searched with binary search) for everything else
+  private final int[] latinColumn = new int[256];
+  private final char[] otherChars;
+  private final int[] otherColumns;
+  private final int columns;
+
+  // transitions[state * columns + column] is the next state
+  private final int[] transitions;
+
+  // Index of a needle ending at each state (including via suffixes), or -1
+  private final int[] output;
+
+  AhoCorasickMatcher(List<String> needleList) {
+    List<String> nonEmpty = new ArrayList<String>();
+    for (String n : needleList) {
+      if (n != null && n.length() > 0) {
+        nonEmpty.add(n);
+      }
+    }
+    needles = nonEmpty.toArray(new String[nonEmpty.size()]);
+
+    // Assign a column to each distinct character; column 0 is "anything else"
+    char[] other = new char[0];
+    int nextColumn = 1;
+    for (String n : needles) {
+      for (int i = 0; i < n.length(); i++) {
+        char c = n.charAt(i);
+        if (c < 256) {
+          if (latinColumn[c] == 0) {
+            latinColumn[c] = nextColumn++;
+          }
+        } else if (Arrays.binarySearch(other, c) < 0) {
+          other = Arrays.copyOf(other, other.length + 1);
+          other[other.length - 1] = c;
+          Arrays.sort(other);
+        }
+      }
+    }
+    otherChars = other;
+    otherColumns = new int[other.length];
+    for (int i = 0; i < other.length; i++) {
+      otherColumns[i] = nextColumn++;
+    }
+    columns = nextColumn;
+
+    // Build the trie, with -1 for missing transitions
+    int maxStates = 1;
+    for (String n : needles) {
+      maxStates += n.length();
+    }
+    int[] trie = new int[maxStates * columns];
+    Arrays.fill(trie, -1);
+    int[] out = new int[maxStates];
+    Arrays.fill(out, -1);
+    int states = 1;
+    for (int k = 0; k < needles.length; k++) {
+      String n = needles[k];
+      int s = 0;
+      for (int i = 0; i < n.length(); i++) {
+        int col = column(n.charAt(i));
+        if (trie[s * columns + col] == -1) {
+          trie[s * columns + col] = states++;
+        }
+        s = trie[s * columns + col];
+      }
+      if (out[s] == -1) {
+        out[s] = k;
+      }
+    }
+
+    // Breadth first, fill in failure transitions so the table is complete
+    int[] fail = new int[states];
+    int[] queue = new int[states];
+    int qHead = 0;
+    int qTail = 0;
+    for (int col = 0; col < columns; col++) {
+      int next = trie[col];
+      if (next == -1) {
+        trie[col] = 0;
+      } else {
+        fail[next] = 0;
+        queue[qTail++] = next;
+      }
+    }
+    while (qHead < qTail) {
+      int s = queue[qHead++];
+      if (out[s] == -1) {
+        out[s] = out[fail[s]];
+      }
+      for (int col = 0; col < columns; col++) {
+        int next = trie[s * columns + col];
+        if (next == -1) {
+          trie[s * columns + col] = trie[fail[s] * columns + col];
+        } else {
+          fail[next] = trie[fail[s] * columns + col];
+          queue[qTail++] = next;
+        }
+      }
+    }
+
+    transitions = Arrays.copyOf(trie, states * columns);
+    output = Arrays.copyOf(out, states);
+  }
+
+  private int column(char c) {
+    if (c < 256) {
+      return latinColumn[c];
+    }
+    int i = Arrays.binarySearch(otherChars, c);
+    return i < 0 ? 0 : otherColumns[i];
+  }
+
+  /**
+   True if there are no (non-empty) needles, in which case nothing matches. */
+  boolean isEmpty() {
+    return needles.length == 0;
+  }
+
+  /**
+   Returns the first needle (by end position) contained in the text, or
+   null if none of them is. */
+  String find(CharSequence text) {
+    if (needles.length == 0) {
+      return null;
+    }
+    int s = 0;
+    int len = text.length();
+    for (int i = 0; i < len; i++) {
+      s = transitions[s * columns + column(text.charAt(i))];
+      int k = output[s];
+      if (k != -1) {
+        return needles[k];
+      }
+    }
+    return null;
+  }
+}
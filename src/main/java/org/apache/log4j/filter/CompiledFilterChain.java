@@ -0,0 +1,286 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.log4j.filter;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.log4j.AppenderFilters;
+import org.apache.log4j.spi.Filter;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.apache.log4j.xml.UnrecognizedElementHandler;
+import org.w3c.dom.Element;
+
+
+/**
+ The CompiledFilterChain holds a chain of filters and decides for
+ all of them at once, the same way the appender would have walked
+ them. When {@link #activateOptions()} is called the chain is
+ compiled into a flat table of decision steps:
+
+ <ul>
+ <li>{@link MatchFilterBase} filters that cannot match (misconfigured)
+ or that return NEUTRAL either way are dropped.</li>
+ <li>A filter that never returns NEUTRAL ends the chain, so any filters
+ after it are dropped.</li>
+ <li>Consecutive {@link MDCMatchFilter} filters on the same key, with
+ the same <b>ExactMatch</b> setting and the same chain policy (a
+ non-neutral value on match, NEUTRAL on no match), are merged into a
+ single step: a hash set lookup for exact matches, or one Aho-Corasick
+ scan for "contains" matches. Filters with <b>Metrics</b> enabled are
+ not merged, so their counts stay accurate.</li>
+ </ul>
+
+ <p>Other filters are kept as they are. The result is the same decision
+ the original chain would make, for a fraction of the cost when long
+ chains of MDC filters are used for routing.
+
+ <p>Filters are added with {@link #addFilter(Filter)}, or in an XML
+ configuration by nesting <code>filter</code> elements:
+
+ <pre>
+ &lt;filter class="org.apache.log4j.filter.CompiledFilterChain"&gt;
+   &lt;filter class="org.apache.log4j.filter.MDCMatchFilter"&gt;
+     &lt;param name="KeyToMatch" value="tenant"/&gt;
+     &lt;param name="ValueToMatch" value="acme"/&gt;
+     &lt;param name="ExactMatch" value="true"/&gt;
+     &lt;param name="ChainPolicy" value="AcceptOnMatch"/&gt;
+   &lt;/filter&gt;
+   ...
+ &lt;/filter&gt;
+ </pre>
+
+ <p>The filters are examined when the chain is compiled, so if any of
+ them is reconfigured afterwards activateOptions() must be called
+ again. If none of the steps decides, NEUTRAL is returned so filters
+ after this one are consulted.
+ */
+public class CompiledFilterChain extends Filter implements UnrecognizedElementHandler, Closeable {
+  /**
+   The filters as configured. */
+  private final List<Filter> filters = new ArrayList<Filter>();
+
+  /**
+   The compiled chain. */
+  private volatile Step[] steps = new Step[0];
+
+  /**
+   Adds a filter to the end of the chain. The chain must be
+   (re)activated afterwards.
+
+   @param filter The filter to add. */
+  public void addFilter(Filter filter) {
+    filters.add(filter);
+  }
+
+  /**
+   Returns the number of steps in the compiled chain.
+
+   @return int The number of steps. */
+  public int getCompiledLength() {
+    return steps.length;
+  }
+
+  /**
+   Handles nested <code>filter</code> elements in XML configurations. */
+  public boolean parseUnrecognizedElement(Element element, Properties props) throws Exception {
+    if ("filter".equals(element.getTagName())) {
+      Filter filter = (Filter) DOMConfigurator.parseElement(element, props, Filter.class);
+      if (filter != null) {
+        filter.activateOptions();
+        addFilter(filter);
+      }
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   Returns true if the filter is in the chain, or in a chain nested in
+   it. */
+  boolean contains(Filter filter) {
+    for (Filter f : filters) {
+      if (f == filter || (f instanceof CompiledFilterChain && ((CompiledFilterChain) f).contains(filter))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   Closes the filters of the chain (see {@link MatchFilterBase#close()}). */
+  public void close() {
+    for (Filter f : filters) {
+      AppenderFilters.close(f);
+    }
+  }
+
+  /**
+   Compiles the chain. */
+  public void activateOptions() {
+    List<Step> compiled = new ArrayList<Step>();
+
+    for (Filter f : filters) {
+      if (f instanceof MatchFilterBase) {
+        MatchFilterBase m = (MatchFilterBase) f;
+        if (!m.canMatch() || (m.matchReturnValue == NEUTRAL && m.noMatchReturnValue == NEUTRAL)) {
+          continue;
+        }
+
+        if (isMergeable(m)) {
+          MDCMatchFilter mdc = (MDCMatchFilter) m;
+          Step last = compiled.isEmpty() ? null : compiled.get(compiled.size() - 1);
+          MDCStep step;
+          if (last instanceof MDCStep && ((MDCStep) last).accepts(mdc)) {
+            step = (MDCStep) last;
+          } else {
+            step = new MDCStep(mdc);
+            compiled.add(step);
+          }
+          step.add(mdc.valueToMatch);
+          continue;
+        }
+
+        compiled.add(new FilterStep(f));
+        if (m.matchReturnValue != NEUTRAL && m.noMatchReturnValue != NEUTRAL) {
+          // Everything after this filter is unreachable
+          break;
+        }
+      } else {
+        compiled.add(new FilterStep(f));
+      }
+    }
+
+    for (Step step : compiled) {
+      step.compile();
+    }
+    steps = compiled.toArray(new Step[compiled.size()]);
+  }
+
+  private static boolean isMergeable(MatchFilterBase m) {
+    // Filters with metrics are kept separate so their counts stay accurate
+    if (m.getClass() != MDCMatchFilter.class || m.noMatchReturnValue != NEUTRAL
+        || m.getMatchMetrics() != null) {
+      return false;
+    }
+    MDCMatchFilter mdc = (MDCMatchFilter) m;
+    return mdc.containsAnyOf == null && mdc.containsAnyOfFile == null;
+  }
+
+  /**
+   Returns the decision of the first step that does not return NEUTRAL,
+   or NEUTRAL if none of them decides.
+
+   @param event The event to filter.
+   @return int A Filter value to indicate what do with event. */
+  public int decide(LoggingEvent event) {
+    Step[] s = steps;
+    for (int i = 0; i < s.length; i++) {
+      int decision = s[i].decide(event);
+      if (decision != NEUTRAL) {
+        return decision;
+      }
+    }
+    return NEUTRAL;
+  }
+
+  /**
+   One entry in the compiled chain. */
+  private abstract static class Step {
+    abstract int decide(LoggingEvent event);
+
+    void compile() {
+      // nothing by default
+    }
+  }
+
+  /**
+   A filter that is used as is. */
+  private static final class FilterStep extends Step {
+    private final Filter filter;
+
+    FilterStep(Filter filter) {
+      this.filter = filter;
+    }
+
+    int decide(LoggingEvent event) {
+      return filter.decide(event);
+    }
+  }
+
+  /**
+   Several MDCMatchFilters on the same key merged into one lookup. */
+  private static final class MDCStep extends Step {
+    private final String key;
+    private final boolean exact;
+    private final int matchReturnValue;
+    private final List<String> values = new ArrayList<String>();
+    private boolean matchesNull;
+    private boolean matchesAnyValue;
+    private Set<String> valueSet;
+    private AhoCorasickMatcher matcher;
+
+    MDCStep(MDCMatchFilter filter) {
+      key = filter.keyToMatch;
+      exact = filter.exactMatch;
+      matchReturnValue = filter.matchReturnValue;
+    }
+
+    boolean accepts(MDCMatchFilter filter) {
+      return key.equals(filter.keyToMatch) && exact == filter.exactMatch
+          && matchReturnValue == filter.matchReturnValue;
+    }
+
+    void add(String value) {
+      if (value == null) {
+        // A null value to match only matches when the key is missing
+        matchesNull = true;
+      } else if (!exact && value.length() == 0) {
+        matchesAnyValue = true;
+      } else {
+        values.add(value);
+      }
+    }
+
+    void compile() {
+      if (exact) {
+        valueSet = new HashSet<String>(values);
+      } else {
+        matcher = new AhoCorasickMatcher(values);
+      }
+    }
+
+    int decide(LoggingEvent event) {
+      Object mdcObject = MatchFilterBase.getMDCValue(event, key);
+      if (mdcObject == null) {
+        return matchesNull ? matchReturnValue : NEUTRAL;
+      }
+      String mdcValue = mdcObject.toString();
+      boolean match;
+      if (exact) {
+        match = valueSet.contains(mdcValue);
+      } else {
+        match = matchesAnyValue || matcher.find(mdcValue) != null;
+      }
+      return match ? matchReturnValue : NEUTRAL;
+    }
+  }
+}
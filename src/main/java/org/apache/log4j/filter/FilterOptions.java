@@ -0,0 +1,74 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.log4j.filter;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.helpers.LogLog;
+
+
+/**
+ Helpers for parsing list valued filter options.
+ */
+final class FilterOptions {
+  private FilterOptions() {
+    // static methods only
+  }
+
+  /**
+   Splits a comma separated option value, trimming each item and
+   dropping empty ones. A null value gives an empty list. */
+  static List<String> split(String list) {
+    List<String> result = new ArrayList<String>();
+    if (list != null) {
+      for (String item : list.split(",")) {
+        item = item.trim();
+        if (item.length() > 0) {
+          result.add(item);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   Adds the trimmed lines of a UTF-8 file to the list, skipping blank
+   lines and lines beginning with '#'. Errors are reported with LogLog
+   and leave the list as it was read so far. */
+  static void readLines(String file, String optionName, List<String> result) {
+    try {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+      try {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          line = line.trim();
+          if (line.length() > 0 && !line.startsWith("#")) {
+            result.add(line);
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    } catch (IOException e) {
+      LogLog.error("Unable to read " + optionName + " " + file, e);
+    }
+  }
+}
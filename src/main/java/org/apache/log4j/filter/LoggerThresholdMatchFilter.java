@@ -0,0 +1,350 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.log4j.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.spi.LoggingEvent;
+
+
+/**
+ The LoggerThresholdMatchFilter matches events whose level is at least
+ the threshold configured for their logger, so that one filter can
+ stand in for a long chain of per-package filters when routing many
+ packages to different appenders.
+
+ <p>The <b>Rules</b> option is a comma separated list of
+ prefix=level pairs, such as
+ <code>com.acme=INFO,com.acme.db=WARN,org.hibernate=ERROR</code>,
+ and the <b>RulesFile</b> option names a UTF-8 file with one such
+ pair per line (ignoring blank lines and lines beginning with '#').
+ A prefix applies to the logger of that name and to its descendants,
+ so <code>com.acme</code> applies to <code>com.acme.web</code> but not
+ to <code>com.acmeco</code>, and the longest prefix that applies
+ wins. Loggers no rule applies to use the <b>DefaultThreshold</b>
+ level, or do not match if it is not set.
+
+ <pre>
+ &lt;filter class="org.apache.log4j.filter.LoggerThresholdMatchFilter"&gt;
+   &lt;param name="Rules" value="com.acme=INFO,com.acme.db=WARN"/&gt;
+   &lt;param name="DefaultThreshold" value="ERROR"/&gt;
+ &lt;/filter&gt;
+ </pre>
+
+ <p>The rules are compiled, when {@link #activateOptions()} is called,
+ into a trie with one level per dot separated segment of the prefixes,
+ which is walked without creating any objects. The threshold found for
+ each logger name is then cached (for up to 10000 names at a time), so
+ an event usually costs one hash table lookup however many rules
+ there are.
+
+ <p>{@link #replaceRules(String)} swaps in a new set of rules at
+ runtime. Each event sees either the old or the new rules, never a
+ mixture of the two, and deciding never waits for the change.
+
+ <p>For more information about how the logging event will be
+ passed to the appender for reporting, please see
+ the {@link org.apache.log4j.filter.MatchFilterBase} class.
+ */
+public class LoggerThresholdMatchFilter extends MatchFilterBase {
+  /**
+   Most logger names whose threshold is cached. */
+  private static final int MAX_CACHED_LOGGERS = 10000;
+
+  /**
+   The rules as configured. */
+  String rules;
+
+  /**
+   File of rules, one per line. */
+  String rulesFile;
+
+  /**
+   Threshold of loggers no rule applies to, or null. */
+  Level defaultThreshold;
+
+  /**
+   The compiled rules in effect. */
+  private volatile Table table;
+
+  /**
+   Sets the rules, as a comma separated list of logger prefix=level
+   pairs.
+
+   @param rules The rules. */
+  public void setRules(String rules) {
+    this.rules = rules;
+  }
+
+  /**
+   Gets the rules.
+
+   @return String The rules. */
+  public String getRules() {
+    return rules;
+  }
+
+  /**
+   Sets the name of a file containing rules, one per line.
+
+   @param file The file name. */
+  public void setRulesFile(String file) {
+    rulesFile = file;
+  }
+
+  /**
+   Gets the name of the file containing rules.
+
+   @return String The file name. */
+  public String getRulesFile() {
+    return rulesFile;
+  }
+
+  /**
+   Sets the threshold of loggers that no rule applies to.
+
+   @param level The name of the level. */
+  public void setDefaultThreshold(String level) {
+    defaultThreshold = level == null ? null : Level.toLevel(level, null);
+    if (level != null && defaultThreshold == null) {
+      LogLog.error("LoggerThresholdMatchFilter: invalid DefaultThreshold: " + level);
+    }
+  }
+
+  /**
+   Gets the threshold of loggers that no rule applies to.
+
+   @return String The name of the level, or null. */
+  public String getDefaultThreshold() {
+    return defaultThreshold == null ? null : defaultThreshold.toString();
+  }
+
+  /**
+   Returns the number of logger names whose threshold is cached.
+
+   @return int The number of cached names. */
+  public int getCachedLoggerCount() {
+    Table t = table;
+    return t == null ? 0 : t.cache.size();
+  }
+
+  /**
+   Compiles the <b>Rules</b> and <b>RulesFile</b> rules. */
+  public void activateOptions() {
+    super.activateOptions();
+    table = compile(rules, rulesFile, defaultThreshold);
+  }
+
+  /**
+   Replaces the <b>Rules</b> option and the rules in effect. Events
+   being decided while this is called are decided with either the old
+   or the new rules. Rules from <b>RulesFile</b> are read again.
+
+   @param rules The new rules. */
+  public void replaceRules(String rules) {
+    Table t = compile(rules, rulesFile, defaultThreshold);
+    this.rules = rules;
+    table = t;
+  }
+
+  private static Table compile(String rules, String rulesFile, Level defaultThreshold) {
+    List<String> entries = FilterOptions.split(rules);
+    if (rulesFile != null) {
+      FilterOptions.readLines(rulesFile, "RulesFile", entries);
+    }
+    Node root = new Node();
+    for (String entry : entries) {
+      int eq = entry.lastIndexOf('=');
+      Level level = eq > 0 ? Level.toLevel(entry.substring(eq + 1).trim(), null) : null;
+      if (level == null) {
+        LogLog.error("LoggerThresholdMatchFilter: invalid rule: " + entry);
+        continue;
+      }
+      String prefix = entry.substring(0, eq).trim();
+      if (prefix.length() == 0) {
+        LogLog.error("LoggerThresholdMatchFilter: invalid rule: " + entry);
+        continue;
+      }
+      root.add(prefix, level);
+    }
+    root.compact();
+    return new Table(root, defaultThreshold);
+  }
+
+  /**
+   Returns true if the filter has been activated.
+
+   @return boolean True if a match can be performed. */
+  protected boolean canMatch() {
+    return table != null;
+  }
+
+  /**
+   Returns true if the level of the event is at least the threshold
+   for its logger.
+
+   @param event The logging event to match against.
+   @return boolean True if matches criteria. */
+  protected boolean match(LoggingEvent event) {
+    Table t = table;
+    if (t == null) {
+      return false;
+    }
+    Level threshold = t.threshold(event.getLoggerName());
+    return threshold != Table.NONE && event.getLevel().isGreaterOrEqual(threshold);
+  }
+
+  /**
+   The compiled rules, and the thresholds found so far for logger
+   names. */
+  private static final class Table {
+    /**
+     Cached for loggers with no threshold (ConcurrentHashMap does not
+     allow null values). */
+    static final Level NONE = new Level(Integer.MAX_VALUE, "NONE", 0) {
+      private static final long serialVersionUID = 1L;
+    };
+
+    final Node root;
+    final Level defaultThreshold;
+    final ConcurrentHashMap<String, Level> cache = new ConcurrentHashMap<String, Level>();
+
+    Table(Node root, Level defaultThreshold) {
+      this.root = root;
+      this.defaultThreshold = defaultThreshold == null ? NONE : defaultThreshold;
+    }
+
+    Level threshold(String loggerName) {
+      Level level = cache.get(loggerName);
+      if (level == null) {
+        level = root.find(loggerName);
+        if (level == null) {
+          level = defaultThreshold;
+        }
+        if (cache.size() >= MAX_CACHED_LOGGERS) {
+          // far more names than a program has loggers: start again
+          cache.clear();
+        }
+        cache.put(loggerName, level);
+      }
+      return level;
+    }
+  }
+
+  /**
+   A node of the trie: the threshold of the prefix ending here, if any,
+   and the nodes of the segments that may follow it. Once compacted the
+   children are held in an open addressed hash table, keyed by segment
+   and probed with the hash of a region of the logger name, so lookups
+   need not create substrings. */
+  private static final class Node {
+    Level level;
+    private List<String> segments = new ArrayList<String>();
+    private List<Node> nodes = new ArrayList<Node>();
+    private String[] keys = new String[0];
+    private Node[] children = new Node[0];
+
+    void add(String prefix, Level threshold) {
+      Node node = this;
+      int start = 0;
+      while (true) {
+        int dot = prefix.indexOf('.', start);
+        String segment = prefix.substring(start, dot < 0 ? prefix.length() : dot);
+        int i = node.segments.indexOf(segment);
+        Node child;
+        if (i < 0) {
+          child = new Node();
+          node.segments.add(segment);
+          node.nodes.add(child);
+        } else {
+          child = node.nodes.get(i);
+        }
+        node = child;
+        if (dot < 0) {
+          break;
+        }
+        start = dot + 1;
+      }
+      node.level = threshold;
+    }
+
+    void compact() {
+      int n = segments.size();
+      if (n > 0) {
+        int size = Integer.highestOneBit(n * 2 - 1) << 1;
+        keys = new String[size];
+        children = new Node[size];
+        for (int i = 0; i < n; i++) {
+          String key = segments.get(i);
+          int slot = key.hashCode() & (size - 1);
+          while (keys[slot] != null) {
+            slot = (slot + 1) & (size - 1);
+          }
+          keys[slot] = key;
+          children[slot] = nodes.get(i);
+          nodes.get(i).compact();
+        }
+      }
+      segments = null;
+      nodes = null;
+    }
+
+    /**
+     Returns the threshold of the longest prefix of the name that has
+     one, or null. */
+    Level find(String name) {
+      Level found = level;
+      Node node = this;
+      int start = 0;
+      int n = name.length();
+      while (node.keys.length > 0) {
+        int end = start;
+        int h = 0;
+        while (end < n && name.charAt(end) != '.') {
+          h = 31 * h + name.charAt(end);
+          end++;
+        }
+        node = node.child(name, start, end - start, h);
+        if (node == null) {
+          break;
+        }
+        if (node.level != null) {
+          found = node.level;
+        }
+        if (end == n) {
+          break;
+        }
+        start = end + 1;
+      }
+      return found;
+    }
+
+    private Node child(String name, int start, int length, int hash) {
+      int mask = keys.length - 1;
+      for (int slot = hash & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+        String key = keys[slot];
+        if (key.length() == length && name.regionMatches(start, key, 0, length)) {
+          return children[slot];
+        }
+      }
+      return null;
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.log4j.filter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ A bounded cache that evicts the least recently used entries, safe
+ for concurrent use. The entries are spread by hash over segments that
+ are each an access ordered LinkedHashMap with its own lock, so
+ threads working on different keys rarely wait for each other, and
+ each segment evicts its own least recently used entry when full.
+ */
+final class LruCache<K, V> {
+  private static final int SEGMENTS = 16;
+
+  private final Segment<K, V>[] segments;
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  LruCache(int capacity) {
+    int n = Math.min(SEGMENTS, Integer.highestOneBit(Math.max(capacity, 1)));
+    segments = new Segment[n];
+    int perSegment = (capacity + n - 1) / n;
+    for (int i = 0; i < n; i++) {
+      segments[i] = new Segment<K, V>(perSegment);
+    }
+  }
+
+  private Segment<K, V> segment(Object key) {
+    int h = key.hashCode();
+    h ^= (h >>> 16);
+    return segments[h & (segments.length - 1)];
+  }
+
+  /**
+   Returns the value of a key, or null if it is not cached. */
+  V get(K key) {
+    Segment<K, V> s = segment(key);
+    synchronized (s) {
+      return s.get(key);
+    }
+  }
+
+  void put(K key, V value) {
+    Segment<K, V> s = segment(key);
+    synchronized (s) {
+      s.put(key, value);
+    }
+  }
+
+  int size() {
+    int size = 0;
+    for (Segment<K, V> s : segments) {
+      synchronized (s) {
+        size += s.size();
+      }
+    }
+    return size;
+  }
+
+  private static final class Segment<K, V> extends LinkedHashMap<K, V> {
+    private static final long serialVersionUID = 1L;
+
+    private final int capacity;
+
+    Segment(int capacity) {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+    }
+
+    protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+      return size() > capacity;
+    }
+  }
+}
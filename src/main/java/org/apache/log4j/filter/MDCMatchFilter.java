@@ -16,7 +16,8 @@
 
 package org.apache.log4j.filter;
 
-import org.apache.log4j.MDC;
+import java.util.List;
+
 import org.apache.log4j.spi.LoggingEvent;
 
 
@@ -42,6 +43,21 @@
  MDC value. The <b>ExactMatch</b> property is set to
  <code>false</code> by default.
 
+ <p>Alternatively, the options <b>ContainsAnyOf</b> (a comma
+ separated list) and <b>ContainsAnyOfFile</b> (a UTF-8 file with one
+ value per line, ignoring blank lines and lines beginning with '#')
+ configure a list of values, and a match will occur if any of them is
+ contained anywhere within the MDC value. The list is compiled into an
+ Aho-Corasick automaton when {@link #activateOptions()} is called, so
+ the MDC value is scanned once however many values there are. When
+ this list is configured <b>ValueToMatch</b> and <b>ExactMatch</b> are
+ ignored. If the <b>MatchedValueProperty</b> option is set, the value
+ that matched is stored in the event as a property of that name.
+
+ <p>The MDC value is read from the copy of the MDC carried by the
+ logging event, so the filter gives the same answer whichever thread
+ it runs on. See {@link MatchFilterBase#getMDCValue} for details.
+
  <p>Note that by default the value to match is set to
  <code>null</code> and will only match if the key is not contained
  or the value is null in the MDC.
@@ -67,6 +83,22 @@ public class MDCMatchFilter extends MatchFilterBase {
    Do we look for an exact match or just a "contains" match? */
   boolean exactMatch = false;
 
+  /**
+   Comma separated values, any of which may be contained in the MDC value. */
+  String containsAnyOf;
+
+  /**
+   File of values, any of which may be contained in the MDC value. */
+  String containsAnyOfFile;
+
+  /**
+   Event property to record the value that matched in, if any. */
+  String matchedValueProperty;
+
+  /**
+   Compiled form of the ContainsAnyOf values, or null if not configured. */
+  private volatile AhoCorasickMatcher anyOfMatcher;
+
   /**
    Sets the key to match in the MDC of the LoggingEvent.
 
@@ -118,6 +150,75 @@ public boolean getExactMatch() {
     return exactMatch;
   }
 
+  /**
+   Sets a comma separated list of values, any of which may be contained
+   in the MDC value for a match.
+
+   @param values The values to look for. */
+  public void setContainsAnyOf(String values) {
+    containsAnyOf = values;
+  }
+
+  /**
+   Gets the comma separated list of values to look for.
+
+   @return String The values to look for. */
+  public String getContainsAnyOf() {
+    return containsAnyOf;
+  }
+
+  /**
+   Sets the name of a file containing values, one per line, any of which
+   may be contained in the MDC value for a match.
+
+   @param file The file name. */
+  public void setContainsAnyOfFile(String file) {
+    containsAnyOfFile = file;
+  }
+
+  /**
+   Gets the name of the file containing values to look for.
+
+   @return String The file name. */
+  public String getContainsAnyOfFile() {
+    return containsAnyOfFile;
+  }
+
+  /**
+   Sets the name of an event property that will be set to the value
+   that matched, when using <b>ContainsAnyOf</b>.
+
+   @param property The property name. */
+  public void setMatchedValueProperty(String property) {
+    matchedValueProperty = property;
+  }
+
+  /**
+   Gets the name of the event property the matched value is stored in.
+
+   @return String The property name. */
+  public String getMatchedValueProperty() {
+    return matchedValueProperty;
+  }
+
+  /**
+   Compiles the <b>ContainsAnyOf</b> and <b>ContainsAnyOfFile</b>
+   values, if either is configured. */
+  public void activateOptions() {
+    super.activateOptions();
+
+    List<String> values = FilterOptions.split(containsAnyOf);
+    if (containsAnyOfFile != null) {
+      FilterOptions.readLines(containsAnyOfFile, "ContainsAnyOfFile", values);
+    }
+
+    if (containsAnyOf == null && containsAnyOfFile == null) {
+      anyOfMatcher = null;
+    } else {
+      anyOfMatcher = new AhoCorasickMatcher(values);
+    }
+  }
+
   /**
    Returns true if a key to match has been configured.
 
@@ -137,10 +238,9 @@ protected boolean canMatch() {
    @param event The logging event to match against.
    @return boolean True if matches criteria. */
   protected boolean match(LoggingEvent event) {
-    // get the mdc value for the key from the event
-    // use the toString() value of the value object
-    //Object mdcObject = event.getMDC(keyToMatch); //removed in Log4j-1.3
-    Object mdcObject = MDC.get(keyToMatch);
+    // get the mdc value for the key from the event's copy of the MDC
+    // (not the current thread's), and use the toString() value of it
+    Object mdcObject = getMDCValue(event, keyToMatch);
     String mdcValue;
 
     if (mdcObject != null) {
@@ -150,6 +250,18 @@ protected boolean match(LoggingEvent event) {
     }
 
     // check for a match
+    AhoCorasickMatcher matcher = anyOfMatcher;
+    if (matcher != null) {
+      if (mdcValue == null) {
+        return false;
+      }
+      String found = matcher.find(mdcValue);
+      if (found != null && matchedValueProperty != null) {
+        event.setProperty(matchedValueProperty, found);
+      }
+      return (found != null);
+    }
+
     if (mdcValue == null) {
       return (valueToMatch == null);
     } else {
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.log4j.filter;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.spi.LoggingEvent;
+
+
+/**
+ The MDCRegexMatchFilter matches a regular expression against the
+ value of a configured key in the MDC of a logging event.
+
+ <p>The filter admits the options <b>KeyToMatch</b>,
+ <b>RegexToMatch</b>, <b>Find</b> and <b>CacheSize</b>. Both
+ <b>KeyToMatch</b> and <b>RegexToMatch</b> must be set before this
+ filter can function properly. When <b>Find</b> is <code>false</code>
+ (the default) the whole MDC value must match the expression;
+ otherwise a match anywhere in the value is enough, and the
+ expression may begin with '^' to anchor it at the start. An event
+ whose MDC does not contain the key does not match.
+
+ <p>The expression is compiled once, when {@link #activateOptions()}
+ is called. If it begins with literal text that every match must
+ start with (such as <code>/api/</code> in
+ <code>/api/v[0-9]+/users/.*</code>), values that do not start with
+ it are rejected without running the expression. The results for
+ recent values (up to <b>CacheSize</b>, 1024 by default, or none if
+ 0) are kept, since the same values tend to come up again and again;
+ values longer than 256 characters are not cached.
+
+ <pre>
+ &lt;filter class="org.apache.log4j.filter.MDCRegexMatchFilter"&gt;
+   &lt;param name="KeyToMatch" value="path"/&gt;
+   &lt;param name="RegexToMatch" value="/api/v[0-9]+/admin/.*"/&gt;
+   &lt;param name="ChainPolicy" value="DenyOnMatch"/&gt;
+ &lt;/filter&gt;
+ </pre>
+
+ <p>The MDC value is read from the copy of the MDC carried by the
+ logging event, so the filter gives the same answer whichever thread
+ it runs on. See {@link MatchFilterBase#getMDCValue} for details.
+
+ <p>For more information about how the logging event will be
+ passed to the appender for reporting, please see
+ the {@link org.apache.log4j.filter.MatchFilterBase} class.
+ */
+public class MDCRegexMatchFilter extends MatchFilterBase {
+  /**
+   Longest value whose result is cached. */
+  private static final int MAX_CACHED_LENGTH = 256;
+
+  /**
+   The key to match in the MDC of the LoggingEvent. */
+  String keyToMatch;
+
+  /**
+   The regular expression to match against the MDC value. */
+  String regexToMatch;
+
+  /**
+   Do we look for a match anywhere, or of the whole value? */
+  boolean find = false;
+
+  /**
+   Number of results to cache. */
+  int cacheSize = 1024;
+
+  /**
+   The compiled expression, or null if not configured. */
+  private volatile Compiled compiled;
+
+  /**
+   Sets the key to match in the MDC of the LoggingEvent.
+
+   @param key The key that will be matched. */
+  public void setKeyToMatch(String key) {
+    keyToMatch = key;
+  }
+
+  /**
+   Gets the key to match in the MDC of the LoggingEvent.
+
+   @return String The key that will be matched. */
+  public String getKeyToMatch() {
+    return keyToMatch;
+  }
+
+  /**
+   Sets the regular expression to match against the MDC value.
+
+   @param regex The regular expression. */
+  public void setRegexToMatch(String regex) {
+    regexToMatch = regex;
+  }
+
+  /**
+   Gets the regular expression to match against the MDC value.
+
+   @return String The regular expression. */
+  public String getRegexToMatch() {
+    return regexToMatch;
+  }
+
+  /**
+   Set to true if the expression may match anywhere in the MDC value,
+   false if it must match the whole value. Default is false.
+
+   @param find True to look for a match anywhere. */
+  public void setFind(boolean find) {
+    this.find = find;
+  }
+
+  /**
+   Returns true if the expression may match anywhere in the MDC value.
+
+   @return boolean True to look for a match anywhere. */
+  public boolean getFind() {
+    return find;
+  }
+
+  /**
+   Sets the number of recent MDC values whose result is kept, or 0 to
+   keep none.
+
+   @param cacheSize The number of results to cache. */
+  public void setCacheSize(int cacheSize) {
+    this.cacheSize = cacheSize;
+  }
+
+  /**
+   Gets the number of recent MDC values whose result is kept.
+
+   @return int The number of results to cache. */
+  public int getCacheSize() {
+    return cacheSize;
+  }
+
+  /**
+   Compiles the expression, and empties the cache. */
+  public void activateOptions() {
+    super.activateOptions();
+
+    if (regexToMatch == null) {
+      compiled = null;
+      return;
+    }
+    try {
+      compiled = new Compiled(regexToMatch, find, cacheSize);
+    } catch (PatternSyntaxException e) {
+      LogLog.error("MDCRegexMatchFilter: invalid RegexToMatch: " + e.getMessage());
+      compiled = null;
+    }
+  }
+
+  /**
+   Returns true if a key and an expression have been configured,
+   and the filter has been activated.
+
+   @return boolean True if a match can be performed. */
+  protected boolean canMatch() {
+    return keyToMatch != null && compiled != null;
+  }
+
+  /**
+   Returns true if the expression matches the MDC value of the logging
+   event, as a whole or, if <b>Find</b> is set, anywhere.
+
+   @param event The logging event to match against.
+   @return boolean True if matches criteria. */
+  protected boolean match(LoggingEvent event) {
+    Compiled c = compiled;
+    if (c == null) {
+      return false;
+    }
+    Object mdcObject = getMDCValue(event, keyToMatch);
+    if (mdcObject == null) {
+      return false;
+    }
+    return c.matches(mdcObject.toString());
+  }
+
+  /**
+   Returns the literal text that every match of a regular expression
+   must begin with, or the empty string if there is none that can be
+   worked out simply. When <code>find</code> is true the expression
+   only has a prefix if it is anchored with '^'. The expression is read
+   by code point, so a quantifier after a character outside the BMP
+   applies to both of its chars. */
+  static String literalPrefix(String regex, boolean find) {
+    int i = 0;
+    int n = regex.length();
+    if (n > 0 && regex.charAt(0) == '^') {
+      i = 1;
+    } else if (find) {
+      return "";
+    }
+    if (hasTopLevelAlternation(regex)) {
+      return "";
+    }
+    StringBuilder prefix = new StringBuilder();
+    while (i < n) {
+      int c = regex.codePointAt(i);
+      int next = i + Character.charCount(c);
+      if (c == '\\') {
+        if (next >= n || Character.isLetterOrDigit(regex.codePointAt(next))) {
+          // a character class, back reference, quote or other construct
+          break;
+        }
+        c = regex.codePointAt(next);
+        next += Character.charCount(c);
+      } else if ("[](){}.*+?^$|".indexOf(c) >= 0) {
+        break;
+      }
+      if (next < n && "*+?{".indexOf(regex.charAt(next)) >= 0) {
+        // the character is quantified, so it need not be there once
+        break;
+      }
+      prefix.appendCodePoint(c);
+      i = next;
+    }
+    return prefix.toString();
+  }
+
+  /**
+   True if the expression has a '|' outside any group or character
+   class, so its alternatives need not share a prefix. */
+  private static boolean hasTopLevelAlternation(String regex) {
+    int depth = 0;
+    boolean inClass = false;
+    for (int i = 0; i < regex.length(); i++) {
+      char c = regex.charAt(i);
+      if (c == '\\') {
+        i++;
+      } else if (inClass) {
+        if (c == ']') {
+          inClass = false;
+        }
+      } else if (c == '[') {
+        inClass = true;
+      } else if (c == '(') {
+        depth++;
+      } else if (c == ')') {
+        depth--;
+      } else if (c == '|' && depth == 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   The compiled expression, its prefix and the cache of results. */
+  private static final class Compiled {
+    private final Pattern pattern;
+    private final boolean find;
+    private final String prefix;
+    private final LruCache<String, Boolean> cache;
+
+    Compiled(String regex, boolean find, int cacheSize) {
+      pattern = Pattern.compile(regex);
+      this.find = find;
+      prefix = literalPrefix(regex, find);
+      cache = cacheSize > 0 ? new LruCache<String, Boolean>(cacheSize) : null;
+    }
+
+    boolean matches(String value) {
+      if (!value.startsWith(prefix)) {
+        return false;
+      }
+      if (cache == null || value.length() > MAX_CACHED_LENGTH) {
+        return run(value);
+      }
+      Boolean result = cache.get(value);
+      if (result == null) {
+        result = Boolean.valueOf(run(value));
+        cache.put(value, result);
+      }
+      return result.booleanValue();
+    }
+
+    private boolean run(String value) {
+      return find ? pattern.matcher(value).find() : pattern.matcher(value).matches();
+    }
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.log4j.filter;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.log4j.spi.LoggingEvent;
+
+
+/**
+ The MDCSetMatchFilter matches the MDC values of several keys against
+ a set of allowed values. It replaces a chain of {@link MDCMatchFilter}
+ instances (one per key and value) with a single filter whose cost does
+ not depend on how many values are configured.
+
+ <p>The filter admits three options <b>KeysToMatch</b>,
+ <b>ValuesToMatch</b>, and <b>ValuesFile</b>.
+
+ <p><b>KeysToMatch</b> is a comma separated list of MDC keys. A match
+ occurs when the MDC value of any of these keys is one of the allowed
+ values.
+
+ <p><b>ValuesToMatch</b> is a comma separated list of allowed values.
+ <b>ValuesFile</b> names a UTF-8 file with one allowed value per line;
+ blank lines and lines beginning with '#' are ignored. Values from both
+ options are combined. Values are compared exactly (after trimming
+ whitespace from the configured values).
+
+ <p>The configuration is compiled into a hash set when
+ {@link #activateOptions()} is called, so that must be done (as the
+ log4j configurators do) after the options have been set.
+
+ <p>For more information about how the logging event will be
+ passed to the appender for reporting, please see
+ the {@link org.apache.log4j.filter.MatchFilterBase} class.
+ */
+public class MDCSetMatchFilter extends MatchFilterBase {
+  /**
+   Comma separated keys to look up in the MDC. */
+  String keysToMatch;
+
+  /**
+   Comma separated allowed values. */
+  String valuesToMatch;
+
+  /**
+   File containing allowed values, one per line. */
+  String valuesFile;
+
+  /**
+   The compiled keys and values, or null if the filter is not
+   configured. */
+  private volatile Compiled compiled;
+
+  /**
+   Sets the comma separated keys to match in the MDC of the LoggingEvent.
+
+   @param keys The keys that will be matched. */
+  public void setKeysToMatch(String keys) {
+    keysToMatch = keys;
+  }
+
+  /**
+   Gets the comma separated keys to match in the MDC of the LoggingEvent.
+
+   @return String The keys that will be matched. */
+  public String getKeysToMatch() {
+    return keysToMatch;
+  }
+
+  /**
+   Sets the comma separated values to match.
+
+   @param values The allowed values. */
+  public void setValuesToMatch(String values) {
+    valuesToMatch = values;
+  }
+
+  /**
+   Gets the comma separated values to match.
+
+   @return String The allowed values. */
+  public String getValuesToMatch() {
+    return valuesToMatch;
+  }
+
+  /**
+   Sets the name of a file containing allowed values, one per line.
+
+   @param file The file name. */
+  public void setValuesFile(String file) {
+    valuesFile = file;
+  }
+
+  /**
+   Gets the name of the file containing allowed values.
+
+   @return String The file name. */
+  public String getValuesFile() {
+    return valuesFile;
+  }
+
+  /**
+   Compiles the keys and values (reading the values file, if any). */
+  public void activateOptions() {
+    super.activateOptions();
+
+    List<String> keyList = FilterOptions.split(keysToMatch);
+    List<String> valueList = FilterOptions.split(valuesToMatch);
+    if (valuesFile != null) {
+      FilterOptions.readLines(valuesFile, "ValuesFile", valueList);
+    }
+
+    if (keyList.isEmpty()) {
+      compiled = null;
+    } else {
+      compiled = new Compiled(keyList.toArray(new String[keyList.size()]),
+                              new HashSet<String>(valueList));
+    }
+  }
+
+  /**
+   Returns true if the filter has been activated with at least one key.
+
+   @return boolean True if a match can be performed. */
+  protected boolean canMatch() {
+    return (compiled != null);
+  }
+
+  /**
+   Returns true if the MDC value of any of the configured keys is one
+   of the allowed values.
+
+   @param event The logging event to match against.
+   @return boolean True if matches criteria. */
+  protected boolean match(LoggingEvent event) {
+    Compiled c = compiled;
+    if (c == null) {
+      return false;
+    }
+    String[] k = c.keys;
+    Set<String> v = c.values;
+
+    for (int i = 0; i < k.length; i++) {
+      Object mdcObject = getMDCValue(event, k[i]);
+      if (mdcObject != null && v.contains(mdcObject.toString())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   The keys and allowed values, replaced together when the filter is
+   activated again. */
+  private static final class Compiled {
+    final String[] keys;
+    final Set<String> values;
+
+    Compiled(String[] keys, Set<String> values) {
+      this.keys = keys;
+      this.values = values;
+    }
+  }
+}
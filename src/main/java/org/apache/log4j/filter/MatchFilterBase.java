@@ -16,6 +16,8 @@
 
 package org.apache.log4j.filter;
 
+import java.io.Closeable;
+
 import org.apache.log4j.helpers.LogLog;
 import org.apache.log4j.spi.Filter;
 import org.apache.log4j.spi.LoggingEvent;
@@ -59,6 +61,16 @@ implement their own version of the canMatch() method, but should
  due to misconfiguration.  By default, canMatch() will always
  return true.
 
+ <p>Setting the <b>Metrics</b> property to true makes the filter count
+ how many events matched, did not match, or arrived while the filter
+ could not match, and time a sample of its decisions (one in
+ <b>LatencySampleRate</b>, 64 by default). The counts are available
+ from {@link #getMatchMetrics()}, and if the filter has a <b>Name</b>
+ they are published over JMX (see {@link MatchFilterMetrics}) when
+ {@link #activateOptions()} is called, so subclasses overriding that
+ method must call the superclass version, until {@link #close()} is
+ called. When metrics are not enabled the only cost is a field check.
+
  <p>Developers are encouraged to extend this base class when
  implementing their own filters. For examples of how
  to use and extend this base class, please see the various
@@ -68,7 +80,7 @@ due to misconfiguration.  By default, canMatch() will always
 
  @since 1.3
  */
-public abstract class MatchFilterBase extends Filter {
+public abstract class MatchFilterBase extends Filter implements Closeable {
   /** Chain policy constant = AcceptOnMatch. */
   public static final String ACCEPT_ON_MATCH = "AcceptOnMatch";
 
@@ -92,6 +104,113 @@ public abstract class MatchFilterBase extends Filter {
    The value that will be returned upon an unsuccessful match */
   protected int noMatchReturnValue = DENY;
 
+  /**
+   Name used to publish metrics. */
+  private String name;
+
+  /**
+   Whether decisions should be counted. */
+  private boolean metricsEnabled;
+
+  /**
+   One in this many decisions is timed when metrics are enabled. */
+  private int latencySampleRate = 64;
+
+  /**
+   Counters for this filter, or null if metrics are disabled. */
+  private volatile MatchFilterMetrics metrics;
+
+  /**
+   Sets the name of this filter, used to publish its metrics.
+
+   @param name The filter name. */
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  /**
+   Gets the name of this filter.
+
+   @return String The filter name. */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   Set to true to count decisions, and publish them over JMX if the
+   filter has a name. Takes effect when the filter is activated.
+
+   @param enabled True to record metrics. */
+  public void setMetrics(boolean enabled) {
+    metricsEnabled = enabled;
+  }
+
+  /**
+   Returns true if metrics have been requested.
+
+   @return boolean True if metrics are recorded. */
+  public boolean getMetrics() {
+    return metricsEnabled;
+  }
+
+  /**
+   Sets how often decisions are timed: one in every <code>rate</code>
+   decisions, chosen at random. The default is 64.
+
+   @param rate The sampling rate. */
+  public void setLatencySampleRate(int rate) {
+    latencySampleRate = rate;
+  }
+
+  /**
+   Gets how often decisions are timed.
+
+   @return int The sampling rate. */
+  public int getLatencySampleRate() {
+    return latencySampleRate;
+  }
+
+  /**
+   Returns the metrics of this filter, or null if they are not enabled.
+
+   @return MatchFilterMetrics The metrics. */
+  public MatchFilterMetrics getMatchMetrics() {
+    return metrics;
+  }
+
+  /**
+   Creates the metrics if the <b>Metrics</b> option is set, and
+   publishes them if the filter has a name, or removes them if it is
+   not set. */
+  public void activateOptions() {
+    MatchFilterMetrics previous = metrics;
+    if (previous != null) {
+      previous.unregister();
+    }
+    if (metricsEnabled) {
+      MatchFilterMetrics m = new MatchFilterMetrics(getClass().getName(), latencySampleRate);
+      if (name != null) {
+        m.register(name);
+      }
+      metrics = m;
+    } else {
+      metrics = null;
+    }
+  }
+
+  /**
+   Releases what {@link #activateOptions()} set up: the metrics are
+   no longer published. Called by the appenders in this library and
+   by {@link org.apache.log4j.varia.ConfigurationReloader} when the
+   filter is discarded; subclasses that start anything of their own
+   should override it and call the superclass version. */
+  public void close() {
+    MatchFilterMetrics m = metrics;
+    if (m != null) {
+      m.unregister();
+    }
+  }
+
   /**
    Set the value to return upon a successful match. Valid
    string values are "ACCEPT", "DENY", and "NEUTRAL".
@@ -220,6 +339,11 @@ be performed (canMatch() returned false), then Filter.NEUTRAL
    @param event The event to filter.
    @return int A Filter value to indicate what do with event. */
   public int decide(LoggingEvent event) {
+    MatchFilterMetrics m = metrics;
+    if (m != null) {
+      return decideMetered(event, m);
+    }
+
     if (canMatch()) {
       if (match(event)) {
         return matchReturnValue;
@@ -231,6 +355,28 @@ public int decide(LoggingEvent event) {
     }
   }
 
+  private int decideMetered(LoggingEvent event, MatchFilterMetrics m) {
+    boolean sample = m.shouldSample();
+    long start = sample ? System.nanoTime() : 0;
+    int result;
+    if (canMatch()) {
+      if (match(event)) {
+        m.recordMatch();
+        result = matchReturnValue;
+      } else {
+        m.recordNoMatch();
+        result = noMatchReturnValue;
+      }
+    } else {
+      m.recordCantMatch();
+      result = NEUTRAL;
+    }
+    if (sample) {
+      m.recordLatency(System.nanoTime() - start);
+    }
+    return result;
+  }
+
   /**
    Subclasses can override this method with their own version if
    it is possible that no match test can/should be performed due
@@ -243,6 +389,24 @@ protected boolean canMatch() {
     return true;
   }
 
+  /**
+   Returns the value of a key in the MDC of the logging event. The
+   copy of the MDC carried by the event is used, so the result does
+   not depend on which thread does the filtering. If the event does
+   not carry a copy yet, one is taken from the current thread first;
+   this is only correct on the thread that created the event, which
+   is why appenders that hand events to another thread (such as
+   AsyncAppender) take the copy before doing so. Unlike
+   LoggingEvent.getMDC(), a key missing from the copy is never looked
+   up in the MDC of the current thread.
+
+   @param event The event to get the MDC value from.
+   @param key The MDC key.
+   @return Object The value, or null if the key is not in the MDC. */
+  protected static Object getMDCValue(LoggingEvent event, String key) {
+    return event.getProperties().get(key);
+  }
+
   /**
    Subclasses must implement this method to perform the specific
    match test that they require. This method should return true
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.log4j.filter;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.ObjectName;
+
+import org.apache.log4j.MBeanRegistry;
+
+
+/**
+ Decision counters for one {@link MatchFilterBase} filter. Counters
+ are striped (LongAdder) so that threads deciding concurrently do not
+ contend, and only one in <b>LatencySampleRate</b> decisions is timed.
+
+ <p>The metrics of a filter with a name are published as an MBean
+ named <code>org.apache.log4j.filter:type=MatchFilter,name=&lt;filter name&gt;</code>.
+ A filter configured again under the same name replaces the previous
+ MBean, and the MBean is removed when the filter is closed (see
+ {@link MatchFilterBase#close()}).
+ */
+public class MatchFilterMetrics implements MatchFilterMetricsMBean {
+  /** JMX domain used for filter metrics. */
+  public static final String JMX_DOMAIN = "org.apache.log4j.filter";
+
+  private final String filterClass;
+  private final int sampleRate;
+  private final LongAdder matches = new LongAdder();
+  private final LongAdder noMatches = new LongAdder();
+  private final LongAdder cantMatches = new LongAdder();
+  private final LongAdder samples = new LongAdder();
+  private final LongAdder sampledNanos = new LongAdder();
+  private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+  private ObjectName objectName;
+
+  MatchFilterMetrics(String filterClass, int sampleRate) {
+    this.filterClass = filterClass;
+    this.sampleRate = Math.max(sampleRate, 1);
+  }
+
+  boolean shouldSample() {
+    return sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+  }
+
+  void recordMatch() {
+    matches.increment();
+  }
+
+  void recordNoMatch() {
+    noMatches.increment();
+  }
+
+  void recordCantMatch() {
+    cantMatches.increment();
+  }
+
+  void recordLatency(long nanos) {
+    samples.increment();
+    sampledNanos.add(nanos);
+    maxNanos.accumulate(nanos);
+  }
+
+  /**
+   Registers this object with the platform MBean server, replacing any
+   metrics previously registered under the same name. */
+  void register(String name) {
+    objectName = MBeanRegistry.register(JMX_DOMAIN, "MatchFilter", name, this);
+  }
+
+  /**
+   Removes this object from the platform MBean server, if it was
+   registered and has not been replaced since. */
+  void unregister() {
+    MBeanRegistry.unregister(objectName, this);
+    objectName = null;
+  }
+
+  public String getFilterClass() {
+    return filterClass;
+  }
+
+  public long getMatchCount() {
+    return matches.sum();
+  }
+
+  public long getNoMatchCount() {
+    return noMatches.sum();
+  }
+
+  public long getCantMatchCount() {
+    return cantMatches.sum();
+  }
+
+  public long getSampledDecisions() {
+    return samples.sum();
+  }
+
+  public double getAverageLatencyNanos() {
+    long n = samples.sum();
+    return n == 0 ? 0 : (double) sampledNanos.sum() / n;
+  }
+
+  public long getMaxLatencyNanos() {
+    return maxNanos.get();
+  }
+
+  public void reset() {
+    matches.reset();
+    noMatches.reset();
+    cantMatches.reset();
+    samples.reset();
+    sampledNanos.reset();
+    maxNanos.reset();
+  }
+}
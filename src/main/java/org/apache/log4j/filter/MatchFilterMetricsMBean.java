@@ -0,0 +1,56 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.log4j.filter;
+
+
+/**
+ JMX view of the decisions made by a {@link MatchFilterBase} filter
+ with the <b>Metrics</b> option enabled.
+ */
+public interface MatchFilterMetricsMBean {
+  /**
+   @return String The class of the filter. */
+  String getFilterClass();
+
+  /**
+   @return long Number of events that matched. */
+  long getMatchCount();
+
+  /**
+   @return long Number of events that did not match. */
+  long getNoMatchCount();
+
+  /**
+   @return long Number of events seen while the filter could not match
+   (because it is misconfigured). */
+  long getCantMatchCount();
+
+  /**
+   @return long Number of decisions that were timed. */
+  long getSampledDecisions();
+
+  /**
+   @return double Average time of the timed decisions, in nanoseconds. */
+  double getAverageLatencyNanos();
+
+  /**
+   @return long Longest timed decision, in nanoseconds. */
+  long getMaxLatencyNanos();
+
+  /**
+   Sets all counters back to zero. */
+  void reset();
+}
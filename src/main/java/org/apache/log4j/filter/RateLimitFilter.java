@@ -0,0 +1,691 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.log4j.filter;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Appender;
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Category;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.spi.AppenderAttachable;
+import org.apache.log4j.spi.Filter;
+import org.apache.log4j.spi.LoggerRepository;
+import org.apache.log4j.spi.LoggingEvent;
+
+
+/**
+ The RateLimitFilter matches events that arrive faster than a
+ configured rate, so that a burst of similar events (such as the same
+ error logged thousands of times a second while a dependency is down)
+ can be dropped instead of saturating the disk. Its default chain
+ policy is DenyOnMatch: events over the limit are denied and the others
+ are passed on to the next filter.
+
+ <p>Events are grouped by the <b>Key</b> option:
+
+ <ul>
+ <li><b>Logger</b> - the logger name.</li>
+ <li><b>Level</b> - the level.</li>
+ <li><b>Message</b> (the default) - the logger name, level and message
+ template: the rendered message with every run of digits replaced by
+ '#', so that messages differing only in numbers (ids, counts, times)
+ share a limit.</li>
+ <li><b>MDC</b> - the value of the MDC key named by the <b>MDCKey</b>
+ option.</li>
+ </ul>
+
+ <p>Each key has a token bucket that holds <b>Burst</b> events (20 by
+ default) and refills at <b>Rate</b> events per second (10 by default).
+ The bucket is a single timestamp updated with compare-and-set (the
+ generic cell rate algorithm), so deciding takes no locks. Buckets are
+ kept in a concurrent map of at most <b>MaxKeys</b> entries (10000 by
+ default); full buckets that have been idle are evicted, and while the
+ map is full, events with new keys share one overflow bucket.
+
+ <p>Suppressed events are counted. Once no event with a key has been
+ suppressed for <b>QuietPeriod</b> milliseconds (1000 by default), or
+ at least every <b>SummaryInterval</b> milliseconds (60000 by default)
+ while suppression goes on, a summary event such as "Suppressed 5231
+ similar events", with the logger and level of the last suppressed
+ event, is appended from a background thread to the appender this
+ filter belongs to (found among the appenders attached to the loggers
+ of that logger's repository), so it goes where the suppressed events
+ would have gone and nowhere else. Summary events are never matched by
+ this filter, but the other filters of the appender apply to them.
+
+ <p>The background thread is shared by all rate limit filters, and
+ stops once none is active: when each has been closed (which the
+ appenders in this library do when they are closed), configured
+ again with invalid options, or garbage collected. {@link #shutdown()}
+ stops it at once, and is called by
+ {@link org.apache.log4j.varia.Log4jContextListener} when a web
+ application is undeployed.
+
+ <pre>
+ &lt;filter class="org.apache.log4j.filter.RateLimitFilter"&gt;
+   &lt;param name="Key" value="Message"/&gt;
+   &lt;param name="Rate" value="10"/&gt;
+   &lt;param name="Burst" value="50"/&gt;
+ &lt;/filter&gt;
+ </pre>
+
+ <p>Options take effect when {@link #activateOptions()} is called,
+ which also forgets the state of all keys. After {@link #close()}
+ events are still limited, but no more summaries are appended.
+
+ <p>For more information about how the logging event will be
+ passed to the appender for reporting, please see
+ the {@link org.apache.log4j.filter.MatchFilterBase} class.
+ */
+public class RateLimitFilter extends MatchFilterBase {
+  /** Key option value: group events by logger. */
+  public static final String KEY_LOGGER = "Logger";
+
+  /** Key option value: group events by level. */
+  public static final String KEY_LEVEL = "Level";
+
+  /** Key option value: group events by logger, level and message template. */
+  public static final String KEY_MESSAGE = "Message";
+
+  /** Key option value: group events by an MDC value. */
+  public static final String KEY_MDC = "MDC";
+
+  /**
+   Logger class name of summary events, which are never matched. */
+  private static final String FQCN = RateLimitFilter.class.getName();
+
+  /**
+   Longest key text included in a summary. */
+  private static final int MAX_SUMMARY_KEY = 200;
+
+  /**
+   Runs the sweeps of all rate limit filters, while there are any. */
+  private static ScheduledExecutorService scheduler;
+
+  /**
+   The sweeps that have been started and not stopped. */
+  private static final Set<Sweep> sweeps = new HashSet<Sweep>();
+
+  private String key = KEY_MESSAGE;
+  private String mdcKey;
+  private double rate = 10;
+  private int burst = 20;
+  private int maxKeys = 10000;
+  private long quietPeriod = 1000;
+  private long summaryInterval = 60000;
+
+  /**
+   The limits in effect, replaced by activateOptions(). */
+  private volatile Limits limits;
+
+  private Sweep sweep;
+
+  /**
+   The appenders this filter was last found in. Only used by the sweep. */
+  private List<AppenderSkeleton> owners = Collections.emptyList();
+
+  /**
+   Creates a filter that denies events over the limit, and is neutral
+   about the others. */
+  public RateLimitFilter() {
+    matchReturnValue = DENY;
+    noMatchReturnValue = NEUTRAL;
+  }
+
+  /**
+   Sets what events are grouped by: Logger, Level, Message or MDC.
+
+   @param key How events are grouped. */
+  public void setKey(String key) {
+    this.key = key;
+  }
+
+  /**
+   Gets what events are grouped by.
+
+   @return String How events are grouped. */
+  public String getKey() {
+    return key;
+  }
+
+  /**
+   Sets the MDC key whose value groups events when <b>Key</b> is MDC.
+
+   @param mdcKey The MDC key. */
+  public void setMDCKey(String mdcKey) {
+    this.mdcKey = mdcKey;
+  }
+
+  /**
+   Gets the MDC key whose value groups events.
+
+   @return String The MDC key. */
+  public String getMDCKey() {
+    return mdcKey;
+  }
+
+  /**
+   Sets the number of events per second allowed for each key, once
+   its burst is used up.
+
+   @param rate The sustained rate. */
+  public void setRate(double rate) {
+    this.rate = rate;
+  }
+
+  /**
+   Gets the number of events per second allowed for each key.
+
+   @return double The sustained rate. */
+  public double getRate() {
+    return rate;
+  }
+
+  /**
+   Sets the number of events allowed for a key at once, before the
+   rate applies.
+
+   @param burst The burst size. */
+  public void setBurst(int burst) {
+    this.burst = burst;
+  }
+
+  /**
+   Gets the number of events allowed for a key at once.
+
+   @return int The burst size. */
+  public int getBurst() {
+    return burst;
+  }
+
+  /**
+   Sets the greatest number of keys tracked at once.
+
+   @param maxKeys The number of keys. */
+  public void setMaxKeys(int maxKeys) {
+    this.maxKeys = maxKeys;
+  }
+
+  /**
+   Gets the greatest number of keys tracked at once.
+
+   @return int The number of keys. */
+  public int getMaxKeys() {
+    return maxKeys;
+  }
+
+  /**
+   Sets how long, in milliseconds, no event with a key must be
+   suppressed before the burst is considered over and its summary is
+   logged.
+
+   @param quietPeriod The quiet period. */
+  public void setQuietPeriod(long quietPeriod) {
+    this.quietPeriod = quietPeriod;
+  }
+
+  /**
+   Gets the quiet period, in milliseconds.
+
+   @return long The quiet period. */
+  public long getQuietPeriod() {
+    return quietPeriod;
+  }
+
+  /**
+   Sets the longest time, in milliseconds, that suppressed events go
+   unreported while suppression goes on.
+
+   @param summaryInterval The summary interval. */
+  public void setSummaryInterval(long summaryInterval) {
+    this.summaryInterval = summaryInterval;
+  }
+
+  /**
+   Gets the summary interval, in milliseconds.
+
+   @return long The summary interval. */
+  public long getSummaryInterval() {
+    return summaryInterval;
+  }
+
+  /**
+   Returns the number of keys being tracked.
+
+   @return int The number of keys. */
+  public int getKeyCount() {
+    Limits l = limits;
+    return l == null ? 0 : l.buckets.size();
+  }
+
+  /**
+   Applies the options, and starts the background sweep that logs
+   summaries and evicts idle keys. */
+  public synchronized void activateOptions() {
+    super.activateOptions();
+
+    int type;
+    if (KEY_LOGGER.equalsIgnoreCase(key)) {
+      type = Limits.LOGGER;
+    } else if (KEY_LEVEL.equalsIgnoreCase(key)) {
+      type = Limits.LEVEL;
+    } else if (KEY_MESSAGE.equalsIgnoreCase(key)) {
+      type = Limits.MESSAGE;
+    } else if (KEY_MDC.equalsIgnoreCase(key)) {
+      type = Limits.MDC;
+      if (mdcKey == null) {
+        LogLog.error("RateLimitFilter: MDCKey must be set when Key is MDC.");
+      }
+    } else {
+      LogLog.error("RateLimitFilter: invalid Key: " + key + ", using " + KEY_MESSAGE);
+      type = Limits.MESSAGE;
+    }
+    if (!(rate > 0) || burst < 1) {
+      LogLog.error("RateLimitFilter: Rate and Burst must be positive, the filter is disabled.");
+      limits = null;
+    } else {
+      limits = new Limits(type, mdcKey, rate, burst, Math.max(maxKeys, 1),
+                          TimeUnit.MILLISECONDS.toNanos(Math.max(quietPeriod, 0)),
+                          TimeUnit.MILLISECONDS.toNanos(Math.max(summaryInterval, 0)));
+    }
+
+    if (sweep != null) {
+      stop(sweep);
+      sweep = null;
+    }
+    if (limits != null) {
+      long period = Math.max(10, Math.min(quietPeriod, summaryInterval) / 2);
+      sweep = new Sweep(this);
+      start(sweep, period);
+    }
+  }
+
+  /**
+   Stops logging summaries, and unregisters the metrics. */
+  public synchronized void close() {
+    super.close();
+    if (sweep != null) {
+      stop(sweep);
+      sweep = null;
+    }
+  }
+
+  /**
+   Stops the sweeps of all rate limit filters, and the thread that runs
+   them, so that nothing keeps the classes of this library loaded once
+   logging has been shut down. Filters activated afterwards start a new
+   thread. */
+  public static synchronized void shutdown() {
+    for (Sweep s : sweeps) {
+      s.future.cancel(false);
+    }
+    sweeps.clear();
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+      scheduler = null;
+    }
+  }
+
+  private static synchronized void start(Sweep s, long period) {
+    if (scheduler == null) {
+      scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "RateLimitFilter");
+          t.setDaemon(true);
+          return t;
+        }
+      });
+    }
+    s.future = scheduler.scheduleWithFixedDelay(s, period, period, TimeUnit.MILLISECONDS);
+    sweeps.add(s);
+  }
+
+  private static synchronized void stop(Sweep s) {
+    if (!sweeps.remove(s)) {
+      return;
+    }
+    s.future.cancel(false);
+    if (sweeps.isEmpty() && scheduler != null) {
+      scheduler.shutdown();
+      scheduler = null;
+    }
+  }
+
+  /**
+   Returns true if limits have been configured.
+
+   @return boolean True if a match can be performed. */
+  protected boolean canMatch() {
+    return limits != null;
+  }
+
+  /**
+   Returns true if the event is over the limit for its key, counting it
+   as suppressed.
+
+   @param event The logging event to match against.
+   @return boolean True if the event should be suppressed. */
+  protected boolean match(LoggingEvent event) {
+    return suppress(event, System.nanoTime());
+  }
+
+  /**
+   Returns true if the event is over the limit for its key at the time
+   <code>now</code> (from System.nanoTime()), counting it as
+   suppressed. */
+  boolean suppress(LoggingEvent event, long now) {
+    Limits l = limits;
+    if (l == null || FQCN.equals(event.getFQNOfLoggerClass())) {
+      return false;
+    }
+    return l.suppress(event, now);
+  }
+
+  /**
+   Logs summaries and evicts idle keys. Called from the sweep thread. */
+  void sweep() {
+    sweep(System.nanoTime());
+  }
+
+  /**
+   Logs the summaries that are due, and evicts the keys that are idle,
+   at the time <code>now</code>. */
+  void sweep(long now) {
+    Limits l = limits;
+    if (l == null) {
+      return;
+    }
+    for (Iterator<Bucket> i = l.buckets.values().iterator(); i.hasNext();) {
+      Bucket b = i.next();
+      summarize(l, b, now);
+      if (b.isIdle(now, l.quietPeriod)) {
+        i.remove();
+      }
+    }
+    summarize(l, l.overflow, now);
+  }
+
+  private void summarize(Limits l, Bucket b, long now) {
+    if (b.suppressed.get() == 0) {
+      return;
+    }
+    if (now - b.lastSuppressed < l.quietPeriod && now - b.firstSuppressed < l.summaryInterval) {
+      return;
+    }
+    Category logger = b.logger;
+    Level level = b.level;
+    long n = b.takeSuppressed(now);
+    if (n == 0 || logger == null) {
+      return;
+    }
+    String text = b == l.overflow ? "(other keys)" : b.key;
+    if (text.length() > MAX_SUMMARY_KEY) {
+      text = text.substring(0, MAX_SUMMARY_KEY) + "...";
+    }
+    LoggingEvent summary = new LoggingEvent(FQCN, logger, level,
+        "Suppressed " + n + (n == 1 ? " similar event: " : " similar events: ") + text, null);
+    for (AppenderSkeleton appender : owners(logger.getLoggerRepository())) {
+      appender.doAppend(summary);
+    }
+  }
+
+  /**
+   The appenders that have this filter among their filters: those
+   found last time if they still have it, otherwise those attached
+   (directly, or nested in appenders such as AsyncAppender) to the
+   loggers of the repository. */
+  private List<AppenderSkeleton> owners(LoggerRepository repository) {
+    List<AppenderSkeleton> found = owners;
+    boolean valid = !found.isEmpty();
+    for (AppenderSkeleton a : found) {
+      valid &= holds(a);
+    }
+    if (valid) {
+      return found;
+    }
+    found = new ArrayList<AppenderSkeleton>();
+    Set<Appender> seen = Collections.newSetFromMap(new IdentityHashMap<Appender, Boolean>());
+    findOwners(repository.getRootLogger().getAllAppenders(), seen, found);
+    for (Enumeration<?> e = repository.getCurrentLoggers(); e.hasMoreElements();) {
+      findOwners(((Category) e.nextElement()).getAllAppenders(), seen, found);
+    }
+    owners = found;
+    return found;
+  }
+
+  private void findOwners(Enumeration<?> appenders, Set<Appender> seen, List<AppenderSkeleton> found) {
+    while (appenders != null && appenders.hasMoreElements()) {
+      Appender a = (Appender) appenders.nextElement();
+      if (!seen.add(a)) {
+        continue;
+      }
+      if (a instanceof AppenderSkeleton && holds((AppenderSkeleton) a)) {
+        found.add((AppenderSkeleton) a);
+      }
+      if (a instanceof AppenderAttachable) {
+        findOwners(((AppenderAttachable) a).getAllAppenders(), seen, found);
+      }
+    }
+  }
+
+  private boolean holds(AppenderSkeleton appender) {
+    for (Filter f = appender.getFilter(); f != null; f = f.getNext()) {
+      if (f == this || (f instanceof CompiledFilterChain && ((CompiledFilterChain) f).contains(this))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   Appends the message template: the message with each run of digits
+   replaced by '#'. */
+  static void appendTemplate(StringBuilder buf, String message) {
+    int n = message.length();
+    int i = 0;
+    while (i < n) {
+      char c = message.charAt(i++);
+      if (isDigit(c)) {
+        buf.append('#');
+        while (i < n && isDigit(message.charAt(i))) {
+          i++;
+        }
+      } else {
+        buf.append(c);
+      }
+    }
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  /**
+   The configuration and buckets in effect. */
+  private static final class Limits {
+    static final int LOGGER = 0;
+    static final int LEVEL = 1;
+    static final int MESSAGE = 2;
+    static final int MDC = 3;
+
+    final int type;
+    final String mdcKey;
+    final long interval;
+    final long tolerance;
+    final int maxKeys;
+    final long quietPeriod;
+    final long summaryInterval;
+    final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<String, Bucket>();
+    final Bucket overflow = new Bucket(null);
+
+    Limits(int type, String mdcKey, double rate, int burst, int maxKeys, long quietPeriod,
+           long summaryInterval) {
+      this.type = type;
+      this.mdcKey = mdcKey;
+      interval = Math.max(1, (long) (1e9 / rate));
+      tolerance = interval * burst;
+      this.maxKeys = maxKeys;
+      this.quietPeriod = quietPeriod;
+      this.summaryInterval = summaryInterval;
+    }
+
+    String key(LoggingEvent event) {
+      switch (type) {
+      case LOGGER:
+        return event.getLoggerName();
+      case LEVEL:
+        return event.getLevel().toString();
+      case MDC:
+        Object value = getMDCValue(event, mdcKey);
+        return value == null ? "" : value.toString();
+      default:
+        String loggerName = event.getLoggerName();
+        String level = event.getLevel().toString();
+        String message = event.getRenderedMessage();
+        if (message == null) {
+          message = "";
+        }
+        StringBuilder buf = new StringBuilder(loggerName.length() + level.length()
+                                              + message.length() + 2);
+        buf.append(loggerName).append(' ').append(level).append(' ');
+        appendTemplate(buf, message);
+        return buf.toString();
+      }
+    }
+
+    boolean suppress(LoggingEvent event, long now) {
+      String k = key(event);
+      Bucket b = buckets.get(k);
+      if (b == null) {
+        if (buckets.size() >= maxKeys) {
+          b = overflow;
+        } else {
+          Bucket created = new Bucket(k);
+          b = buckets.putIfAbsent(k, created);
+          if (b == null) {
+            b = created;
+          }
+        }
+      }
+      if (b.tryAcquire(now, interval, tolerance)) {
+        return false;
+      }
+      b.recordSuppressed(event, now);
+      return true;
+    }
+  }
+
+  /**
+   The token bucket of one key, kept as the time at which it will be
+   full again (the theoretical arrival time of the generic cell rate
+   algorithm). An event is allowed if that time is no more than a burst
+   ahead of now, and moves it one interval further ahead. */
+  private static final class Bucket {
+    final String key;
+    final AtomicLong fullAt = new AtomicLong(Long.MIN_VALUE);
+    final AtomicLong suppressed = new AtomicLong();
+    volatile long firstSuppressed;
+    volatile long lastSuppressed;
+    volatile Category logger;
+    volatile Level level;
+
+    Bucket(String key) {
+      this.key = key;
+    }
+
+    boolean tryAcquire(long now, long interval, long tolerance) {
+      while (true) {
+        long current = fullAt.get();
+        long start = current == Long.MIN_VALUE || current - now < 0 ? now : current;
+        long next = start + interval;
+        if (next - now > tolerance) {
+          return false;
+        }
+        if (fullAt.compareAndSet(current, next)) {
+          return true;
+        }
+      }
+    }
+
+    void recordSuppressed(LoggingEvent event, long now) {
+      lastSuppressed = now;
+      Category c = event.getLogger();
+      logger = c != null ? c : Logger.getLogger(event.getLoggerName());
+      level = event.getLevel();
+      if (suppressed.getAndIncrement() == 0) {
+        firstSuppressed = now;
+      }
+    }
+
+    /**
+     Returns and clears the count of suppressed events. */
+    long takeSuppressed(long now) {
+      firstSuppressed = now;
+      return suppressed.getAndSet(0);
+    }
+
+    /**
+     True if the bucket is full and has nothing to report, so that
+     forgetting it changes nothing. An event racing with its eviction
+     may be allowed by the old bucket and still counted there. */
+    boolean isIdle(long now, long quietPeriod) {
+      long current = fullAt.get();
+      return suppressed.get() == 0 && (current == Long.MIN_VALUE || now - current > quietPeriod);
+    }
+  }
+
+  /**
+   Runs the sweep of a filter, without keeping it from being collected. */
+  private static final class Sweep implements Runnable {
+    private final WeakReference<RateLimitFilter> filter;
+    ScheduledFuture<?> future;
+
+    Sweep(RateLimitFilter filter) {
+      this.filter = new WeakReference<RateLimitFilter>(filter);
+    }
+
+    public void run() {
+      RateLimitFilter f = filter.get();
+      if (f == null) {
+        stop(this);
+        return;
+      }
+      try {
+        f.sweep();
+      } catch (RuntimeException e) {
+        LogLog.error("RateLimitFilter: sweep failed", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.log4j.filter;
+
+import java.util.Arrays;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.spi.LoggingEvent;
+
+
+/**
+ The SamplingFilter keeps all the events of a sample of requests, so
+ that verbose levels such as DEBUG can be left on in production for,
+ say, one request in a hundred. An event matches when a hash of the
+ value of an MDC key (such as a request or trace id) falls under the
+ sampling rate for the level of the event. Every event with the same
+ value gets the same answer, so a sampled request is logged in full.
+ Its default chain policy is DenyOnNomatch: events of requests that
+ are not sampled are denied, and the others are passed on to the next
+ filter.
+
+ <p>The options are <b>KeyToMatch</b>, the MDC key; <b>Rate</b>, the
+ fraction of values sampled at levels without a rate of their own (1,
+ all of them, by default); and <b>LevelRates</b>, a comma separated
+ list of level=rate pairs such as
+ <code>TRACE=0.001,DEBUG=0.01,INFO=0.1</code>. A value sampled at some
+ rate is also sampled at every higher rate, so a request whose DEBUG
+ events are kept also has its INFO events kept. Events without the key
+ only match if the rate for their level is 1.
+
+ <pre>
+ &lt;filter class="org.apache.log4j.filter.SamplingFilter"&gt;
+   &lt;param name="KeyToMatch" value="requestId"/&gt;
+   &lt;param name="LevelRates" value="DEBUG=0.01,INFO=0.1"/&gt;
+ &lt;/filter&gt;
+ </pre>
+
+ <p>The hash is computed from the <code>toString()</code> value with
+ <code>String.hashCode()</code>, which is the same in every JVM, so
+ services with the same rates sample the same requests. Each thread
+ remembers the hash of the last value it saw, so the events of a
+ request usually cost one identity comparison.
+
+ <p>Like the other match filters, the value is read from the copy of
+ the MDC carried by the event (see
+ {@link MatchFilterBase#getMDCValue(LoggingEvent, String)}), so the
+ decision is the same on whichever thread the filter runs. The copy is
+ taken once per event, and shared with the filters and appenders that
+ come after.
+
+ <p>Options take effect when {@link #activateOptions()} is called.
+
+ <p>For more information about how the logging event will be
+ passed to the appender for reporting, please see
+ the {@link org.apache.log4j.filter.MatchFilterBase} class.
+ */
+public class SamplingFilter extends MatchFilterBase {
+  /**
+   Thresholds are compared with the top 53 bits of the hash. */
+  private static final long SCALE = 1L << 53;
+
+  // Indexes into the thresholds of the standard levels
+  private static final int TRACE = 0;
+  private static final int DEBUG = 1;
+  private static final int INFO = 2;
+  private static final int WARN = 3;
+  private static final int ERROR = 4;
+  private static final int FATAL = 5;
+  private static final int OTHER = 6;
+
+  /**
+   The hash of the last value seen by each thread. */
+  private static final ThreadLocal<Sample> LAST = new ThreadLocal<Sample>() {
+    protected Sample initialValue() {
+      return new Sample();
+    }
+  };
+
+  private String keyToMatch;
+  private double rate = 1;
+  private String levelRates;
+
+  /**
+   Hashes under these thresholds are sampled, by level index. */
+  private volatile long[] thresholds;
+
+  /**
+   Creates a filter that denies the events of requests that are not
+   sampled, and is neutral about the others. */
+  public SamplingFilter() {
+    matchReturnValue = NEUTRAL;
+    noMatchReturnValue = DENY;
+  }
+
+  /**
+   Sets the MDC key whose value decides whether an event is sampled.
+
+   @param key The MDC key. */
+  public void setKeyToMatch(String key) {
+    keyToMatch = key;
+  }
+
+  /**
+   Gets the MDC key whose value decides whether an event is sampled.
+
+   @return String The MDC key. */
+  public String getKeyToMatch() {
+    return keyToMatch;
+  }
+
+  /**
+   Sets the fraction of values sampled at levels without a rate of
+   their own, between 0 and 1.
+
+   @param rate The sampling rate. */
+  public void setRate(double rate) {
+    this.rate = rate;
+  }
+
+  /**
+   Gets the fraction of values sampled at levels without a rate of
+   their own.
+
+   @return double The sampling rate. */
+  public double getRate() {
+    return rate;
+  }
+
+  /**
+   Sets the sampling rates of particular levels, as a comma separated
+   list of level=rate pairs.
+
+   @param levelRates The rates by level. */
+  public void setLevelRates(String levelRates) {
+    this.levelRates = levelRates;
+  }
+
+  /**
+   Gets the sampling rates of particular levels.
+
+   @return String The rates by level. */
+  public String getLevelRates() {
+    return levelRates;
+  }
+
+  /**
+   Computes the sampling thresholds of each level. */
+  public void activateOptions() {
+    super.activateOptions();
+
+    long[] t = new long[OTHER + 1];
+    Arrays.fill(t, threshold(rate, "Rate"));
+    for (String pair : FilterOptions.split(levelRates)) {
+      int eq = pair.indexOf('=');
+      Level level = eq > 0 ? Level.toLevel(pair.substring(0, eq).trim(), null) : null;
+      if (level == null) {
+        LogLog.error("SamplingFilter: invalid LevelRates entry: " + pair);
+        continue;
+      }
+      double r;
+      try {
+        r = Double.parseDouble(pair.substring(eq + 1).trim());
+      } catch (NumberFormatException e) {
+        LogLog.error("SamplingFilter: invalid rate in LevelRates entry: " + pair);
+        continue;
+      }
+      int index = index(level);
+      if (index == OTHER) {
+        LogLog.error("SamplingFilter: LevelRates only applies to TRACE to FATAL: " + pair);
+        continue;
+      }
+      t[index] = threshold(r, pair);
+    }
+    thresholds = t;
+  }
+
+  private static long threshold(double rate, String option) {
+    if (!(rate >= 0 && rate <= 1)) {
+      LogLog.error("SamplingFilter: rate must be between 0 and 1: " + option);
+      return rate > 1 ? SCALE : 0;
+    }
+    return (long) (rate * SCALE);
+  }
+
+  private static int index(Level level) {
+    switch (level.toInt()) {
+    case Level.TRACE_INT:
+      return TRACE;
+    case Level.DEBUG_INT:
+      return DEBUG;
+    case Level.INFO_INT:
+      return INFO;
+    case Level.WARN_INT:
+      return WARN;
+    case Level.ERROR_INT:
+      return ERROR;
+    case Level.FATAL_INT:
+      return FATAL;
+    default:
+      return OTHER;
+    }
+  }
+
+  /**
+   Returns true if a key to match has been configured and the
+   filter has been activated.
+
+   @return boolean True if a match can be performed. */
+  protected boolean canMatch() {
+    return keyToMatch != null && thresholds != null;
+  }
+
+  /**
+   Returns true if the MDC value of the event is sampled at the level
+   of the event.
+
+   @param event The logging event to match against.
+   @return boolean True if the event is sampled. */
+  protected boolean match(LoggingEvent event) {
+    long threshold = thresholds[index(event.getLevel())];
+    if (threshold >= SCALE) {
+      return true;
+    }
+    if (threshold == 0) {
+      return false;
+    }
+    Object value = getMDCValue(event, keyToMatch);
+    if (value == null) {
+      return false;
+    }
+    Sample last = LAST.get();
+    if (value != last.value) {
+      last.point = point(value.toString());
+      last.value = value;
+    }
+    return last.point < threshold;
+  }
+
+  /**
+   The position of a value in the sampling range, from 0 to 2^53. */
+  static long point(String value) {
+    // finalizer of MurmurHash3, to spread the bits of String.hashCode()
+    long h = value.hashCode() & 0xFFFFFFFFL;
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    h *= 0xC4CEB9FE1A85EC53L;
+    h ^= h >>> 33;
+    return h >>> 11;
+  }
+
+  /**
+   The last value a thread sampled, and its hash. */
+  private static final class Sample {
+    Object value;
+    long point;
+  }
+}
@@ -0,0 +1,806 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j.varia;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectName;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.apache.log4j.Appender;
+import org.apache.log4j.AppenderFilters;
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.MBeanRegistry;
+import org.apache.log4j.SecurePatternLayout;
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.helpers.OptionConverter;
+import org.apache.log4j.spi.AppenderAttachable;
+import org.apache.log4j.spi.Filter;
+import org.apache.log4j.spi.LoggerRepository;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.apache.log4j.xml.Log4jEntityResolver;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Watches an XML configuration file, and applies the changes made to it to
+ * a running logger repository in place, unlike
+ * {@link DOMConfigurator#configureAndWatch(String)}, which configures the
+ * whole repository again.
+ *
+ * <p>The repository must first have been configured from the file (with
+ * {@link DOMConfigurator#configure(String)}). When {@link #start()} is called
+ * the file is read to record what was configured, and the directory holding
+ * it is watched with a {@link WatchService}. Once the file has been changed
+ * and left alone for the configured delay it is read again, compared with
+ * what was read before, and only the differences are applied:
+ *
+ * <ul>
+ * <li>Loggers whose level or additivity changed are updated. Loggers removed
+ * from the file go back to inheriting their level, and to being additive.</li>
+ * <li>Appenders whose definition changed, other than in their filters, are
+ * created again, attached in place of the old ones, and the old ones are
+ * closed, along with their filters and layouts. New appenders are created,
+ * and appenders no longer referred to are detached and closed. Appenders that
+ * did not change (and do not refer to one that did) are left as they are,
+ * with their files open.</li>
+ * <li>Appenders whose filters alone changed keep running, and have the new
+ * filter chain swapped in (see {@link AppenderFilters}); the old filters are
+ * closed, which unregisters their metrics.</li>
+ * <li>The threshold of the repository is updated.</li>
+ * </ul>
+ *
+ * <p>Only appenders that were configured from the file are detached from
+ * loggers, so appenders added by the application are left alone. Other parts
+ * of the configuration (logger classes and factories, renderers) only take
+ * effect when the repository is configured again.
+ *
+ * <p>The file is parsed, and new appenders and filters are created and
+ * activated, before anything is changed, so if any of that fails they are
+ * closed again and the configuration in effect is kept. Logging threads
+ * never wait for any of it: levels are changed with a single write, and
+ * while an appender is attached to or detached from a logger, threads
+ * logging to that logger wait only for the change to its list of appenders
+ * (the same lock they take to log).
+ *
+ * <p>The outcome of each reload is logged, and counted in an MBean named
+ * <code>org.apache.log4j.varia:type=ConfigurationReloader,name=&lt;name&gt;</code>
+ * (see {@link ConfigurationReloaderMBean}), which can also be used to reload
+ * the file at once.
+ */
+public class ConfigurationReloader implements ConfigurationReloaderMBean, Closeable {
+  /** JMX domain of reloaders. */
+  public static final String JMX_DOMAIN = "org.apache.log4j.varia";
+
+  /** Default time the file must be left alone before it is read, in milliseconds. */
+  public static final long DEFAULT_DELAY = 500;
+
+  private static final Logger LOG = Logger.getLogger(ConfigurationReloader.class);
+
+  private static final String ROOT = "";
+
+  private final File file;
+  private final LoggerRepository repository;
+  private final long delay;
+  private String name;
+
+  // What the configuration in effect was built from, and the appenders
+  // created from it by name. Only used while holding the lock of this object.
+  private Snapshot current;
+  private Map<String, Appender> appenders = new HashMap<String, Appender>();
+
+  private WatchService watcher;
+  private Thread thread;
+  private ObjectName objectName;
+
+  private volatile long reloadCount;
+  private volatile long errorCount;
+  private volatile long lastReloadMillis;
+  private volatile long lastReloadTime;
+  private volatile String lastChanges;
+  private volatile String lastError;
+
+  /**
+   * @param file the configuration file the repository was configured from
+   * @param repository the repository to update
+   * @param delay how long the file must be left alone after a change before
+   *        it is read, in milliseconds
+   */
+  public ConfigurationReloader(File file, LoggerRepository repository, long delay) {
+    this.file = file.getAbsoluteFile();
+    this.repository = repository;
+    this.delay = Math.max(delay, 0);
+  }
+
+  /**
+   * Set the name used to publish the MBean. The default is the name of the
+   * file.
+   */
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Record the configuration in effect, and start watching the file.
+   *
+   * @throws IOException if the directory of the file cannot be watched
+   */
+  public synchronized void start() throws IOException {
+    try {
+      current = new Snapshot(parse());
+    } catch (Exception e) {
+      // Anything that can be read later will be applied in full
+      LogLog.warn("Unable to read " + file + ", changes will be applied once it can be read", e);
+      current = new Snapshot();
+    }
+    appenders = findAppenders(current);
+
+    watcher = FileSystems.getDefault().newWatchService();
+    file.getParentFile().toPath().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                                           StandardWatchEventKinds.ENTRY_MODIFY);
+    thread = new Thread(new Runnable() {
+      public void run() {
+        watch();
+      }
+    }, "ConfigurationReloader-" + file.getName());
+    thread.setDaemon(true);
+    thread.start();
+    register();
+  }
+
+  /**
+   * Stop watching the file. The configuration in effect is left as it is.
+   */
+  public void close() {
+    WatchService w;
+    Thread t;
+    synchronized (this) {
+      w = watcher;
+      t = thread;
+      watcher = null;
+      thread = null;
+    }
+    if (w != null) {
+      try {
+        w.close();
+      } catch (IOException e) {
+        LogLog.warn("Unable to stop watching " + file, e);
+      }
+    }
+    if (t != null) {
+      try {
+        t.join(5000);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    unregister();
+  }
+
+  private void watch() {
+    Path target = file.toPath().getFileName();
+    WatchService w = watcher;
+    try {
+      while (true) {
+        if (!changed(w.take(), target)) {
+          continue;
+        }
+        // wait until the file has been left alone for the delay, ignoring
+        // other files in the directory (such as logs being written)
+        long quietAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+        long wait;
+        while ((wait = quietAt - System.nanoTime()) > 0) {
+          WatchKey key = w.poll(wait, TimeUnit.NANOSECONDS);
+          if (key != null && changed(key, target)) {
+            quietAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+          }
+        }
+        reload();
+      }
+    } catch (ClosedWatchServiceException e) {
+      // closed
+    } catch (InterruptedException e) {
+      // stopped
+    }
+  }
+
+  private static boolean changed(WatchKey key, Path target) {
+    boolean changed = false;
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW || target.equals(event.context())) {
+        changed = true;
+      }
+    }
+    key.reset();
+    return changed;
+  }
+
+  /**
+   * Read the file, and apply the changes made to it since it was last read.
+   *
+   * @return true if the file was read and the changes applied
+   */
+  public synchronized boolean reload() {
+    long start = System.nanoTime();
+    reloadCount++;
+    try {
+      Document doc = parse();
+      String changes = apply(doc);
+      lastReloadMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      lastReloadTime = System.currentTimeMillis();
+      lastChanges = changes;
+      lastError = null;
+      LOG.info("Reloaded " + file + " in " + lastReloadMillis + " ms: " + changes);
+      return true;
+    } catch (Exception e) {
+      errorCount++;
+      lastReloadMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      lastReloadTime = System.currentTimeMillis();
+      lastError = String.valueOf(e);
+      LogLog.error("Unable to reload " + file + ", the configuration in effect is kept", e);
+      LOG.error("Unable to reload " + file + ": " + e);
+      return false;
+    }
+  }
+
+  private Document parse() throws Exception {
+    DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+    // prevent XXE attacks, as DOMConfigurator does
+    dbf.setFeature("http://xml.org/sax/features/external-general-entities", false);
+    dbf.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+    DocumentBuilder builder = dbf.newDocumentBuilder();
+    builder.setEntityResolver(new Log4jEntityResolver());
+    builder.setErrorHandler(new DefaultHandler() {
+      @Override
+      public void fatalError(SAXParseException e) throws SAXParseException {
+        // reported with the reload
+        throw e;
+      }
+    });
+    Document doc = builder.parse(file);
+    String tag = doc.getDocumentElement().getTagName();
+    if (!tag.equals("log4j:configuration") && !tag.equals("configuration")) {
+      throw new IOException("Not a log4j configuration: <" + tag + ">");
+    }
+    return doc;
+  }
+
+  /**
+   * Apply the differences between the configuration in effect and the
+   * document, returning a summary of them.
+   */
+  private String apply(Document doc) throws IOException {
+    Snapshot next = new Snapshot(doc);
+    Builder builder = new Builder(doc);
+
+    // Work out which appenders must be created again: those that changed,
+    // are new, and those that refer to one of them
+    Set<String> referenced = next.referencedAppenders();
+    Set<String> rebuild = new HashSet<String>();
+    Set<String> refilter = new HashSet<String>();
+    for (String appenderName : referenced) {
+      Element element = next.appenders.get(appenderName);
+      if (element == null) {
+        throw new IOException("No appender named [" + appenderName + "] could be found.");
+      }
+      Appender live = appenders.get(appenderName);
+      Element previous = current.appenders.get(appenderName);
+      if (live == null || previous == null
+          || !fingerprint(element, true).equals(fingerprint(previous, true))) {
+        rebuild.add(appenderName);
+      } else if (!fingerprint(element, false).equals(fingerprint(previous, false))) {
+        if (live instanceof AppenderSkeleton) {
+          refilter.add(appenderName);
+        } else {
+          rebuild.add(appenderName);
+        }
+      }
+    }
+    boolean grew = true;
+    while (grew) {
+      grew = false;
+      for (String appenderName : referenced) {
+        if (!rebuild.contains(appenderName)) {
+          for (String ref : refs(next.appenders.get(appenderName))) {
+            if (rebuild.contains(ref)) {
+              rebuild.add(appenderName);
+              grew = true;
+              break;
+            }
+          }
+        }
+      }
+    }
+    refilter.removeAll(rebuild);
+
+    // Create everything new before changing anything, and if that fails
+    // release what was created, leaving the configuration in effect as it is
+    Map<String, Appender> built = new HashMap<String, Appender>();
+    for (String appenderName : referenced) {
+      if (!rebuild.contains(appenderName)) {
+        builder.reuse.put(appenderName, appenders.get(appenderName));
+      }
+    }
+    Map<String, Filter> filters = new HashMap<String, Filter>();
+    Map<String, Level> levels = new HashMap<String, Level>();
+    boolean complete = false;
+    try {
+      for (String appenderName : referenced) {
+        Appender a = builder.appender(appenderName);
+        if (a == null) {
+          throw new IOException("Could not create the appender named [" + appenderName + "]");
+        }
+        built.put(appenderName, a);
+      }
+      for (String appenderName : refilter) {
+        filters.put(appenderName, builder.filters(next.appenders.get(appenderName)));
+      }
+
+      // Levels are worked out on detached loggers
+      for (Map.Entry<String, Element> e : next.loggers.entrySet()) {
+        String loggerName = e.getKey();
+        Element previous = current.loggers.get(loggerName);
+        Element level = child(e.getValue(), "level", "priority");
+        if (previous == null || !fingerprint(level).equals(fingerprint(child(previous, "level", "priority")))) {
+          levels.put(loggerName, builder.level(level, loggerName));
+        }
+      }
+      complete = true;
+    } finally {
+      if (!complete) {
+        Set<Appender> live = identitySet(appenders.values());
+        for (Appender a : builder.created) {
+          retire(a, live);
+        }
+        for (Filter f : filters.values()) {
+          AppenderFilters.close(f);
+        }
+      }
+    }
+
+    // Now apply it all
+    Set<Appender> managed = identitySet(appenders.values());
+    managed.addAll(built.values());
+    int loggerChanges = 0;
+    Set<String> loggerNames = new HashSet<String>(current.loggers.keySet());
+    loggerNames.addAll(next.loggers.keySet());
+    for (String loggerName : loggerNames) {
+      Logger logger = loggerName.equals(ROOT) ? repository.getRootLogger() : repository.getLogger(loggerName);
+      Element element = next.loggers.get(loggerName);
+      boolean changed = false;
+
+      Level level = element == null ? null : levels.get(loggerName);
+      if (element == null ? logger != repository.getRootLogger() && logger.getLevel() != null
+                          : levels.containsKey(loggerName)) {
+        if (level != null || logger != repository.getRootLogger()) {
+          logger.setLevel(level);
+          changed = true;
+        }
+      }
+
+      boolean additive = element == null
+          || OptionConverter.toBoolean(element.getAttribute("additivity"), true);
+      if (logger != repository.getRootLogger() && logger.getAdditivity() != additive) {
+        logger.setAdditivity(additive);
+        changed = true;
+      }
+
+      List<Appender> wanted = new ArrayList<Appender>();
+      if (element != null) {
+        for (String ref : refs(element)) {
+          wanted.add(built.get(ref));
+        }
+      }
+      for (Appender a : wanted) {
+        if (!logger.isAttached(a)) {
+          logger.addAppender(a);
+          changed = true;
+        }
+      }
+      List<Appender> attached = new ArrayList<Appender>();
+      for (Enumeration<?> en = logger.getAllAppenders(); en.hasMoreElements();) {
+        attached.add((Appender) en.nextElement());
+      }
+      for (Appender a : attached) {
+        if (managed.contains(a) && !containsIdentical(wanted, a)) {
+          logger.removeAppender(a);
+          changed = true;
+        }
+      }
+      if (changed) {
+        loggerChanges++;
+      }
+    }
+
+    // The old filters are closed once no longer used, which unregisters
+    // their metrics
+    for (Map.Entry<String, Filter> e : filters.entrySet()) {
+      AppenderFilters.close(AppenderFilters.replace((AppenderSkeleton) built.get(e.getKey()), e.getValue()));
+    }
+
+    if (!next.threshold.equals(current.threshold)) {
+      repository.setThreshold(next.threshold.length() == 0 ? "ALL" : next.threshold);
+    }
+
+    // Close the appenders that are no longer used, but not the ones they
+    // hold that still are
+    Set<Appender> kept = identitySet(built.values());
+    int closed = 0;
+    for (Appender old : appenders.values()) {
+      if (!kept.contains(old)) {
+        retire(old, kept);
+        closed++;
+      }
+    }
+
+    current = next;
+    appenders = built;
+    return loggerChanges + " loggers changed, " + builder.created.size() + " appenders created, "
+        + closed + " closed, " + filters.size() + " filter chains replaced";
+  }
+
+  /**
+   * Close an appender that is no longer used, with its filters and layout,
+   * but not the appenders nested in it that are still used.
+   */
+  private static void retire(Appender appender, Set<Appender> used) {
+    if (appender instanceof AppenderAttachable) {
+      AppenderAttachable attachable = (AppenderAttachable) appender;
+      for (Appender a : used) {
+        if (attachable.isAttached(a)) {
+          attachable.removeAppender(a);
+        }
+      }
+    }
+    appender.close();
+    AppenderFilters.close(appender.getFilter());
+    if (appender.getLayout() instanceof SecurePatternLayout) {
+      ((SecurePatternLayout) appender.getLayout()).close();
+    }
+  }
+
+  private static Set<Appender> identitySet(Collection<Appender> appenders) {
+    Set<Appender> set = Collections.newSetFromMap(new IdentityHashMap<Appender, Boolean>());
+    set.addAll(appenders);
+    return set;
+  }
+
+  private static boolean containsIdentical(List<Appender> list, Appender a) {
+    for (Appender x : list) {
+      if (x == a) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Find the appenders the configuration refers to among those attached to
+   * the loggers of the repository.
+   */
+  private Map<String, Appender> findAppenders(Snapshot snapshot) {
+    Map<String, Appender> found = new HashMap<String, Appender>();
+    List<Logger> loggers = new ArrayList<Logger>();
+    loggers.add(repository.getRootLogger());
+    for (Enumeration<?> e = repository.getCurrentLoggers(); e.hasMoreElements();) {
+      loggers.add((Logger) e.nextElement());
+    }
+    for (Logger logger : loggers) {
+      collect(logger.getAllAppenders(), found);
+    }
+    found.keySet().retainAll(snapshot.referencedAppenders());
+    return found;
+  }
+
+  private static void collect(Enumeration<?> e, Map<String, Appender> found) {
+    while (e != null && e.hasMoreElements()) {
+      Appender a = (Appender) e.nextElement();
+      if (a.getName() != null && !found.containsKey(a.getName())) {
+        found.put(a.getName(), a);
+        if (a instanceof AppenderAttachable) {
+          collect(((AppenderAttachable) a).getAllAppenders(), found);
+        }
+      }
+    }
+  }
+
+  /**
+   * The names of the appenders an element refers to, in order.
+   */
+  static List<String> refs(Element element) {
+    List<String> refs = new ArrayList<String>();
+    NodeList children = element.getChildNodes();
+    for (int i = 0; i < children.getLength(); i++) {
+      Node n = children.item(i);
+      if (n instanceof Element && ((Element) n).getTagName().equals("appender-ref")) {
+        refs.add(OptionConverter.substVars(((Element) n).getAttribute("ref"), null));
+      }
+    }
+    return refs;
+  }
+
+  private static Element child(Element element, String tag, String otherTag) {
+    NodeList children = element.getChildNodes();
+    for (int i = 0; i < children.getLength(); i++) {
+      Node n = children.item(i);
+      if (n instanceof Element
+          && (((Element) n).getTagName().equals(tag) || ((Element) n).getTagName().equals(otherTag))) {
+        return (Element) n;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * A canonical form of an element, ignoring comments, the order of
+   * attributes and whitespace around text, used to tell whether it changed.
+   */
+  static String fingerprint(Element element) {
+    if (element == null) {
+      return "";
+    }
+    StringBuilder buf = new StringBuilder();
+    append(element, buf, null);
+    return buf.toString();
+  }
+
+  /**
+   * The canonical form of an appender element, either without its filters
+   * or of its filters alone.
+   */
+  static String fingerprint(Element appender, boolean withoutFilters) {
+    StringBuilder buf = new StringBuilder();
+    if (withoutFilters) {
+      append(appender, buf, "filter");
+    } else {
+      NodeList children = appender.getChildNodes();
+      for (int i = 0; i < children.getLength(); i++) {
+        Node n = children.item(i);
+        if (n instanceof Element && ((Element) n).getTagName().equals("filter")) {
+          append((Element) n, buf, null);
+        }
+      }
+    }
+    return buf.toString();
+  }
+
+  private static void append(Element element, StringBuilder buf, String skip) {
+    buf.append('<').append(element.getTagName());
+    NamedNodeMap attributes = element.getAttributes();
+    String[] names = new String[attributes.getLength()];
+    for (int i = 0; i < names.length; i++) {
+      names[i] = attributes.item(i).getNodeName();
+    }
+    Arrays.sort(names);
+    for (String attribute : names) {
+      buf.append(' ').append(attribute).append("=\"").append(element.getAttribute(attribute)).append('"');
+    }
+    buf.append('>');
+    NodeList children = element.getChildNodes();
+    for (int i = 0; i < children.getLength(); i++) {
+      Node n = children.item(i);
+      if (n instanceof Element) {
+        if (skip == null || !((Element) n).getTagName().equals(skip)) {
+          append((Element) n, buf, null);
+        }
+      } else if (n.getNodeType() == Node.TEXT_NODE || n.getNodeType() == Node.CDATA_SECTION_NODE) {
+        String text = n.getNodeValue().trim();
+        if (text.length() > 0) {
+          buf.append('"').append(text).append('"');
+        }
+      }
+    }
+    buf.append("</>");
+  }
+
+  private void register() {
+    objectName = MBeanRegistry.register(JMX_DOMAIN, "ConfigurationReloader",
+                                        name == null ? file.getName() : name, this);
+  }
+
+  private void unregister() {
+    MBeanRegistry.unregister(objectName, this);
+    objectName = null;
+  }
+
+  public String getFile() {
+    return file.getPath();
+  }
+
+  public long getReloadCount() {
+    return reloadCount;
+  }
+
+  public long getErrorCount() {
+    return errorCount;
+  }
+
+  public long getLastReloadMillis() {
+    return lastReloadMillis;
+  }
+
+  public long getLastReloadTime() {
+    return lastReloadTime;
+  }
+
+  public String getLastChanges() {
+    return lastChanges;
+  }
+
+  public String getLastError() {
+    return lastError;
+  }
+
+  /**
+   * The elements of a configuration that reloading compares: appenders by
+   * name, loggers by name (the root logger as ""), and the threshold.
+   */
+  private static final class Snapshot {
+    final Map<String, Element> appenders = new LinkedHashMap<String, Element>();
+    final Map<String, Element> loggers = new LinkedHashMap<String, Element>();
+    final String threshold;
+
+    Snapshot() {
+      threshold = "";
+    }
+
+    Snapshot(Document doc) {
+      Element root = doc.getDocumentElement();
+      String t = OptionConverter.substVars(root.getAttribute("threshold"), null);
+      threshold = "null".equals(t) ? "" : t;
+      NodeList children = root.getChildNodes();
+      for (int i = 0; i < children.getLength(); i++) {
+        Node n = children.item(i);
+        if (!(n instanceof Element)) {
+          continue;
+        }
+        Element e = (Element) n;
+        String tag = e.getTagName();
+        if (tag.equals("appender")) {
+          appenders.put(OptionConverter.substVars(e.getAttribute("name"), null), e);
+        } else if (tag.equals("logger") || tag.equals("category")) {
+          loggers.put(OptionConverter.substVars(e.getAttribute("name"), null), e);
+        } else if (tag.equals("root")) {
+          loggers.put(ROOT, e);
+        }
+      }
+    }
+
+    /**
+     * The appenders referred to by loggers, directly or through other
+     * appenders.
+     */
+    Set<String> referencedAppenders() {
+      Set<String> names = new HashSet<String>();
+      List<String> pending = new ArrayList<String>();
+      for (Element logger : loggers.values()) {
+        pending.addAll(refs(logger));
+      }
+      while (!pending.isEmpty()) {
+        String n = pending.remove(pending.size() - 1);
+        if (names.add(n)) {
+          Element appender = appenders.get(n);
+          if (appender != null) {
+            pending.addAll(refs(appender));
+          }
+        }
+      }
+      return names;
+    }
+  }
+
+  /**
+   * Creates appenders, filters and levels the way DOMConfigurator does,
+   * without touching the repository. Appenders that have not changed are
+   * reused when others refer to them.
+   */
+  private static final class Builder extends DOMConfigurator {
+    final Document doc;
+    final Map<String, Appender> reuse = new HashMap<String, Appender>();
+    final List<Appender> created = new ArrayList<Appender>();
+
+    Builder(Document doc) {
+      this.doc = doc;
+    }
+
+    @Override
+    protected Appender findAppenderByName(Document document, String appenderName) {
+      Appender a = reuse.get(appenderName);
+      if (a != null) {
+        return a;
+      }
+      a = super.findAppenderByName(document, appenderName);
+      if (a != null && !created.contains(a)) {
+        created.add(a);
+      }
+      return a;
+    }
+
+    Appender appender(String appenderName) {
+      return findAppenderByName(doc, appenderName);
+    }
+
+    /**
+     * The filters of an appender element, linked in a chain.
+     */
+    Filter filters(Element appender) {
+      NullAppender holder = new NullAppender();
+      holder.setName(appender.getAttribute("name"));
+      NodeList children = appender.getChildNodes();
+      for (int i = 0; i < children.getLength(); i++) {
+        Node n = children.item(i);
+        if (n instanceof Element && ((Element) n).getTagName().equals("filter")) {
+          parseFilters((Element) n, holder);
+        }
+      }
+      return holder.getFilter();
+    }
+
+    /**
+     * The level a level element sets, or null if there is none.
+     */
+    Level level(Element element, String loggerName) {
+      if (element == null) {
+        return null;
+      }
+      Logger scratch = new DetachedLogger(loggerName);
+      parseLevel(element, scratch, loggerName.equals(ROOT));
+      return scratch.getLevel();
+    }
+  }
+
+  /**
+   * A logger outside any repository, to have a level set on.
+   */
+  private static final class DetachedLogger extends Logger {
+    DetachedLogger(String name) {
+      super(name);
+    }
+  }
+}
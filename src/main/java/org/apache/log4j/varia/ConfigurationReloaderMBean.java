@@ -0,0 +1,63 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j.varia;
+
+/**
+ * JMX view of a {@link ConfigurationReloader}.
+ */
+public interface ConfigurationReloaderMBean {
+  /**
+   * @return the configuration file being watched
+   */
+  String getFile();
+
+  /**
+   * @return the number of reloads attempted since the reloader started
+   */
+  long getReloadCount();
+
+  /**
+   * @return the number of reloads that failed
+   */
+  long getErrorCount();
+
+  /**
+   * @return the time taken by the last reload, in milliseconds
+   */
+  long getLastReloadMillis();
+
+  /**
+   * @return when the last reload finished, in milliseconds since the epoch,
+   *         or 0 if there has not been one
+   */
+  long getLastReloadTime();
+
+  /**
+   * @return what the last successful reload changed
+   */
+  String getLastChanges();
+
+  /**
+   * @return the error that made the last failed reload fail, or null
+   */
+  String getLastError();
+
+  /**
+   * Reload the configuration file now.
+   *
+   * @return true if the configuration was read and applied
+   */
+  boolean reload();
+}
@@ -22,13 +22,22 @@
 
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
+import org.apache.log4j.MBeanRegistry;
+import org.apache.log4j.filter.RateLimitFilter;
 import org.apache.log4j.xml.DOMConfigurator;
 
 /**
  * Listener to initialize Log4j when a web application is deployed, and shutdown
  * cleanly when it is undeployed.
+ *
+ * <p>If the context parameter <code>log4j.watch</code> is true, changes to the
+ * configuration file are applied while the application runs (see
+ * {@link ConfigurationReloader}), once the file has been left alone for
+ * <code>log4j.watchDelay</code> milliseconds (500 by default).
  */
 public class Log4jContextListener implements ServletContextListener {
+  private ConfigurationReloader reloader;
+
   @Override
   public void contextInitialized(ServletContextEvent contextEvent) {
     ServletContext servletContext = contextEvent.getServletContext();
@@ -55,6 +64,20 @@ public void contextInitialized(ServletContextEvent contextEvent) {
 
       Logger log = Logger.getLogger(Log4jContextListener.class);
       log.info("Initialized log4j for " + contextPath + " using file: " + log4jConfig);
+
+      if (Boolean.parseBoolean(servletContext.getInitParameter("log4j.watch"))) {
+        String delay = servletContext.getInitParameter("log4j.watchDelay");
+        try {
+          reloader = new ConfigurationReloader(new File(log4jConfig), LogManager.getLoggerRepository(),
+              delay == null ? ConfigurationReloader.DEFAULT_DELAY : Long.parseLong(delay.trim()));
+          reloader.setName(contextPath);
+          reloader.start();
+          log.info("Watching " + log4jConfig + " for changes");
+        } catch (Exception e) {
+          reloader = null;
+          servletContext.log("Unable to watch " + log4jConfig + " for changes", e);
+        }
+      }
     } else {
       servletContext.log("Set servlet context parameter log4j.configuration to enable log4j for " + contextPath);
     }
@@ -65,8 +88,19 @@ public void contextDestroyed(ServletContextEvent contextEvent) {
     ServletContext servletContext = contextEvent.getServletContext();
     String contextPath = servletContext.getContextPath();
 
+    if (reloader != null) {
+      reloader.close();
+      reloader = null;
+    }
+
     // Make sure locks on log files are released
     LogManager.shutdown();
+
+    // Filters and layouts of appenders that do not close them would
+    // otherwise keep this application reachable from the MBean server
+    // and the thread of the rate limit filters
+    MBeanRegistry.unregisterAll();
+    RateLimitFilter.shutdown();
     servletContext.log("Shutdown log4j for " + contextPath);
   }
 }
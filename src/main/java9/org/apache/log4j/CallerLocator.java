@@ -0,0 +1,66 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.util.Iterator;
+
+import org.apache.log4j.spi.LocationInfo;
+
+/**
+ * Finds the code that called the logger, for the location conversions of
+ * {@link SecurePatternParser}. The caller is the frame after the first run
+ * of frames of the logger class (the <code>fqnOfCategoryClass</code> of the
+ * event), looking no deeper than {@link #MAX_DEPTH} frames.
+ *
+ * <p>This is the version for Java 9 and later, in the versioned part of the
+ * jar. It walks the stack with StackWalker, which stops at the caller and
+ * only creates the frames it looks at.
+ */
+final class CallerLocator {
+  /** Maximum number of frames examined. */
+  static final int MAX_DEPTH = 128;
+
+  private static final StackWalker walker = StackWalker.getInstance();
+
+  private CallerLocator() {
+  }
+
+  /**
+   * The location of the caller of the logger class <code>fqn</code>, or null
+   * if it is not on the stack of this thread.
+   */
+  static LocationInfo locate(String fqn) {
+    StackWalker.StackFrame f = walker.walk(frames -> caller(frames.iterator(), fqn));
+    if (f == null) {
+      return null;
+    }
+    return CallSiteCache.get(f.getClassName(), f.getMethodName(), f.getFileName(),
+                             f.getLineNumber());
+  }
+
+  private static StackWalker.StackFrame caller(Iterator<StackWalker.StackFrame> frames,
+                                               String fqn) {
+    boolean inLogger = false;
+    for (int depth = 0; depth < MAX_DEPTH && frames.hasNext(); depth++) {
+      StackWalker.StackFrame f = frames.next();
+      if (fqn.equals(f.getClassName())) {
+        inLogger = true;
+      } else if (inLogger) {
+        return f;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.RootLogger;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that {@link AsyncSecureFileAppender} writes everything logged by
+ * many threads, and what each policy does when the ring buffer is full.
+ */
+public class AsyncSecureFileAppenderTest {
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final Logger logger = new Hierarchy(new RootLogger(Level.DEBUG)).getLogger("test");
+  private final GatedLayout layout = new GatedLayout();
+  private AsyncSecureFileAppender appender;
+  private File file;
+
+  @After
+  public void close() {
+    layout.gate.countDown();
+    if (appender != null) {
+      appender.close();
+    }
+  }
+
+  @Test
+  public void manyThreadsLoseAndReorderNothing() throws Exception {
+    start(AsyncSecureFileAppender.FULL_BLOCK, 64, new PatternLayout("%t %m%n"));
+    final int threads = 8;
+    final int perThread = 20000;
+    List<Thread> started = new ArrayList<Thread>();
+    for (int p = 0; p < threads; p++) {
+      Thread t = new Thread(new Runnable() {
+        public void run() {
+          for (int i = 0; i < perThread; i++) {
+            append(Level.INFO, Integer.toString(i));
+          }
+        }
+      }, "producer-" + p);
+      t.start();
+      started.add(t);
+    }
+    for (Thread t : started) {
+      t.join();
+    }
+    appender.close();
+
+    int[] next = new int[threads];
+    List<String> lines = lines();
+    assertEquals(threads * perThread, lines.size());
+    for (String line : lines) {
+      int space = line.indexOf(' ');
+      int producer = Integer.parseInt(line.substring("producer-".length(), space));
+      assertEquals(line, next[producer]++, Integer.parseInt(line.substring(space + 1)));
+    }
+    assertEquals(0, appender.getDiscardedCount());
+  }
+
+  @Test
+  public void discardDropsAnyEventWhenFull() throws Exception {
+    start(AsyncSecureFileAppender.FULL_DISCARD, 2, layout);
+    fill();
+    append(Level.DEBUG, "debug");
+    append(Level.ERROR, "error");
+    assertEquals(2, appender.getDiscardedCount());
+
+    layout.gate.countDown();
+    appender.close();
+    List<String> lines = lines();
+    assertEquals(4, lines.size());
+    assertEquals("first", lines.get(0));
+    assertEquals("Discarded 2 logging events because the buffer of appender [test] was full",
+                 lines.get(3));
+  }
+
+  @Test
+  public void discardBelowWarnWaitsForSevereEvents() throws Exception {
+    start(AsyncSecureFileAppender.FULL_DISCARD_BELOW_WARN, 2, layout);
+    fill();
+    append(Level.INFO, "info");
+    assertEquals(1, appender.getDiscardedCount());
+    Thread warn = appendLater(Level.WARN, "warn");
+    assertWaiting(warn);
+
+    layout.gate.countDown();
+    warn.join(10000);
+    assertFalse(warn.isAlive());
+    appender.close();
+    List<String> lines = lines();
+    assertTrue(lines.toString(), lines.contains("warn"));
+    assertFalse(lines.contains("info"));
+    assertTrue(lines.toString(),
+               lines.contains("Discarded 1 logging events because the buffer of appender [test] was full"));
+  }
+
+  @Test
+  public void blockWaitsForRoom() throws Exception {
+    start(AsyncSecureFileAppender.FULL_BLOCK, 2, layout);
+    fill();
+    Thread debug = appendLater(Level.DEBUG, "debug");
+    assertWaiting(debug);
+
+    layout.gate.countDown();
+    debug.join(10000);
+    assertFalse(debug.isAlive());
+    appender.close();
+    assertEquals(0, appender.getDiscardedCount());
+    List<String> lines = lines();
+    assertEquals(4, lines.size());
+    assertEquals("debug", lines.get(3));
+  }
+
+  @Test
+  public void waitingThreadsGiveUpWhenDispatcherDies() throws Exception {
+    start(AsyncSecureFileAppender.FULL_BLOCK, 2, layout);
+    fill();
+    // waits for room, which the dispatcher never makes
+    Thread waiting = appendLater(Level.INFO, "waiting");
+    assertWaiting(waiting);
+
+    layout.die = true;
+    layout.gate.countDown();
+    waiting.join(10000);
+    assertFalse("still waiting for room", waiting.isAlive());
+    dispatcherThread().join(10000);
+
+    // the two events left in the buffer, the one that waited, and those
+    // logged afterwards
+    append(Level.ERROR, "after");
+    assertEquals(4, appender.getDiscardedCount());
+  }
+
+  private void start(String policy, int bufferSize, Layout layout) throws Exception {
+    file = new File(folder.getRoot(), "async.log");
+    appender = new AsyncSecureFileAppender();
+    appender.setName("test");
+    appender.setFile(file.getPath());
+    appender.setBufferSize(bufferSize);
+    appender.setFullBufferPolicy(policy);
+    appender.setLayout(layout);
+    appender.activateOptions();
+  }
+
+  /**
+   * Hold the dispatcher in the layout with the first event, and fill the
+   * buffer behind it.
+   */
+  private void fill() throws Exception {
+    append(Level.INFO, "first");
+    assertTrue(layout.entered.await(10, TimeUnit.SECONDS));
+    append(Level.INFO, "fill 1");
+    append(Level.INFO, "fill 2");
+  }
+
+  private void append(Level level, String message) {
+    appender.doAppend(new LoggingEvent(Logger.class.getName(), logger, level, message, null));
+  }
+
+  private Thread appendLater(final Level level, final String message) {
+    Thread t = new Thread(new Runnable() {
+      public void run() {
+        append(level, message);
+      }
+    });
+    t.start();
+    return t;
+  }
+
+  private static void assertWaiting(Thread t) throws Exception {
+    t.join(200);
+    assertTrue("expected to wait for room", t.isAlive());
+  }
+
+  private static Thread dispatcherThread() {
+    for (Thread t : Thread.getAllStackTraces().keySet()) {
+      if (t.getName().equals("AsyncSecureFileAppender-test")) {
+        return t;
+      }
+    }
+    return new Thread();
+  }
+
+  private List<String> lines() throws Exception {
+    return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Writes the message, holding the dispatcher on the event "first" until
+   * the gate opens, and then killing it if asked to.
+   */
+  static final class GatedLayout extends Layout {
+    final CountDownLatch entered = new CountDownLatch(1);
+    final CountDownLatch gate = new CountDownLatch(1);
+    volatile boolean die;
+
+    public String format(LoggingEvent event) {
+      String message = event.getRenderedMessage();
+      if (message.equals("first")) {
+        entered.countDown();
+        try {
+          gate.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        if (die) {
+          throw new DispatcherDeath();
+        }
+      }
+      return message + LINE_SEP;
+    }
+
+    public boolean ignoresThrowable() {
+      return true;
+    }
+
+    public void activateOptions() {
+    }
+  }
+
+  /** Stands in for an Error such as OutOfMemoryError. */
+  static final class DispatcherDeath extends Error {
+    private static final long serialVersionUID = 1L;
+
+    DispatcherDeath() {
+      super("dispatcher killed by the test");
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.RootLogger;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that events offered to an {@link EventRingBuffer} by many threads
+ * at once are all taken, each thread's in the order it offered them.
+ */
+public class EventRingBufferTest {
+  private final Logger logger = new Hierarchy(new RootLogger(Level.DEBUG)).getLogger("test");
+
+  @Test
+  public void capacityIsRoundedUpToPowerOfTwo() {
+    assertEquals(2, new EventRingBuffer(1).capacity());
+    assertEquals(8, new EventRingBuffer(5).capacity());
+    assertEquals(8, new EventRingBuffer(8).capacity());
+  }
+
+  @Test
+  public void refusesWhenFull() {
+    EventRingBuffer ring = new EventRingBuffer(4);
+    for (int i = 0; i < 4; i++) {
+      assertTrue(ring.offer(event(0, i)));
+    }
+    assertFalse(ring.offer(event(0, 4)));
+    assertEquals(0, ((Integer) ring.poll().getMessage()).intValue());
+    assertTrue(ring.offer(event(0, 4)));
+    for (int i = 1; i <= 4; i++) {
+      assertEquals(i, ((Integer) ring.poll().getMessage()).intValue());
+    }
+    assertNull(ring.poll());
+    assertTrue(ring.isEmpty());
+  }
+
+  @Test
+  public void manyProducersLoseAndReorderNothing() throws Exception {
+    // a small buffer, so that it wraps many times and is often full
+    final EventRingBuffer ring = new EventRingBuffer(16);
+    final int producers = 8;
+    final int perProducer = 50000;
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int p = 0; p < producers; p++) {
+      final int producer = p;
+      Thread t = new Thread(new Runnable() {
+        public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          for (int i = 0; i < perProducer; i++) {
+            LoggingEvent e = event(producer, i);
+            while (!ring.offer(e)) {
+              Thread.yield();
+            }
+          }
+        }
+      });
+      t.start();
+      threads.add(t);
+    }
+
+    start.countDown();
+    int[] next = new int[producers];
+    int taken = 0;
+    long deadline = System.currentTimeMillis() + 60000;
+    while (taken < producers * perProducer) {
+      assertTrue("timed out after " + taken + " events", System.currentTimeMillis() < deadline);
+      LoggingEvent e = ring.poll();
+      if (e == null) {
+        Thread.yield();
+        continue;
+      }
+      int producer = Integer.parseInt(e.getNDC());
+      assertEquals("producer " + producer, next[producer], ((Integer) e.getMessage()).intValue());
+      next[producer]++;
+      taken++;
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    assertNull(ring.poll());
+    assertTrue(ring.isEmpty());
+  }
+
+  private LoggingEvent event(int producer, int sequence) {
+    return new LoggingEvent(Logger.class.getName(), logger, 0, Level.INFO, Integer.valueOf(sequence),
+                            "thread", null, String.valueOf(producer), null, null);
+  }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the output of {@link SecurePatternLayout} with the algorithm it
+ * used before escaping was done in a single pass (kept below as
+ * {@link #original(String, String, String)}), for separators and escapes
+ * chosen to trip up a single pass implementation.
+ */
+public class RecordEscaperTest {
+  private static final Charset UTF8 = StandardCharsets.UTF_8;
+
+  private static final Logger LOGGER = Logger.getLogger(RecordEscaperTest.class);
+
+  /**
+   * The escaping and termination done by SecurePatternLayout.format() before
+   * RecordEscaper, copied with two changes that make no difference whenever
+   * the original completed: it advanced by a fixed 2 after each insertion,
+   * which never terminates for escapes longer than one character, so here it
+   * advances past what was inserted and matched; and it threw when the
+   * content was shorter than the line separator but matched its tail, which
+   * here is terminated like any other record without a line separator.
+   */
+  static String original(String content, String recordSeparator, String escapeCharacter) {
+    StringBuffer sbuf = new StringBuffer(content);
+    int escLen = escapeCharacter.length();
+
+    // Escape any occurences of the escape character in the content
+    int offset = 0;
+    int nextOccurence;
+    while ((nextOccurence = sbuf.indexOf(escapeCharacter, offset)) != -1) {
+      sbuf.insert(nextOccurence, escapeCharacter);
+      offset = nextOccurence + 2 * escLen;
+    }
+    // Escape any occurences of the record separator in the content
+    if (!recordSeparator.equals(escapeCharacter)) {
+      offset = 0;
+      while ((nextOccurence = sbuf.indexOf(recordSeparator, offset)) != -1) {
+        sbuf.insert(nextOccurence, escapeCharacter);
+        offset = nextOccurence + escLen + 1;
+      }
+    }
+    // Add the end mark, adjusting the line separator, if any
+    if (sbuf.length() >= Layout.LINE_SEP_LEN
+        && sbuf.lastIndexOf(Layout.LINE_SEP) == sbuf.length() - Layout.LINE_SEP_LEN) {
+      sbuf.insert(sbuf.length() - Layout.LINE_SEP_LEN, recordSeparator);
+    } else {
+      sbuf.append(recordSeparator);
+      sbuf.append(Layout.LINE_SEP);
+    }
+    return sbuf.toString();
+  }
+
+  @Test
+  public void defaultSeparatorAndEscape() {
+    check("\u00AE", "\u00AE", "", "x", "\u00AE", "\u00AE\u00AE", "\u00AE\u00AE\u00AE\u00AE\u00AE",
+          "a\u00AEb\u00AE\u00AEc", "\u00AE\n", "\n\u00AE", "\u00AA\u00AE\u00AA");
+  }
+
+  @Test
+  public void separatorNextToEscape() {
+    check("\u00AE", "\u00AA", "\u00AA\u00AE", "\u00AE\u00AA", "\u00AA\u00AA\u00AE\u00AE",
+          "\u00AE\u00AA\u00AE\u00AA", "x\u00AA", "\u00AA", "\u00AE");
+    check("|", "\\", "\\|", "|\\", "\\\\||", "|\\|\\|", "a\\|b|\\c");
+  }
+
+  @Test
+  public void multiCharacterSequences() {
+    check("<EOR>", "\\", "<EOR>", "<<EOR>>", "\\<EOR>", "<EOR\\>", "<EOR><EOR>", "<EO");
+    check("|", "\\e", "\\e|", "|\\e", "\\e\\e", "\\ee|", "\\\\e");
+    check("<>", "##", "#<>#", "###", "<#>", "<>##<>", "##<>##");
+    check("ab", "ab", "ab", "aab", "abab", "aabb", "a");
+  }
+
+  @Test
+  public void overlappingPrefixes() {
+    check("aab", "\\", "aaab", "aaaab", "aabaab", "aaabaab", "aa");
+    check("abab", "ab", "ababab", "abababab", "aabab", "ab");
+    check("aa", "a", "a", "aa", "aaa", "aaaa", "baab");
+    check("a", "aa", "a", "aa", "aaa", "aaaaa");
+    check("\u00AE\u00AE", "\u00AE", "\u00AE", "\u00AE\u00AE\u00AE", "x\u00AE\u00AEx");
+  }
+
+  @Test
+  public void shortRecords() {
+    check("\u00AE", "\u00AE", "", "x", "\n", "\r", "\r\n");
+    check("<EOR>", "##", "", "#", "<", "\n");
+  }
+
+  @Test
+  public void everyShortString() {
+    String[][] configs = { { "|", "\\" }, { "|", "|" }, { "ab", "b" }, { "aba", "\\" },
+        { "a", "ab" }, { "ab", "ba" }, { "aa", "a" } };
+    for (String[] config : configs) {
+      String alphabet = alphabet(config[0], config[1]);
+      List<String> inputs = new ArrayList<String>();
+      inputs.add("");
+      int from = 0;
+      for (int length = 1; length <= 5; length++) {
+        int to = inputs.size();
+        for (int i = from; i < to; i++) {
+          for (int j = 0; j < alphabet.length(); j++) {
+            inputs.add(inputs.get(i) + alphabet.charAt(j));
+          }
+        }
+        from = to;
+      }
+      check(config[0], config[1], inputs.toArray(new String[0]));
+    }
+  }
+
+  @Test
+  public void randomLongStrings() {
+    Random random = new Random(20260101L);
+    String[][] configs = { { "\u00AE", "\u00AE" }, { "\u00AE", "\u00AA" }, { "<EOR>", "\\" },
+        { "abab", "ab" }, { "aab", "aa" } };
+    for (String[] config : configs) {
+      String alphabet = alphabet(config[0], config[1]);
+      String[] inputs = new String[200];
+      for (int i = 0; i < inputs.length; i++) {
+        StringBuilder buf = new StringBuilder();
+        int length = random.nextInt(2000);
+        for (int j = 0; j < length; j++) {
+          buf.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        inputs[i] = buf.toString();
+      }
+      check(config[0], config[1], inputs);
+    }
+  }
+
+  @Test
+  public void countsEscapesNotCharacters() {
+    RecordEscaper escaper = new RecordEscaper("<EOR>", "\\e");
+    char[] src = "a\\eb<EOR>c\\e\\e".toCharArray();
+    long counts = escaper.escape(src, 0, src.length, new StringBuilder());
+    assertEquals(1, RecordEscaper.separators(counts));
+    assertEquals(3, RecordEscaper.escapes(counts));
+
+    escaper = new RecordEscaper("|", "\\");
+    src = "\\|\\".toCharArray();
+    counts = escaper.escape(src, 0, src.length, new StringBuilder());
+    assertEquals(1, RecordEscaper.separators(counts));
+    assertEquals(2, RecordEscaper.escapes(counts));
+
+    // the same character: every escape is counted as a separator
+    escaper = new RecordEscaper("\u00AE", "\u00AE");
+    src = "\u00AE\u00AE".toCharArray();
+    counts = escaper.escape(src, 0, src.length, new StringBuilder());
+    assertEquals(2, RecordEscaper.separators(counts));
+    assertEquals(0, RecordEscaper.escapes(counts));
+  }
+
+  private static String alphabet(String recordSeparator, String escapeCharacter) {
+    StringBuilder buf = new StringBuilder("x\n");
+    for (char c : (recordSeparator + escapeCharacter).toCharArray()) {
+      if (buf.indexOf(String.valueOf(c)) < 0) {
+        buf.append(c);
+      }
+    }
+    return buf.toString();
+  }
+
+  /**
+   * Check each message with and without a line separator at the end of the
+   * pattern, through every output path of the layout.
+   */
+  private static void check(String recordSeparator, String escapeCharacter, String... messages) {
+    for (String pattern : new String[] { "%m", "%m%n" }) {
+      SecurePatternLayout layout = new SecurePatternLayout(pattern);
+      layout.setRecordSeparator(recordSeparator);
+      layout.setEscapeCharacter(escapeCharacter);
+      layout.activateOptions();
+      for (String message : messages) {
+        String content = pattern.equals("%m") ? message : message + Layout.LINE_SEP;
+        String expected = original(content, recordSeparator, escapeCharacter);
+        String context = "separator " + visible(recordSeparator) + ", escape " + visible(escapeCharacter)
+            + ", pattern " + pattern + ", message " + visible(message);
+        LoggingEvent event = new LoggingEvent(Logger.class.getName(), LOGGER, Level.INFO, message, null);
+
+        assertEquals(context, visible(expected), visible(layout.format(event)));
+
+        StringWriter writer = new StringWriter();
+        try {
+          layout.encode(event, writer);
+        } catch (Exception e) {
+          throw new AssertionError(context, e);
+        }
+        assertEquals(context, visible(expected), visible(writer.toString()));
+
+        // a small buffer, so longer records are drained part way through
+        Destination destination = new Destination(7);
+        layout.encode(event, UTF8.newEncoder(), destination);
+        assertArrayEquals(context, expected.getBytes(UTF8), destination.bytes());
+      }
+    }
+  }
+
+  private static String visible(String s) {
+    return s.replace("\r", "\\r").replace("\n", "\\n");
+  }
+
+  private static final class Destination implements ByteBufferDestination {
+    private final ByteBuffer buf;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    Destination(int size) {
+      buf = ByteBuffer.allocate(size);
+    }
+
+    public ByteBuffer getByteBuffer() {
+      return buf;
+    }
+
+    public ByteBuffer drain(ByteBuffer b) {
+      out.write(b.array(), 0, b.position());
+      ((Buffer) b).clear();
+      return b;
+    }
+
+    byte[] bytes() {
+      drain(buf);
+      return out.toByteArray();
+    }
+  }
+}
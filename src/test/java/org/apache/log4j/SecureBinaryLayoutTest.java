@@ -0,0 +1,209 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.RootLogger;
+import org.apache.log4j.spi.ThrowableInformation;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Writes events with {@link SecureBinaryLayout}, and checks that
+ * {@link SecureBinaryToText} turns them into the text
+ * {@link SecurePatternLayout} writes for the same events.
+ */
+public class SecureBinaryLayoutTest {
+  private static final String PATTERN = SecureBinaryToText.DEFAULT_PATTERN + "%X{user}%n";
+  private static final String FQCN = SecureBinaryLayoutTest.class.getName();
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final Hierarchy hierarchy = new Hierarchy(new RootLogger(Level.DEBUG));
+
+  @Test
+  public void binaryConvertsToPatternLayoutText() throws Exception {
+    Random random = new Random(19);
+    Exception cause = new IllegalArgumentException("bad \u00E9 argument");
+    Exception failure = new IllegalStateException("failed", cause);
+    failure.addSuppressed(new RuntimeException("while closing"));
+    Level[] levels = {Level.TRACE, Level.DEBUG, Level.INFO, Level.WARN, Level.ERROR, Level.FATAL,
+                      Level.ALL, Level.OFF, new Notice()};
+
+    List<LoggingEvent> events = new ArrayList<LoggingEvent>();
+    long time = 1760000000000L;
+    for (int i = 0; i < 3000; i++) {
+      // mostly small steps, some back in time and some far ahead
+      switch (random.nextInt(20)) {
+      case 0:
+        time -= random.nextInt(100000);
+        break;
+      case 1:
+        time += 1L << (20 + random.nextInt(20));
+        break;
+      default:
+        time += random.nextInt(50);
+      }
+      Map<String, String> mdc = null;
+      if (random.nextBoolean()) {
+        mdc = new HashMap<String, String>();
+        mdc.put("user", "user" + random.nextInt(20));
+        if (random.nextBoolean()) {
+          mdc.put("request", "r\u00E9q " + i);
+        }
+      }
+      ThrowableInformation throwable = null;
+      if (random.nextInt(10) == 0) {
+        throwable = new ThrowableInformation(random.nextBoolean() ? failure : cause);
+      }
+      events.add(new LoggingEvent(FQCN, hierarchy.getLogger("com.acme." + random.nextInt(200)),
+                                  time, levels[random.nextInt(levels.length)], message(random, i),
+                                  "thread-" + random.nextInt(50), throwable,
+                                  random.nextInt(4) == 0 ? "ndc \u00FC " + i : null, null, mdc));
+    }
+    assertRoundTrip(events);
+  }
+
+  @Test
+  public void stringTableOverflowsToInlineStrings() throws Exception {
+    // more distinct names than the string table holds, so the later ones
+    // are written in full, and references need three byte varints
+    Logger logger = hierarchy.getLogger("overflow");
+    List<LoggingEvent> events = new ArrayList<LoggingEvent>();
+    for (int i = 0; i < SecureBinaryFormat.MAX_STRINGS + 1000; i++) {
+      events.add(new LoggingEvent(FQCN, logger, 1760000000000L + i, Level.INFO, "event " + i,
+                                  "thread-" + i, null, null, null, null));
+    }
+    for (int i = 0; i < 100; i++) {
+      events.add(new LoggingEvent(FQCN, logger, 1760000000000L + i, Level.INFO, "again " + i,
+                                  "thread-" + (i * 700), null, null, null, null));
+    }
+    assertRoundTrip(events);
+  }
+
+  @Test
+  public void varints() {
+    long[] values = {
+      0, 1, 127, 128, 16383, 16384, (1L << 21) - 1, 1L << 21, 1L << 35, Long.MAX_VALUE, -1,
+      Long.MIN_VALUE
+    };
+    for (long v : values) {
+      SecureBinaryLayout.Bytes b = new SecureBinaryLayout.Bytes(1);
+      b.varint(v);
+      assertEquals(Long.toString(v), SecureBinaryLayout.Bytes.varintLength(v), b.len);
+      long decoded = 0;
+      for (int i = 0; i < b.len; i++) {
+        assertEquals(i < b.len - 1, b.buf[i] < 0);
+        decoded |= (long) (b.buf[i] & 0x7F) << (7 * i);
+      }
+      assertEquals(v, decoded);
+    }
+  }
+
+  @Test
+  public void utf8MatchesTheStandardEncoder() {
+    Random random = new Random(20);
+    char[] chars = {'a', '\u00E9', '\u07FF', '\u0800', '\uFFFD', '\uD83D', '\uDE00', '\u0000'};
+    for (int i = 0; i < 2000; i++) {
+      StringBuilder sb = new StringBuilder();
+      for (int n = random.nextInt(12); n > 0; n--) {
+        sb.append(chars[random.nextInt(chars.length)]);
+      }
+      String s = sb.toString();
+      byte[] expected = s.getBytes(StandardCharsets.UTF_8);
+      SecureBinaryLayout.Bytes b = new SecureBinaryLayout.Bytes(1);
+      b.utf8(s);
+      assertEquals(s, expected.length, SecureBinaryLayout.Bytes.utf8Length(s));
+      assertEquals(s, new String(expected, StandardCharsets.ISO_8859_1),
+                   new String(b.buf, 0, b.len, StandardCharsets.ISO_8859_1));
+    }
+  }
+
+  /**
+   * Writes the events in two runs of the appender, the second appending to
+   * the file, and compares the converted file with the text of the events.
+   */
+  private void assertRoundTrip(List<LoggingEvent> events) throws Exception {
+    SecurePatternLayout text = new SecurePatternLayout(PATTERN);
+    StringBuilder expected = new StringBuilder();
+    for (LoggingEvent event : events) {
+      expected.append(text.format(event));
+    }
+
+    File file = folder.newFile();
+    SecureBinaryLayout layout = new SecureBinaryLayout();
+    int half = events.size() / 2;
+    for (int run = 0; run < 2; run++) {
+      SecureFileAppender appender = new SecureFileAppender(layout, file.getPath(), true);
+      try {
+        for (LoggingEvent event : events.subList(run == 0 ? 0 : half,
+                                                 run == 0 ? half : events.size())) {
+          appender.doAppend(event);
+        }
+      } finally {
+        appender.close();
+      }
+    }
+
+    StringWriter out = new StringWriter();
+    SecureBinaryReader reader = new SecureBinaryReader(file);
+    try {
+      assertEquals(events.size(),
+                   SecureBinaryToText.convert(reader, new SecurePatternLayout(PATTERN), out));
+    } finally {
+      reader.close();
+    }
+    assertEquals(expected.toString(), out.toString());
+  }
+
+  private static String message(Random random, int i) {
+    switch (random.nextInt(10)) {
+    case 0:
+      StringBuilder sb = new StringBuilder();
+      for (int n = random.nextInt(30000); n > 0; n--) {
+        sb.append("long \u00E9\u20AC\uD83D\uDE00 ");
+      }
+      return sb.toString();
+    case 1:
+      return "";
+    case 2:
+      return "line one" + Layout.LINE_SEP + "line \u00AE two";
+    default:
+      return "message " + i;
+    }
+  }
+
+  /** A level that is not one of the standard levels. */
+  private static final class Notice extends Level {
+    private static final long serialVersionUID = 1L;
+
+    Notice() {
+      super(25000, "NOTICE", 5);
+    }
+  }
+}
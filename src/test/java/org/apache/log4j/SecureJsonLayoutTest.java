@@ -0,0 +1,84 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.RootLogger;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks how {@link SecureJsonLayout} writes throwables whose causes and
+ * suppressed throwables refer back to each other.
+ */
+public class SecureJsonLayoutTest {
+  private final Logger logger = new Hierarchy(new RootLogger(Level.DEBUG)).getLogger("test");
+
+  @Test
+  public void circularCauseIsMarked() {
+    Exception a = new Exception("a");
+    Exception b = new Exception("b", a);
+    a.initCause(b);
+
+    String json = format(a);
+    assertEquals(1, count(json, "\"message\":\"b\""));
+    assertTrue(json, json.contains("\"cause\":{\"circularReference\":\"java.lang.Exception: a\"}"));
+    assertTrue(json.endsWith("}}}\n"));
+  }
+
+  @Test
+  public void suppressedSelfIsMarked() {
+    Exception a = new Exception("a");
+    Exception b = new Exception("b");
+    a.addSuppressed(b);
+    b.addSuppressed(a);
+
+    String json = format(a);
+    assertTrue(json, json.contains("\"suppressed\":[{\"circularReference\":\"java.lang.Exception: a\"}]"));
+  }
+
+  @Test
+  public void sharedThrowablesAreWrittenOnce() {
+    // each level refers to the next twice, which without tracking the
+    // throwables already written doubles the output at every level
+    Exception next = new Exception("last");
+    for (int i = 0; i < 15; i++) {
+      Exception e = new Exception("level " + i, next);
+      e.addSuppressed(next);
+      next = e;
+    }
+
+    String json = format(next);
+    assertEquals(1, count(json, "\"message\":\"last\""));
+    assertEquals(15, count(json, "circularReference"));
+  }
+
+  private String format(Throwable t) {
+    SecureJsonLayout layout = new SecureJsonLayout();
+    layout.activateOptions();
+    return layout.format(new LoggingEvent(Logger.class.getName(), logger, 0, Level.ERROR,
+                                          "failed", t));
+  }
+
+  private static int count(String s, String part) {
+    int n = 0;
+    for (int i = s.indexOf(part); i >= 0; i = s.indexOf(part, i + 1)) {
+      n++;
+    }
+    return n;
+  }
+}
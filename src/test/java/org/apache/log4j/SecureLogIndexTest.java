@@ -0,0 +1,110 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.io.File;
+
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.RootLogger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the logger names in a {@link SecureLogIndex}.
+ */
+public class SecureLogIndexTest {
+  private static final long INTERVAL = 60000;
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final Hierarchy hierarchy = new Hierarchy(new RootLogger(Level.DEBUG));
+
+  @Test
+  public void findsLoggersAndAncestors() throws Exception {
+    File log = folder.newFile("app.log");
+    SecureLogIndexWriter writer = new SecureLogIndexWriter(log, INTERVAL, true, false, 0);
+    writer.record(0, event("com.example.web.Controller", 1000));
+    writer.record(100, event("com.example.db.Pool", 2000));
+    writer.record(200, event("com.example.web.Controller", 3000));
+    writer.record(300, event("org.other.Thing", INTERVAL + 1000));
+    writer.close(400);
+
+    SecureLogIndex index = new SecureLogIndex(SecureLogIndex.indexFileFor(log));
+    assertEquals(2, index.size());
+    assertTrue(index.mayContainLogger(0, "com.example.web.Controller"));
+    assertTrue(index.mayContainLogger(0, "com.example.web"));
+    assertTrue(index.mayContainLogger(0, "com.example.db"));
+    assertTrue(index.mayContainLogger(0, "com"));
+    assertFalse(index.mayContainLogger(0, "org.other.Thing"));
+    assertTrue(index.mayContainLogger(1, "org.other.Thing"));
+    assertTrue(index.mayContainLogger(1, "org"));
+    assertFalse(index.mayContainLogger(1, "com.example"));
+  }
+
+  @Test
+  public void manyLoggersDoNotSaturateFilter() throws Exception {
+    File log = folder.newFile("busy.log");
+    SecureLogIndexWriter writer = new SecureLogIndexWriter(log, INTERVAL, true, false, 0);
+    int loggers = 2000;
+    for (int i = 0; i < loggers; i++) {
+      writer.record(i * 100L, event("com.example.service" + (i % 50) + ".Class" + i, 1000));
+    }
+    writer.close(loggers * 100L);
+
+    SecureLogIndex index = new SecureLogIndex(SecureLogIndex.indexFileFor(log));
+    assertEquals(1, index.size());
+    for (int i = 0; i < loggers; i++) {
+      assertTrue(index.mayContainLogger(0, "com.example.service" + (i % 50) + ".Class" + i));
+      assertTrue(index.mayContainLogger(0, "com.example.service" + (i % 50)));
+    }
+    int falsePositives = 0;
+    int absent = 10000;
+    for (int i = 0; i < absent; i++) {
+      if (index.mayContainLogger(0, "org.absent" + i + ".Class" + i)) {
+        falsePositives++;
+      }
+    }
+    assertTrue("false positives: " + falsePositives, falsePositives < absent * 3 / 100);
+  }
+
+  @Test
+  public void appendsToExistingIndex() throws Exception {
+    File log = folder.newFile("append.log");
+    SecureLogIndexWriter writer = new SecureLogIndexWriter(log, INTERVAL, true, false, 0);
+    writer.record(0, event("first", 1000));
+    writer.close(100);
+
+    writer = new SecureLogIndexWriter(log, INTERVAL, true, true, 100);
+    writer.record(100, event("second", INTERVAL + 1000));
+    writer.close(200);
+
+    SecureLogIndex index = new SecureLogIndex(SecureLogIndex.indexFileFor(log));
+    assertEquals(2, index.size());
+    assertEquals(100, index.getOffset(1));
+    assertTrue(index.mayContainLogger(0, "first"));
+    assertTrue(index.mayContainLogger(1, "second"));
+  }
+
+  private LoggingEvent event(String loggerName, long time) {
+    return new LoggingEvent(Logger.class.getName(), hierarchy.getLogger(loggerName), time,
+                            Level.INFO, "message", null);
+  }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.RootLogger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Writes records with {@link SecurePatternLayout} and reads them back with
+ * {@link SecureLogReader}.
+ */
+public class SecureLogReaderTest {
+  private static final String SEP = "\u00AE";
+  private static final String ESC = "\u00AA";
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final Logger logger = new Hierarchy(new RootLogger(Level.DEBUG)).getLogger("test");
+
+  @Test
+  public void multiLineRecordsAreReadWhole() throws Exception {
+    SecurePatternLayout layout = layout(SEP, SEP);
+    LoggingEvent withThrowable = event("failed", new IllegalStateException("broken"));
+    File file = write(layout, StandardCharsets.UTF_8,
+                      event("one" + Layout.LINE_SEP + "two" + Layout.LINE_SEP + "three", null),
+                      withThrowable,
+                      event("last", null));
+
+    List<LogRecord> records = readAll(file, "UTF-8", layout);
+    assertEquals(3, records.size());
+    assertEquals("one" + Layout.LINE_SEP + "two" + Layout.LINE_SEP + "three",
+                 records.get(0).toString());
+    assertEquals(expected(layout, withThrowable), records.get(1).toString());
+    assertTrue(records.get(1).toString().contains("java.lang.IllegalStateException: broken"));
+    assertEquals("last", records.get(2).toString());
+  }
+
+  @Test
+  public void escapedSeparatorsAreUnescaped() throws Exception {
+    for (String escape : new String[] {SEP, ESC}) {
+      SecurePatternLayout layout = layout(SEP, escape);
+      String[] messages = {
+        SEP, SEP + SEP, escape + SEP, SEP + Layout.LINE_SEP, escape + Layout.LINE_SEP,
+        "a" + SEP + Layout.LINE_SEP + "b", escape + escape + escape, "ends with " + SEP,
+        "ends with " + escape
+      };
+      LoggingEvent[] events = new LoggingEvent[messages.length];
+      for (int i = 0; i < messages.length; i++) {
+        events[i] = event(messages[i], null);
+      }
+      File file = write(layout, StandardCharsets.UTF_8, events);
+      assertEquals(Arrays.asList(messages), strings(readAll(file, "UTF-8", layout)));
+    }
+  }
+
+  @Test
+  public void contentIsUnescapedOnlyWhenUsed() throws Exception {
+    SecurePatternLayout layout = layout(SEP, ESC);
+    File file = write(layout, StandardCharsets.UTF_8, event("a" + SEP + "b", null),
+                      event("plain", null));
+    List<LogRecord> records = readAll(file, "UTF-8", layout);
+
+    // the raw bytes are as they are in the file, escape included
+    LogRecord escaped = records.get(0);
+    assertEquals("a" + ESC + SEP + "b", decode(escaped.getRawBytes(), StandardCharsets.UTF_8));
+    assertEquals(3, escaped.length());
+    assertEquals(SEP.charAt(0), escaped.charAt(1));
+    assertEquals(SEP + "b", escaped.subSequence(1, 3).toString());
+
+    // plain ASCII records are read straight from the bytes
+    LogRecord plain = records.get(1);
+    assertEquals(5, plain.length());
+    assertEquals('l', plain.charAt(1));
+    assertEquals("lai", plain.subSequence(1, 4).toString());
+    assertEquals("plain", plain.toString());
+    try {
+      plain.charAt(5);
+      fail();
+    } catch (IndexOutOfBoundsException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void nonAsciiIsDecoded() throws Exception {
+    SecurePatternLayout layout = layout(SEP, ESC);
+    String utf8 = "caf\u00E9 \u65E5\u672C \uD83D\uDE00 " + SEP + " \u20AC";
+    File file = write(layout, StandardCharsets.UTF_8, event(utf8, null), event("ascii", null));
+    List<LogRecord> records = readAll(file, "UTF-8", layout);
+    assertEquals(Arrays.asList(utf8, "ascii"), strings(records));
+    assertEquals(utf8.length(), records.get(0).length());
+    assertEquals('\u00E9', records.get(0).charAt(3));
+
+    // single byte encodings are read byte by byte
+    String latin1 = "na\u00EFve d\u00E9j\u00E0 vu " + SEP;
+    file = write(layout, StandardCharsets.ISO_8859_1, event(latin1, null));
+    records = readAll(file, "ISO-8859-1", layout);
+    assertEquals(Arrays.asList(latin1), strings(records));
+    assertEquals('\u00EF', records.get(0).charAt(2));
+  }
+
+  @Test
+  public void recordsLargerThanWindowAreRead() throws Exception {
+    SecurePatternLayout layout = layout(SEP, SEP);
+    StringBuilder large = new StringBuilder();
+    for (int i = 0; large.length() < 100000; i++) {
+      large.append("line ").append(i).append(i % 7 == 0 ? SEP : "").append(Layout.LINE_SEP);
+    }
+    File file = write(layout, StandardCharsets.UTF_8, event("before", null),
+                      event(large.toString(), null), event("after", null));
+
+    SecureLogReader reader = new SecureLogReader(file, "UTF-8", layout);
+    try {
+      reader.setWindowSize(4096);
+      List<String> read = new ArrayList<String>();
+      for (LogRecord r = reader.next(); r != null; r = reader.next()) {
+        assertTrue(r.isTerminated());
+        read.add(r.toString());
+      }
+      assertEquals(Arrays.asList("before", large.toString(), "after"), read);
+    } finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void unterminatedRecordIsReturnedAgainOnceComplete() throws Exception {
+    SecurePatternLayout layout = layout(SEP, SEP);
+    File file = write(layout, StandardCharsets.UTF_8, event("first", null));
+    String second = layout.format(event("second", null));
+    int half = second.length() / 2;
+    append(file, second.substring(0, half));
+
+    SecureLogReader reader = new SecureLogReader(file, "UTF-8", layout);
+    try {
+      assertEquals("first", reader.next().toString());
+      LogRecord partial = reader.next();
+      assertFalse(partial.isTerminated());
+      assertEquals(second.substring(0, half), partial.toString());
+      assertNull(reader.next());
+
+      append(file, second.substring(half));
+      reader.seek(partial.getOffset());
+      LogRecord complete = reader.next();
+      assertTrue(complete.isTerminated());
+      assertEquals("second", complete.toString());
+      assertNull(reader.next());
+    } finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void rejectsUnsupportedEncodingsAndSeparators() throws Exception {
+    File file = folder.newFile();
+    try {
+      new SecureLogReader(file, "UTF-16", SEP, SEP);
+      fail("UTF-16 accepted");
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("UTF-16"));
+    }
+    try {
+      new SecureLogReader(file, "UTF-8", SEP + SEP, SEP);
+      fail("two character separator accepted");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      new SecureLogReader(file, "UTF-8", SEP, "");
+      fail("empty escape accepted");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  private SecurePatternLayout layout(String separator, String escape) {
+    SecurePatternLayout layout = new SecurePatternLayout("%m%n");
+    layout.setRecordSeparator(separator);
+    layout.setEscapeCharacter(escape);
+    layout.activateOptions();
+    return layout;
+  }
+
+  private LoggingEvent event(String message, Throwable t) {
+    return new LoggingEvent(Logger.class.getName(), logger, Level.INFO, message, t);
+  }
+
+  private File write(SecurePatternLayout layout, Charset charset, LoggingEvent... events)
+      throws IOException {
+    File file = folder.newFile();
+    for (LoggingEvent event : events) {
+      append(file, layout.format(event), charset);
+    }
+    return file;
+  }
+
+  private static void append(File file, String text) throws IOException {
+    append(file, text, StandardCharsets.UTF_8);
+  }
+
+  private static void append(File file, String text, Charset charset) throws IOException {
+    OutputStream out = new FileOutputStream(file, true);
+    try {
+      out.write(text.getBytes(charset));
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * The content of the record the layout writes for an event: the text
+   * without the terminator, and with escapes removed.
+   */
+  private static String expected(SecurePatternLayout layout, LoggingEvent event) {
+    String text = layout.format(event);
+    String esc = layout.getEscapeCharacter();
+    String sep = layout.getRecordSeparator();
+    text = text.substring(0, text.length() - sep.length() - Layout.LINE_SEP.length());
+    StringBuilder buf = new StringBuilder();
+    for (int i = 0; i < text.length(); i++) {
+      if (text.startsWith(esc, i)
+          && (text.startsWith(esc, i + 1) || text.startsWith(sep, i + 1))) {
+        i++;
+      }
+      buf.append(text.charAt(i));
+    }
+    return buf.toString();
+  }
+
+  private static List<LogRecord> readAll(File file, String encoding, SecurePatternLayout layout)
+      throws IOException {
+    List<LogRecord> records = new ArrayList<LogRecord>();
+    SecureLogReader reader = new SecureLogReader(file, encoding, layout);
+    try {
+      for (LogRecord r = reader.next(); r != null; r = reader.next()) {
+        assertTrue(r.isTerminated());
+        records.add(r);
+      }
+    } finally {
+      reader.close();
+    }
+    return records;
+  }
+
+  private static List<String> strings(List<LogRecord> records) {
+    List<String> strings = new ArrayList<String>();
+    for (LogRecord r : records) {
+      strings.add(r.toString());
+    }
+    return strings;
+  }
+
+  private static String decode(ByteBuffer bytes, Charset charset) {
+    return charset.decode(bytes).toString();
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.RootLogger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that splitting a log file into chunks finds the same records as
+ * reading it from the start, wherever the chunks begin: in particular in
+ * the middle of long runs of record separators and escape characters, whose
+ * parity decides where a record ends.
+ */
+public class SecureLogSpliteratorTest {
+  private static final String SEPARATOR = "\u00AE";
+  private static final String ESCAPE = "\u00AA";
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final Logger logger = new Hierarchy(new RootLogger(Level.DEBUG)).getLogger("test");
+
+  @Test
+  public void parallelStreamMatchesSequentialRead() throws Exception {
+    for (String escape : new String[] {SEPARATOR, ESCAPE}) {
+      // large enough to be split into several chunks
+      File file = write(escape, 4 * SecureLogSpliterator.MIN_CHUNK + 12345, 3000, 1);
+      List<String> expected = sequential(file, escape);
+      SecureLogReader reader = reader(file, escape);
+      try {
+        List<String> parallel = reader.records().parallel().map(SecureLogSpliteratorTest::describe)
+            .collect(Collectors.toList());
+        assertEquals(expected, parallel);
+      } finally {
+        reader.close();
+      }
+    }
+  }
+
+  @Test
+  public void findsNextRecordFromEveryOffset() throws Exception {
+    for (String escape : new String[] {SEPARATOR, ESCAPE}) {
+      File file = write(escape, 200 * 1024, 300, 2);
+      long[] next = nextRecordStarts(file, escape);
+      SecureLogFormat format = new SecureLogFormat(StandardCharsets.UTF_8, SEPARATOR, escape,
+                                                   Layout.LINE_SEP);
+      ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+      int length = bytes.limit();
+      for (int offset = 1; offset <= length; offset++) {
+        int start = format.findRecordStart(bytes, offset, length, true);
+        assertEquals("escape " + escape + ", offset " + offset, next[offset],
+                     start < 0 ? length : start);
+      }
+    }
+  }
+
+  @Test
+  public void seekRecordLooksBackOverLongRuns() throws Exception {
+    for (String escape : new String[] {SEPARATOR, ESCAPE}) {
+      File file = write(escape, 200 * 1024, 3000, 5);
+      long[] next = nextRecordStarts(file, escape);
+      SecureLogReader reader = reader(file, escape);
+      try {
+        reader.setWindowSize(4096);
+        // every file mapping lasts until it is collected, so only a sample
+        // of the offsets is read this way
+        Random random = new Random(6);
+        for (int offset = 0; offset <= file.length(); offset += 1 + random.nextInt(130)) {
+          assertEquals("escape " + escape + ", offset " + offset, next[offset],
+                       reader.seekRecord(offset));
+        }
+      } finally {
+        reader.close();
+      }
+    }
+  }
+
+  @Test
+  public void chunksBeginningInsideRunsMatchSequentialRead() throws Exception {
+    for (String escape : new String[] {SEPARATOR, ESCAPE}) {
+      File file = write(escape, 300 * 1024, 3000, 3);
+      List<String> expected = sequential(file, escape);
+      byte[] sep = SEPARATOR.getBytes(StandardCharsets.UTF_8);
+      byte[] esc = escape.getBytes(StandardCharsets.UTF_8);
+      byte[] bytes = Files.readAllBytes(file.toPath());
+
+      // chunk edges in the middle of runs (and of the two byte characters)
+      List<Long> edges = new ArrayList<Long>();
+      Random random = new Random(4);
+      for (int i = 1; i < bytes.length - 1 && edges.size() < 400; i++) {
+        boolean inRun = bytes[i] == sep[1] || bytes[i] == esc[1]
+            || (bytes[i] == sep[0] && (bytes[i - 1] == sep[1] || bytes[i - 1] == esc[1]));
+        if (inRun && random.nextInt(40) == 0) {
+          edges.add((long) i);
+        }
+      }
+      assertTrue(edges.size() > 100);
+      edges.add((long) bytes.length);
+
+      SecureLogReader reader = reader(file, escape);
+      try {
+        reader.setWindowSize(4096);
+        List<String> chunked = new ArrayList<String>();
+        long begin = 0;
+        for (long end : edges) {
+          Spliterator<LogRecord> chunk = new SecureLogSpliterator(reader, begin, end, begin == 0);
+          chunk.forEachRemaining(r -> chunked.add(describe(r)));
+          begin = end;
+        }
+        assertEquals("escape " + escape, expected, chunked);
+      } finally {
+        reader.close();
+      }
+    }
+  }
+
+  /**
+   * Write records with runs of separators and escapes of every length, and
+   * line separators, until the file is at least <code>size</code> bytes.
+   * Runs longer than the lookback of the reader make it map earlier bytes.
+   */
+  private File write(String escape, long size, int maxRun, long seed) throws Exception {
+    SecurePatternLayout layout = new SecurePatternLayout("%m%n");
+    layout.setRecordSeparator(SEPARATOR);
+    layout.setEscapeCharacter(escape);
+    layout.activateOptions();
+    File file = folder.newFile();
+    Random random = new Random(seed);
+    String[] pieces = {"a", " ", "\n", Layout.LINE_SEP, SEPARATOR, escape, "\u00E9", "\u20AC"};
+    long written = 0;
+    OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+    try {
+      while (written < size) {
+        StringBuilder message = new StringBuilder();
+        int parts = random.nextInt(8);
+        for (int i = 0; i < parts; i++) {
+          String piece = pieces[random.nextInt(pieces.length)];
+          int run = random.nextInt(10) == 0 ? random.nextInt(maxRun) : 1 + random.nextInt(6);
+          for (int j = 0; j < run; j++) {
+            message.append(piece);
+          }
+        }
+        String record = layout.format(new LoggingEvent(Logger.class.getName(), logger, Level.INFO,
+                                                       message.toString(), null));
+        byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+        out.write(bytes);
+        written += bytes.length;
+      }
+    } finally {
+      out.close();
+    }
+    return file;
+  }
+
+  /**
+   * For each offset in the file, where the first record at or after it
+   * begins, found by reading the file from the start.
+   */
+  private static long[] nextRecordStarts(File file, String escape) throws Exception {
+    int length = (int) file.length();
+    List<Long> starts = new ArrayList<Long>();
+    for (String record : sequential(file, escape)) {
+      starts.add(Long.parseLong(record.substring(0, record.indexOf(':'))));
+    }
+    long[] next = new long[length + 1];
+    int r = 0;
+    for (int offset = 0; offset <= length; offset++) {
+      while (r < starts.size() && starts.get(r) < offset) {
+        r++;
+      }
+      next[offset] = r < starts.size() ? starts.get(r) : length;
+    }
+    return next;
+  }
+
+  private static List<String> sequential(File file, String escape) throws Exception {
+    List<String> records = new ArrayList<String>();
+    SecureLogReader reader = reader(file, escape);
+    try {
+      for (LogRecord r = reader.next(); r != null; r = reader.next()) {
+        assertTrue(r.isTerminated());
+        records.add(describe(r));
+      }
+    } finally {
+      reader.close();
+    }
+    return records;
+  }
+
+  private static SecureLogReader reader(File file, String escape) throws Exception {
+    return new SecureLogReader(file, "UTF-8", SEPARATOR, escape);
+  }
+
+  private static String describe(LogRecord r) {
+    return r.getOffset() + ":" + r;
+  }
+}
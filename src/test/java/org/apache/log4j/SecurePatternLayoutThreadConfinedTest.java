@@ -0,0 +1,158 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.helpers.PatternConverter;
+import org.apache.log4j.helpers.PatternParser;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.RootLogger;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that a {@link SecurePatternLayout} with ThreadConfined set formats
+ * concurrently as it does from one thread, with more threads than its pool
+ * holds, and when a subclass supplies its own parser.
+ */
+public class SecurePatternLayoutThreadConfinedTest {
+  private static final String PATTERN = "%d{ISO8601} %-5p [%t] %c{1} %C{1}.%M - %m%n";
+
+  private final Hierarchy hierarchy = new Hierarchy(new RootLogger(Level.DEBUG));
+
+  @Test
+  public void concurrentOutputMatchesSingleThread() throws Exception {
+    SecurePatternLayout confined = new SecurePatternLayout(PATTERN);
+    confined.setThreadConfined(true);
+    assertEquals("", mismatches(confined));
+  }
+
+  @Test
+  public void subclassParserOutputMatchesSingleThread() throws Exception {
+    CountingLayout confined = new CountingLayout(PATTERN);
+    confined.setThreadConfined(true);
+    assertEquals("", mismatches(confined));
+  }
+
+  @Test
+  public void subclassParserChainIsCopiedOncePerContext() {
+    CountingLayout layout = new CountingLayout("%c %m");
+    layout.setThreadConfined(true);
+    LoggingEvent e = event("a.b", 0, 0);
+    String expected = new SecurePatternLayout("%c %m").format(e);
+    for (int i = 0; i < 10; i++) {
+      assertEquals(expected, layout.format(e));
+    }
+    // The layout's own chain is parsed before counting starts, so this is
+    // the single copy made for the context
+    assertEquals(1, layout.parses.get());
+
+    layout.setConversionPattern("%m");
+    expected = new SecurePatternLayout("%m").format(e);
+    assertEquals(expected, layout.format(e));
+    assertEquals(expected, layout.format(e));
+    assertEquals(3, layout.parses.get());
+  }
+
+  /**
+   * Format many events from many threads with <code>confined</code>, and
+   * describe each record that differs from the output of a layout used from
+   * one thread.
+   */
+  private String mismatches(final SecurePatternLayout confined) throws Exception {
+    int threads = 4 * Runtime.getRuntime().availableProcessors() + 4;
+    final SecurePatternLayout reference = new SecurePatternLayout(PATTERN);
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<String>> results = new ArrayList<Future<String>>();
+      for (int t = 0; t < threads; t++) {
+        final int thread = t;
+        results.add(executor.submit(new Callable<String>() {
+          public String call() throws Exception {
+            StringBuilder errors = new StringBuilder();
+            List<LoggingEvent> events = new ArrayList<LoggingEvent>();
+            List<String> expected = new ArrayList<String>();
+            for (int i = 0; i < 2000; i++) {
+              LoggingEvent e = event("com.acme.Logger" + (i % 7), thread, i);
+              events.add(e);
+              synchronized (reference) {
+                expected.add(reference.format(e));
+              }
+            }
+            start.await();
+            for (int i = 0; i < events.size(); i++) {
+              String actual = confined.format(events.get(i));
+              if (!actual.equals(expected.get(i)) && errors.length() < 2000) {
+                errors.append(expected.get(i)).append(" != ").append(actual).append('\n');
+              }
+            }
+            return errors.toString();
+          }
+        }));
+      }
+      start.countDown();
+      StringBuilder errors = new StringBuilder();
+      for (Future<String> f : results) {
+        errors.append(f.get());
+      }
+      return errors.toString();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * An event with a time that differs by thread and index, spread over
+   * several seconds so the date converter renders often.
+   */
+  private LoggingEvent event(String name, int thread, int i) {
+    long time = 1700000000000L + thread * 997L + i * 13L;
+    return new LoggingEvent(Logger.class.getName(), hierarchy.getLogger(name), time, Level.INFO,
+                            "message " + i, "worker-" + thread, null, null, null, null);
+  }
+
+  /**
+   * A layout with a parser of its own, counting the chains parsed.
+   */
+  static final class CountingLayout extends SecurePatternLayout {
+    final AtomicInteger parses = new AtomicInteger();
+
+    CountingLayout(String pattern) {
+      super(pattern);
+    }
+
+    protected PatternParser createPatternParser(String pattern) {
+      return new PatternParser(pattern) {
+        public PatternConverter parse() {
+          // The superclass constructor parses before the field is assigned
+          if (parses != null) {
+            parses.incrementAndGet();
+          }
+          return super.parse();
+        }
+      };
+    }
+  }
+}
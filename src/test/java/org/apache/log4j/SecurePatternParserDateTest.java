@@ -0,0 +1,132 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.apache.log4j.helpers.PatternConverter;
+import org.apache.log4j.helpers.PatternParser;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.RootLogger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that %d renders exactly as with {@link PatternParser}, formatting
+ * the same times through both.
+ */
+public class SecurePatternParserDateTest {
+  private static final String[] PATTERNS = {
+    "%d", "%d{ISO8601}", "%d{ABSOLUTE}", "%d{DATE}", "%d{iso8601}",
+    "%d{HH:mm:ss,SSS}", "%d{HH:mm:ss.SS}", "%d{HH:mm:ss S}", "%d{SSS}", "%d{S}",
+    "%d{yyyy-MM-dd HH:mm:ss.SSS zzz}", "%d{yyyy-MM-dd'T'HH:mm:ss.SSSXXX}",
+    "%d{HH:mm}", "%d{EEE, d MMM yyyy HH:mm:ss Z}", "%d{ss.SSS SSS}", "%d{'at' h:mm a}",
+    "%d{dd MMM yyyy HH:mm:ss,SSS}", "%d{not a pattern",
+    "%30d", "%-30d{ABSOLUTE}", "%.10d", "%5.8d{HH:mm:ss,SSS}", "%-40.20d{DATE}",
+    "[%d{ABSOLUTE}] %d{HH:mm:ss.SSS}"
+  };
+
+  private final Logger logger = new Hierarchy(new RootLogger(Level.DEBUG)).getLogger("test");
+  private TimeZone defaultZone;
+
+  @Before
+  public void setZone() {
+    // a zone with daylight saving time, read by the date formats when created
+    defaultZone = TimeZone.getDefault();
+    TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+  }
+
+  @After
+  public void restoreZone() {
+    TimeZone.setDefault(defaultZone);
+  }
+
+  @Test
+  public void randomTimeWalks() {
+    Random random = new Random(16);
+    for (String pattern : PATTERNS) {
+      long time = 1760000000000L + random.nextInt(1000000000);
+      compare(pattern, walk(random, time, 2000));
+    }
+  }
+
+  @Test
+  public void daylightSavingTransitions() {
+    Random random = new Random(17);
+    // 2026-03-08 02:00 and 2026-11-01 02:00 in New York
+    long[] transitions = {1772953200000L, 1793512800000L};
+    for (String pattern : PATTERNS) {
+      for (long transition : transitions) {
+        compare(pattern, walk(random, transition - 3 * 1000, 3000));
+        compare(pattern, walk(random, transition - 3600 * 1000 - 500, 3000));
+      }
+    }
+  }
+
+  @Test
+  public void timesBeforeTheEpoch() {
+    Random random = new Random(18);
+    for (String pattern : PATTERNS) {
+      compare(pattern, walk(random, -2500, 500));
+      compare(pattern, walk(random, -86400000L * 365 * 30, 500));
+    }
+  }
+
+  /**
+   * Times moving mostly forwards by up to a few milliseconds, with jumps
+   * within and across seconds, and back in time, as events logged by many
+   * threads arrive.
+   */
+  private static long[] walk(Random random, long start, int n) {
+    long[] times = new long[n];
+    long t = start;
+    for (int i = 0; i < n; i++) {
+      switch (random.nextInt(10)) {
+      case 0:
+        t += random.nextInt(5000);
+        break;
+      case 1:
+        t -= random.nextInt(1500);
+        break;
+      default:
+        t += random.nextInt(4);
+      }
+      times[i] = t;
+    }
+    return times;
+  }
+
+  private void compare(String pattern, long[] times) {
+    PatternConverter stock = new PatternParser(pattern).parse();
+    PatternConverter secure = new SecurePatternParser(pattern).parse();
+    for (long time : times) {
+      LoggingEvent event = new LoggingEvent(Logger.class.getName(), logger, time, Level.INFO,
+                                            "message", null);
+      assertEquals(pattern + " at " + time, format(stock, event), format(secure, event));
+    }
+  }
+
+  private static String format(PatternConverter head, LoggingEvent event) {
+    StringBuffer sbuf = new StringBuffer();
+    for (PatternConverter c = head; c != null; c = c.next) {
+      c.format(sbuf, event);
+    }
+    return sbuf.toString();
+  }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.log4j.helpers.PatternConverter;
+import org.apache.log4j.helpers.PatternParser;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.RootLogger;
+import org.junit.Assume;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Checks that the name and location conversions render exactly as with
+ * {@link PatternParser}, formatting the same events through both. The
+ * events are formatted by an appender, so the caller is on the stack as
+ * when logging, and the comparison runs with both versions of
+ * {@link CallerLocator}.
+ */
+public class SecurePatternParserLocationTest {
+  private static final String[] PATTERNS = {
+    "%c", "%c{1}", "%c{2}", "%c{5}", "%20c{1}", "%-20c|", "%.5c", "%10.12c{2}",
+    "%C", "%C{1}", "%-30C{1}|", "%.8C", "%40C{3}",
+    "%t", "%-15t|", "%.3t", "%t{2}",
+    "%M", "%20M", "%-20M|", "%.4M",
+    "%L", "%5L", "%-5L|", "%.1L",
+    "%F", "%.6F", "%30F",
+    "%l", "%-80l|", "%.20l", "%30.40l",
+    "%C.%M(%F:%L) %l", "%c{1} %C{1} %M %t %m"
+  };
+
+  private static final String[] LOGGER_NAMES = {
+    "a", "a.b.c.d", "com.acme.Service", "x..y", ".lead", "trail.", "a.b.c.d.e.f.g"
+  };
+
+  @Test
+  public void sameAsPatternParser() {
+    assertEquals("", mismatches());
+  }
+
+  @Test
+  public void sameAsPatternParserWithStackWalker() throws Exception {
+    URL classes = CallerLocator.class.getProtectionDomain().getCodeSource().getLocation();
+    File versioned = new File(new File(classes.toURI()), "META-INF/versions/9");
+    Assume.assumeTrue(new File(versioned, "org/apache/log4j/CallerLocator.class").isFile());
+    URL[] urls = {
+      versioned.toURI().toURL(),
+      classes,
+      SecurePatternParserLocationTest.class.getProtectionDomain().getCodeSource().getLocation(),
+      LoggingEvent.class.getProtectionDomain().getCodeSource().getLocation()
+    };
+    try (URLClassLoader loader = new Java9Loader(urls)) {
+      Class<?> locator = Class.forName(CallerLocator.class.getName(), false, loader);
+      assertNotNull(locator.getDeclaredField("walker"));
+      Class<?> test = Class.forName(SecurePatternParserLocationTest.class.getName(), true,
+                                    loader);
+      assertEquals("", test.getMethod("mismatches").invoke(null));
+    }
+  }
+
+  /**
+   * Logs from several methods and threads, and through a logger wrapper,
+   * and returns a description of each event the parsers rendered
+   * differently.
+   */
+  public static String mismatches() {
+    Hierarchy hierarchy = new Hierarchy(new RootLogger(Level.DEBUG));
+    ComparingAppender appender = new ComparingAppender();
+    hierarchy.getRootLogger().addAppender(appender);
+
+    for (String name : LOGGER_NAMES) {
+      hierarchy.getLogger(name).info("direct");
+      new Wrapper(hierarchy.getLogger(name)).info("wrapped");
+    }
+    Random random = new Random(15);
+    for (int i = 0; i < 2000; i++) {
+      // more names than the name caches hold, many of them colliding
+      StringBuilder name = new StringBuilder("n");
+      for (int j = random.nextInt(6); j >= 0; j--) {
+        name.append('.').append(Integer.toString(random.nextInt(50), 36));
+      }
+      hierarchy.getLogger(name.toString()).debug("random");
+    }
+
+    final Logger logger = hierarchy.getLogger("threads.Test");
+    List<Thread> threads = new ArrayList<Thread>();
+    String[] threadNames = {"main.worker", "pool-1-thread-1", "x", "a.b.c"};
+    for (String name : threadNames) {
+      threads.add(new Thread(new Runnable() {
+        public void run() {
+          logger.warn("in an inner class");
+        }
+      }, name));
+      threads.add(new Thread(() -> logger.error("in a lambda"), name + ".lambda"));
+    }
+    for (Thread t : threads) {
+      t.start();
+    }
+    for (Thread t : threads) {
+      try {
+        t.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return "interrupted";
+      }
+    }
+
+    // not logged, so the logger class is not on the stack
+    appender.doAppend(new LoggingEvent(ComparingAppender.NOT_LOGGED, logger, Level.INFO, "formatted", null));
+
+    StringBuilder sb = new StringBuilder();
+    synchronized (appender) {
+      for (String m : appender.mismatches) {
+        sb.append(m).append('\n');
+      }
+      if (appender.events < 2000) {
+        sb.append("only ").append(appender.events).append(" events\n");
+      }
+    }
+    return sb.toString();
+  }
+
+  /** A logger wrapper, whose callers are the location of its events. */
+  private static final class Wrapper {
+    private static final String FQCN = Wrapper.class.getName();
+    private final Logger logger;
+
+    Wrapper(Logger logger) {
+      this.logger = logger;
+    }
+
+    void info(String message) {
+      log(Level.INFO, message);
+    }
+
+    private void log(Level level, String message) {
+      logger.log(FQCN, level, message, null);
+    }
+  }
+
+  private static final class ComparingAppender extends AppenderSkeleton {
+    static final String NOT_LOGGED = "no.such.Logger";
+    private final PatternConverter[] stock = new PatternConverter[PATTERNS.length];
+    private final PatternConverter[] secure = new PatternConverter[PATTERNS.length];
+    final List<String> mismatches = new ArrayList<String>();
+    int events;
+
+    ComparingAppender() {
+      for (int i = 0; i < PATTERNS.length; i++) {
+        stock[i] = new PatternParser(PATTERNS[i]).parse();
+        secure[i] = new SecurePatternParser(PATTERNS[i]).parse();
+      }
+    }
+
+    protected void append(LoggingEvent event) {
+      events++;
+      if (!NOT_LOGGED.equals(event.fqnOfCategoryClass)
+          && CallerLocator.locate(event.fqnOfCategoryClass) == null) {
+        // the converters would fall back to the event's own location
+        mismatches.add("no caller found for " + event.getMessage());
+      }
+      for (int i = 0; i < PATTERNS.length; i++) {
+        String s = format(secure[i], event);
+        String expected = format(stock[i], event);
+        if (!expected.equals(s)) {
+          mismatches.add(PATTERNS[i] + ": expected <" + expected + "> but was <" + s + ">");
+        }
+      }
+    }
+
+    public void close() {
+    }
+
+    public boolean requiresLayout() {
+      return false;
+    }
+  }
+
+  private static String format(PatternConverter head, LoggingEvent event) {
+    StringBuffer sbuf = new StringBuffer();
+    for (PatternConverter c = head; c != null; c = c.next) {
+      c.format(sbuf, event);
+    }
+    return sbuf.toString();
+  }
+
+  /**
+   * Loads the log4j classes itself, finding the Java 9 versions first as a
+   * multi-release jar would, so they all share one runtime package.
+   */
+  private static final class Java9Loader extends URLClassLoader {
+    Java9Loader(URL[] urls) {
+      super(urls, SecurePatternParserLocationTest.class.getClassLoader());
+    }
+
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+      if (!name.startsWith("org.apache.log4j.")) {
+        return super.loadClass(name, resolve);
+      }
+      synchronized (getClassLoadingLock(name)) {
+        Class<?> c = findLoadedClass(name);
+        if (c == null) {
+          c = findClass(name);
+        }
+        if (resolve) {
+          resolveClass(c);
+        }
+        return c;
+      }
+    }
+  }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.RootLogger;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks how {@link SecurePatternLayout} prints stack traces with the
+ * <b>TrimCommonFrames</b> and <b>ThrowableCacheSize</b> options.
+ */
+public class StackTraceRendererTest {
+  private static final String LS = Layout.LINE_SEP;
+
+  private final Logger logger = new Hierarchy(new RootLogger(Level.DEBUG)).getLogger("test");
+
+  @Test
+  public void rendersAsPrintStackTrace() {
+    RuntimeException a = new RuntimeException("a");
+    RuntimeException b = new RuntimeException("b");
+    a.initCause(b);
+    b.initCause(a);
+    RuntimeException x = new RuntimeException("x");
+    RuntimeException y = new RuntimeException("y");
+    x.addSuppressed(y);
+    y.addSuppressed(x);
+    IllegalStateException noFrames = new IllegalStateException("no frames");
+    noFrames.setStackTrace(new StackTraceElement[0]);
+
+    Throwable[] throwables = {
+      new IllegalStateException("simple"), chain("chain"), a, x,
+      new RuntimeException("wraps", noFrames), new RuntimeException(chain("cause")),
+      new Error(null, null)
+    };
+    for (Throwable t : throwables) {
+      StringBuffer sbuf = new StringBuffer();
+      StackTraceRenderer.render(t, sbuf);
+      assertEquals(printed(t), sbuf.toString());
+    }
+  }
+
+  @Test
+  public void trimsCommonFramesAsPrintStackTrace() {
+    SecurePatternLayout layout = layout(0);
+    layout.setTrimCommonFrames(true);
+    Throwable t = chain("chain");
+    assertEquals("failed" + LS + printed(t), record(layout, "failed", t));
+  }
+
+  @Test
+  public void repeatsAreReferences() {
+    Throwable[] same = chains(3);
+    SecurePatternLayout layout = layout(4);
+
+    String first = record(layout, "first", same[0]);
+    String fingerprint = fingerprint(same[0]);
+    assertEquals("first" + LS + printed(same[0]) + "\t[stack trace " + fingerprint + "]" + LS,
+                 first);
+
+    // the same trace with other messages
+    assertEquals("second" + LS
+                 + "java.lang.IllegalStateException: wrapper chain 1" + LS
+                 + "Caused by: java.io.IOException: deep" + LS
+                 + "Caused by: java.lang.IllegalStateException: root" + LS
+                 + "\t[stack trace " + fingerprint + " repeated]" + LS,
+                 record(layout, "second", same[1]));
+    assertEquals(fingerprint, fingerprint(same[2]));
+    assertTrue(record(layout, "third", same[2]).endsWith(fingerprint + " repeated]" + LS));
+
+    // not the same trace as any of those
+    Throwable other = chain("other");
+    assertNotEquals(fingerprint, fingerprint(other));
+    assertFalse(isRepeat(record(layout, "other", other)));
+  }
+
+  @Test
+  public void trimsFirstOccurrence() {
+    SecurePatternLayout layout = layout(4);
+    layout.setTrimCommonFrames(true);
+    Throwable[] same = chains(2);
+    assertEquals("first" + LS + printed(same[0]) + "\t[stack trace " + fingerprint(same[0])
+                 + "]" + LS, record(layout, "first", same[0]));
+    assertTrue(isRepeat(record(layout, "second", same[1])));
+  }
+
+  @Test
+  public void leastRecentlySeenTracesAreForgotten() {
+    SecurePatternLayout layout = layout(2);
+    Throwable[] a = chains(4);
+    Throwable[] b = chains(4);
+    Throwable[] c = chains(4);
+
+    assertFalse(isRepeat(record(layout, "a", a[0])));
+    assertFalse(isRepeat(record(layout, "b", b[0])));
+    assertTrue(isRepeat(record(layout, "a", a[1])));
+    // c pushes out b, which was seen less recently than a
+    assertFalse(isRepeat(record(layout, "c", c[0])));
+    assertTrue(isRepeat(record(layout, "a", a[2])));
+    assertFalse(isRepeat(record(layout, "b", b[1])));
+    // and b pushed out c
+    assertFalse(isRepeat(record(layout, "c", c[1])));
+    assertTrue(isRepeat(record(layout, "b", b[2])));
+  }
+
+  @Test
+  public void headerForgetsTraces() {
+    SecurePatternLayout layout = layout(4);
+    Throwable[] same = chains(3);
+    assertFalse(isRepeat(record(layout, "first", same[0])));
+    assertTrue(isRepeat(record(layout, "second", same[1])));
+    layout.getHeader();
+    assertFalse(isRepeat(record(layout, "new file", same[2])));
+  }
+
+  @Test
+  public void cacheEvictsInOrderOfUse() {
+    StackTraceCache cache = new StackTraceCache(2);
+    assertTrue(cache.add(1));
+    assertTrue(cache.add(2));
+    assertFalse(cache.add(1));
+    assertTrue(cache.add(3));
+    assertTrue(cache.add(2));
+    assertFalse(cache.add(3));
+    cache.clear();
+    assertTrue(cache.add(3));
+  }
+
+  /** Throwables with the same trace, but different messages. */
+  private static Throwable[] chains(int n) {
+    Throwable[] throwables = new Throwable[n];
+    for (int i = 0; i < n; i++) {
+      throwables[i] = chain("chain " + i);
+    }
+    return throwables;
+  }
+
+  /**
+   * A throwable with a cause thrown deeper in the same stack, and
+   * suppressed throwables that have causes and suppressed throwables of
+   * their own.
+   */
+  private static Throwable chain(String message) {
+    try {
+      throwDeep(3);
+      throw new AssertionError();
+    } catch (IOException e) {
+      IllegalStateException wrapper = new IllegalStateException("wrapper " + message, e);
+      RuntimeException closing = new RuntimeException("closing",
+                                                      new IllegalArgumentException("inner"));
+      closing.addSuppressed(new UnsupportedOperationException("nested"));
+      wrapper.addSuppressed(closing);
+      e.addSuppressed(new RuntimeException("suppressed by the cause"));
+      return wrapper;
+    }
+  }
+
+  private static void throwDeep(int depth) throws IOException {
+    if (depth == 0) {
+      throw new IOException("deep", new IllegalStateException("root"));
+    }
+    throwDeep(depth - 1);
+  }
+
+  private static String printed(Throwable t) {
+    StringWriter sw = new StringWriter();
+    PrintWriter pw = new PrintWriter(sw);
+    t.printStackTrace(pw);
+    pw.flush();
+    return sw.toString();
+  }
+
+  private static String fingerprint(Throwable t) {
+    return String.format("%016x", StackTraceRenderer.fingerprint(t));
+  }
+
+  private static boolean isRepeat(String record) {
+    return record.endsWith(" repeated]" + LS);
+  }
+
+  private static SecurePatternLayout layout(int cacheSize) {
+    SecurePatternLayout layout = new SecurePatternLayout("%m%n");
+    layout.setThrowableCacheSize(cacheSize);
+    layout.activateOptions();
+    return layout;
+  }
+
+  /** The record the layout writes for an event, without the separator. */
+  private String record(SecurePatternLayout layout, String message, Throwable t) {
+    String text = layout.format(new LoggingEvent(Logger.class.getName(), logger, Level.ERROR,
+                                                 message, t));
+    String end = layout.getRecordSeparator() + LS;
+    assertTrue(text.endsWith(end));
+    return text.substring(0, text.length() - end.length()) + LS;
+  }
+}
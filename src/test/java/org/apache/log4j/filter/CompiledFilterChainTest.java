@@ -0,0 +1,229 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.log4j.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.log4j.Hierarchy;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.MDC;
+import org.apache.log4j.spi.Filter;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.RootLogger;
+import org.apache.log4j.varia.DenyAllFilter;
+import org.apache.log4j.varia.LevelRangeFilter;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that CompiledFilterChain decides as walking its filters one after
+ * the other would.
+ */
+public class CompiledFilterChainTest {
+  private static final String FQCN = CompiledFilterChainTest.class.getName();
+  private static final String[] KEYS = {"k0", "k1", "k2"};
+  private static final Level[] LEVELS = {Level.TRACE, Level.DEBUG, Level.INFO, Level.WARN,
+                                         Level.ERROR, Level.FATAL};
+  private static final String[] RETURN_VALUES = {"accept", "deny", "neutral"};
+
+  private final Logger logger = new Hierarchy(new RootLogger(Level.ALL)).getLogger("test");
+
+  @After
+  public void clearMDC() {
+    MDC.clear();
+  }
+
+  @Test
+  public void mergesFiltersOnSameKeyAndExactness() {
+    CompiledFilterChain chain = chain(mdc("k0", "a", true, MatchFilterBase.ACCEPT_ON_MATCH),
+                                      mdc("k0", "b", true, MatchFilterBase.ACCEPT_ON_MATCH),
+                                      mdc("k0", "c", true, MatchFilterBase.ACCEPT_ON_MATCH));
+    assertEquals(1, chain.getCompiledLength());
+
+    // a different key, exactness or decision starts a new step
+    chain = chain(mdc("k0", "a", true, MatchFilterBase.ACCEPT_ON_MATCH),
+                  mdc("k1", "b", true, MatchFilterBase.ACCEPT_ON_MATCH),
+                  mdc("k1", "c", false, MatchFilterBase.ACCEPT_ON_MATCH),
+                  mdc("k1", "d", false, MatchFilterBase.DENY_ON_MATCH),
+                  mdc("k1", "e", false, MatchFilterBase.DENY_ON_MATCH));
+    assertEquals(4, chain.getCompiledLength());
+
+    // only filters that are NEUTRAL on no match are merged
+    chain = chain(mdc("k0", "a", true, MatchFilterBase.DENY_ON_NOMATCH),
+                  mdc("k0", "b", true, MatchFilterBase.DENY_ON_NOMATCH));
+    assertEquals(2, chain.getCompiledLength());
+
+    // nor are filters with metrics
+    MDCMatchFilter counted = mdc("k0", "b", true, MatchFilterBase.ACCEPT_ON_MATCH);
+    counted.setMetrics(true);
+    counted.activateOptions();
+    chain = chain(mdc("k0", "a", true, MatchFilterBase.ACCEPT_ON_MATCH), counted);
+    assertEquals(2, chain.getCompiledLength());
+  }
+
+  @Test
+  public void dropsFiltersThatCannotDecide() {
+    MDCMatchFilter noKey = mdc(null, "a", true, MatchFilterBase.ACCEPT_ON_MATCH);
+    MDCMatchFilter neutral = mdc("k0", "a", true, MatchFilterBase.ACCEPT_ON_MATCH);
+    neutral.setMatchReturnValue("neutral");
+    MDCMatchFilter decides = mdc("k0", "a", true, MatchFilterBase.ACCEPT_ON_MATCH);
+    decides.setNoMatchReturnValue("deny");
+    CompiledFilterChain chain = chain(noKey, neutral, decides,
+                                      mdc("k1", "b", true, MatchFilterBase.ACCEPT_ON_MATCH),
+                                      new DenyAllFilter());
+    assertEquals(1, chain.getCompiledLength());
+  }
+
+  @Test
+  public void randomChainsDecideAsTheirFilters() {
+    Random random = new Random(9);
+    List<LoggingEvent> events = new ArrayList<LoggingEvent>();
+    for (int i = 0; i < 200; i++) {
+      events.add(event(random));
+    }
+    for (int i = 0; i < 5000; i++) {
+      List<Filter> filters = new ArrayList<Filter>();
+      for (int n = random.nextInt(13); n > 0; n--) {
+        filters.add(filter(random));
+      }
+      CompiledFilterChain chain = chain(filters.toArray(new Filter[filters.size()]));
+      assertTrue(chain.getCompiledLength() <= filters.size());
+      for (int j = 0; j < 20; j++) {
+        LoggingEvent event = events.get(random.nextInt(events.size()));
+        assertEquals(describe(filters, event), walk(filters, event), chain.decide(event));
+      }
+    }
+  }
+
+  private LoggingEvent event(Random random) {
+    MDC.clear();
+    for (String key : KEYS) {
+      if (random.nextInt(10) < 7) {
+        MDC.put(key, text(random, 4));
+      }
+    }
+    LoggingEvent event = new LoggingEvent(FQCN, logger, LEVELS[random.nextInt(LEVELS.length)],
+                                          "message", null);
+    event.getMDCCopy();
+    MDC.clear();
+    return event;
+  }
+
+  private static Filter filter(Random random) {
+    int kind = random.nextInt(20);
+    if (kind == 0) {
+      LevelRangeFilter f = new LevelRangeFilter();
+      f.setLevelMin(LEVELS[random.nextInt(LEVELS.length)]);
+      f.setLevelMax(LEVELS[random.nextInt(LEVELS.length)]);
+      f.setAcceptOnMatch(random.nextBoolean());
+      return f;
+    } else if (kind == 1) {
+      return new DenyAllFilter();
+    }
+    String key = random.nextInt(30) == 0 ? null : KEYS[random.nextInt(KEYS.length)];
+    String value;
+    switch (random.nextInt(10)) {
+    case 0:
+      value = null;
+      break;
+    case 1:
+      value = "";
+      break;
+    default:
+      value = text(random, 3);
+      if (value.length() == 0) {
+        value = "a";
+      }
+    }
+    MDCMatchFilter f = mdc(key, value, random.nextBoolean(),
+                           random.nextBoolean() ? MatchFilterBase.ACCEPT_ON_MATCH
+                                                : MatchFilterBase.DENY_ON_MATCH);
+    if (random.nextInt(6) == 0) {
+      f.setMatchReturnValue(RETURN_VALUES[random.nextInt(3)]);
+      f.setNoMatchReturnValue(RETURN_VALUES[random.nextInt(3)]);
+    }
+    if (random.nextInt(20) == 0) {
+      f.setContainsAnyOf("a,bb");
+    }
+    if (random.nextInt(20) == 0) {
+      f.setMetrics(true);
+    }
+    f.activateOptions();
+    return f;
+  }
+
+  private static String text(Random random, int maxLength) {
+    StringBuilder sb = new StringBuilder();
+    for (int n = random.nextInt(maxLength + 1); n > 0; n--) {
+      sb.append(random.nextBoolean() ? 'a' : 'b');
+    }
+    return sb.toString();
+  }
+
+  private static MDCMatchFilter mdc(String key, String value, boolean exact, String policy) {
+    MDCMatchFilter f = new MDCMatchFilter();
+    f.setKeyToMatch(key);
+    f.setValueToMatch(value);
+    f.setExactMatch(exact);
+    f.setChainPolicy(policy);
+    f.activateOptions();
+    return f;
+  }
+
+  private static CompiledFilterChain chain(Filter... filters) {
+    CompiledFilterChain chain = new CompiledFilterChain();
+    for (Filter f : filters) {
+      chain.addFilter(f);
+    }
+    chain.activateOptions();
+    return chain;
+  }
+
+  /** Decides as an appender walking the filters does. */
+  private static int walk(List<Filter> filters, LoggingEvent event) {
+    for (Filter f : filters) {
+      int decision = f.decide(event);
+      if (decision != Filter.NEUTRAL) {
+        return decision;
+      }
+    }
+    return Filter.NEUTRAL;
+  }
+
+  private static String describe(List<Filter> filters, LoggingEvent event) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(event.getLevel()).append(' ').append(event.getProperties()).append(" through");
+    for (Filter f : filters) {
+      sb.append("\n  ");
+      if (f instanceof MDCMatchFilter) {
+        MDCMatchFilter m = (MDCMatchFilter) f;
+        sb.append(m.keyToMatch).append(m.exactMatch ? " == " : " contains ")
+          .append(m.containsAnyOf != null ? "any of " + m.containsAnyOf : m.valueToMatch)
+          .append(' ').append(m.getMatchReturnValue()).append('/')
+          .append(m.getNoMatchReturnValue());
+      } else {
+        sb.append(f.getClass().getSimpleName());
+      }
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.log4j.filter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Hierarchy;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.Filter;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.RootLogger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks the thresholds LoggerThresholdMatchFilter finds for loggers, and
+ * that replacing its rules takes effect at once.
+ */
+public class LoggerThresholdMatchFilterTest {
+  private static final Level[] LEVELS = {Level.TRACE, Level.DEBUG, Level.INFO, Level.WARN,
+                                         Level.ERROR, Level.FATAL};
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final Hierarchy hierarchy = new Hierarchy(new RootLogger(Level.ALL));
+
+  @Test
+  public void longestPrefixWins() {
+    LoggerThresholdMatchFilter filter =
+        filter("com.acme=INFO, com.acme.db=WARN, org=ERROR, com.acme.db.pool=DEBUG");
+    assertThreshold(filter, Level.INFO, "com.acme");
+    assertThreshold(filter, Level.INFO, "com.acme.web");
+    assertThreshold(filter, Level.INFO, "com.acme.dbx");
+    assertThreshold(filter, Level.WARN, "com.acme.db");
+    assertThreshold(filter, Level.WARN, "com.acme.db.x.y");
+    assertThreshold(filter, Level.DEBUG, "com.acme.db.pool");
+    assertThreshold(filter, Level.DEBUG, "com.acme.db.pool.x");
+    assertThreshold(filter, Level.ERROR, "org.hibernate");
+    assertThreshold(filter, null, "com.acmeco");
+    assertThreshold(filter, null, "com.acmeco.web");
+    assertThreshold(filter, null, "com");
+    assertThreshold(filter, null, "organization");
+    assertThreshold(filter, null, "");
+  }
+
+  @Test
+  public void defaultThresholdAppliesWhenNoRuleDoes() {
+    LoggerThresholdMatchFilter filter = new LoggerThresholdMatchFilter();
+    filter.setRules("com.acme=DEBUG");
+    filter.setDefaultThreshold("warn");
+    filter.activateOptions();
+    assertEquals("WARN", filter.getDefaultThreshold());
+    assertThreshold(filter, Level.DEBUG, "com.acme.web");
+    assertThreshold(filter, Level.WARN, "com.acmeco");
+    assertThreshold(filter, Level.WARN, "other");
+
+    filter.setDefaultThreshold("no such level");
+    assertNull(filter.getDefaultThreshold());
+    filter.activateOptions();
+    assertThreshold(filter, null, "other");
+  }
+
+  @Test
+  public void invalidRulesAreSkipped() {
+    LoggerThresholdMatchFilter filter =
+        filter("=INFO, com.acme, com.acme.db=NOT_A_LEVEL, a.b = warn");
+    assertThreshold(filter, Level.WARN, "a.b.c");
+    assertThreshold(filter, null, "com.acme");
+    assertThreshold(filter, null, "com.acme.db");
+  }
+
+  @Test
+  public void readsRulesFile() throws IOException {
+    File file = folder.newFile();
+    write(file, "# thresholds\n\ncom.acme.db=ERROR\n  org = WARN  \n");
+    LoggerThresholdMatchFilter filter = new LoggerThresholdMatchFilter();
+    filter.setRules("com.acme=INFO");
+    filter.setRulesFile(file.getPath());
+    filter.activateOptions();
+    assertThreshold(filter, Level.INFO, "com.acme.web");
+    assertThreshold(filter, Level.ERROR, "com.acme.db");
+    assertThreshold(filter, Level.WARN, "org.x");
+
+    // the file is read again when the rules are replaced
+    write(file, "org=FATAL\n");
+    filter.replaceRules("com.acme=DEBUG");
+    assertEquals("com.acme=DEBUG", filter.getRules());
+    assertThreshold(filter, Level.DEBUG, "com.acme.db");
+    assertThreshold(filter, Level.FATAL, "org.x");
+  }
+
+  @Test
+  public void sameAsCheckingEveryRule() {
+    Random random = new Random(24);
+    String[] segments = {"a", "b", "ab", "c", "a.b", ""};
+    for (int i = 0; i < 500; i++) {
+      List<String> prefixes = new ArrayList<String>();
+      List<Level> levels = new ArrayList<Level>();
+      StringBuilder rules = new StringBuilder();
+      for (int n = random.nextInt(12); n > 0; n--) {
+        String prefix = name(random, segments);
+        Level level = LEVELS[random.nextInt(LEVELS.length)];
+        if (prefix.length() == 0) {
+          continue;
+        }
+        prefixes.add(prefix);
+        levels.add(level);
+        rules.append(prefix).append('=').append(level).append(',');
+      }
+      LoggerThresholdMatchFilter filter = filter(rules.toString());
+      for (int j = 0; j < 50; j++) {
+        String name = name(random, segments);
+        // the longest prefix that applies, the last of equal ones
+        Level expected = null;
+        int longest = -1;
+        for (int k = 0; k < prefixes.size(); k++) {
+          String p = prefixes.get(k);
+          if ((name.equals(p) || name.startsWith(p + ".")) && p.length() >= longest) {
+            expected = levels.get(k);
+            longest = p.length();
+          }
+        }
+        assertThreshold(filter, expected, name);
+      }
+    }
+  }
+
+  @Test
+  public void thresholdsAreCachedUpToALimit() {
+    LoggerThresholdMatchFilter filter = filter("a=WARN");
+    assertEquals(0, filter.getCachedLoggerCount());
+    filter.decide(event("a.x", Level.WARN));
+    filter.decide(event("a.x", Level.INFO));
+    filter.decide(event("b", Level.INFO));
+    assertEquals(2, filter.getCachedLoggerCount());
+
+    for (int i = 0; i < 10000; i++) {
+      filter.decide(event("a.n" + i, Level.INFO));
+    }
+    // the cache filled up with the first 9998 of those, and started
+    // again with the last two
+    assertEquals(2, filter.getCachedLoggerCount());
+    assertThreshold(filter, Level.WARN, "a.x");
+    assertThreshold(filter, null, "b");
+
+    filter.replaceRules("b=INFO");
+    assertEquals(0, filter.getCachedLoggerCount());
+    assertThreshold(filter, null, "a.x");
+    assertThreshold(filter, Level.INFO, "b");
+  }
+
+  @Test
+  public void replacedRulesApplyAtOnce() throws Exception {
+    final LoggerThresholdMatchFilter filter = filter("x=DEBUG");
+    final LoggingEvent event = event("x.y", Level.INFO);
+    final AtomicBoolean done = new AtomicBoolean();
+    final AtomicInteger errors = new AtomicInteger();
+    Thread[] threads = new Thread[2];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread(new Runnable() {
+        public void run() {
+          while (!done.get()) {
+            try {
+              filter.decide(event);
+            } catch (RuntimeException e) {
+              errors.incrementAndGet();
+            }
+          }
+        }
+      });
+      threads[i].start();
+    }
+    try {
+      for (int i = 0; i < 20000; i++) {
+        // threads deciding at the same time cannot leave a stale threshold
+        boolean accept = i % 2 == 0;
+        filter.replaceRules(accept ? "x=INFO" : "x=WARN,q=DEBUG");
+        assertEquals(accept ? Filter.ACCEPT : Filter.DENY, filter.decide(event));
+      }
+    } finally {
+      done.set(true);
+      for (Thread t : threads) {
+        t.join();
+      }
+    }
+    assertEquals(0, errors.get());
+  }
+
+  private static String name(Random random, String[] segments) {
+    StringBuilder sb = new StringBuilder(segments[random.nextInt(segments.length)]);
+    for (int n = random.nextInt(3); n > 0; n--) {
+      sb.append('.').append(segments[random.nextInt(segments.length)]);
+    }
+    return sb.toString();
+  }
+
+  private static LoggerThresholdMatchFilter filter(String rules) {
+    LoggerThresholdMatchFilter filter = new LoggerThresholdMatchFilter();
+    filter.setRules(rules);
+    filter.activateOptions();
+    return filter;
+  }
+
+  /**
+   * Checks that events of the logger are accepted from the threshold up,
+   * or never if it is null.
+   */
+  private void assertThreshold(LoggerThresholdMatchFilter filter, Level threshold, String name) {
+    for (Level level : LEVELS) {
+      boolean accept = threshold != null && level.isGreaterOrEqual(threshold);
+      assertEquals(name + " at " + level, accept ? Filter.ACCEPT : Filter.DENY,
+                   filter.decide(event(name, level)));
+    }
+  }
+
+  private LoggingEvent event(String logger, Level level) {
+    return new LoggingEvent(Logger.class.getName(), hierarchy.getLogger(logger), level,
+                            "message", null);
+  }
+
+  private static void write(File file, String text) throws IOException {
+    OutputStream out = new FileOutputStream(file);
+    try {
+      out.write(text.getBytes(StandardCharsets.UTF_8));
+    } finally {
+      out.close();
+    }
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.AsyncAppender;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.MDC;
+import org.apache.log4j.spi.Filter;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that MDCMatchFilter decides from the MDC the event was logged with,
+ * whichever thread does the filtering.
+ */
+public class MDCMatchFilterTest {
+  private static final String FQCN = MDCMatchFilterTest.class.getName();
+
+  @After
+  public void clearMDC() {
+    MDC.clear();
+  }
+
+  @Test
+  public void filtersOnAsyncDispatcherThread() throws Exception {
+    // The dispatcher thread inherits the MDC of the thread that creates it,
+    // so an event logged without the key would match if the filter looked
+    // there
+    MDC.put("user", "alice");
+    CountDownLatch gate = new CountDownLatch(1);
+    Collector collector = new Collector(gate);
+    collector.addFilter(filter("user", "alice"));
+    AsyncAppender async = new AsyncAppender();
+    async.addAppender(collector);
+    Logger logger = Logger.getLogger("MDCMatchFilterTest.async");
+    logger.setAdditivity(false);
+    logger.addAppender(async);
+    try {
+      // the first event holds the dispatcher until the MDC has been cleared
+      MDC.put("user", "alice");
+      logger.info("gate");
+      logger.info("alice 1");
+      MDC.put("user", "bob");
+      logger.info("bob");
+      MDC.remove("user");
+      logger.info("nobody");
+      MDC.put("user", "alice");
+      logger.info("alice 2");
+      MDC.clear();
+
+      gate.countDown();
+      async.close();
+    } finally {
+      logger.removeAllAppenders();
+    }
+
+    assertEquals(5, collector.decided.size());
+    for (Thread t : collector.threads) {
+      assertNotSame("filtered on the logging thread", Thread.currentThread(), t);
+    }
+    assertEquals("[gate, alice 1, alice 2]", collector.messages.toString());
+  }
+
+  @Test
+  public void usesCurrentThreadWhenEventHasNoCopy() {
+    Logger logger = Logger.getLogger("MDCMatchFilterTest.sync");
+    MDCMatchFilter filter = filter("user", "alice");
+
+    // No copy has been taken, so the filter takes it from this thread,
+    // which created the event
+    MDC.put("user", "alice");
+    LoggingEvent event = new LoggingEvent(FQCN, logger, Level.INFO, "alice", null);
+    assertEquals(Filter.NEUTRAL, filter.decide(event));
+
+    // Once taken, the copy is used even after the MDC changes
+    MDC.put("user", "bob");
+    assertEquals(Filter.NEUTRAL, filter.decide(event));
+
+    // A key missing from the copy is not looked up in this thread's MDC
+    MDC.clear();
+    LoggingEvent empty = new LoggingEvent(FQCN, logger, Level.INFO, "nobody", null);
+    empty.getMDCCopy();
+    MDC.put("user", "alice");
+    assertEquals(Filter.DENY, filter.decide(empty));
+  }
+
+  private static MDCMatchFilter filter(String key, String value) {
+    MDCMatchFilter filter = new MDCMatchFilter();
+    filter.setKeyToMatch(key);
+    filter.setValueToMatch(value);
+    filter.setExactMatch(true);
+    filter.setChainPolicy(MatchFilterBase.DENY_ON_NOMATCH);
+    filter.activateOptions();
+    return filter;
+  }
+
+  /**
+   * Records the events that get past its filters, and the threads that
+   * filtered them. The first event waits for the gate to open.
+   */
+  private static final class Collector extends AppenderSkeleton {
+    final List<String> messages = new ArrayList<String>();
+    final List<Thread> threads = new ArrayList<Thread>();
+    final List<String> decided = new ArrayList<String>();
+    private final CountDownLatch gate;
+
+    Collector(CountDownLatch gate) {
+      this.gate = gate;
+      addFilter(new Filter() {
+        @Override
+        public int decide(LoggingEvent event) {
+          // runs before the others, on the thread that filters
+          decided.add(event.getRenderedMessage());
+          threads.add(Thread.currentThread());
+          return NEUTRAL;
+        }
+      });
+    }
+
+    @Override
+    protected void append(LoggingEvent event) {
+      if (messages.isEmpty()) {
+        try {
+          assertTrue(gate.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      messages.add(event.getRenderedMessage());
+    }
+
+    @Override
+    public boolean requiresLayout() {
+      return false;
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+}
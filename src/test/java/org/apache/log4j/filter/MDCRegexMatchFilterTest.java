@@ -0,0 +1,179 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.log4j.filter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.log4j.Hierarchy;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.RootLogger;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the literal prefix MDCRegexMatchFilter rejects values with, and
+ * that its cache does not change its decisions.
+ */
+public class MDCRegexMatchFilterTest {
+  private static final String FACE = "\uD83D\uDE00";
+
+  private final Logger logger = new Hierarchy(new RootLogger(Level.DEBUG)).getLogger("test");
+
+  @Test
+  public void literalPrefixes() {
+    assertPrefix("/api/v", "/api/v[0-9]+/users/.*", false);
+    assertPrefix("abc", "abc", false);
+    assertPrefix("abc", "^abc", false);
+
+    // anchors
+    assertPrefix("/api", "^/api", true);
+    assertPrefix("", "/api", true);
+    assertPrefix("", "a^b", true);
+    assertPrefix("a", "a$", false);
+
+    // alternation, unless inside a group or class, or escaped
+    assertPrefix("", "abc|abd", false);
+    assertPrefix("", "^abc|abd", true);
+    assertPrefix("a", "a(b|c)", false);
+    assertPrefix("", "(abc|abd)x", false);
+    assertPrefix("a", "a[|]b", false);
+    assertPrefix("a|b", "a\\|b", false);
+
+    // quantifiers
+    assertPrefix("a", "ab*c", false);
+    assertPrefix("a", "ab+c", false);
+    assertPrefix("a", "ab?c", false);
+    assertPrefix("a", "ab{2}c", false);
+    assertPrefix("", "a*", false);
+
+    // escapes
+    assertPrefix(".txt", "\\.txt", false);
+    assertPrefix("a.b*c", "a\\.b\\*c", false);
+    assertPrefix("a\\b", "a\\\\b", false);
+    assertPrefix("a", "a\\.?", false);
+    assertPrefix("", "\\d+", false);
+    assertPrefix("a", "a\\Qb.c\\E", false);
+    assertPrefix("", "(?i)abc", false);
+    assertPrefix("", "[a]bc", false);
+
+    // characters outside the BMP are two chars, quantified together
+    assertPrefix(FACE + "abc", FACE + "abc", false);
+    assertPrefix("", FACE + "?abc", false);
+    assertPrefix("a", "a" + FACE + "*b", false);
+    assertPrefix("a", "a\\" + FACE + "+", false);
+    assertPrefix("a" + FACE + "b", "^a\\" + FACE + "b", true);
+  }
+
+  @Test
+  public void everyMatchStartsWithThePrefix() {
+    Random random = new Random(23);
+    String[] tokens = {
+      "a", "b", FACE, "\\.", ".", "*", "+", "?", "{2}", "|", "(", ")", "[ab]", "^", "$", "\\d",
+      "\\\\", "\\" + FACE
+    };
+    String[] chars = {"a", "b", FACE, ".", "1", "\\"};
+    for (int i = 0; i < 20000; i++) {
+      StringBuilder regex = new StringBuilder();
+      for (int n = random.nextInt(8); n > 0; n--) {
+        regex.append(tokens[random.nextInt(tokens.length)]);
+      }
+      Pattern pattern;
+      try {
+        pattern = Pattern.compile(regex.toString());
+      } catch (PatternSyntaxException e) {
+        continue;
+      }
+      boolean find = random.nextBoolean();
+      String prefix = MDCRegexMatchFilter.literalPrefix(regex.toString(), find);
+      for (int j = 0; j < 20; j++) {
+        StringBuilder value = new StringBuilder();
+        for (int n = random.nextInt(6); n > 0; n--) {
+          value.append(chars[random.nextInt(chars.length)]);
+        }
+        String v = value.toString();
+        boolean matches = find ? pattern.matcher(v).find() : pattern.matcher(v).matches();
+        if (matches) {
+          assertTrue(regex + " matched " + v + " without prefix " + prefix, v.startsWith(prefix));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void cachedResultsAgreeWithUncached() {
+    String[] regexes = {"/api/v[0-9]+/.*", "^user-[0-9]{2}", "a.*b|c", "(ab)+x?"};
+    Random random = new Random(24);
+    for (String regex : regexes) {
+      for (boolean find : new boolean[] {false, true}) {
+        MDCRegexMatchFilter uncached = filter(regex, find, 0);
+        MDCRegexMatchFilter cached = filter(regex, find, 1024);
+        MDCRegexMatchFilter evicting = filter(regex, find, 4);
+        for (int i = 0; i < 5000; i++) {
+          LoggingEvent event = event(value(random));
+          int expected = uncached.decide(event);
+          assertEquals(regex, expected, cached.decide(event));
+          assertEquals(regex, expected, evicting.decide(event));
+        }
+      }
+    }
+  }
+
+  private static String value(Random random) {
+    String[] parts = {"/api/v", "1", "22", "/", "users", "user-", "a", "b", "c", "x", "ab"};
+    StringBuilder sb = new StringBuilder();
+    for (int n = random.nextInt(6); n > 0; n--) {
+      sb.append(parts[random.nextInt(parts.length)]);
+    }
+    if (random.nextInt(50) == 0) {
+      // longer than the values that are cached
+      for (int n = 0; n < 300; n++) {
+        sb.append('a');
+      }
+      sb.append(random.nextBoolean() ? "b" : "");
+    }
+    return sb.toString();
+  }
+
+  private LoggingEvent event(String value) {
+    Map<String, String> mdc = new HashMap<String, String>();
+    mdc.put("path", value);
+    return new LoggingEvent(Logger.class.getName(), logger, 0, Level.INFO, "message", "main",
+                            null, null, null, mdc);
+  }
+
+  private static MDCRegexMatchFilter filter(String regex, boolean find, int cacheSize) {
+    MDCRegexMatchFilter filter = new MDCRegexMatchFilter();
+    filter.setKeyToMatch("path");
+    filter.setRegexToMatch(regex);
+    filter.setFind(find);
+    filter.setCacheSize(cacheSize);
+    filter.setChainPolicy(MatchFilterBase.ACCEPT_ON_MATCH);
+    filter.activateOptions();
+    return filter;
+  }
+
+  private static void assertPrefix(String expected, String regex, boolean find) {
+    assertEquals(regex, expected, MDCRegexMatchFilter.literalPrefix(regex, find));
+  }
+}
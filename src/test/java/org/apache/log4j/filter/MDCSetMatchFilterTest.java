@@ -0,0 +1,158 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.log4j.filter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Hierarchy;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.Filter;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.RootLogger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the decisions of MDCSetMatchFilter, also while it is reconfigured.
+ */
+public class MDCSetMatchFilterTest {
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final Logger logger = new Hierarchy(new RootLogger(Level.DEBUG)).getLogger("test");
+
+  @Test
+  public void matchesAllowedValueOfAnyKey() {
+    MDCSetMatchFilter filter = filter(" tenant , user", "acme, bob ,carol");
+    assertEquals(Filter.ACCEPT, filter.decide(event("tenant", "acme")));
+    assertEquals(Filter.ACCEPT, filter.decide(event("user", "bob")));
+    assertEquals(Filter.ACCEPT, filter.decide(event("tenant", "other", "user", "carol")));
+    assertEquals(Filter.DENY, filter.decide(event("tenant", "other", "user", "dave")));
+    assertEquals(Filter.DENY, filter.decide(event("tenant", "Acme")));
+    assertEquals(Filter.DENY, filter.decide(event("other", "acme")));
+    assertEquals(Filter.DENY, filter.decide(event()));
+  }
+
+  @Test
+  public void readsValuesFile() throws IOException {
+    File file = folder.newFile();
+    OutputStream out = new FileOutputStream(file);
+    try {
+      String lines = "# allowed tenants\n\n  acme  \nz\u00FCrich\n#bob\n";
+      out.write(lines.getBytes(StandardCharsets.UTF_8));
+    } finally {
+      out.close();
+    }
+    MDCSetMatchFilter filter = filter("tenant", "carol");
+    filter.setValuesFile(file.getPath());
+    filter.activateOptions();
+    assertEquals(Filter.ACCEPT, filter.decide(event("tenant", "acme")));
+    assertEquals(Filter.ACCEPT, filter.decide(event("tenant", "z\u00FCrich")));
+    assertEquals(Filter.ACCEPT, filter.decide(event("tenant", "carol")));
+    assertEquals(Filter.DENY, filter.decide(event("tenant", "#bob")));
+    assertEquals(Filter.DENY, filter.decide(event("tenant", "")));
+  }
+
+  @Test
+  public void neutralUntilConfigured() {
+    MDCSetMatchFilter filter = new MDCSetMatchFilter();
+    filter.setValuesToMatch("acme");
+    assertEquals(Filter.NEUTRAL, filter.decide(event("tenant", "acme")));
+    filter.activateOptions();
+    assertEquals(Filter.NEUTRAL, filter.decide(event("tenant", "acme")));
+
+    filter.setKeysToMatch("tenant");
+    filter.activateOptions();
+    assertEquals(Filter.ACCEPT, filter.decide(event("tenant", "acme")));
+
+    filter.setKeysToMatch(" , ");
+    filter.activateOptions();
+    assertEquals(Filter.NEUTRAL, filter.decide(event("tenant", "acme")));
+  }
+
+  @Test
+  public void keysAndValuesChangeTogether() throws Exception {
+    // neither configuration matches the event, but the keys of one with
+    // the values of the other would; an error (such as reading the keys
+    // of an unconfigured filter) counts as a wrong decision too
+    final MDCSetMatchFilter filter = filter("a", "1");
+    final LoggingEvent event = event("a", "2", "b", "1");
+    final AtomicBoolean done = new AtomicBoolean();
+    final AtomicInteger wrong = new AtomicInteger();
+    Thread[] threads = new Thread[2];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread(new Runnable() {
+        public void run() {
+          while (!done.get()) {
+            int decision;
+            try {
+              decision = filter.decide(event);
+            } catch (RuntimeException e) {
+              decision = Filter.ACCEPT;
+            }
+            if (decision == Filter.ACCEPT) {
+              wrong.incrementAndGet();
+            }
+          }
+        }
+      });
+      threads[i].start();
+    }
+    try {
+      for (int i = 0; i < 200000; i++) {
+        // the two configurations, with no keys at all in between
+        filter.setKeysToMatch(i % 3 == 0 ? "" : i % 3 == 1 ? "b" : "a");
+        filter.setValuesToMatch(i % 3 == 1 ? "2" : "1");
+        filter.activateOptions();
+      }
+    } finally {
+      done.set(true);
+      for (Thread t : threads) {
+        t.join();
+      }
+    }
+    assertEquals(0, wrong.get());
+  }
+
+  private static MDCSetMatchFilter filter(String keys, String values) {
+    MDCSetMatchFilter filter = new MDCSetMatchFilter();
+    filter.setKeysToMatch(keys);
+    filter.setValuesToMatch(values);
+    filter.activateOptions();
+    return filter;
+  }
+
+  private LoggingEvent event(String... mdc) {
+    Map<String, String> properties = new HashMap<String, String>();
+    for (int i = 0; i < mdc.length; i += 2) {
+      properties.put(mdc[i], mdc[i + 1]);
+    }
+    return new LoggingEvent(Logger.class.getName(), logger, 0, Level.INFO, "message", "main",
+                            null, null, null, properties);
+  }
+}
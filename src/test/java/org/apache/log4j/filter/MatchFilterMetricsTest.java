@@ -0,0 +1,95 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j.filter;
+
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.MBeanRegistry;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks when the metrics of a filter are published over JMX.
+ */
+public class MatchFilterMetricsTest {
+  private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+  @After
+  public void unregister() {
+    MBeanRegistry.unregisterAll();
+  }
+
+  @Test
+  public void namedFilterIsPublishedUntilClosed() throws Exception {
+    ObjectName name = name("named");
+    MDCMatchFilter filter = filter("named");
+    assertTrue(server.isRegistered(name));
+
+    filter.close();
+    assertFalse(server.isRegistered(name));
+  }
+
+  @Test
+  public void anonymousFilterIsNotPublished() throws Exception {
+    Set<ObjectName> before = server.queryNames(new ObjectName(MatchFilterMetrics.JMX_DOMAIN + ":*"), null);
+    MDCMatchFilter filter = filter(null);
+    assertNotNull(filter.getMatchMetrics());
+    assertEquals(before, server.queryNames(new ObjectName(MatchFilterMetrics.JMX_DOMAIN + ":*"), null));
+  }
+
+  @Test
+  public void closingReplacedFilterKeepsReplacement() throws Exception {
+    ObjectName name = name("replaced");
+    MDCMatchFilter old = filter("replaced");
+    MDCMatchFilter replacement = filter("replaced");
+
+    old.close();
+    assertTrue(server.isRegistered(name));
+    replacement.close();
+    assertFalse(server.isRegistered(name));
+  }
+
+  @Test
+  public void unregisterAllRemovesEverything() throws Exception {
+    filter("left");
+    assertTrue(server.isRegistered(name("left")));
+    MBeanRegistry.unregisterAll();
+    assertFalse(server.isRegistered(name("left")));
+  }
+
+  private static ObjectName name(String filterName) throws Exception {
+    return new ObjectName(MatchFilterMetrics.JMX_DOMAIN + ":type=MatchFilter,name="
+                          + ObjectName.quote(filterName));
+  }
+
+  private static MDCMatchFilter filter(String name) {
+    MDCMatchFilter filter = new MDCMatchFilter();
+    filter.setName(name);
+    filter.setKeyToMatch("user");
+    filter.setValueToMatch("alice");
+    filter.setMetrics(true);
+    filter.activateOptions();
+    return filter;
+  }
+}
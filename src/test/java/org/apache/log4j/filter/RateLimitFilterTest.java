@@ -0,0 +1,353 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j.filter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Hierarchy;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.Filter;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.RootLogger;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks which events RateLimitFilter suppresses, where it sends its
+ * summaries, and that its thread stops when it is no longer needed.
+ */
+public class RateLimitFilterTest {
+  private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+  private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final List<Logger> loggers = new ArrayList<Logger>();
+  private final Hierarchy hierarchy = new Hierarchy(new RootLogger(Level.ALL));
+
+  @After
+  public void cleanUp() {
+    for (Logger logger : loggers) {
+      logger.removeAllAppenders();
+      logger.setAdditivity(true);
+    }
+    RateLimitFilter.shutdown();
+  }
+
+  @Test
+  public void summaryGoesOnlyToOwningAppender() throws Exception {
+    Logger parent = logger("RateLimitFilterTest.summary");
+    Logger logger = logger("RateLimitFilterTest.summary.child");
+    Collector limited = new Collector();
+    RateLimitFilter filter = filter();
+    limited.addFilter(filter);
+    Collector plain = new Collector();
+    Collector ancestor = new Collector();
+    logger.addAppender(limited);
+    logger.addAppender(plain);
+    parent.addAppender(ancestor);
+
+    for (int i = 0; i < 30; i++) {
+      logger.error("Failed request " + i);
+    }
+    waitForSummary(limited);
+
+    assertEquals(6, limited.messages.size());
+    assertEquals("Suppressed 25 similar events: RateLimitFilterTest.summary.child ERROR Failed request #",
+                 limited.messages.get(5));
+    assertEquals(30, plain.messages.size());
+    assertEquals(30, ancestor.messages.size());
+    assertEquals(0, plain.summaries() + ancestor.summaries());
+    filter.close();
+  }
+
+  @Test
+  public void eachFilterSummarizesForItsOwnAppender() {
+    Logger logger = logger("RateLimitFilterTest.two");
+    Collector first = new Collector();
+    RateLimitFilter firstFilter = filter(HOUR);
+    first.addFilter(firstFilter);
+    Collector second = new Collector();
+    RateLimitFilter secondFilter = filter(HOUR);
+    CompiledFilterChain chain = new CompiledFilterChain();
+    chain.addFilter(secondFilter);
+    chain.activateOptions();
+    second.addFilter(chain);
+    logger.addAppender(first);
+    logger.addAppender(second);
+
+    for (int i = 0; i < 10; i++) {
+      logger.warn("Slow");
+    }
+    // the thread would wait an hour, so only these sweeps log summaries
+    long later = System.nanoTime() + 2 * HOUR * MS;
+    firstFilter.sweep(later);
+    secondFilter.sweep(later);
+
+    assertEquals(1, first.summaries());
+    assertEquals(1, second.summaries());
+    assertEquals("Suppressed 5 similar events: RateLimitFilterTest.two WARN Slow",
+                 second.messages.get(second.messages.size() - 1));
+  }
+
+  @Test
+  public void threadStopsWhenLastFilterIsClosed() throws Exception {
+    RateLimitFilter a = filter();
+    RateLimitFilter b = filter();
+    assertTrue(threadRunning());
+    a.close();
+    assertTrue(threadRunning());
+    b.close();
+    waitForThreadToStop();
+
+    filter();
+    assertTrue(threadRunning());
+    RateLimitFilter.shutdown();
+    waitForThreadToStop();
+  }
+
+  private Logger logger(String name) {
+    Logger logger = Logger.getLogger(name);
+    loggers.add(logger);
+    return logger;
+  }
+
+  @Test
+  public void deniesOnceBurstIsUsed() {
+    RateLimitFilter filter = limiter(RateLimitFilter.KEY_MESSAGE, 10, 5, 100);
+    LoggingEvent event = event("a", Level.ERROR, "failed");
+    long t = System.nanoTime();
+    assertAllowed(filter, event, t, 5);
+    // refilled at ten events a second
+    assertAllowed(filter, event, t + 100 * MS, 1);
+    assertAllowed(filter, event, t + 150 * MS, 0);
+    assertAllowed(filter, event, t + 300 * MS, 2);
+    // and no further than the burst
+    assertAllowed(filter, event, t + 10000 * MS, 5);
+  }
+
+  @Test
+  public void messagesDifferingInDigitsShareALimit() {
+    assertTemplate("Failed request # of #x#", "Failed request 123 of 45x6");
+    assertTemplate("#", "007");
+    assertTemplate("v#.#.#-rc#", "v1.22.333-rc4");
+    assertTemplate("", "");
+    assertTemplate("no digits", "no digits");
+    assertTemplate("\u0661", "\u0661");
+
+    RateLimitFilter filter = limiter(RateLimitFilter.KEY_MESSAGE, 1, 2, 100);
+    long t = System.nanoTime();
+    assertFalse(filter.suppress(event("a", Level.ERROR, "id 1"), t));
+    assertFalse(filter.suppress(event("a", Level.ERROR, "id 22"), t));
+    assertTrue(filter.suppress(event("a", Level.ERROR, "id 333"), t));
+    assertFalse(filter.suppress(event("a", Level.ERROR, "id x"), t));
+    assertFalse(filter.suppress(event("b", Level.ERROR, "id 4"), t));
+    assertFalse(filter.suppress(event("a", Level.WARN, "id 5"), t));
+    assertEquals(4, filter.getKeyCount());
+  }
+
+  @Test
+  public void groupsByLoggerLevelOrMDC() {
+    long t = System.nanoTime();
+    RateLimitFilter byLogger = limiter(RateLimitFilter.KEY_LOGGER, 1, 1, 100);
+    assertAllowed(byLogger, event("a", Level.ERROR, "one"), t, 1);
+    assertAllowed(byLogger, event("a", Level.INFO, "two"), t, 0);
+    assertAllowed(byLogger, event("b", Level.ERROR, "one"), t, 1);
+
+    RateLimitFilter byLevel = limiter(RateLimitFilter.KEY_LEVEL, 1, 1, 100);
+    assertAllowed(byLevel, event("a", Level.ERROR, "one"), t, 1);
+    assertAllowed(byLevel, event("b", Level.ERROR, "two"), t, 0);
+    assertAllowed(byLevel, event("a", Level.INFO, "one"), t, 1);
+
+    RateLimitFilter byMDC = limiter(RateLimitFilter.KEY_MDC, 1, 1, 100);
+    byMDC.setMDCKey("tenant");
+    byMDC.activateOptions();
+    assertAllowed(byMDC, event("a", "tenant", "acme"), t, 1);
+    assertAllowed(byMDC, event("b", "tenant", "acme"), t, 0);
+    assertAllowed(byMDC, event("a", "tenant", "other"), t, 1);
+    // events without the key share one limit
+    assertAllowed(byMDC, event("a", Level.ERROR, "one"), t, 1);
+    assertAllowed(byMDC, event("b", "user", "bob"), t, 0);
+  }
+
+  @Test
+  public void newKeysShareOneBucketWhileFull() {
+    RateLimitFilter filter = limiter(RateLimitFilter.KEY_LOGGER, 1, 1, 100);
+    filter.setMaxKeys(2);
+    filter.activateOptions();
+    long t = System.nanoTime();
+    assertAllowed(filter, event("a", Level.ERROR, "one"), t, 1);
+    assertAllowed(filter, event("b", Level.ERROR, "one"), t, 1);
+    assertAllowed(filter, event("c", Level.ERROR, "one"), t, 1);
+    assertAllowed(filter, event("d", Level.ERROR, "one"), t, 0);
+    assertAllowed(filter, event("c", Level.ERROR, "one"), t, 0);
+    assertEquals(2, filter.getKeyCount());
+  }
+
+  @Test
+  public void idleKeysAreEvicted() {
+    RateLimitFilter filter = limiter(RateLimitFilter.KEY_LOGGER, 10, 2, 1000);
+    long t = System.nanoTime();
+    assertFalse(filter.suppress(event("a", Level.ERROR, "one"), t));
+    assertAllowed(filter, event("b", Level.ERROR, "one"), t, 2);
+
+    // neither bucket has been full for the quiet period
+    filter.sweep(t + 500 * MS);
+    assertEquals(2, filter.getKeyCount());
+
+    // the suppressed event of b is summarized first, so both are idle
+    filter.sweep(t + 5000 * MS);
+    assertEquals(0, filter.getKeyCount());
+    assertAllowed(filter, event("b", Level.ERROR, "one"), t + 5000 * MS, 2);
+    assertEquals(1, filter.getKeyCount());
+  }
+
+  @Test
+  public void summariesAreNeverSuppressed() {
+    RateLimitFilter filter = limiter(RateLimitFilter.KEY_LOGGER, 1, 1, 100);
+    long t = System.nanoTime();
+    LoggingEvent summary = new LoggingEvent(RateLimitFilter.class.getName(),
+                                            hierarchy.getLogger("a"), Level.ERROR,
+                                            "Suppressed 1 similar event: a", null);
+    for (int i = 0; i < 3; i++) {
+      assertFalse(filter.suppress(summary, t));
+    }
+  }
+
+  @Test
+  public void invalidLimitsDisableFilter() {
+    RateLimitFilter filter = limiter(RateLimitFilter.KEY_LOGGER, 0, 1, 100);
+    LoggingEvent event = event("a", Level.ERROR, "one");
+    for (int i = 0; i < 3; i++) {
+      assertEquals(Filter.NEUTRAL, filter.decide(event));
+    }
+  }
+
+  private static RateLimitFilter filter() {
+    return filter(50);
+  }
+
+  private static RateLimitFilter filter(long quietPeriod) {
+    RateLimitFilter filter = new RateLimitFilter();
+    filter.setRate(0.01);
+    filter.setBurst(5);
+    filter.setQuietPeriod(quietPeriod);
+    filter.setSummaryInterval(Math.max(quietPeriod, 60000));
+    filter.activateOptions();
+    return filter;
+  }
+
+  private static RateLimitFilter limiter(String key, double rate, int burst, long quietPeriod) {
+    RateLimitFilter filter = new RateLimitFilter();
+    filter.setKey(key);
+    filter.setRate(rate);
+    filter.setBurst(burst);
+    filter.setQuietPeriod(quietPeriod);
+    filter.activateOptions();
+    return filter;
+  }
+
+  /**
+   * Checks that the filter allows the event <code>allowed</code> times at
+   * the time <code>now</code>, and then suppresses it.
+   */
+  private static void assertAllowed(RateLimitFilter filter, LoggingEvent event, long now,
+                                    int allowed) {
+    for (int i = 0; i < allowed; i++) {
+      assertFalse("suppressed " + event.getRenderedMessage() + " after " + i,
+                  filter.suppress(event, now));
+    }
+    assertTrue("allowed " + event.getRenderedMessage() + " " + (allowed + 1) + " times",
+               filter.suppress(event, now));
+  }
+
+  private static void assertTemplate(String expected, String message) {
+    StringBuilder buf = new StringBuilder();
+    RateLimitFilter.appendTemplate(buf, message);
+    assertEquals(expected, buf.toString());
+  }
+
+  private LoggingEvent event(String logger, Level level, String message) {
+    return new LoggingEvent(Logger.class.getName(), hierarchy.getLogger(logger), level, message,
+                            null);
+  }
+
+  private LoggingEvent event(String logger, String key, String value) {
+    Map<String, String> mdc = new HashMap<String, String>();
+    mdc.put(key, value);
+    return new LoggingEvent(Logger.class.getName(), hierarchy.getLogger(logger), 0, Level.ERROR,
+                            "message", "main", null, null, null, mdc);
+  }
+
+  private static void waitForSummary(Collector collector) throws InterruptedException {
+    for (int i = 0; i < 500 && collector.summaries() == 0; i++) {
+      Thread.sleep(10);
+    }
+    assertEquals(1, collector.summaries());
+  }
+
+  private static boolean threadRunning() {
+    for (Thread t : Thread.getAllStackTraces().keySet()) {
+      if (t.getName().equals("RateLimitFilter") && t.isAlive()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void waitForThreadToStop() throws InterruptedException {
+    for (int i = 0; i < 500 && threadRunning(); i++) {
+      Thread.sleep(10);
+    }
+    assertFalse(threadRunning());
+  }
+
+  private static final class Collector extends AppenderSkeleton {
+    final List<String> messages = new ArrayList<String>();
+
+    synchronized int summaries() {
+      int n = 0;
+      for (String m : messages) {
+        if (m.startsWith("Suppressed ")) {
+          n++;
+        }
+      }
+      return n;
+    }
+
+    @Override
+    protected synchronized void append(LoggingEvent event) {
+      messages.add(event.getRenderedMessage());
+    }
+
+    @Override
+    public boolean requiresLayout() {
+      return false;
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j.filter;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.MDC;
+import org.apache.log4j.spi.Filter;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that SamplingFilter decides from the MDC the event was logged with.
+ */
+public class SamplingFilterTest {
+  private static final Logger LOGGER = Logger.getLogger(SamplingFilterTest.class);
+
+  @After
+  public void clearMDC() {
+    MDC.clear();
+  }
+
+  @Test
+  public void ignoresMDCOfFilteringThread() {
+    SamplingFilter filter = new SamplingFilter();
+    filter.setKeyToMatch("requestId");
+    filter.setRate(0.5);
+    filter.activateOptions();
+    String sampled = null;
+    for (int i = 0; sampled == null; i++) {
+      if (SamplingFilter.point("request-" + i) < (1L << 52)) {
+        sampled = "request-" + i;
+      }
+    }
+
+    MDC.put("requestId", sampled);
+    LoggingEvent event = new LoggingEvent(Logger.class.getName(), LOGGER, Level.INFO, "sampled", null);
+    assertEquals(Filter.NEUTRAL, filter.decide(event));
+
+    // An event logged without the key, filtered on a thread (such as an
+    // AsyncAppender dispatcher) whose MDC has a sampled value
+    MDC.clear();
+    LoggingEvent other = new LoggingEvent(Logger.class.getName(), LOGGER, Level.INFO, "other", null);
+    other.getMDCCopy();
+    MDC.put("requestId", sampled);
+    assertEquals(Filter.DENY, filter.decide(other));
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2026 The Board of Trustees of The Leland Stanford Junior University.
+ * All Rights Reserved.
+ *
+ * See the NOTICE and LICENSE files distributed with this work for information
+ * regarding copyright ownership and licensing. You may not use this file except
+ * in compliance with a written license agreement with Stanford University.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See your
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.log4j.varia;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Appender;
+import org.apache.log4j.AsyncAppender;
+import org.apache.log4j.Hierarchy;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.MBeanRegistry;
+import org.apache.log4j.filter.MDCMatchFilter;
+import org.apache.log4j.filter.MatchFilterMetrics;
+import org.apache.log4j.spi.Filter;
+import org.apache.log4j.spi.RootLogger;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives {@link ConfigurationReloader#reload()} against a configuration file
+ * that is changed between reloads.
+ */
+public class ConfigurationReloaderTest {
+  private static final String HEAD = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n"
+      + "<!DOCTYPE log4j:configuration SYSTEM \"log4j.dtd\">\n"
+      + "<log4j:configuration xmlns:log4j=\"http://jakarta.apache.org/log4j/\">\n";
+  private static final String TAIL = "</log4j:configuration>\n";
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+  private final Hierarchy hierarchy = new Hierarchy(new RootLogger(Level.DEBUG));
+  private File file;
+  private ConfigurationReloader reloader;
+
+  @After
+  public void close() {
+    if (reloader != null) {
+      reloader.close();
+    }
+    hierarchy.shutdown();
+    MBeanRegistry.unregisterAll();
+  }
+
+  @Test
+  public void levelChange() throws Exception {
+    start(nullAppender("out", "")
+          + logger("app", "info", "out")
+          + root("warn", "out"));
+    assertEquals(Level.INFO, hierarchy.getLogger("app").getLevel());
+    Appender out = hierarchy.getLogger("app").getAppender("out");
+
+    write(nullAppender("out", "")
+          + logger("app", "debug", "out")
+          + root("error", "out"));
+    assertTrue(reloader.reload());
+    assertEquals(Level.DEBUG, hierarchy.getLogger("app").getLevel());
+    assertEquals(Level.ERROR, hierarchy.getRootLogger().getLevel());
+    assertSame(out, hierarchy.getLogger("app").getAppender("out"));
+  }
+
+  @Test
+  public void removedLoggerInheritsAgain() throws Exception {
+    start(nullAppender("out", "")
+          + logger("app", "info", "out")
+          + root("warn", "out"));
+    assertEquals(Level.INFO, hierarchy.getLogger("app").getEffectiveLevel());
+
+    write(nullAppender("out", "")
+          + root("warn", "out"));
+    assertTrue(reloader.reload());
+    Logger app = hierarchy.getLogger("app");
+    assertNull(app.getLevel());
+    assertEquals(Level.WARN, app.getEffectiveLevel());
+    assertNull(app.getAppender("out"));
+    assertTrue(app.getAdditivity());
+  }
+
+  @Test
+  public void appenderReferringToChangedAppenderIsRebuilt() throws Exception {
+    start(nullAppender("inner", "")
+          + asyncAppender("async", "inner")
+          + nullAppender("other", "")
+          + root("debug", "async", "other"));
+    Logger root = hierarchy.getRootLogger();
+    Appender async = root.getAppender("async");
+    Appender inner = ((AsyncAppender) async).getAppender("inner");
+    Appender other = root.getAppender("other");
+
+    write(nullAppender("inner", "<param name=\"Threshold\" value=\"warn\"/>")
+          + asyncAppender("async", "inner")
+          + nullAppender("other", "")
+          + root("debug", "async", "other"));
+    assertTrue(reloader.reload());
+
+    Appender rebuilt = root.getAppender("async");
+    assertNotSame(async, rebuilt);
+    Appender rebuiltInner = ((AsyncAppender) rebuilt).getAppender("inner");
+    assertNotSame(inner, rebuiltInner);
+    assertEquals(Level.WARN, ((NullAppender) rebuiltInner).getThreshold());
+    assertSame(other, root.getAppender("other"));
+  }
+
+  @Test
+  public void filterOnlyChangeSwapsChain() throws Exception {
+    start(nullAppender("out", filter("f1", "alice"))
+          + root("debug", "out"));
+    Appender out = hierarchy.getRootLogger().getAppender("out");
+    Filter f1 = out.getFilter();
+    assertTrue(server.isRegistered(metricsName("f1")));
+
+    write(nullAppender("out", filter("f2", "bob"))
+          + root("debug", "out"));
+    assertTrue(reloader.reload());
+
+    assertSame(out, hierarchy.getRootLogger().getAppender("out"));
+    Filter f2 = out.getFilter();
+    assertNotSame(f1, f2);
+    assertEquals("bob", ((MDCMatchFilter) f2).getValueToMatch());
+    assertFalse(server.isRegistered(metricsName("f1")));
+    assertTrue(server.isRegistered(metricsName("f2")));
+  }
+
+  @Test
+  public void parseErrorKeepsConfiguration() throws Exception {
+    start(nullAppender("out", filter("kept", "alice"))
+          + logger("app", "info", "out")
+          + root("warn", "out"));
+    Appender out = hierarchy.getLogger("app").getAppender("out");
+
+    write(nullAppender("out", "")
+          + logger("app", "debug", "out")
+          + "<root>");
+    assertFalse(reloader.reload());
+
+    assertEquals(Level.INFO, hierarchy.getLogger("app").getLevel());
+    assertSame(out, hierarchy.getLogger("app").getAppender("out"));
+    assertTrue(out.getFilter() instanceof MDCMatchFilter);
+    assertTrue(server.isRegistered(metricsName("kept")));
+    assertEquals(1, reloader.getErrorCount());
+  }
+
+  private void start(String config) throws Exception {
+    file = folder.newFile("log4j.xml");
+    write(config);
+    new DOMConfigurator().doConfigure(file.getPath(), hierarchy);
+    // a long delay, so that only the reloads of the test are done
+    reloader = new ConfigurationReloader(file, hierarchy, 60000);
+    reloader.start();
+  }
+
+  private void write(String config) throws Exception {
+    Writer w = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+    try {
+      w.write(HEAD + config + TAIL);
+    } finally {
+      w.close();
+    }
+  }
+
+  private static String nullAppender(String name, String body) {
+    return "<appender name=\"" + name + "\" class=\"org.apache.log4j.varia.NullAppender\">"
+        + body + "</appender>\n";
+  }
+
+  private static String asyncAppender(String name, String ref) {
+    return "<appender name=\"" + name + "\" class=\"org.apache.log4j.AsyncAppender\">"
+        + "<appender-ref ref=\"" + ref + "\"/></appender>\n";
+  }
+
+  private static String filter(String name, String value) {
+    return "<filter class=\"org.apache.log4j.filter.MDCMatchFilter\">"
+        + "<param name=\"Name\" value=\"" + name + "\"/>"
+        + "<param name=\"KeyToMatch\" value=\"user\"/>"
+        + "<param name=\"ValueToMatch\" value=\"" + value + "\"/>"
+        + "<param name=\"Metrics\" value=\"true\"/></filter>";
+  }
+
+  private static String logger(String name, String level, String ref) {
+    return "<logger name=\"" + name + "\" additivity=\"false\"><level value=\"" + level + "\"/>"
+        + "<appender-ref ref=\"" + ref + "\"/></logger>\n";
+  }
+
+  private static String root(String level, String... refs) {
+    StringBuilder buf = new StringBuilder("<root><level value=\"" + level + "\"/>");
+    for (String ref : refs) {
+      buf.append("<appender-ref ref=\"").append(ref).append("\"/>");
+    }
+    return buf.append("</root>\n").toString();
+  }
+
+  private static ObjectName metricsName(String filterName) throws Exception {
+    return new ObjectName(MatchFilterMetrics.JMX_DOMAIN + ":type=MatchFilter,name="
+                          + ObjectName.quote(filterName));
+  }
+}